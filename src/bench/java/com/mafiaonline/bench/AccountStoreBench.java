@@ -0,0 +1,102 @@
+package com.mafiaonline.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafiaonline.server.auth.AuthService;
+import com.mafiaonline.server.metrics.Histogram;
+import com.mafiaonline.server.metrics.ServerMetrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Thông lượng đăng ký của AuthService (log tài khoản chỉ ghi nối + group commit):
+ * P thread (giả thread đọc của các phiên) đăng ký tài khoản mới liên tục trong S giây, mỗi lượt thứ 4 đổi mật khẩu
+ * (tạo record chết cho compaction). In đăng ký/s, p50/p99 của register, số record / fsync, thời gian nạp lại file,
+ * và để so sánh: 1 lần ghi lại cả map bằng Jackson như saveAtomic() cũ làm sau MỖI đăng ký.
+ *
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.AccountStoreBench -Dbench.args="8 5 true"
+ * Tham số: [threads] [giây] [auth.fsync] [thư mục (mặc định: thư mục tạm, xoá sau khi chạy)]
+ */
+public class AccountStoreBench {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int secs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String fsync = args.length > 2 ? args[2] : "true";
+        boolean temp = args.length <= 3;
+        Path dir = temp ? Files.createTempDirectory("account-bench") : Path.of(args[3]);
+        System.setProperty("auth.data.dir", dir.toString());
+        System.setProperty("auth.fsync", fsync);
+        System.setProperty("auth.compact.min", "1000");
+        System.setProperty("auth.pbkdf2.iterations", "1"); // đo log tài khoản, không đo PBKDF2 (xem AuthBench)
+        System.setProperty("auth.queue", "100000");
+        System.setProperty("log.level.com.mafiaonline.server", "WARN");
+
+        AuthService auth = new AuthService();
+        LongAdder registered = new LongAdder(), failed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(secs);
+
+        long t0 = System.nanoTime();
+        for (int p = 0; p < threads; p++) {
+            final int id = p;
+            Thread t = new Thread(() -> {
+                long n = 0;
+                while (System.nanoTime() < end) {
+                    String user = "u" + id + "_" + n;
+                    if (auth.register(user, "secret" + n) == null) registered.increment();
+                    else failed.increment();
+                    if ((n & 3) == 3 && !auth.changePassword(user, "secret" + n, "changed" + n)) failed.increment();
+                    n++;
+                }
+                done.countDown();
+            }, "register-" + p);
+            t.start();
+        }
+        done.await();
+        double sec = (System.nanoTime() - t0) / 1e9;
+        int accounts = auth.accountCount();
+        String summary = auth.storeSummary();
+        auth.close();
+
+        Histogram.Snapshot s = ServerMetrics.AUTH_REGISTER_SECONDS.snapshot();
+        System.out.printf("threads=%d fsync=%s%n", threads, fsync);
+        System.out.printf("  registered %,10d  (%,.0f reg/s, failed %d)%n", registered.sum(), registered.sum() / sec, failed.sum());
+        System.out.printf("  register   p50 %.3f ms  p99 %.3f ms  max %.3f ms%n",
+                s.percentileNanos(0.50) / 1e6, s.percentileNanos(0.99) / 1e6, s.maxNanos() / 1e6);
+        System.out.println("  " + summary);
+        System.out.printf("  file       %,10d bytes%n", Files.size(dir.resolve("accounts.log")));
+
+        long l0 = System.nanoTime();
+        AuthService reopened = new AuthService();
+        long loadNanos = System.nanoTime() - l0;
+        System.out.printf("  reload     %,10d accounts in %.1f ms (expected %d)%n",
+                reopened.accountCount(), loadNanos / 1e6, accounts);
+        reopened.close();
+
+        // Cách cũ: mỗi đăng ký pretty-print cả map ra .tmp rồi đổi tên — đo 1 lần ở kích thước cuối
+        Map<String, String> all = new HashMap<>();
+        for (int i = 0; i < accounts; i++) all.put("u_" + i, "secret" + i);
+        Path json = dir.resolve("legacy.json");
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(json.toFile(), all); // warm-up
+        long j0 = System.nanoTime();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(json.toFile(), all);
+        System.out.printf("  legacy     1 full JSON rewrite of %,d accounts = %.2f ms (once per registration before)%n",
+                accounts, (System.nanoTime() - j0) / 1e6);
+
+        if (temp) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+}
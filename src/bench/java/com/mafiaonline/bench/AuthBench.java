@@ -0,0 +1,119 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.auth.AuthService;
+import com.mafiaonline.server.auth.AuthService.LoginResult;
+import com.mafiaonline.server.auth.PasswordHasher;
+import com.mafiaonline.server.metrics.Histogram;
+import com.mafiaonline.server.metrics.ServerMetrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Đăng nhập/giây với PBKDF2 ở số vòng đã chọn, trên executor băm của AuthService:
+ * 1. hash():      chi phí 1 lần băm trên 1 thread (ms/hash -> hash/s/core)
+ * 2. steady:      C client gửi /login nối tiếp nhau trong S giây -> login/s, login/s/thread băm, p50/p99
+ * 3. storm:       nộp 1 lượt N login cùng lúc (vd cả server vừa khởi động lại) -> bao nhiêu BUSY,
+ *                 BUSY trả về nhanh cỡ nào (không được chờ tới lượt băm)
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.AuthBench -Dbench.args="100000 1 5 4 2000"
+ * Tham số: [auth.pbkdf2.iterations] [auth.threads] [giây] [clients] [storm N]
+ */
+public class AuthBench {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int secs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 4 * threads;
+        int storm = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+
+        Path dir = Files.createTempDirectory("auth-bench");
+        System.setProperty("auth.data.dir", dir.toString());
+        System.setProperty("auth.fsync", "false");
+        System.setProperty("auth.pbkdf2.iterations", Integer.toString(iterations));
+        System.setProperty("auth.threads", Integer.toString(threads));
+        System.setProperty("log.level.com.mafiaonline.server", "WARN");
+
+        // 1. chi phí 1 lần băm
+        PasswordHasher hasher = new PasswordHasher(iterations);
+        for (int i = 0; i < 5; i++) hasher.hash("warmup-password");
+        int n = 20;
+        long h0 = System.nanoTime();
+        for (int i = 0; i < n; i++) hasher.hash("password" + i);
+        double msPerHash = (System.nanoTime() - h0) / 1e6 / n;
+        System.out.printf("PBKDF2-HMAC-SHA256 iterations=%,d  cpus=%d  auth.threads=%d%n",
+                iterations, Runtime.getRuntime().availableProcessors(), threads);
+        System.out.printf("  hash       %.2f ms  (%.0f hash/s/core)%n", msPerHash, 1000 / msPerHash);
+
+        AuthService auth = new AuthService();
+        int users = 64;
+        for (int i = 0; i < users; i++) auth.register("user" + i, "password" + i);
+
+        // 2. steady: mỗi client chờ kết quả rồi gửi tiếp
+        LongAdder ok = new LongAdder(), busy = new LongAdder();
+        CountDownLatch done = new CountDownLatch(clients);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(secs);
+        long t0 = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            final int id = c;
+            Thread t = new Thread(() -> {
+                int i = id;
+                while (System.nanoTime() < end) {
+                    int u = i++ % users;
+                    LoginResult r = auth.loginAsync("user" + u, "password" + u).join();
+                    if (r == LoginResult.OK) ok.increment();
+                    else if (r == LoginResult.BUSY) busy.increment();
+                }
+                done.countDown();
+            }, "client-" + c);
+            t.start();
+        }
+        done.await();
+        double sec = (System.nanoTime() - t0) / 1e9;
+        Histogram.Snapshot s = ServerMetrics.AUTH_LOGIN_SECONDS.snapshot();
+        int cores = Math.min(threads, Runtime.getRuntime().availableProcessors());
+        System.out.printf("  steady     clients=%d  %,.0f login/s  (%.1f login/s/core)  busy=%d%n",
+                clients, ok.sum() / sec, ok.sum() / sec / cores, busy.sum());
+        System.out.printf("             p50 %.1f ms  p99 %.1f ms  (gồm chờ hàng đợi)%n",
+                s.percentileNanos(0.50) / 1e6, s.percentileNanos(0.99) / 1e6);
+
+        // 3. storm: nộp N login một lượt từ 1 thread (như event loop nhận cả loạt dòng /login)
+        List<CompletableFuture<LoginResult>> all = new ArrayList<>(storm);
+        long[] rejectNanos = new long[storm];
+        int rejected = 0;
+        long s0 = System.nanoTime();
+        for (int i = 0; i < storm; i++) {
+            long c0 = System.nanoTime();
+            CompletableFuture<LoginResult> f = auth.loginAsync("user" + (i % users), "password" + (i % users));
+            if (f.isDone() && f.join() == LoginResult.BUSY) rejectNanos[rejected++] = System.nanoTime() - c0;
+            all.add(f);
+        }
+        long submitNanos = System.nanoTime() - s0;
+        int stormOk = 0, stormBusy = 0;
+        for (CompletableFuture<LoginResult> f : all) {
+            LoginResult r = f.join();
+            if (r == LoginResult.OK) stormOk++;
+            else if (r == LoginResult.BUSY) stormBusy++;
+        }
+        double drainSec = (System.nanoTime() - s0) / 1e9;
+        Arrays.sort(rejectNanos, 0, rejected);
+        System.out.printf("  storm      %,d login nộp trong %.1f ms: ok=%d busy=%d (từ chối ngay %d, p99 %.1f µs), xong sau %.1f s%n",
+                storm, submitNanos / 1e6, stormOk, stormBusy, rejected,
+                rejected == 0 ? 0.0 : rejectNanos[(int) Math.min(rejected - 1, rejected * 0.99)] / 1e3, drainSec);
+
+        auth.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.GameRoom;
+import com.mafiaonline.server.RoomRegistry;
+import com.mafiaonline.server.PlayerHandler;
+import com.mafiaonline.server.net.Connection;
+import com.mafiaonline.server.net.Frame;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out 1 broadcast cho phòng N người: mã hoá 1 lần (Frame dùng chung) vs mỗi người nhận tự encode.
+ * Xem byte cấp phát / broadcast ở cột gc.alloc.rate.norm:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JmhMain -Dbench.args="BroadcastBench"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level.com.mafiaonline.server=WARN") // log DEBUG mỗi broadcast: chỉ còn phép so mức
+public class BroadcastBench {
+
+    /** Dòng tiếng Việt + emoji điển hình (killPlayer / startGame). */
+    static final String MSG = "💀 Nguyễn_Văn_An đã bị loại khỏi game. 🕵️‍♂️ Đồng đội Mafia của bạn: Trần_Thị_Bích";
+
+    @Param({"10", "100", "1000"})
+    int roomSize;
+
+    private RoomRegistry rooms;
+    private GameRoom room;
+    private PlayerHandler[] handlers;
+
+    /** Kết nối giả: giữ frame cuối, không I/O. */
+    static final class SinkConnection implements Connection {
+        Frame last;
+        @Override public void send(Frame frame) { last = frame; }
+        @Override public void close() {}
+        @Override public String remoteAddress() { return "sink"; }
+    }
+
+    @Setup
+    public void setup() {
+        rooms = new RoomRegistry(1);
+        room = rooms.defaultRoom();
+        handlers = new PlayerHandler[roomSize];
+        for (int i = 0; i < roomSize; i++) handlers[i] = new PlayerHandler(new SinkConnection(), rooms);
+        // thêm người chơi trên loop của phòng; sau đó phòng đứng yên nên bench gọi thẳng broadcast được
+        room.executeAndWait(() -> {
+            for (int i = 0; i < roomSize; i++) room.addPlayer("p" + i, handlers[i]);
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        rooms.shutdown();
+    }
+
+    /** Đường thật: GameRoom.broadcast (log + Frame dùng chung). */
+    @Benchmark
+    public void roomBroadcast() {
+        room.broadcast(MSG);
+    }
+
+    /** Chỉ phần fan-out: encode 1 lần, N người nhận dùng chung. */
+    @Benchmark
+    public void sharedFrame() {
+        Frame f = Frame.of(MSG);
+        for (PlayerHandler h : handlers) h.sendFrame(f);
+    }
+
+    /** Cách cũ: mỗi người nhận tự encode chuỗi sang UTF-8. */
+    @Benchmark
+    public void perRecipientEncode() {
+        for (PlayerHandler h : handlers) h.sendMessage(MSG);
+    }
+}
@@ -0,0 +1,86 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.bridge.WsBridgeServer;
+import com.mafiaonline.common.JsonUtil;
+import com.mafiaonline.common.Message;
+import com.mafiaonline.common.MessageHandler;
+import com.mafiaonline.common.MessageType;
+import com.mafiaonline.server.PlayerHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mã hoá / tách dòng trên đường nhận tin:
+ * - JsonUtil.fromJson / toJson (Jackson)
+ * - MessageHandler.handleMessage: timestamp số (đường thẳng) vs chuỗi ISO (parse hỏng -> regex sửa -> parse lại)
+ * - WsBridgeServer.extractField: regex lấy "type"/"content" của mọi frame WS
+ * - PlayerHandler.Command.parse: tách "/lệnh tham số" cho mỗi dòng sau login
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JmhMain -Dbench.args="CodecBench"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBench {
+
+    static final String JSON = "{\"type\":\"CHAT\",\"sender\":\"Nguyễn_Văn_An\","
+            + "\"content\":\"Tôi nghĩ \\\"Bích\\\" là Mafia 🕵️\",\"timestamp\":1739000000000}";
+    static final String JSON_ISO = "{\"type\":\"CHAT\",\"sender\":\"Nguyễn_Văn_An\","
+            + "\"content\":\"Tôi nghĩ \\\"Bích\\\" là Mafia 🕵️\",\"timestamp\":\"2025-02-08T07:33:20Z\"}";
+    static final String WS_FRAME = "{\"type\":\"VOTE\",\"sender\":\"an\",\"content\":\"Trần_Thị_Bích\",\"room\":\"main\"}";
+    static final String COMMAND = "/vote   Trần_Thị_Bích ";
+
+    private Message message;
+    private MessageHandler handler;
+    private PrintStream realOut;
+
+    @Setup
+    public void setup() {
+        realOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // MessageHandler log mỗi tin
+        message = new Message(MessageType.CHAT, "Nguyễn_Văn_An", "Tôi nghĩ \"Bích\" là Mafia 🕵️", 1_739_000_000_000L);
+        handler = new MessageHandler();
+        handler.addListener(new MessageHandler.Listener() {});
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(realOut);
+    }
+
+    @Benchmark
+    public Message fromJson() throws Exception {
+        return JsonUtil.fromJson(JSON);
+    }
+
+    @Benchmark
+    public String toJson() throws Exception {
+        return JsonUtil.toJson(message);
+    }
+
+    @Benchmark
+    public void handleMessage() {
+        handler.handleMessage(JSON);
+    }
+
+    /** Timestamp ISO: lần parse đầu ném exception, regex thay bằng millis rồi parse lại. */
+    @Benchmark
+    public void handleMessageIsoTimestamp() {
+        handler.handleMessage(JSON_ISO);
+    }
+
+    @Benchmark
+    public String extractField() {
+        return WsBridgeServer.extractField(WS_FRAME, "content");
+    }
+
+    @Benchmark
+    public PlayerHandler.Command parseCommand() {
+        return PlayerHandler.Command.parse(COMMAND.trim());
+    }
+}
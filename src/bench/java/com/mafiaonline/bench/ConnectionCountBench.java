@@ -0,0 +1,107 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.RoomRegistry;
+import com.mafiaonline.server.PlayerHandler;
+import com.mafiaonline.server.ServerMain;
+import com.mafiaonline.server.net.NioServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark số kết nối: giữ N client idle (đã nhận lời chào) rồi đo thread + heap phía server.
+ *   blocking = 1 thread/kết nối, nio = vài event loop cho tất cả.
+ *
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.args="both 2000"
+ *   mvn -Pbench compile exec:exec -Dbench.args="nio 10000 4"
+ * Tham số: <blocking|nio|both> <số kết nối> [số nio loop]
+ * Lưu ý: socket phía client nằm chung JVM nên heap đo được gồm cả chi phí client (như nhau ở 2 chế độ).
+ */
+public class ConnectionCountBench {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0].toLowerCase() : "both";
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int loops = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-9s %8s %8s %10s %12s %10s%n", "mode", "conns", "threads", "heapMB", "bytes/conn", "openMs");
+        if (mode.equals("blocking") || mode.equals("both")) run("blocking", connections, loops);
+        if (mode.equals("nio") || mode.equals("both")) run("nio", connections, loops);
+    }
+
+    private static void run(String mode, int n, int loops) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        RoomRegistry rooms = new RoomRegistry();
+
+        settle();
+        long heap0 = usedHeap();
+        int threads0 = threads.getThreadCount();
+
+        Closeable server;
+        int port;
+        if (mode.equals("nio")) {
+            NioServer nio = new NioServer(0, loops, c -> new PlayerHandler(c, rooms));
+            port = nio.getLocalPort();
+            server = nio;
+            daemon(() -> { try { nio.serve(); } catch (IOException ignored) {} });
+        } else {
+            ServerSocket ss = new ServerSocket(0, 1024);
+            port = ss.getLocalPort();
+            server = ss;
+            daemon(() -> ServerMain.acceptLoop(ss, rooms));
+        }
+
+        List<Socket> clients = new ArrayList<>(n);
+        long t0 = System.nanoTime();
+        try {
+            for (int i = 0; i < n; i++) {
+                Socket s = new Socket("127.0.0.1", port);
+                clients.add(s);
+                readLine(s.getInputStream()); // "=== Mafia-Online Server ===" -> handler đã sống
+            }
+            long openMs = (System.nanoTime() - t0) / 1_000_000;
+
+            settle();
+            long heap = usedHeap() - heap0;
+            int thr = threads.getThreadCount() - threads0;
+            System.out.printf("%-9s %8d %8d %10.1f %12d %10d%n",
+                    mode, n, thr, heap / (1024.0 * 1024.0), heap / Math.max(1, n), openMs);
+        } finally {
+            for (Socket s : clients) try { s.close(); } catch (IOException ignored) {}
+            server.close();
+            rooms.shutdown();
+        }
+    }
+
+    private static void readLine(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') { /* bỏ qua nội dung */ }
+    }
+
+    private static void daemon(Runnable r) {
+        Thread t = new Thread(r, "bench-accept");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+        return mem.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void settle() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.GameClock;
+import com.mafiaonline.server.GameRoom;
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.PhaseManager;
+import com.mafiaonline.server.Player;
+import com.mafiaonline.server.Role;
+import com.mafiaonline.server.RoomLoop;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine trên loop của phòng (không socket, không timer thật — GameClock bỏ qua mọi lần hẹn):
+ * - resolveDay: N người đã vote chia đôi 2 mục tiêu (hoà -> không ai chết) rồi chốt ngày -> sang đêm
+ * - endNight : Mafia cùng giết 1 người, Doctor cứu đúng người đó, Detective điều tra -> không ai chết, sang ngày
+ * - checkWinCondition: O(1) nhờ SeatIndex, không phụ thuộc N
+ * Hoà/cứu để phòng không đổi giữa các lần đo. Chuẩn bị pha (VotedDay/ActedNight) ở Level.Invocation — chỉ cho
+ * 2 op dài vài µs trở lên; checkWinCondition không dính setup từng lần gọi.
+ * Lưu ý: gc.alloc.rate.norm tính mọi byte thread cấp phát trong iteration -> B/op của resolveDay/endNight
+ * gồm cả phần chuẩn bị (N lần castVote / recordNightAction), thời gian thì không.
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JmhMain -Dbench.args="EngineBench"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level.com.mafiaonline.server=WARN")
+public class EngineBench {
+
+    @Param({"8", "50", "500"})
+    int roomSize;
+
+    private GameRoom room;
+    private PhaseManager phases;
+    private List<Player> alive;
+    private String mafia, doctor, detective, victim;
+
+    /** Đồng hồ không bao giờ bắn: pha chỉ đổi khi bench gọi. */
+    static final class StoppedClock implements GameClock {
+        private static final Timer NONE = () -> false;
+        @Override public Timer schedule(Runnable task, long delay, TimeUnit unit) { return NONE; }
+        @Override public long nanoTime() { return System.nanoTime(); }
+        @Override public long currentTimeMillis() { return System.currentTimeMillis(); }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        room = new GameRoom("bench", RoomLoop.ofCurrentThread(), new StoppedClock());
+        room.setRandom(new SplittableRandom(42));
+        for (int i = 0; i < roomSize; i++) room.addPlayer("p" + i);
+        room.startGame();
+        phases = room.getPhaseManager();
+        alive = room.getPlayersAlive();
+        for (Player p : alive) {
+            switch (p.getRole()) {
+                case MAFIA     -> mafia = p.getName();
+                case DOCTOR    -> doctor = p.getName();
+                case DETECTIVE -> detective = p.getName();
+                default        -> { if (victim == null) victim = p.getName(); }
+            }
+        }
+    }
+
+    /** Ngày ở giai đoạn VOTE, mọi người đã vote: nửa đầu bầu ghế 0, nửa sau bầu ghế 1 (N chẵn -> hoà). */
+    @State(Scope.Thread)
+    public static class VotedDay {
+        @Setup(Level.Invocation)
+        public void prepare(EngineBench b) {
+            b.phases.startDay();
+            b.phases.openVotePhase();
+            String x = b.alive.get(0).getName(), y = b.alive.get(1).getName();
+            int n = b.alive.size();
+            for (int i = 0; i < n; i++) b.phases.castVote(b.alive.get(i).getName(), (i < n / 2) ? x : y);
+        }
+    }
+
+    /** Đêm đã đủ hành động: Mafia cùng giết victim, Doctor cứu victim, Detective điều tra 1 Mafia. */
+    @State(Scope.Thread)
+    public static class ActedNight {
+        @Setup(Level.Invocation)
+        public void prepare(EngineBench b) {
+            b.phases.startNight();
+            for (Player p : b.alive) {
+                if (p.getRole() == Role.MAFIA) b.phases.recordNightAction(p.getName(), b.victim);
+            }
+            b.phases.recordNightAction(b.doctor, b.victim);
+            b.phases.recordNightAction(b.detective, b.mafia);
+        }
+    }
+
+    @Benchmark
+    public GameState resolveDay(VotedDay day) {
+        phases.resolveDay();
+        return room.getState();
+    }
+
+    @Benchmark
+    public GameState endNight(ActedNight night) {
+        phases.endNight();
+        return room.getState();
+    }
+
+    @Benchmark
+    public boolean checkWinCondition() {
+        room.checkWinCondition();
+        return room.isGameStarted();
+    }
+}
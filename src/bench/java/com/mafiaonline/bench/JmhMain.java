@@ -0,0 +1,20 @@
+package com.mafiaonline.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Chạy JMH với gc profiler luôn bật: mỗi bench có thêm gc.alloc.rate.norm (byte cấp phát / op),
+ * nên hồi quy thấy được cả ở thời gian lẫn cấp phát. Nhận mọi tham số dòng lệnh của JMH.
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JmhMain -Dbench.args="CodecBench"
+ *   ... -Dbench.args="EngineBench -p roomSize=50 -f 2"
+ */
+public class JmhMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(cli).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.journal.Journal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thông lượng journal: P thread (giả RoomLoop) liên tục ghi record VOTE trong S giây,
+ * đo record/s phía ghi (append, không chặn) và phía đĩa (written), số lần force (group commit), dropped.
+ *
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JournalBench -Dbench.args="4 5 10"
+ * Tham số: [producers] [giây] [journal.sync.ms] [thư mục (mặc định: thư mục tạm, xoá sau khi chạy)]
+ */
+public class JournalBench {
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int secs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long syncMs = args.length > 2 ? Long.parseLong(args[2]) : 10;
+        boolean temp = args.length <= 3;
+        Path dir = temp ? Files.createTempDirectory("journal-bench") : Path.of(args[3]);
+
+        Journal journal = new Journal(dir, 64, syncMs, 1_000_000);
+        LongAdder sent = new LongAdder();
+        CountDownLatch done = new CountDownLatch(producers);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(secs);
+
+        long t0 = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            final String room = "r" + p;
+            Thread t = new Thread(() -> {
+                long n = 0;
+                while ((n & 1023) != 0 || System.nanoTime() < end) {
+                    journal.vote(room, 1_700_000_000_000L, "player" + (n & 15), "player" + ((n + 7) & 15));
+                    n++;
+                }
+                sent.add(n);
+                done.countDown();
+            }, "producer-" + p);
+            t.start();
+        }
+        done.await();
+        long appendNanos = System.nanoTime() - t0;
+        journal.close();
+        long totalNanos = System.nanoTime() - t0;
+
+        double appendSec = appendNanos / 1e9, totalSec = totalNanos / 1e9;
+        System.out.printf("producers=%d sync=%dms%n", producers, syncMs);
+        System.out.printf("  offered   %,12d  (%,.0f rec/s)%n", sent.sum(), sent.sum() / appendSec);
+        System.out.printf("  written   %,12d  (%,.0f rec/s, %.1f MB/s)%n", journal.writtenRecords(),
+                journal.writtenRecords() / totalSec, journal.writtenBytes() / totalSec / 1e6);
+        System.out.printf("  dropped   %,12d%n", journal.droppedRecords());
+        System.out.printf("  forces    %,12d  (%.1f records/force)%n", journal.forces(),
+                journal.forces() == 0 ? 0.0 : journal.writtenRecords() / (double) journal.forces());
+        System.out.println("  " + journal.summary());
+
+        if (temp) {
+            try (var s = Files.list(dir)) {
+                s.forEach(f -> f.toFile().delete());
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí phía thread gọi của Logger (log-writer chạy nền, không appender nên chỉ rút ring):
+ * - disabledDebug: mức tắt -> 1 phép so int, gc.alloc.rate.norm phải = 0 B/op
+ * - enabledInfo: đẩy mẫu + 2 tham số vào ring (không nối chuỗi trên thread gọi)
+ * - concatPrintln: cách cũ — nối chuỗi + System.out.println vào stream rỗng (khoá của PrintStream)
+ * Số bản ghi bị bỏ vì ring đầy in ở cuối mỗi lượt đo. Chạy thêm -t 4 để thấy tranh chấp.
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JmhMain -Dbench.args="LogBench"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog.appenders=", "-Dlog.level=INFO"})
+public class LogBench {
+
+    static final String ROOM = "r1a";
+    static final String MSG = "💀 Nguyễn_Văn_An đã bị loại khỏi game.";
+
+    private Logger log;
+    private PrintStream sink;
+
+    @Setup
+    public void setup() {
+        log = Log.get(LogBench.class);
+        sink = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.println("  log written=" + Log.writtenEvents() + " dropped=" + Log.droppedEvents());
+    }
+
+    @Benchmark
+    public void disabledDebug() {
+        log.debug("[Broadcast] {}: {}", ROOM, MSG);
+    }
+
+    @Benchmark
+    public void enabledInfo() {
+        log.info("[Broadcast] {}: {}", ROOM, MSG);
+    }
+
+    @Benchmark
+    public void concatPrintln() {
+        sink.println("[Broadcast] " + ROOM + ": " + MSG);
+    }
+}
@@ -0,0 +1,60 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.metrics.Counter;
+import com.mafiaonline.server.metrics.Histogram;
+import com.mafiaonline.server.metrics.Metrics;
+import com.mafiaonline.server.metrics.ServerMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí ghi số liệu trên đường nóng — gc.alloc.rate.norm phải ≈ 0 B/op:
+ * - histogramRecord: 1 mẫu vào histogram (stripe theo thread)
+ * - histogramRecordSince: như trên + System.nanoTime()
+ * - counterInc: LongAdder
+ * - commandLookup: chọn histogram theo dòng lệnh (so khớp tại chỗ, không tách chuỗi)
+ * Chạy thêm -t 4 để thấy tranh chấp giữa các thread.
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.JmhMain -Dbench.args="MetricsBench"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBench {
+
+    static final String COMMAND = "/investigate Trần_Thị_Bích";
+
+    private Histogram histogram;
+    private Counter counter;
+    private long value = 1;
+
+    @Setup
+    public void setup() {
+        histogram = Metrics.histogram("bench_seconds", "bench");
+        counter = Metrics.counter("bench_total", "bench");
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        value = (value * 6364136223846793005L + 1442695040888963407L); // LCG: giá trị rải khắp các ô
+        histogram.record(value >>> 34);
+    }
+
+    @Benchmark
+    public void histogramRecordSince() {
+        histogram.recordSince(System.nanoTime() - 1000);
+    }
+
+    @Benchmark
+    public void counterInc() {
+        counter.inc();
+    }
+
+    @Benchmark
+    public Histogram commandLookup() {
+        return ServerMetrics.command(COMMAND);
+    }
+}
@@ -0,0 +1,63 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.net.RateLimiter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Chi phí RateLimiter.tryAcquire() trên đường nóng (thread đọc / event loop gọi mỗi dòng):
+ * 1. distinct: mỗi thread 1 nhóm khoá riêng (nhiều người chơi) — CAS gần như không tranh chấp
+ * 2. shared:   mọi thread cùng 1 khoá (1 IP xả lệnh từ nhiều kết nối) — tranh chấp tối đa trên 1 ô
+ * Rate đặt rất cao để đo chi phí kiểm tra, và 1 lượt rate thấp để xem phần bị từ chối có đúng ~rate x giây + burst.
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.RateLimiterBench -Dbench.args="4 3"
+ * Tham số: [threads] [giây mỗi lượt]
+ */
+public class RateLimiterBench {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int secs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        System.out.printf("threads=%d cpus=%d%n", threads, Runtime.getRuntime().availableProcessors());
+
+        run("distinct", new RateLimiter("bench", 1e12, 1_000_000, null), threads, secs, false);
+        run("shared", new RateLimiter("bench", 1e12, 1_000_000, null), threads, secs, true);
+        RateLimiter slow = new RateLimiter("bench", 1000, 100, null);
+        long allowed = run("shared@1000/s", slow, threads, secs, true);
+        System.out.printf("  allowed %,d (expected ~%,d = 1000/s x %ds + burst 100)%n", allowed, 1000L * secs + 100, secs);
+    }
+
+    private static long run(String label, RateLimiter limiter, int threads, int secs, boolean sameKey) throws Exception {
+        String[][] keys = new String[threads][];
+        for (int t = 0; t < threads; t++) {
+            keys[t] = new String[256];
+            for (int k = 0; k < keys[t].length; k++) keys[t][k] = sameKey ? "10.0.0.1" : "user-" + t + "-" + k;
+            for (String k : keys[t]) k.hashCode(); // như username/IP của phiên: hash đã cache
+        }
+        LongAdder calls = new LongAdder(), ok = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(secs);
+        long t0 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final String[] mine = keys[t];
+            Thread th = new Thread(() -> {
+                long n = 0, pass = 0;
+                while ((n & 1023) != 0 || System.nanoTime() < end) {
+                    if (limiter.tryAcquire(mine[(int) n & 255])) pass++;
+                    n++;
+                }
+                calls.add(n);
+                ok.add(pass);
+                done.countDown();
+            }, "bench-" + t);
+            th.start();
+        }
+        done.await();
+        double sec = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("  %-14s %,14.0f checks/s  (%.1f ns/check/thread)%n",
+                label, calls.sum() / sec, sec * 1e9 * threads / calls.sum());
+        return ok.sum();
+    }
+}
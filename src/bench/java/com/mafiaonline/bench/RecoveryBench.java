@@ -0,0 +1,89 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Player;
+import com.mafiaonline.server.Role;
+import com.mafiaonline.server.RoomRegistry;
+import com.mafiaonline.server.journal.Journal;
+import com.mafiaonline.server.journal.Recovery;
+import com.mafiaonline.server.journal.RoomEventSink;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Thời gian khôi phục sau crash: R phòng đang chơi (mỗi phòng P người, đang VOTE, đã có phiếu),
+ * checkpoint 1 snapshot, ghi thêm T record đuôi mỗi phòng rồi "crash" (xoá snapshot cuối do close() chụp)
+ * -> đo Recovery.load (snapshot + đuôi) và RoomRegistry.restore (dựng GameRoom trên các loop).
+ *
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.RecoveryBench -Dbench.args="10000 8 4"
+ * Tham số: [phòng] [người/phòng] [record đuôi/phòng]
+ */
+public class RecoveryBench {
+
+    private static final Role[] ROLES = {Role.MAFIA, Role.DOCTOR, Role.DETECTIVE, Role.VILLAGER};
+
+    public static void main(String[] args) throws Exception {
+        int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int tail = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        Path dir = Files.createTempDirectory("recovery-bench");
+        long gameId = System.currentTimeMillis();
+        long deadline = gameId + 60_000;
+
+        Journal journal = new Journal(dir, 64, 10, 4_000_000);
+        for (int r = 0; r < rooms; r++) {
+            String room = "r" + r;
+            List<Player> seats = new ArrayList<>(players);
+            for (int p = 0; p < players; p++) {
+                Player pl = new Player(room + "p" + p);
+                pl.setRole(ROLES[p % ROLES.length]);
+                seats.add(pl);
+            }
+            journal.gameStarted(room, gameId, seats);
+            journal.phaseStarted(room, gameId, GameState.DAY, false, deadline);
+            journal.phaseStarted(room, gameId, GameState.DAY, true, deadline);
+            for (int p = 0; p < players / 2; p++) journal.vote(room, gameId, room + "p" + p, room + "p" + (p + 1));
+        }
+        settle(journal);
+        journal.checkpoint();
+        for (int r = 0; r < rooms; r++) {
+            String room = "r" + r;
+            for (int t = 0; t < tail; t++) journal.vote(room, gameId, room + "p" + (players - 1 - t % players), room + "p0");
+        }
+        journal.close();
+        // close() vừa chụp snapshot chứa cả đuôi — xoá nó để giống crash trước lần checkpoint kế tiếp
+        List<Path> snaps = new ArrayList<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(p -> p.getFileName().toString().startsWith("snap-")).sorted().forEach(snaps::add);
+        }
+        if (snaps.size() > 1) Files.delete(snaps.get(snaps.size() - 1));
+        System.out.printf("rooms=%d players/room=%d tail/room=%d  %s%n", rooms, players, tail, journal.summary());
+
+        Recovery rec = Recovery.load(dir);
+        System.out.println("  load     " + rec.describe());
+
+        RoomRegistry registry = new RoomRegistry(RoomEventSink.NOOP);
+        long t0 = System.nanoTime();
+        registry.restore(rec.state());
+        long restoreNanos = System.nanoTime() - t0;
+        System.out.printf("  restore  %d rooms on %d loops in %.1f ms%n", registry.size(), registry.loopCount(), restoreNanos / 1e6);
+        System.out.printf("  total    %.1f ms%n", (rec.elapsedNanos() + restoreNanos) / 1e6);
+        registry.shutdown();
+
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Chờ writer ghi + force hết những gì đã append (checkpoint chỉ fold phần đã durable). */
+    private static void settle(Journal journal) throws InterruptedException {
+        while (journal.queuedRecords() > 0) Thread.sleep(5);
+        Thread.sleep(50);
+    }
+}
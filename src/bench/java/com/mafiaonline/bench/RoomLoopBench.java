@@ -0,0 +1,119 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.GameRoom;
+import com.mafiaonline.server.PhaseManager;
+import com.mafiaonline.server.PlayerHandler;
+import com.mafiaonline.server.RoomRegistry;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput lệnh của RoomLoop: nhiều phòng đang ở pha VOTE, vài thread producer bắn /vote vào mailbox
+ * (mỗi lệnh = castVote + broadcast cho cả phòng qua kết nối giả), đo lệnh/giây và lệnh/giây/core.
+ *
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.RoomLoopBench -Dbench.args="scale 1000 8 5"
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.RoomLoopBench -Dbench.args="4 1000 8 5"
+ * Tham số: <số loop | scale (1,2,4.. tới số core)> [số phòng] [người/phòng] [giây đo] [số producer]
+ */
+public class RoomLoopBench {
+
+    /** Lệnh chưa xử lý tối đa mỗi producer (giữ mailbox không phình vô hạn). */
+    private static final long WINDOW = 20_000;
+    private static final String ROOM_LOG_LEVEL = "log.level.com.mafiaonline.server";
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        String loopsArg = args.length > 0 ? args[0] : "scale";
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int producers = args.length > 4 ? Integer.parseInt(args[4]) : Math.max(1, cores / 2);
+
+        List<Integer> loopCounts = new ArrayList<>();
+        if (loopsArg.equals("scale")) {
+            for (int n = 1; n < cores; n *= 2) loopCounts.add(n);
+            loopCounts.add(cores);
+        } else {
+            loopCounts.add(Integer.parseInt(loopsArg));
+        }
+
+        if (System.getProperty(ROOM_LOG_LEVEL) == null) System.setProperty(ROOM_LOG_LEVEL, "WARN"); // GameRoom log mỗi broadcast
+        PrintStream out = System.out;
+        out.printf("%6s %6s %8s %10s %12s %14s%n", "loops", "rooms", "players", "producers", "cmd/s", "cmd/s/core");
+        for (int loops : loopCounts) {
+            double rate = run(loops, rooms, players, seconds, producers);
+            int busyCores = Math.min(loops, cores);
+            out.printf("%6d %6d %8d %10d %12.0f %14.0f%n", loops, rooms, players, producers, rate, rate / busyCores);
+        }
+    }
+
+    private static double run(int loops, int roomCount, int players, int seconds, int producers) throws Exception {
+        RoomRegistry registry = new RoomRegistry(loops);
+        GameRoom[] rooms = new GameRoom[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            GameRoom room = registry.create();
+            PlayerHandler[] hs = new PlayerHandler[players];
+            for (int p = 0; p < players; p++) hs[p] = new PlayerHandler(new BroadcastBench.SinkConnection(), registry);
+            room.executeAndWait(() -> {
+                PhaseManager pm = room.getPhaseManager();
+                pm.setChatDurationSec(0); // không hẹn timer: bench chỉ đo lệnh
+                pm.setVoteDurationSec(0);
+                pm.setNightDurationSec(0);
+                for (int p = 0; p < players; p++) room.addPlayer("p" + p, hs[p]);
+                room.startGame();
+                room.openVotePhase();
+            });
+            rooms[i] = room;
+        }
+
+        LongAdder done = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < producers; t++) {
+            final int seed = t;
+            Thread th = new Thread(() -> produce(rooms, players, seed, stop, done), "bench-producer-" + t);
+            th.setDaemon(true);
+            th.start();
+            threads.add(th);
+        }
+
+        Thread.sleep(2000); // warmup
+        long c0 = done.sum();
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long c1 = done.sum();
+        long t1 = System.nanoTime();
+
+        stop.set(true);
+        for (Thread th : threads) th.join();
+        registry.shutdown();
+        return (c1 - c0) / ((t1 - t0) / 1e9);
+    }
+
+    private static void produce(GameRoom[] rooms, int players, int seed, AtomicBoolean stop, LongAdder done) {
+        LongAdder mine = new LongAdder();
+        long sent = 0;
+        int k = seed;
+        while (!stop.get()) {
+            if (sent - mine.sum() > WINDOW) {
+                Thread.yield();
+                continue;
+            }
+            GameRoom room = rooms[Math.floorMod(k, rooms.length)];
+            String voter = "p" + Math.floorMod(k, players);
+            String target = "p" + Math.floorMod(k + 1, players);
+            room.execute(() -> {
+                room.castVote(voter, target);
+                mine.increment();
+                done.increment();
+            });
+            sent++;
+            k += 7;
+        }
+    }
+}
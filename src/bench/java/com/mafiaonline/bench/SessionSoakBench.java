@@ -0,0 +1,109 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.common.SessionThreads;
+import com.mafiaonline.server.RoomRegistry;
+import com.mafiaonline.server.ServerMain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Soak test bộ nhớ/phiên: transport blocking, mỗi phiên 1 thread (platform hoặc virtual),
+ * giữ N phiên idle một lúc rồi đo heap + RSS (Linux) + số thread OS.
+ *
+ * Chạy (virtual cần JDK 21+ chạy Maven):
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.SessionSoakBench -Dbench.args="both 10000 30"
+ * Tham số: <platform|virtual|both> <số phiên> [giây giữ kết nối]
+ * 10k phiên cần ~20k file descriptor (client + server cùng JVM): ulimit -n 65536.
+ * Thêm -Dbench.jvmArgs="-Xmx2g -Djdk.tracePinnedThreads=short" để xác nhận không có pinning khi idle.
+ */
+public class SessionSoakBench {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0].toLowerCase() : "both";
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int holdSec = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.printf("%-9s %8s %8s %10s %12s %10s %12s%n",
+                "threads", "sessions", "osThr", "heapMB", "heapB/sess", "rssMB", "rssB/sess");
+        if (mode.equals("platform") || mode.equals("both")) run(SessionThreads.Mode.PLATFORM, sessions, holdSec);
+        if (mode.equals("virtual") || mode.equals("both")) {
+            if (SessionThreads.isVirtualSupported()) run(SessionThreads.Mode.VIRTUAL, sessions, holdSec);
+            else System.out.println("virtual   (bỏ qua: cần JDK 21+, đang chạy " + Runtime.version() + ")");
+        }
+    }
+
+    private static void run(SessionThreads.Mode mode, int n, int holdSec) throws Exception {
+        SessionThreads.configure(mode);
+        RoomRegistry rooms = new RoomRegistry();
+
+        settle();
+        long heap0 = usedHeap();
+        long rss0 = rss();
+        int thr0 = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        ServerSocket ss = new ServerSocket(0, 4096);
+        Thread accept = new Thread(() -> ServerMain.acceptLoop(ss, rooms), "soak-accept");
+        accept.setDaemon(true);
+        accept.start();
+
+        List<Socket> clients = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                Socket s = new Socket("127.0.0.1", ss.getLocalPort());
+                clients.add(s);
+                readLine(s.getInputStream()); // phiên đã chạy tới readLine() chờ lệnh
+            }
+            Thread.sleep(holdSec * 1000L);
+
+            settle();
+            long heap = usedHeap() - heap0;
+            long rss = rss() - rss0;
+            int thr = ManagementFactory.getThreadMXBean().getThreadCount() - thr0;
+            System.out.printf("%-9s %8d %8d %10.1f %12d %10.1f %12d%n",
+                    mode.name().toLowerCase(), n, thr,
+                    heap / 1048576.0, heap / n,
+                    rss / 1048576.0, rss / n);
+        } finally {
+            for (Socket s : clients) try { s.close(); } catch (IOException ignored) {}
+            ss.close();
+            rooms.shutdown();
+            SessionThreads.configure(SessionThreads.Mode.PLATFORM);
+        }
+    }
+
+    private static void readLine(InputStream in) throws IOException {
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') { /* bỏ qua */ }
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /** Resident set size (KB trong /proc/self/status) — 0 nếu không phải Linux. */
+    private static long rss() {
+        try {
+            for (String l : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (l.startsWith("VmRSS:")) {
+                    return Long.parseLong(l.replaceAll("[^0-9]", "")) * 1024L;
+                }
+            }
+        } catch (Exception ignored) {}
+        return 0L;
+    }
+
+    private static void settle() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mafiaonline.bench;
+
+import com.mafiaonline.server.TimerWheel;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hẹn N timer (mặc định 100k) trải đều trong vài giây, huỷ 1 phần, chờ phần còn lại chạy hết rồi đo:
+ * chi phí schedule/cancel mỗi timer và drift (trễ so với hạn) — TimerWheel vs ScheduledThreadPoolExecutor 1 thread.
+ *
+ * Chạy:
+ *   mvn -Pbench compile exec:exec -Dbench.main=com.mafiaonline.bench.TimerWheelBench -Dbench.args="100000 5 0.5"
+ * Tham số: [số timer] [delay tối đa (giây)] [tỉ lệ huỷ]
+ */
+public class TimerWheelBench {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int maxDelaySec = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        double cancelRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+
+        System.out.printf("%-6s %8s %12s %12s %10s %10s %10s %10s%n",
+                "impl", "timers", "schedNs/op", "cancelNs/op", "fired", "p50Ms", "p99Ms", "maxMs");
+        run("wheel", n, maxDelaySec, cancelRatio);
+        run("stpe", n, maxDelaySec, cancelRatio);
+    }
+
+    private static void run(String impl, int n, int maxDelaySec, double cancelRatio) throws Exception {
+        TimerWheel wheel = impl.equals("wheel") ? new TimerWheel() : null;
+        ScheduledThreadPoolExecutor stpe = null;
+        if (wheel == null) {
+            stpe = new ScheduledThreadPoolExecutor(1);
+            stpe.setRemoveOnCancelPolicy(true); // giống wheel: huỷ là gỡ khỏi hàng đợi
+        }
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        long[] due = new long[n];
+        long[] drift = new long[n];
+        AtomicInteger fired = new AtomicInteger();
+        Object[] handles = new Object[n];
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            long delayMs = 500 + rnd.nextLong(maxDelaySec * 1000L);
+            due[i] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+            final int id = i;
+            Runnable task = () -> {
+                drift[id] = System.nanoTime() - due[id];
+                fired.incrementAndGet();
+            };
+            handles[i] = (wheel != null)
+                    ? wheel.schedule(task, delayMs, TimeUnit.MILLISECONDS)
+                    : stpe.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
+        long schedNs = (System.nanoTime() - t0) / n;
+
+        int toCancel = (int) (n * cancelRatio);
+        long t1 = System.nanoTime();
+        for (int i = 0; i < toCancel; i++) {
+            int idx = i * 2 % n; // huỷ xen kẽ, không theo thứ tự hạn
+            if (wheel != null) ((TimerWheel.Timeout) handles[idx]).cancel();
+            else ((ScheduledFuture<?>) handles[idx]).cancel(false);
+            drift[idx] = -1;
+        }
+        long cancelNs = toCancel == 0 ? 0 : (System.nanoTime() - t1) / toCancel;
+
+        int expect = n - toCancel;
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxDelaySec + 5L);
+        while (fired.get() < expect && System.nanoTime() < waitUntil) Thread.sleep(50);
+
+        long[] fin = Arrays.stream(drift).filter(d -> d >= 0).sorted().toArray();
+        System.out.printf("%-6s %8d %12d %12d %10d %10.2f %10.2f %10.2f%n",
+                impl, n, schedNs, cancelNs, fired.get(),
+                pct(fin, 0.50), pct(fin, 0.99), fin.length == 0 ? 0 : fin[fin.length - 1] / 1e6);
+        if (wheel != null) {
+            System.out.println("       " + wheel.summary());
+            wheel.shutdown();
+        } else {
+            stpe.shutdownNow();
+        }
+    }
+
+    private static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e6;
+    }
+}
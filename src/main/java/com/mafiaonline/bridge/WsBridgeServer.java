@@ -3,49 +3,102 @@ package com.mafiaonline.bridge;
 import com.mafiaonline.common.JsonUtil;
 import com.mafiaonline.common.Message;
 import com.mafiaonline.common.MessageType;
+import com.mafiaonline.common.SessionThreads;
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.net.Connection;
+import com.mafiaonline.server.net.Frame;
+import com.mafiaonline.server.net.LineHandler;
+import com.mafiaonline.server.net.RateLimits;
 import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.DefaultExtension;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * WS <-> TCP Bridge (1 WS : 1 TCP, không chia sẻ, không broadcast chéo)
+ * 2 chế độ:
+ * - bridge (tcpHost/tcpPort): mỗi WS mở 1 socket tới server TCP + 1 thread pump — dùng khi bridge chạy tách máy
+ * - trong tiến trình (sessions != null, mặc định của ServerMain): mỗi WS là 1 phiên LineHandler (PlayerHandler) như
+ *   kết nối NIO — dòng WS gọi thẳng onLine() trên thread WS, dòng server đi qua InProcessConnection thành JSON gửi
+ *   lên WS. Không socket loopback, không thread pump, không mã hoá/giải mã UTF-8 lần 2; PlayerHandler thấy địa chỉ
+ *   WS thật nên tự trừ bucket ip, bridge không trừ lần nữa. Cùng cách dịch 2 chiều như dưới.
  * - WS -> TCP:
  *    * Nếu JSON {type:"CHAT", content:"..."}: đẩy content (lệnh /... hay chat thuần)
  *    * START_GAME -> "/start", VOTE -> "/vote <target>", LEAVE -> "/quit"
  *    * Nếu không parse được: đẩy raw
+ *    * Mỗi dòng trừ bucket ip (RateLimits) theo địa chỉ WS thật trước khi xuống TCP — server thấy bridge là loopback
+ *      (proxy tin cậy) nên chỉ còn giới hạn theo tài khoản; dòng vượt giới hạn bị bỏ ngay tại bridge
  * - TCP -> WS:
  *    * Mọi dòng đóng gói thành JSON SYSTEM (tự build, không phụ thuộc toJson)
- *    * Khi thấy [AUTH_OK] -> phát JOIN cho ws hiện tại (1 lần)
+ *    * -Dws.coalesce=true: các dòng đã có sẵn trong buffer TCP được gộp thành 1 WS frame dạng mảng JSON
+ *      [{...},{...}] (web client hiểu cả 2 dạng) — server bật -Dnet.coalesce.ms thì dòng về theo lô
+ *    * Khi thấy [AUTH_OK] -> phát JOIN cho ws hiện tại (1 lần); /resume không có username trong lệnh
+ *      -> lấy tên từ lời chào "... Chào <name>!"
  *    * Khi thấy "👤 <name> đã tham gia ..." -> phát JOIN, tránh trùng với user vừa AUTH_OK
  */
 public class WsBridgeServer extends WebSocketServer {
 
+    private static final Logger LOG = Log.get(WsBridgeServer.class);
+
+    /** Gộp tối đa ngần này dòng TCP vào 1 WS frame (khi bật ws.coalesce). */
+    private static final boolean WS_COALESCE = Boolean.getBoolean("ws.coalesce");
+    private static final int WS_BATCH_MAX = 64;
+    /** Trong tiến trình: WS còn ngần này byte chưa ghi thì bỏ chat; gấp đôi (toàn dòng hệ thống) thì ngắt. Cùng ngưỡng với TCP. */
+    private static final long WS_MAX_PENDING_BYTES = Math.max(1024, Long.getLong("net.out.maxBytes", 1024 * 1024));
+    private static final Pattern LINE_BREAK = Pattern.compile("\\r\\n|\\r|\\n");
+
     private final String path;
     private final String tcpHost;
     private final int tcpPort;
+    private final Function<Connection, LineHandler> sessions; // != null: chế độ trong tiến trình
 
     public WsBridgeServer(InetSocketAddress wsAddr, String path, String tcpHost, int tcpPort) {
         super(wsAddr);
         this.path = (path == null || path.isBlank()) ? "/ws" : path;
         this.tcpHost = (tcpHost == null || tcpHost.isBlank()) ? "127.0.0.1" : tcpHost;
         this.tcpPort = tcpPort;
+        this.sessions = null;
     }
 
+    /** Chế độ trong tiến trình: sessions tạo LineHandler cho mỗi WS (vd c -> new PlayerHandler(c, rooms)). */
+    public WsBridgeServer(InetSocketAddress wsAddr, String path, Function<Connection, LineHandler> sessions) {
+        super(wsAddr);
+        this.path = (path == null || path.isBlank()) ? "/ws" : path;
+        this.tcpHost = null;
+        this.tcpPort = -1;
+        this.sessions = sessions;
+    }
+
+    public boolean inProcess() { return sessions != null; }
+
     /** Trạng thái cho từng WS connection */
     private static class ConnState {
         Socket tcp;
         PrintWriter toTcp;
         BufferedReader fromTcp;
         Thread pumpThread;
+        LineHandler session;                  // chế độ trong tiến trình (thay tcp + pump)
+        boolean quit;                         // session.onLine() trả false (/quit): bỏ các dòng sau
+        WebSocket ws;
+        String ipKey;                         // null: client WS cũng là proxy tin cậy
+        boolean throttleNotified;             // chỉ báo 1 lần cho mỗi đợt dòng bị bỏ
         volatile String lastLoginUser = null; // user thấy trong /login <user> ...
         volatile String authedUser = null;    // user đã xác thực (đã bắn JOIN)
         volatile boolean closing = false;
@@ -53,13 +106,16 @@ public class WsBridgeServer extends WebSocketServer {
 
     private final Map<WebSocket, ConnState> states = new ConcurrentHashMap<>();
 
+    /** Số kết nối WS đang mở (đọc không khoá, cho trang admin). */
+    public int connectionCount() { return states.size(); }
+
     /* ===================== WebSocketServer callbacks ===================== */
 
     @Override
     public void onStart() {
         // Ping/Pong tự động, đề phòng treo
         setConnectionLostTimeout(30);
-        System.out.println("[WS] Bridge listening at ws://" + getAddress().getHostString() + ":" + getAddress().getPort() + path);
+        LOG.info("[WS] Bridge listening at ws://{}:{}{}", getAddress().getHostString(), getAddress().getPort(), path);
     }
 
     @Override
@@ -71,18 +127,25 @@ public class WsBridgeServer extends WebSocketServer {
         }
 
         ConnState st = new ConnState();
+        st.ws = conn;
+        st.ipKey = RateLimits.ipKey(String.valueOf(conn.getRemoteSocketAddress()));
         states.put(conn, st);
+        if (sessions != null) {
+            st.session = sessions.apply(new InProcessConnection(st));
+            st.session.onOpen();
+            LOG.info("[WS] open  {} (in-process)", conn.getRemoteSocketAddress());
+            return;
+        }
         try {
             st.tcp = new Socket(tcpHost, tcpPort);
             st.toTcp = new PrintWriter(new OutputStreamWriter(st.tcp.getOutputStream(), StandardCharsets.UTF_8), true);
             st.fromTcp = new BufferedReader(new InputStreamReader(st.tcp.getInputStream(), StandardCharsets.UTF_8));
 
-            st.pumpThread = new Thread(() -> pumpTcpToWs(conn, st), "pump-" + conn.hashCode());
-            st.pumpThread.setDaemon(true);
-            st.pumpThread.start();
+            // platform hoặc virtual thread tuỳ SessionThreads (--threads=virtual)
+            st.pumpThread = SessionThreads.start("pump-" + conn.hashCode(), () -> pumpTcpToWs(conn, st), true);
 
             sendSystem(conn, "Connected to TCP " + tcpHost + ":" + tcpPort);
-            System.out.println("[WS] open  " + conn.getRemoteSocketAddress());
+            LOG.info("[WS] open  {}", conn.getRemoteSocketAddress());
         } catch (IOException e) {
             sendSystem(conn, "❌ Cannot connect TCP: " + e.getMessage());
             try { conn.close(1011, "tcp connect fail"); } catch (Exception ignore) {}
@@ -93,7 +156,7 @@ public class WsBridgeServer extends WebSocketServer {
     @Override
     public void onMessage(WebSocket conn, String raw) {
         ConnState st = states.get(conn);
-        if (st == null || st.toTcp == null) return;
+        if (st == null || (st.toTcp == null && st.session == null)) return;
 
         // 1) cố parse chuẩn theo common.Message
         Message m = null;
@@ -116,39 +179,43 @@ public class WsBridgeServer extends WebSocketServer {
                             String[] sp = content.split("\\s+", 3);
                             if (sp.length >= 2) st.lastLoginUser = sp[1];
                         }
-                        st.toTcp.println(content); // lệnh hoặc chat
+                        forward(st, content); // lệnh hoặc chat
                     }
                     return;
                 } else if ("START_GAME".equals(t)) {
-                    st.toTcp.println("/start"); return;
+                    forward(st, "/start"); return;
                 } else if ("VOTE".equals(t)) {
-                    st.toTcp.println((content == null || content.isBlank()) ? "/vote" : "/vote " + content); return;
+                    forward(st, (content == null || content.isBlank()) ? "/vote" : "/vote " + content); return;
                 } else if ("LEAVE".equals(t)) {
-                    st.toTcp.println("/quit"); return;
+                    forward(st, "/quit"); return;
                 }
                 if (content != null && !content.isBlank()) {
-                    st.toTcp.println(content);
+                    forward(st, content);
                     return;
                 }
             }
         }
 
         // 3) còn lại: đẩy raw xuống TCP (server sẽ coi như 1 dòng)
-        st.toTcp.println(raw);
+        forward(st, raw);
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
         ConnState st = states.remove(conn);
+        if (st != null && st.session != null && !st.closing) {
+            st.closing = true;
+            st.session.onClose(); // rời phòng / giữ ghế như mất kết nối TCP
+        }
         closeState(st);
-        System.out.println("[WS] close " + conn.getRemoteSocketAddress() + " code=" + code + " " + reason);
+        LOG.info("[WS] close {} code={} {}", conn.getRemoteSocketAddress(), code, reason);
     }
 
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        System.err.println("[WS] error: " + ex.getMessage());
+        LOG.warn("[WS] error: {}", ex.getMessage());
         ConnState st = (conn != null) ? states.get(conn) : null;
-        if (st != null && (st.tcp == null || st.tcp.isClosed())) {
+        if (st != null && st.session == null && (st.tcp == null || st.tcp.isClosed())) {
             try { conn.close(1011, "tcp closed"); } catch (Exception ignore) {}
         }
     }
@@ -160,52 +227,72 @@ public class WsBridgeServer extends WebSocketServer {
         final MessageType type = m.getType();
 
         switch (type) {
-            case START_GAME -> st.toTcp.println("/start");
-            case VOTE       -> st.toTcp.println(content.isEmpty() ? "/vote" : "/vote " + content);
+            case START_GAME -> forward(st, "/start");
+            case VOTE       -> forward(st, content.isEmpty() ? "/vote" : "/vote " + content);
             case CHAT -> {
                 if (content.startsWith("/")) {
                     if (content.startsWith("/login ")) {
                         String[] sp = content.split("\\s+", 3);
                         if (sp.length >= 2) st.lastLoginUser = sp[1];
                     }
-                    st.toTcp.println(content);
+                    forward(st, content);
                 } else {
-                    st.toTcp.println(content); // chat thuần
+                    forward(st, content); // chat thuần
                 }
             }
-            case LEAVE -> st.toTcp.println("/quit");
+            case LEAVE -> forward(st, "/quit");
             default -> {
-                if (!content.isEmpty()) st.toTcp.println(content);
-                else st.toTcp.println(jsonFromMessage(m)); // echo để khỏi mất dữ liệu
+                if (!content.isEmpty()) forward(st, content);
+                else forward(st, jsonFromMessage(m)); // echo để khỏi mất dữ liệu
+            }
+        }
+    }
+
+    /**
+     * Gửi 1 dòng xuống TCP nếu bucket ip của lớp dòng còn token; /quit luôn đi qua.
+     * Trong tiến trình: giao thẳng cho phiên (nó tự giới hạn theo ip + tài khoản), content nhiều dòng tách như TCP.
+     */
+    private void forward(ConnState st, String line) {
+        if (st.session != null) {
+            if (st.quit || st.closing) return;
+            String text = (line == null) ? "null" : line; // như PrintWriter.println(null)
+            for (String l : (text.indexOf('\n') < 0 && text.indexOf('\r') < 0) ? new String[] {text} : LINE_BREAK.split(text)) {
+                if (!st.session.onLine(l)) {
+                    st.quit = true;
+                    st.ws.close(1000, "quit"); // "Goodbye." đã xếp trước khung close
+                    return;
+                }
             }
+            return;
         }
+        String l = (line == null) ? "" : line.trim();
+        if (!l.isEmpty() && !l.equalsIgnoreCase("/quit") && !RateLimits.ipLimiter(l).tryAcquire(st.ipKey)) {
+            if (RateLimits.isAuthLine(l)) {
+                sendSystem(st.ws, "[AUTH_FAIL] " + RateLimits.AUTH_LIMITED_MESSAGE);
+            } else if (!st.throttleNotified) {
+                st.throttleNotified = true;
+                sendSystem(st.ws, RateLimits.LINE_LIMITED_MESSAGE);
+            }
+            return;
+        }
+        st.throttleNotified = false;
+        st.toTcp.println(line);
     }
 
     /** Luồng đọc TCP -> gửi về ĐÚNG WS đang mở (không broadcast) */
     private void pumpTcpToWs(WebSocket conn, ConnState st) {
         String line;
+        List<String> batch = new ArrayList<>();
         try {
             while (!st.closing && (line = st.fromTcp.readLine()) != null) {
-                // forward as SYSTEM
-                sendSystem(conn, line);
-
-                // AUTH_OK -> phát JOIN một lần cho user vừa login
-                if (line.contains("[AUTH_OK]")) {
-                    if (st.authedUser == null && st.lastLoginUser != null) {
-                        st.authedUser = st.lastLoginUser;
-                        safeSend(conn, jsonJoin(st.authedUser));
-                    }
-                }
-
-                // "👤 <name> đã tham gia phòng." -> phát JOIN (tránh trùng với authedUser)
-                if (line.startsWith("👤 ")) {
-                    String name = extractJoinedName(line);
-                    if (name != null && !name.isBlank()) {
-                        if (!name.equals(st.authedUser)) { // tránh JOIN trùng
-                            safeSend(conn, jsonJoin(name));
-                        }
-                    }
+                translateTcpLine(st, line, batch);
+                // gộp các dòng đã nằm sẵn trong buffer (server gửi theo lô) vào cùng 1 WS frame
+                while (WS_COALESCE && batch.size() < WS_BATCH_MAX && st.fromTcp.ready()
+                        && (line = st.fromTcp.readLine()) != null) {
+                    translateTcpLine(st, line, batch);
                 }
+                sendBatch(conn, batch);
+                batch.clear();
             }
         } catch (IOException e) {
             sendSystem(conn, "TCP closed: " + e.getMessage());
@@ -215,6 +302,141 @@ public class WsBridgeServer extends WebSocketServer {
         }
     }
 
+    /** 1 dòng server (TCP hoặc phiên trong tiến trình) -> các payload JSON cần gửi cho WS (SYSTEM + JOIN nếu có). */
+    private void translateTcpLine(ConnState st, String line, List<String> out) {
+        // forward as SYSTEM
+        out.add(jsonSystem(line));
+        translateJoins(st, line, out);
+    }
+
+    /** Payload JOIN (nếu có) suy ra từ 1 dòng server — phụ thuộc trạng thái của từng WS nên không dùng chung được. */
+    private void translateJoins(ConnState st, String line, List<String> out) {
+        // AUTH_OK -> phát JOIN một lần cho user vừa login
+        if (line.contains("[AUTH_OK]")) {
+            String user = (st.lastLoginUser != null) ? st.lastLoginUser : extractGreetingName(line);
+            if (st.authedUser == null && user != null) {
+                st.authedUser = user;
+                out.add(jsonJoin(st.authedUser));
+            }
+        }
+
+        // "👤 <name> đã tham gia phòng." -> phát JOIN (tránh trùng với authedUser)
+        if (line.startsWith("👤 ")) {
+            String name = extractJoinedName(line);
+            if (name != null && !name.isBlank()) {
+                if (!name.equals(st.authedUser)) { // tránh JOIN trùng
+                    out.add(jsonJoin(name));
+                }
+            }
+        }
+    }
+
+    /** 1 payload -> gửi như cũ; nhiều payload -> 1 frame mảng JSON. */
+    private void sendBatch(WebSocket conn, List<String> batch) {
+        if (batch.isEmpty()) return;
+        if (batch.size() == 1 || !WS_COALESCE) {
+            for (String payload : batch) safeSend(conn, payload);
+            return;
+        }
+        safeSend(conn, "[" + String.join(",", batch) + "]");
+    }
+
+    /* ===================== Chế độ trong tiến trình ===================== */
+
+    /**
+     * Đầu ra của phiên WS trong tiến trình: mỗi dòng -> JSON SYSTEM (+ JOIN) xếp vào hàng đợi ghi của WebSocket
+     * (không chặn, gọi được từ loop phòng / executor băm).
+     * - Frame broadcast: JSON + UTF-8 + WS frame dựng 1 lần (Frame.encoded), mọi người nhận xếp cùng mảng byte
+     *   (view chỉ-đọc riêng) thẳng vào outQueue — như Frame.buffer() của NIO. Chỉ khi draft không có extension
+     *   (mặc định); có extension (nén...) thì gửi qua conn.send() để thư viện đóng gói từng kết nối.
+     * - Xếp thẳng vào outQueue dựa vào cách Java-WebSocket 1.5.6 (pom ghim version) làm: close()/closeConnection()
+     *   synchronized trên WebSocketImpl, close frame được xếp và readyState đổi trong khoá đó. Kiểm isOpen() + offer
+     *   trong cùng khoá nên không frame nào lọt sau close frame; mỗi frame là 1 buffer trọn vẹn nên không xen vào
+     *   giữa các buffer của 1 lần send() của thư viện.
+     * - Client đọc chậm: đếm byte mình đã xếp mà chưa ghi xong, quá -Dnet.out.maxBytes thì bỏ chat, quá gấp đôi thì
+     *   ngắt — như SlowConsumerPolicy drop-chat của TCP. close() gọi sau khi đã nhả khoá.
+     */
+    private final class InProcessConnection implements Connection {
+
+        private final ConnState st;
+        private final String remote;
+        private final WebSocketImpl raw;                          // null: không xếp frame dựng sẵn được
+        // khoá: raw (cùng khoá với close() của thư viện)
+        private final ArrayDeque<ByteBuffer> queued = new ArrayDeque<>(); // frame mình đã xếp, theo thứ tự ghi
+        private long queuedBytes;
+
+        InProcessConnection(ConnState st) {
+            this.st = st;
+            this.remote = String.valueOf(st.ws.getRemoteSocketAddress());
+            this.raw = (st.ws instanceof WebSocketImpl impl && impl.getDraft() instanceof Draft_6455 d
+                    && d.getExtension() instanceof DefaultExtension) ? impl : null;
+        }
+
+        @Override public void send(Frame frame) { deliver(frame.toString(), frame, false); }
+
+        @Override public void sendChat(Frame frame) { deliver(frame.toString(), frame, true); }
+
+        @Override public void send(String line) { deliver(line, null, false); }
+
+        @Override public void sendChat(String line) { deliver(line, null, true); }
+
+        private void deliver(String line, Frame frame, boolean droppable) {
+            if (raw == null) { // thư viện tự đóng gói + tự khoá ghi
+                WebSocket ws = st.ws;
+                if (!ws.isOpen()) return;
+                safeSend(ws, jsonSystem(line));
+                for (String payload : joins(line)) safeSend(ws, payload);
+                return;
+            }
+            byte[] wire = (frame != null) ? frame.encoded(WsBridgeServer::systemFrame) : textFrame(jsonSystem(line));
+            long pending;
+            synchronized (raw) {
+                if (!raw.isOpen()) return;
+                pending = pendingBytes();
+                if (pending >= WS_MAX_PENDING_BYTES && droppable) return;
+                if (pending < 2 * WS_MAX_PENDING_BYTES) {
+                    enqueue(wire);
+                    for (String payload : joins(line)) enqueue(textFrame(payload));
+                    return;
+                }
+            }
+            LOG.warn("[WS] Slow consumer {} ({} bytes pending) -> disconnect", remote, pending);
+            raw.close(1008, "slow consumer");
+        }
+
+        /** JOIN suy ra từ dòng (chỉ dòng "👤 ..." / [AUTH_OK]); cập nhật authedUser nên gọi đúng 1 lần mỗi dòng. */
+        private List<String> joins(String line) {
+            if (!line.startsWith("👤 ") && !line.contains("[AUTH_OK]")) return List.of();
+            List<String> out = new ArrayList<>(1);
+            translateJoins(st, line, out);
+            return out;
+        }
+
+        /** Như WebSocketImpl.write(): xếp 1 frame trọn vẹn rồi báo selector. Gọi trong khoá raw, đã kiểm isOpen(). */
+        private void enqueue(byte[] wire) {
+            ByteBuffer buf = ByteBuffer.wrap(wire).asReadOnlyBuffer();
+            raw.outQueue.offer(buf);
+            queued.addLast(buf);
+            queuedBytes += wire.length;
+            onWriteDemand(raw);
+        }
+
+        /** Byte mình đã xếp mà selector WS chưa ghi xong (ping/close của thư viện không tính — vài byte). Trong khoá raw. */
+        private long pendingBytes() {
+            raw.outQueue.peek(); // đi qua khoá của hàng đợi: thấy position mới nhất của các buffer đã ghi xong
+            ByteBuffer head;
+            while ((head = queued.peekFirst()) != null && !head.hasRemaining()) {
+                queuedBytes -= head.capacity();
+                queued.pollFirst();
+            }
+            return (head == null) ? 0 : queuedBytes - head.position();
+        }
+
+        @Override public void close() { st.ws.close(1000, "bye"); }
+
+        @Override public String remoteAddress() { return remote; }
+    }
+
     /* ===================== Helpers & JSON utils ===================== */
 
     private boolean acceptPath(String resourceDescriptor) {
@@ -228,7 +450,8 @@ public class WsBridgeServer extends WebSocketServer {
     }
 
     private static final Pattern FIELD_STR = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\"((?:\\\\.|[^\"\\\\])*)\"");
-    private static String extractField(String json, String key) {
+    /** Giá trị chuỗi của key trong JSON phẳng (regex, không dựng cây JSON). Public cho CodecBench. */
+    public static String extractField(String json, String key) {
         Matcher ma = FIELD_STR.matcher(json);
         while (ma.find()) {
             if (key.equals(ma.group(1))) {
@@ -239,6 +462,14 @@ public class WsBridgeServer extends WebSocketServer {
         return null;
     }
 
+    private static String extractGreetingName(String line) {
+        // line dạng: "[AUTH_OK] Đã nối lại phiên. Chào <name>!"
+        int idx = line.lastIndexOf("Chào ");
+        if (idx < 0 || !line.endsWith("!")) return null;
+        String name = line.substring(idx + 5, line.length() - 1).trim();
+        return name.isEmpty() ? null : name;
+    }
+
     private static String extractJoinedName(String line) {
         // line dạng: "👤 <name> đã tham gia phòng."
         String s = line.substring(2).trim(); // bỏ emoji
@@ -258,6 +489,30 @@ public class WsBridgeServer extends WebSocketServer {
         long ts = System.currentTimeMillis();
         return "{\"type\":\"SYSTEM\",\"sender\":\"server\",\"content\":" + esc(content) + ",\"timestamp\":" + ts + "}";
     }
+    private static byte[] systemFrame(Frame frame) {
+        return textFrame(jsonSystem(frame.toString()));
+    }
+
+    /** WS text frame phía server (FIN, không mask) đã đóng gói đủ header — ghi thẳng ra socket được. */
+    private static byte[] textFrame(String payload) {
+        byte[] data = payload.getBytes(StandardCharsets.UTF_8);
+        int n = data.length;
+        int header = (n < 126) ? 2 : (n <= 0xFFFF) ? 4 : 10;
+        byte[] wire = new byte[header + n];
+        wire[0] = (byte) 0x81;
+        if (n < 126) {
+            wire[1] = (byte) n;
+        } else if (n <= 0xFFFF) {
+            wire[1] = 126;
+            wire[2] = (byte) (n >>> 8);
+            wire[3] = (byte) n;
+        } else {
+            wire[1] = 127;
+            for (int i = 0; i < 8; i++) wire[2 + i] = (byte) ((long) n >>> (56 - 8 * i));
+        }
+        System.arraycopy(data, 0, wire, header, n);
+        return wire;
+    }
     private static String jsonJoin(String sender) {
         long ts = System.currentTimeMillis();
         return "{\"type\":\"JOIN\",\"sender\":" + esc(sender) + ",\"content\":\"\",\"timestamp\":" + ts + "}";
@@ -304,6 +559,6 @@ public class WsBridgeServer extends WebSocketServer {
 
         WsBridgeServer s = new WsBridgeServer(new InetSocketAddress("0.0.0.0", wsPort), wsPath, tcpHost, tcpPort);
         s.start();
-        System.out.println("[WS] Bridge standalone at ws://localhost:" + wsPort + wsPath + " -> " + tcpHost + ":" + tcpPort);
+        LOG.info("[WS] Bridge standalone at ws://localhost:{}{} -> {}", wsPort, wsPath, tcpHost + ":" + tcpPort);
     }
 }
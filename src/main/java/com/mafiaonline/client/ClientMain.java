@@ -2,9 +2,15 @@ package com.mafiaonline.client;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.Arrays;
 
 public class ClientMain {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
+        // --loadgen [tham số LoadGen]: bot tải thay cho 1 người chơi gõ tay
+        if (args.length > 0 && args[0].equals("--loadgen")) {
+            LoadGen.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         String host = args.length > 0 ? args[0] : "localhost";
         int port;
         try {
@@ -0,0 +1,60 @@
+package com.mafiaonline.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram độ trễ (µs) dạng log-tuyến tính, ghi được từ nhiều thread, không cấp phát khi record():
+ * - giá trị < 64 µs: mỗi µs 1 ô
+ * - từ 64 µs trở lên: mỗi luỹ thừa 2 chia 32 ô -> sai số tương đối ≤ ~3%
+ * Giá trị lớn hơn ô cuối (~2^40 µs) dồn vào ô cuối; max giữ chính xác riêng.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;              // 32 ô / luỹ thừa 2
+    private static final int LINEAR = SUB << 1;                // 0..63 tuyến tính
+    private static final int BUCKETS = LINEAR + 36 * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        total.incrementAndGet();
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    long count() { return total.get(); }
+
+    long maxMicros() { return max.get(); }
+
+    /** Cận trên của ô chứa phân vị q (0..1), đơn vị µs. */
+    long percentileMicros(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR) return (int) v;
+        int shift = (63 - Long.numberOfLeadingZeros(v)) - SUB_BITS; // v >>> shift nằm trong [32, 63]
+        int idx = LINEAR + (shift - 1) * SUB + (int) ((v >>> shift) - SUB);
+        return Math.min(idx, BUCKETS - 1);
+    }
+
+    static long upperBound(int idx) {
+        if (idx < LINEAR) return idx;
+        int shift = (idx - LINEAR) / SUB + 1;
+        long mantissa = (idx - LINEAR) % SUB + SUB;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
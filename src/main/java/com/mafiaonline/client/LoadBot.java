@@ -0,0 +1,481 @@
+package com.mafiaonline.client;
+
+import com.mafiaonline.common.JsonUtil;
+import com.mafiaonline.common.Message;
+import com.mafiaonline.common.MessageType;
+import com.mafiaonline.common.SessionThreads;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1 người chơi giả của LoadGen: đăng ký/đăng nhập, vào bàn, chat, vote, hành động đêm theo các dòng server gửi.
+ * - Mỗi lệnh đo độ trễ chờ đúng 1 dòng phản hồi biết trước (AUTH_OK, dòng chat, "🗳️ x đã vote y.", "✅ Đã ghi nhận ...")
+ *   -> độ trễ = lúc gửi lệnh tới lúc dòng đó về lại chính bot này
+ * - Lệnh chưa được phản hồi khi sang pha mới (server từ chối, chat bị bỏ do client chậm) tính là "lost"
+ * - Mọi trạng thái đổi dưới khoá của bot: dòng về (thread đọc / listener WS) và hẹn giờ (scheduler) xen kẽ nhau
+ * Hai transport: TCP thô (1 thread đọc/bot qua SessionThreads) và WS qua /ws của bridge (java.net.http, bất đồng bộ).
+ */
+abstract class LoadBot {
+
+    enum Kind { LOGIN, CHAT, VOTE, ACTION }
+
+    enum Transport { TCP, WS }
+
+    /** Nhóm bot cùng ngồi 1 bàn: bot đầu là host (/create, /start), các bot còn lại /join theo id phòng host nhận được. */
+    static final class Table {
+        final List<String> names = new ArrayList<>();
+        final List<LoadBot> bots = new ArrayList<>();
+        private String roomId;                            // guarded by this
+        private final List<LoadBot> waiting = new ArrayList<>();
+
+        int size() { return bots.size(); }
+
+        /** Host đã có phòng riêng: các bot đã login thì /join ngay. */
+        void roomCreated(String id) {
+            List<LoadBot> ready;
+            synchronized (this) {
+                roomId = id;
+                ready = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for (LoadBot b : ready) b.send("/join " + id);
+        }
+
+        /** Bot thường vừa login: phòng đã có thì /join, chưa thì chờ host. */
+        void authed(LoadBot bot) {
+            String id;
+            synchronized (this) {
+                id = roomId;
+                if (id == null) waiting.add(bot);
+            }
+            if (id != null) bot.send("/join " + id);
+        }
+    }
+
+    private record Pending(Kind kind, long sentNanos) {}
+
+    private static final String DEFAULT_ROOM = "main";
+
+    final LoadGen gen;
+    final Table table;
+    final String name;
+    final boolean host;
+
+    // ===== trạng thái (guarded by this) =====
+    private final Map<String, Pending> pending = new HashMap<>(); // dòng phản hồi chờ -> lệnh đã gửi
+    private final Set<String> alive = new HashSet<>();
+    private final Set<String> team = new HashSet<>();          // đồng đội Mafia (không tự giết nhau)
+    private String room = DEFAULT_ROOM;
+    private String role = "UNASSIGNED";
+    private boolean dead;
+    private boolean inGame;
+    private boolean day;
+    private int phaseSerial;                                    // hẹn giờ của pha cũ tự bỏ qua
+    private boolean authRetryScheduled;                         // server trả BUSY cho /register hoặc /login
+    private long authRetryMs = 1000;                            // nhân đôi mỗi lần thử lại (tối đa 8s)
+    private boolean registered;                                 // đã thấy REGISTER_OK / "đã tồn tại": thử lại chỉ /login
+    private long chatSeq;
+    private volatile boolean closed;
+
+    LoadBot(LoadGen gen, Table table, String name) {
+        this.gen = gen;
+        this.table = table;
+        this.name = name;
+        this.host = table.bots.isEmpty();
+        table.names.add(name);
+        table.bots.add(this);
+    }
+
+    abstract Transport transport();
+
+    /** Mở kết nối (đồng bộ); các dòng server gửi về đi vào onLine(). */
+    abstract void connect() throws IOException;
+
+    /** Gửi 1 dòng lệnh/chat (thread-safe). */
+    abstract void write(String line);
+
+    abstract void disconnect();
+
+    /* ==================== Vòng đời ==================== */
+
+    void start() throws IOException {
+        try {
+            connect();
+        } catch (IOException e) {
+            closed = true; // close() về sau bỏ qua bot chưa từng kết nối
+            throw e;
+        }
+        gen.connected.incrementAndGet();
+        send("/register " + name + " " + gen.password);
+        sendTimed(Kind.LOGIN, "/login " + name + " " + gen.password, "[AUTH_OK] Đăng nhập thành công. Chào " + name + "!");
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+        synchronized (this) {
+            gen.lost.addAndGet(pending.size());
+            pending.clear();
+            phaseSerial++;
+        }
+        try { write("/quit"); } catch (RuntimeException ignore) {}
+        disconnect();
+    }
+
+    final void send(String line) {
+        if (closed && !line.equals("/quit")) return;
+        gen.sent.incrementAndGet();
+        write(line);
+    }
+
+    /** Gửi lệnh và chờ dòng `echo` về lại bot này để đo độ trễ. */
+    private void sendTimed(Kind kind, String line, String echo) {
+        synchronized (this) {
+            pending.put(echo, new Pending(kind, System.nanoTime()));
+        }
+        send(line);
+    }
+
+    /** Kết nối bị server/bridge đóng trước khi LoadGen dừng. */
+    final void onDisconnected(String reason) {
+        if (closed) return;
+        closed = true;
+        gen.dropped.incrementAndGet();
+        gen.logError(name + " mất kết nối: " + reason);
+        synchronized (this) {
+            gen.lost.addAndGet(pending.size());
+            pending.clear();
+            phaseSerial++;
+        }
+    }
+
+    /* ==================== Dòng từ server ==================== */
+
+    final synchronized void onLine(String line) {
+        if (closed) return; // dòng còn trên đường về sau khi LoadGen dừng
+        Pending p = pending.remove(line);
+        if (p != null) gen.record(p.kind(), transport(), System.nanoTime() - p.sentNanos());
+        gen.received.incrementAndGet();
+
+        if (line.startsWith("[AUTH_OK]")) {
+            gen.authed.incrementAndGet();
+            if (host) send("/create");
+            else table.authed(this);
+        } else if (line.startsWith("[REGISTER_OK]") || line.equals("[AUTH_FAIL] Username đã tồn tại.")) {
+            registered = true;
+        } else if (line.startsWith("[AUTH_FAIL] Server đang bận") || line.startsWith("[AUTH_FAIL] Thử quá nhiều lần")) {
+            // executor băm của server đầy / vượt giới hạn auth: thử lại sau ~1s, 2s, ... 8s (không dồn thành bão thử lại),
+            // độ trễ LOGIN vẫn tính từ lần gửi đầu
+            if (!authRetryScheduled) {
+                authRetryScheduled = true;
+                gen.scheduler.schedule(this::retryAuth, jitter(authRetryMs), TimeUnit.MILLISECONDS);
+                authRetryMs = Math.min(authRetryMs * 2, 8000);
+            }
+        } else if (line.startsWith("ROOM: ")) {
+            room = line.substring(6).trim();
+            if (host && !room.equals(DEFAULT_ROOM)) table.roomCreated(room);
+        } else if (line.startsWith("📥 Người chơi ")) {
+            // host chỉ /start ở phòng riêng (dòng 📥 của phòng mặc định cũng về khi vừa login)
+            if (host && !inGame && !room.equals(DEFAULT_ROOM) && joinedCount(line) >= table.size()) send("/start");
+        } else if (line.startsWith("[ROLE_SELF] ")) {
+            role = line.substring(12).trim();
+        } else if (line.startsWith("🕵️‍♂️ Đồng đội Mafia của bạn: ")) {
+            team.clear();
+            for (String n : line.substring(line.indexOf(':') + 1).split(",")) team.add(n.trim());
+        } else if (line.startsWith("✅ Trò chơi đã bắt đầu!")) {
+            inGame = true;
+            dead = false;
+            alive.clear();
+            alive.addAll(table.names);
+            if (host) gen.gamesStarted.incrementAndGet();
+        } else if (line.startsWith("[DAY][CHAT]")) {
+            newPhase(true);
+            if (canAct()) scheduleChat(phaseSerial);
+        } else if (line.startsWith("[DAY][VOTE]")) {
+            newPhase(true);
+            if (canAct()) scheduleChat(phaseSerial);
+            if (canAct()) scheduleVote(phaseSerial);
+        } else if (line.startsWith("[NIGHT] ")) {
+            newPhase(false);
+            if (canAct()) scheduleNightAction(phaseSerial);
+        } else if (line.startsWith("DEAD: ")) {
+            String who = line.substring(6).trim();
+            alive.remove(who);
+            if (who.equals(name)) dead = true;
+        } else if (line.startsWith("🏁 ")) {
+            newPhase(false);
+            inGame = false;
+            role = "UNASSIGNED";
+            team.clear();
+            if (host) gen.gamesFinished.incrementAndGet();
+        } else if (line.startsWith("🔁 Ván mới")) {
+            if (host) {
+                final int serial = phaseSerial;
+                gen.scheduler.schedule(() -> restart(serial), gen.restMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void retryAuth() {
+        authRetryScheduled = false;
+        if (closed) return;
+        if (!registered) send("/register " + name + " " + gen.password); // đã có thì server trả "Username đã tồn tại"
+        send("/login " + name + " " + gen.password);
+    }
+
+    /** "📥 Người chơi x đã tham gia (k players)." -> k */
+    private static int joinedCount(String line) {
+        int open = line.lastIndexOf('(');
+        int end = line.indexOf(" players", open);
+        if (open < 0 || end < 0) return 0;
+        try {
+            return Integer.parseInt(line.substring(open + 1, end).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void newPhase(boolean isDay) {
+        phaseSerial++;
+        day = isDay;
+        if (!pending.isEmpty()) {
+            for (Iterator<Pending> it = pending.values().iterator(); it.hasNext(); ) {
+                if (it.next().kind() != Kind.LOGIN) {
+                    gen.lost.incrementAndGet();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private boolean canAct() {
+        return inGame && !dead && !closed;
+    }
+
+    /* ==================== Hành động theo pha (chạy trên scheduler) ==================== */
+
+    private void scheduleChat(int serial) {
+        long delay = jitter(gen.chatMs);
+        gen.scheduler.schedule(() -> chat(serial), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleVote(int serial) {
+        gen.scheduler.schedule(() -> vote(serial), jitter(gen.thinkMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleNightAction(int serial) {
+        gen.scheduler.schedule(() -> nightAction(serial), jitter(gen.thinkMs), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void chat(int serial) {
+        if (serial != phaseSerial || !day || !canAct()) return;
+        // luôn có khoảng trắng: 1 từ đơn lẻ sẽ bị server hiểu là tên mục tiêu khi đang chờ hành động
+        String text = "load " + name + " #" + (++chatSeq);
+        sendTimed(Kind.CHAT, text, name + ": " + text);
+        scheduleChat(serial);
+    }
+
+    private synchronized void vote(int serial) {
+        if (serial != phaseSerial || !canAct()) return;
+        String target = pickTarget(false);
+        if (target != null) sendTimed(Kind.VOTE, "/vote " + target, "🗳️ " + name + " đã vote " + target + ".");
+    }
+
+    private synchronized void nightAction(int serial) {
+        if (serial != phaseSerial || !canAct()) return;
+        String cmd = switch (role) {
+            case "MAFIA" -> "/kill";
+            case "DOCTOR" -> "/save";
+            case "DETECTIVE" -> "/investigate";
+            case "BODYGUARD" -> "/protect";
+            default -> null;
+        };
+        if (cmd == null) return;
+        String target = pickTarget(role.equals("DOCTOR"));
+        if (target != null) {
+            sendTimed(Kind.ACTION, cmd + " " + target, "✅ Đã ghi nhận hành động đêm: " + name + " -> " + target);
+        }
+    }
+
+    private synchronized void restart(int serial) {
+        if (serial != phaseSerial || inGame || closed) return;
+        send("/start");
+    }
+
+    /** Người còn sống ngẫu nhiên (trừ bản thân nếu !allowSelf, Mafia bỏ qua đồng đội). */
+    private String pickTarget(boolean allowSelf) {
+        List<String> options = new ArrayList<>(alive.size());
+        for (String n : alive) {
+            if (!allowSelf && n.equals(name)) continue;
+            if (role.equals("MAFIA") && team.contains(n)) continue;
+            options.add(n);
+        }
+        return options.isEmpty() ? null : options.get(ThreadLocalRandom.current().nextInt(options.size()));
+    }
+
+    /** base ± 50% để các bot không gửi cùng một nhịp. */
+    private static long jitter(long baseMs) {
+        if (baseMs <= 0) return 0;
+        return baseMs / 2 + ThreadLocalRandom.current().nextLong(baseMs + 1);
+    }
+
+    /* ==================== TCP thô ==================== */
+
+    static final class Tcp extends LoadBot {
+        private Socket socket;
+        private BufferedWriter out;
+
+        Tcp(LoadGen gen, Table table, String name) {
+            super(gen, table, name);
+        }
+
+        @Override Transport transport() { return Transport.TCP; }
+
+        @Override
+        void connect() throws IOException {
+            socket = new Socket(gen.host, gen.port);
+            socket.setTcpNoDelay(true);
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            SessionThreads.start("lg-" + name, () -> readLoop(in), true);
+        }
+
+        private void readLoop(BufferedReader in) {
+            try {
+                String line;
+                while ((line = in.readLine()) != null) onLine(line);
+                onDisconnected("EOF");
+            } catch (IOException e) {
+                onDisconnected(e.getMessage());
+            }
+        }
+
+        @Override
+        void write(String line) {
+            try {
+                synchronized (out) {
+                    out.write(line);
+                    out.write('\n');
+                    out.flush();
+                }
+            } catch (IOException e) {
+                onDisconnected(e.getMessage());
+            }
+        }
+
+        @Override
+        void disconnect() {
+            try { socket.close(); } catch (IOException ignore) {}
+        }
+    }
+
+    /* ==================== WebSocket qua bridge ==================== */
+
+    static final class Ws extends LoadBot implements WebSocket.Listener {
+        private WebSocket ws;
+        private final StringBuilder partial = new StringBuilder();
+        private final Object sendLock = new Object();
+        private CompletableFuture<WebSocket> tail;        // sendText phải nối đuôi: JDK cấm 2 lần gửi chồng nhau
+
+        Ws(LoadGen gen, Table table, String name) {
+            super(gen, table, name);
+        }
+
+        @Override Transport transport() { return Transport.WS; }
+
+        @Override
+        void connect() throws IOException {
+            try {
+                ws = gen.http.newWebSocketBuilder().buildAsync(gen.wsUri, this).get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IOException("WS connect " + gen.wsUri + ": " + e.getMessage(), e);
+            }
+            tail = CompletableFuture.completedFuture(ws);
+        }
+
+        @Override
+        void write(String line) {
+            String frame;
+            try {
+                frame = JsonUtil.toJson(new Message(MessageType.CHAT, name, line, System.currentTimeMillis()));
+            } catch (Exception e) {
+                frame = line; // bridge đẩy raw xuống TCP
+            }
+            final String payload = frame;
+            synchronized (sendLock) {
+                tail = tail.thenCompose(w -> w.sendText(payload, true));
+                tail.exceptionally(ex -> { onDisconnected(ex.getMessage()); return null; });
+            }
+        }
+
+        @Override
+        void disconnect() {
+            synchronized (sendLock) {
+                tail = tail.thenCompose(w -> w.sendClose(WebSocket.NORMAL_CLOSURE, "bye"));
+            }
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String frame = partial.toString();
+                partial.setLength(0);
+                onFrame(frame);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        /** Frame SYSTEM của bridge -> dòng TCP gốc; -Dws.coalesce=true thì 1 frame là mảng nhiều tin. */
+        private void onFrame(String frame) {
+            try {
+                if (frame.startsWith("[")) {
+                    for (Message m : JsonUtil.fromJsonArray(frame)) onMessage(m);
+                } else {
+                    onMessage(JsonUtil.fromJson(frame));
+                }
+            } catch (Exception e) {
+                gen.logError(name + " frame lỗi: " + e.getMessage());
+            }
+        }
+
+        private void onMessage(Message m) {
+            if (m.getType() == MessageType.SYSTEM && m.getContent() != null) onLine(m.getContent());
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            onDisconnected("WS close " + statusCode + " " + reason);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            onDisconnected(error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.mafiaonline.client;
+
+import com.mafiaonline.common.SessionThreads;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadGen: hàng nghìn người chơi giả từ 1 JVM để đo sức chịu tải của 1 server chạy local.
+ * - Bot chia theo bàn (--room-size): host /create rồi /start khi đủ người, các bot khác /join; hết ván host /start lại
+ * - Mỗi bot: /register + /login, chat đều đặn ban ngày, /vote ở giai đoạn VOTE, /kill /save /investigate /protect ban đêm
+ * - Transport: tcp (cổng thô, 1 thread đọc/bot — virtual nếu --threads virtual trên JDK 21+),
+ *   ws (/ws của bridge qua java.net.http, bất đồng bộ, vài thread cho mọi kết nối) hoặc mixed (xen kẽ theo bàn)
+ * - Độ trễ: từ lúc gửi lệnh tới lúc dòng phản hồi/broadcast tương ứng về lại chính bot đó -> p50/p90/p99/p99.9/max
+ *
+ * Chạy (server nên để pha ngắn để ván quay vòng nhanh, vd -Dday.chat.seconds=5 -Dday.vote.seconds=10 -Dnight.seconds=10):
+ *   java -cp target/classes:<deps> com.mafiaonline.client.LoadGen --bots 2000 --room-size 8 --transport mixed --duration 60
+ *   mvn -Pclient-cli exec:java -Dexec.args="--loadgen --bots 2000 --transport ws"
+ *   ... [--host localhost] [--port 12345] [--ws-url ws://localhost:8080/ws] [--rate 500] [--chat-ms 2000]
+ *       [--think-ms 1000] [--rest-ms 1000] [--prefix lgab12] [--password loadtest] [--threads virtual|platform]
+ * Vài nghìn kết nối cần file descriptor cho cả 2 phía: ulimit -n 65536.
+ */
+public final class LoadGen {
+
+    private static final long PROGRESS_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int MAX_ERROR_LOGS = 20;
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+
+    // ===== cấu hình (LoadBot đọc trực tiếp) =====
+    String host = "localhost";
+    int port = 12345;
+    URI wsUri = URI.create("ws://localhost:8080/ws");
+    String password = "loadtest";
+    long chatMs = 2000;
+    long thinkMs = 1000;
+    long restMs = 1000;
+
+    HttpClient http;
+    final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "loadgen-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // ===== số đếm =====
+    final AtomicLong connected = new AtomicLong();
+    final AtomicLong authed = new AtomicLong();
+    final AtomicLong sent = new AtomicLong();
+    final AtomicLong received = new AtomicLong();
+    final AtomicLong lost = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong errors = new AtomicLong();
+    final AtomicLong gamesStarted = new AtomicLong();
+    final AtomicLong gamesFinished = new AtomicLong();
+    private final LatencyHistogram[][] latency =
+            new LatencyHistogram[LoadBot.Kind.values().length][LoadBot.Transport.values().length];
+
+    private LoadGen() {
+        for (LatencyHistogram[] row : latency) {
+            for (int t = 0; t < row.length; t++) row[t] = new LatencyHistogram();
+        }
+    }
+
+    void record(LoadBot.Kind kind, LoadBot.Transport transport, long nanos) {
+        latency[kind.ordinal()][transport.ordinal()].recordNanos(nanos);
+    }
+
+    void logError(String msg) {
+        long n = errors.incrementAndGet();
+        if (n <= MAX_ERROR_LOGS) System.err.println("[LoadGen] " + msg);
+        else if (n == MAX_ERROR_LOGS + 1) System.err.println("[LoadGen] ... (các lỗi sau chỉ đếm, không in)");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGen gen = new LoadGen();
+        int bots = 100, roomSize = 8, rate = 500, durationSec = 60;
+        String transport = "tcp";
+        String prefix = "lg" + Long.toString(36 * 36 * 36 + ThreadLocalRandom.current().nextInt(35 * 36 * 36 * 36), 36);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host"      -> gen.host = args[++i];
+                case "--port"      -> gen.port = Integer.parseInt(args[++i]);
+                case "--ws-url"    -> gen.wsUri = URI.create(args[++i]);
+                case "--bots"      -> bots = Integer.parseInt(args[++i]);
+                case "--room-size" -> roomSize = Integer.parseInt(args[++i]);
+                case "--transport" -> transport = args[++i].toLowerCase();
+                case "--duration"  -> durationSec = Integer.parseInt(args[++i]);
+                case "--rate"      -> rate = Math.max(1, Integer.parseInt(args[++i]));
+                case "--chat-ms"   -> gen.chatMs = Long.parseLong(args[++i]);
+                case "--think-ms"  -> gen.thinkMs = Long.parseLong(args[++i]);
+                case "--rest-ms"   -> gen.restMs = Long.parseLong(args[++i]);
+                case "--prefix"    -> prefix = args[++i];
+                case "--password"  -> gen.password = args[++i];
+                case "--threads"   -> {
+                    SessionThreads.Mode m = SessionThreads.parse(args[++i]);
+                    if (m != null) SessionThreads.configure(m);
+                }
+                default -> {
+                    System.out.println("Usage: LoadGen [--bots N] [--room-size K] [--transport tcp|ws|mixed] [--duration S]"
+                            + " [--host H] [--port P] [--ws-url URL] [--rate CONN/S] [--chat-ms MS] [--think-ms MS]"
+                            + " [--rest-ms MS] [--prefix P] [--password PW] [--threads virtual|platform]");
+                    return;
+                }
+            }
+        }
+        if (roomSize < 3 || bots < roomSize) {
+            System.out.println("[LoadGen] --room-size phải ≥ 3 (GameRoom cần ít nhất 3 người) và --bots ≥ --room-size");
+            return;
+        }
+        if (!transport.equals("tcp") && !transport.equals("ws") && !transport.equals("mixed")) {
+            System.out.println("[LoadGen] --transport phải là tcp, ws hoặc mixed");
+            return;
+        }
+        if (prefix.length() + 1 + String.valueOf(bots - 1).length() > 16) {
+            System.out.println("[LoadGen] --prefix quá dài: username tối đa 16 ký tự");
+            return;
+        }
+        if (!transport.equals("tcp")) gen.http = HttpClient.newHttpClient();
+
+        List<LoadBot> all = gen.createBots(bots, roomSize, transport, prefix);
+        System.out.printf("[LoadGen] %,d bots, %,d tables, transport=%s, tcp=%s:%d, ws=%s, threads=%s, prefix=%s%n",
+                bots, bots / roomSize, transport, gen.host, gen.port, gen.wsUri,
+                SessionThreads.getMode().name().toLowerCase(), prefix);
+        gen.run(all, rate, TimeUnit.SECONDS.toNanos(durationSec));
+    }
+
+    /** Chia bot theo bàn; phần dư dồn vào bàn cuối để bàn nào cũng ≥ room-size. */
+    private List<LoadBot> createBots(int bots, int roomSize, String transport, String prefix) {
+        int tables = bots / roomSize;
+        List<LoadBot> all = new ArrayList<>(bots);
+        int n = 0;
+        for (int t = 0; t < tables; t++) {
+            LoadBot.Table table = new LoadBot.Table();
+            boolean ws = transport.equals("ws") || (transport.equals("mixed") && (t & 1) == 1);
+            int size = (t == tables - 1) ? bots - n : roomSize;
+            for (int k = 0; k < size; k++, n++) {
+                String name = prefix + "_" + n;
+                all.add(ws ? new LoadBot.Ws(this, table, name) : new LoadBot.Tcp(this, table, name));
+            }
+        }
+        return all;
+    }
+
+    private void run(List<LoadBot> all, int rate, long durationNanos) throws InterruptedException {
+        long t0 = System.nanoTime();
+        long nextReport = t0 + PROGRESS_NANOS;
+        Progress progress = new Progress(t0);
+        long failed = 0;
+
+        // mở kết nối theo nhịp --rate để không dồn cả nghìn handshake vào backlog accept
+        for (int i = 0; i < all.size(); i++) {
+            long due = t0 + i * 1_000_000_000L / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            try {
+                all.get(i).start();
+            } catch (IOException e) {
+                failed++;
+                logError(all.get(i).name + " không kết nối được: " + e.getMessage());
+            }
+            if (System.nanoTime() >= nextReport) {
+                progress.print(this, all.size());
+                nextReport += PROGRESS_NANOS;
+            }
+        }
+        System.out.printf("[LoadGen] đã mở %,d / %,d kết nối sau %.1f s (%,d lỗi)%n",
+                connected.get(), all.size(), (System.nanoTime() - t0) / 1e9, failed);
+
+        long end = t0 + durationNanos;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            TimeUnit.NANOSECONDS.sleep(Math.min(end, nextReport) - now);
+            if (System.nanoTime() >= nextReport) {
+                progress.print(this, all.size());
+                nextReport += PROGRESS_NANOS;
+            }
+        }
+
+        for (LoadBot b : all) b.close();
+        double secs = (System.nanoTime() - t0) / 1e9;
+        Thread.sleep(500); // để /quit + close kịp đi trước khi JVM thoát
+        scheduler.shutdownNow();
+        report(secs, failed);
+    }
+
+    /** Dòng tiến độ mỗi 5 s: tốc độ tính trên khoảng vừa qua. */
+    private static final class Progress {
+        private long lastNanos, lastSent, lastReceived;
+        private final long t0;
+
+        Progress(long t0) {
+            this.t0 = t0;
+            this.lastNanos = t0;
+        }
+
+        void print(LoadGen g, int total) {
+            long now = System.nanoTime();
+            double dt = (now - lastNanos) / 1e9;
+            long s = g.sent.get(), r = g.received.get();
+            LatencyHistogram chat = g.latency[LoadBot.Kind.CHAT.ordinal()][LoadBot.Transport.TCP.ordinal()];
+            if (chat.count() == 0) chat = g.latency[LoadBot.Kind.CHAT.ordinal()][LoadBot.Transport.WS.ordinal()];
+            System.out.printf("[LoadGen] %4.0fs: %,d/%,d connected, %,d authed, games %,d started / %,d finished,"
+                            + " %,.0f cmd/s, %,.0f lines/s, chat p99 %.2f ms%n",
+                    (now - t0) / 1e9, g.connected.get(), total, g.authed.get(),
+                    g.gamesStarted.get(), g.gamesFinished.get(),
+                    (s - lastSent) / dt, (r - lastReceived) / dt, chat.percentileMicros(0.99) / 1000.0);
+            lastNanos = now;
+            lastSent = s;
+            lastReceived = r;
+        }
+    }
+
+    /* ==================== Báo cáo ==================== */
+
+    private void report(double secs, long failed) {
+        System.out.printf("%n[LoadGen] %.1f s: %,d connected (%,d failed, %,d dropped), %,d authed, games %,d started / %,d finished%n",
+                secs, connected.get(), failed, dropped.get(), authed.get(), gamesStarted.get(), gamesFinished.get());
+        System.out.printf("[LoadGen] %,d lines sent (%,.0f/s), %,d lines received (%,.0f/s), %,d commands unanswered, %,d errors%n",
+                sent.get(), sent.get() / secs, received.get(), received.get() / secs, lost.get(), errors.get());
+
+        System.out.printf("%n%-7s %-5s %10s %9s %9s %9s %9s %9s   (ms)%n",
+                "kind", "via", "count", "p50", "p90", "p99", "p99.9", "max");
+        for (LoadBot.Kind kind : LoadBot.Kind.values()) {
+            for (LoadBot.Transport tr : LoadBot.Transport.values()) {
+                LatencyHistogram h = latency[kind.ordinal()][tr.ordinal()];
+                if (h.count() == 0) continue;
+                System.out.printf("%-7s %-5s %10d", kind, tr, h.count());
+                for (double q : PERCENTILES) System.out.printf(" %9.2f", h.percentileMicros(q) / 1000.0);
+                System.out.printf(" %9.2f%n", h.maxMicros() / 1000.0);
+            }
+        }
+    }
+}
@@ -10,6 +10,11 @@ public class JsonUtil {
         return mapper.readValue(json, Message.class);
     }
 
+    // JSON mảng (frame WS gộp nhiều tin, -Dws.coalesce=true) → Object[]
+    public static Message[] fromJsonArray(String json) throws Exception {
+        return mapper.readValue(json, Message[].class);
+    }
+
     // Object → JSON
     public static String toJson(Message message) throws Exception {
         return mapper.writeValueAsString(message);
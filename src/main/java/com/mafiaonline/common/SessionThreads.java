@@ -0,0 +1,93 @@
+package com.mafiaonline.common;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * SessionThreads — nơi duy nhất tạo thread cho phiên chơi (PlayerHandler) và pump của WS bridge.
+ *   PLATFORM: thread OS như cũ
+ *   VIRTUAL : virtual thread (JDK 21+). Build vẫn target Java 17 nên gọi Thread.ofVirtual() qua MethodHandle;
+ *             chạy trên JDK cũ hơn sẽ tự lùi về PLATFORM và in cảnh báo.
+ */
+public final class SessionThreads {
+
+    private static final Logger LOG = Log.get(SessionThreads.class);
+
+    public enum Mode { PLATFORM, VIRTUAL }
+
+    private static final MethodHandle OF_VIRTUAL; // () -> Thread.Builder.OfVirtual
+    private static final MethodHandle NAME;       // (Thread.Builder, String) -> Thread.Builder
+    private static final MethodHandle UNSTARTED;  // (Thread.Builder, Runnable) -> Thread
+
+    static {
+        MethodHandle ofVirtual = null, name = null, unstarted = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualType));
+            name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+            ofVirtual.invoke(); // JDK 19/20 không bật preview sẽ ném UnsupportedOperationException
+        } catch (Throwable notAvailable) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private static volatile Mode mode = Mode.PLATFORM;
+
+    private SessionThreads() {}
+
+    public static boolean isVirtualSupported() { return OF_VIRTUAL != null; }
+
+    /** Chọn chế độ cho các thread tạo sau đó. Trả về chế độ thực sự dùng. */
+    public static Mode configure(Mode requested) {
+        if (requested == Mode.VIRTUAL && !isVirtualSupported()) {
+            LOG.warn("[Threads] Virtual threads cần JDK 21+ (đang chạy {}), dùng platform threads.", Runtime.version());
+            requested = Mode.PLATFORM;
+        }
+        mode = requested;
+        return requested;
+    }
+
+    public static Mode getMode() { return mode; }
+
+    /** Parse "virtual"/"platform" (không phân biệt hoa thường); sai thì null. */
+    public static Mode parse(String s) {
+        if (s == null) return null;
+        return switch (s.trim().toLowerCase()) {
+            case "virtual" -> Mode.VIRTUAL;
+            case "platform" -> Mode.PLATFORM;
+            default -> null;
+        };
+    }
+
+    /** Tạo và start thread theo chế độ hiện tại. daemon chỉ có nghĩa với platform (virtual luôn là daemon). */
+    public static Thread start(String name, Runnable task, boolean daemon) {
+        Thread t = newThread(name, task, daemon);
+        t.start();
+        return t;
+    }
+
+    public static Thread newThread(String name, Runnable task, boolean daemon) {
+        if (mode == Mode.VIRTUAL) {
+            try {
+                Object builder = OF_VIRTUAL.invoke();
+                builder = NAME.invoke(builder, name);
+                return (Thread) UNSTARTED.invoke(builder, task);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot create virtual thread", e);
+            }
+        }
+        Thread t = new Thread(task, name);
+        t.setDaemon(daemon);
+        return t;
+    }
+}
@@ -0,0 +1,218 @@
+package com.mafiaonline.common.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cách biến 1 LogEvent thành 1 dòng (kể cả xuống dòng), chạy trên thread log-writer.
+ * - Pattern: tập con ConversionPattern của log4j PatternLayout — %d{ISO8601|ABSOLUTE|DATE|mẫu DateTimeFormatter},
+ *   %t, %p, %c{n}, %m, %n, %%, kèm căn lề %-5p / %20c / %.30c; mã khác được giữ nguyên như chữ thường
+ * - Json: 1 object mỗi dòng {"ts","level","thread","logger","msg"[,"error"]} cho máy đọc (-Dlog.format=json)
+ * Stack trace của Throwable (nếu có) luôn được nối sau dòng chính.
+ */
+interface Layout {
+
+    void format(LogEvent e, StringBuilder sb);
+
+    static Layout pattern(String conversionPattern) {
+        return new Pattern(conversionPattern);
+    }
+
+    Layout JSON = new Json();
+
+    String NL = System.lineSeparator();
+
+    static void appendThrown(LogEvent e, StringBuilder sb) {
+        Throwable t = e.thrown();
+        if (t == null) return;
+        StringWriter w = new StringWriter();
+        t.printStackTrace(new PrintWriter(w));
+        sb.append(w);
+    }
+
+    /* ==================== PatternLayout ==================== */
+
+    final class Pattern implements Layout {
+
+        private interface Part { void append(LogEvent e, StringBuilder sb); }
+
+        private final Part[] parts;
+
+        Pattern(String pattern) {
+            List<Part> out = new ArrayList<>();
+            StringBuilder lit = new StringBuilder();
+            int n = pattern.length();
+            for (int i = 0; i < n; i++) {
+                char c = pattern.charAt(i);
+                if (c != '%' || i + 1 >= n) {
+                    lit.append(c);
+                    continue;
+                }
+                int start = i, j = i + 1;
+                boolean left = pattern.charAt(j) == '-';
+                if (left) j++;
+                int min = 0, max = Integer.MAX_VALUE;
+                while (j < n && Character.isDigit(pattern.charAt(j))) min = min * 10 + (pattern.charAt(j++) - '0');
+                if (j < n && pattern.charAt(j) == '.') {
+                    max = 0;
+                    j++;
+                    while (j < n && Character.isDigit(pattern.charAt(j))) max = max * 10 + (pattern.charAt(j++) - '0');
+                }
+                if (j >= n) {
+                    lit.append(pattern, start, n);
+                    break;
+                }
+                char conv = pattern.charAt(j);
+                String option = null;
+                if (j + 1 < n && pattern.charAt(j + 1) == '{') {
+                    int close = pattern.indexOf('}', j + 2);
+                    if (close > 0) {
+                        option = pattern.substring(j + 2, close);
+                        j = close;
+                    }
+                }
+                i = j;
+                if (conv == '%') { lit.append('%'); continue; }
+                if (conv == 'n') { lit.append(NL); continue; }
+                Part p = converter(conv, option);
+                if (p == null) {
+                    lit.append(pattern, start, j + 1);
+                    continue;
+                }
+                if (lit.length() > 0) {
+                    String s = lit.toString();
+                    out.add((e, sb) -> sb.append(s));
+                    lit.setLength(0);
+                }
+                out.add(min == 0 && max == Integer.MAX_VALUE ? p : padded(p, left, min, max));
+            }
+            if (lit.length() > 0) {
+                String s = lit.toString();
+                out.add((e, sb) -> sb.append(s));
+            }
+            this.parts = out.toArray(new Part[0]);
+        }
+
+        @Override
+        public void format(LogEvent e, StringBuilder sb) {
+            for (Part p : parts) p.append(e, sb);
+            appendThrown(e, sb);
+        }
+
+        private static Part converter(char conv, String option) {
+            return switch (conv) {
+                case 'd' -> {
+                    DateTimeFormatter f = dateFormat(option).withZone(ZoneId.systemDefault());
+                    yield (e, sb) -> f.formatTo(Instant.ofEpochMilli(e.timeMillis), sb);
+                }
+                case 't' -> (e, sb) -> sb.append(e.thread);
+                case 'p' -> (e, sb) -> sb.append(e.level.name());
+                case 'c' -> {
+                    int keep = option == null ? 0 : parseInt(option);
+                    yield keep <= 0 ? (e, sb) -> sb.append(e.logger) : (e, sb) -> sb.append(lastComponents(e.logger, keep));
+                }
+                case 'm' -> LogEvent::appendMessage;
+                default -> null;
+            };
+        }
+
+        private static DateTimeFormatter dateFormat(String option) {
+            if (option == null || option.equals("ISO8601")) return DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS");
+            if (option.equals("ABSOLUTE")) return DateTimeFormatter.ofPattern("HH:mm:ss,SSS");
+            if (option.equals("DATE")) return DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm:ss,SSS");
+            try {
+                return DateTimeFormatter.ofPattern(option);
+            } catch (IllegalArgumentException bad) {
+                return DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS");
+            }
+        }
+
+        private static int parseInt(String s) {
+            try {
+                return Integer.parseInt(s.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        /** "com.mafiaonline.server.GameRoom", 2 -> "server.GameRoom" (như %c{2} của log4j). */
+        private static String lastComponents(String name, int keep) {
+            int at = name.length();
+            for (int k = 0; k < keep; k++) {
+                at = name.lastIndexOf('.', at - 1);
+                if (at < 0) return name;
+            }
+            return name.substring(at + 1);
+        }
+
+        /** Căn lề như log4j: ngắn hơn min thì đệm space (trái/phải), dài hơn max thì cắt phần đầu. */
+        private static Part padded(Part p, boolean left, int min, int max) {
+            return (e, sb) -> {
+                int from = sb.length();
+                p.append(e, sb);
+                int len = sb.length() - from;
+                if (len > max) {
+                    sb.delete(from, from + (len - max));
+                } else if (len < min) {
+                    if (left) {
+                        for (int k = len; k < min; k++) sb.append(' ');
+                    } else {
+                        sb.insert(from, " ".repeat(min - len));
+                    }
+                }
+            };
+        }
+    }
+
+    /* ==================== JSON lines ==================== */
+
+    final class Json implements Layout {
+
+        private final StringBuilder msg = new StringBuilder(256); // chỉ log-writer dùng
+
+        @Override
+        public void format(LogEvent e, StringBuilder sb) {
+            sb.append("{\"ts\":\"").append(Instant.ofEpochMilli(e.timeMillis)).append('"');
+            sb.append(",\"level\":\"").append(e.level.name()).append('"');
+            sb.append(",\"thread\":");
+            quote(e.thread, sb);
+            sb.append(",\"logger\":");
+            quote(e.logger, sb);
+            msg.setLength(0);
+            e.appendMessage(msg);
+            sb.append(",\"msg\":");
+            quote(msg, sb);
+            if (e.thrown() != null) {
+                msg.setLength(0);
+                appendThrown(e, msg);
+                sb.append(",\"error\":");
+                quote(msg, sb);
+            }
+            sb.append('}').append(NL);
+        }
+
+        private static void quote(CharSequence s, StringBuilder sb) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> sb.append("\\\"");
+                    case '\\' -> sb.append("\\\\");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\t' -> sb.append("\\t");
+                    default -> {
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                    }
+                }
+            }
+            sb.append('"');
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.mafiaonline.common.log;
+
+import java.util.Locale;
+
+/** Mức log tăng dần: logger đặt mức L thì ghi mọi bản ghi có mức ≥ L; OFF tắt hẳn. */
+public enum Level {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+
+    /** "debug", " INFO " ... -> Level (tên của log4j: ALL -> TRACE, FATAL -> ERROR); không nhận ra thì trả def. */
+    static Level parse(String s, Level def) {
+        if (s == null) return def;
+        return switch (s.trim().toUpperCase(Locale.ROOT)) {
+            case "TRACE", "ALL" -> TRACE;
+            case "DEBUG" -> DEBUG;
+            case "INFO" -> INFO;
+            case "WARN" -> WARN;
+            case "ERROR", "FATAL" -> ERROR;
+            case "OFF" -> OFF;
+            default -> def;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package com.mafiaonline.common.log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Log bất đồng bộ của server (thay System.out.println trên đường nóng):
+ *   private static final Logger LOG = Log.get(GameRoom.class);
+ *   LOG.debug("[Broadcast] {}: {}", id, msg);
+ * - Cấu hình lấy từ log4j.properties (xem LogConfig) nhưng không cần thư viện log4j
+ * - Thread gọi chỉ đẩy bản ghi vào ring (LogRing); 1 thread "log-writer" định dạng và ghi console / file cuộn
+ *   -> stdout (PrintStream có khoá) không còn nối tiếp mọi phòng với nhau
+ * - Ring đầy thì bỏ bản ghi + đếm, xem droppedEvents() / mafia_log_dropped_total trên trang admin
+ * - Lúc JVM tắt, hook chờ tối đa 1 giây cho ring rút hết; ServerMain gọi flush() ở cuối hook của mình
+ * Công cụ dòng lệnh (client, simulator, loadgen, journal reader) vẫn in thẳng stdout — đó là đầu ra của chúng.
+ */
+public final class Log {
+
+    private static final LogConfig CONFIG = LogConfig.load();
+    private static final LogRing RING = new LogRing(CONFIG.bufferSize, CONFIG.sinks);
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+
+    static {
+        RING.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> RING.flush(1000), "log-flush"));
+    }
+
+    private Log() {}
+
+    public static Logger get(Class<?> type) {
+        return get(type.getName());
+    }
+
+    public static Logger get(String name) {
+        return LOGGERS.computeIfAbsent(name, n -> new Logger(n, CONFIG.levelFor(n), RING));
+    }
+
+    /** Chờ các bản ghi đã nhận tới lúc gọi được ghi ra appender (tối đa timeoutMillis). */
+    public static boolean flush(long timeoutMillis) {
+        return RING.flush(timeoutMillis);
+    }
+
+    /** Số bản ghi đã ghi ra appender. */
+    public static long writtenEvents() { return RING.written(); }
+
+    /** Số bản ghi bị bỏ vì ring đầy. */
+    public static long droppedEvents() { return RING.dropped(); }
+
+    /** Số bản ghi đang chờ trong ring. */
+    public static long pendingEvents() { return RING.pending(); }
+
+    public static int bufferSize() { return RING.capacity(); }
+
+    /** 1 dòng cho log lúc tắt server. */
+    public static String summary() {
+        return "written=" + writtenEvents() + " dropped=" + droppedEvents() + " pending=" + pendingEvents()
+                + " (ring " + bufferSize() + ")";
+    }
+}
@@ -0,0 +1,153 @@
+package com.mafiaonline.common.log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Đọc cấu hình kiểu log4j 1.x (mặc định log4j.properties trên classpath, hoặc -Dlog.config=<file>):
+ *   log4j.rootLogger=INFO, console, file          mức gốc + danh sách appender
+ *   log4j.logger.<package/class>=DEBUG            mức theo tiền tố tên (tiền tố dài nhất thắng)
+ *   log4j.appender.X=...ConsoleAppender           (Target=System.err tuỳ chọn)
+ *   log4j.appender.X=...RollingFileAppender       File, MaxFileSize (KB/MB/GB), MaxBackupIndex, Append
+ *   log4j.appender.X=...FileAppender              như trên nhưng không cuộn file
+ *   log4j.appender.X.layout.ConversionPattern=... (xem Layout.Pattern), log4j.appender.X.Threshold=WARN
+ * Danh sách appender trong log4j.logger.* được bỏ qua (mọi logger ghi ra appender của root).
+ * Ghi đè bằng VM options:
+ *   -Dlog.level=WARN                   mức gốc
+ *   -Dlog.level.com.mafiaonline.server=OFF   mức theo tiền tố
+ *   -Dlog.appenders=console            thay danh sách appender của root
+ *   -Dlog.format=json                  mọi appender ghi JSON lines
+ *   -Dlog.buffer=16384                 số ô ring (làm tròn lên luỹ thừa 2)
+ */
+final class LogConfig {
+
+    private static final String DEFAULT_PATTERN = "%d{ISO8601} [%t] %-5p %c - %m%n";
+
+    final Level root;
+    final Map<String, Level> levels;
+    final List<LogSink> sinks;
+    final int bufferSize;
+
+    private LogConfig(Level root, Map<String, Level> levels, List<LogSink> sinks, int bufferSize) {
+        this.root = root;
+        this.levels = levels;
+        this.sinks = sinks;
+        this.bufferSize = bufferSize;
+    }
+
+    /** Mức của logger theo tiền tố dài nhất khớp ("a.b" khớp "a.b" và "a.b.C", không khớp "a.bc"). */
+    Level levelFor(String name) {
+        Level best = root;
+        int bestLen = -1;
+        for (Map.Entry<String, Level> e : levels.entrySet()) {
+            String prefix = e.getKey();
+            boolean match = name.equals(prefix)
+                    || (name.startsWith(prefix) && name.length() > prefix.length() && name.charAt(prefix.length()) == '.');
+            if (match && prefix.length() > bestLen) {
+                best = e.getValue();
+                bestLen = prefix.length();
+            }
+        }
+        return best;
+    }
+
+    static LogConfig load() {
+        Properties p = read(System.getProperty("log.config"));
+
+        String[] rootSpec = split(p.getProperty("log4j.rootLogger", "INFO, console"));
+        Level root = Level.parse(System.getProperty("log.level"), Level.parse(rootSpec[0], Level.INFO));
+
+        Map<String, Level> levels = new HashMap<>();
+        for (String key : p.stringPropertyNames()) {
+            if (key.startsWith("log4j.logger.")) {
+                levels.put(key.substring("log4j.logger.".length()), Level.parse(split(p.getProperty(key))[0], root));
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("log.level.")) {
+                levels.put(key.substring("log.level.".length()), Level.parse(System.getProperty(key), root));
+            }
+        }
+
+        String[] appenders = rootSpec;
+        String override = System.getProperty("log.appenders");
+        if (override != null) appenders = split("-, " + override);
+
+        boolean json = "json".equalsIgnoreCase(System.getProperty("log.format"));
+        Map<String, Layout> layouts = new LinkedHashMap<>(); // cùng pattern -> cùng Layout -> log-writer định dạng 1 lần
+        List<LogSink> sinks = new ArrayList<>();
+        for (int i = 1; i < appenders.length; i++) {
+            LogSink s = sink(p, appenders[i], json, layouts);
+            if (s != null) sinks.add(s);
+        }
+
+        int buffer = Integer.getInteger("log.buffer", 16384);
+        return new LogConfig(root, levels, List.copyOf(sinks), buffer);
+    }
+
+    private static LogSink sink(Properties p, String name, boolean json, Map<String, Layout> layouts) {
+        String prefix = "log4j.appender." + name;
+        String type = p.getProperty(prefix, name.equals("console") ? "ConsoleAppender" : "");
+        Layout layout = json ? Layout.JSON
+                : layouts.computeIfAbsent(p.getProperty(prefix + ".layout.ConversionPattern", DEFAULT_PATTERN), Layout::pattern);
+        Level threshold = Level.parse(p.getProperty(prefix + ".Threshold"), Level.TRACE);
+
+        if (type.endsWith("ConsoleAppender")) {
+            boolean stderr = "System.err".equals(p.getProperty(prefix + ".Target", "").trim());
+            return new LogSink.Console(name, layout, threshold, stderr);
+        }
+        if (type.endsWith("FileAppender")) {
+            Path file = Path.of(p.getProperty(prefix + ".File", "logs/mafia-online.log").trim());
+            boolean rolling = type.endsWith("RollingFileAppender");
+            long maxBytes = rolling ? size(p.getProperty(prefix + ".MaxFileSize"), 10L << 20) : Long.MAX_VALUE;
+            int backups = rolling ? (int) size(p.getProperty(prefix + ".MaxBackupIndex"), 1) : 0;
+            boolean append = !"false".equalsIgnoreCase(p.getProperty(prefix + ".Append", "true").trim());
+            return new LogSink.RollingFile(name, layout, threshold, file, maxBytes, backups, append);
+        }
+        System.err.println("[Log] Bỏ qua appender '" + name + "' (kiểu không hỗ trợ: " + type + ")");
+        return null;
+    }
+
+    private static Properties read(String path) {
+        Properties p = new Properties();
+        try (InputStream in = path != null ? Files.newInputStream(Path.of(path))
+                : LogConfig.class.getResourceAsStream("/log4j.properties")) {
+            if (in != null) p.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[Log] Không đọc được cấu hình " + (path != null ? path : "log4j.properties")
+                    + ": " + e.getMessage() + " — dùng INFO ra console.");
+        }
+        return p;
+    }
+
+    private static String[] split(String spec) {
+        return spec == null ? new String[]{""} : spec.trim().split("\\s*,\\s*");
+    }
+
+    /** "10MB", "512KB", "1GB", "1048576" -> byte. */
+    private static long size(String s, long def) {
+        if (s == null) return def;
+        String v = s.trim().toUpperCase(Locale.ROOT);
+        long mul = 1;
+        if (v.endsWith("KB")) mul = 1L << 10;
+        else if (v.endsWith("MB")) mul = 1L << 20;
+        else if (v.endsWith("GB")) mul = 1L << 30;
+        if (mul > 1) v = v.substring(0, v.length() - 2).trim();
+        try {
+            return Long.parseLong(v) * mul;
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.mafiaonline.common.log;
+
+/**
+ * 1 ô của ring: cấp sẵn 1 lần, producer điền field rồi ghi seq (volatile) để công bố, log-writer đọc xong thì xoá
+ * tham chiếu và trả ô. Thông điệp chỉ được dựng ở appendMessage() — trên thread log-writer.
+ */
+final class LogEvent {
+
+    volatile long seq = -1;   // = số thứ tự của bản ghi đang nằm trong ô (khác -> ô chưa công bố)
+
+    long timeMillis;
+    Level level;
+    String thread;
+    String logger;
+    String template;
+    Object a0, a1, a2;
+    int argc;
+
+    void set(long timeMillis, Level level, String thread, String logger, String template,
+             Object a0, Object a1, Object a2, int argc) {
+        this.timeMillis = timeMillis;
+        this.level = level;
+        this.thread = thread;
+        this.logger = logger;
+        this.template = template;
+        this.a0 = a0;
+        this.a1 = a1;
+        this.a2 = a2;
+        this.argc = argc;
+    }
+
+    /** Bỏ tham chiếu tới tham số để GC thu được ngay, không đợi ô bị ghi đè. */
+    void clear() {
+        thread = null;
+        logger = null;
+        template = null;
+        a0 = a1 = a2 = null;
+        argc = 0;
+    }
+
+    private Object arg(int i) {
+        return switch (i) {
+            case 0 -> a0;
+            case 1 -> a1;
+            default -> a2;
+        };
+    }
+
+    /** Thay lần lượt từng "{}" bằng tham số; thiếu tham số thì giữ nguyên "{}". */
+    void appendMessage(StringBuilder sb) {
+        String t = template;
+        if (t == null) {
+            sb.append("null");
+            return;
+        }
+        int used = 0, from = 0;
+        while (used < argc) {
+            int at = t.indexOf("{}", from);
+            if (at < 0) break;
+            sb.append(t, from, at);
+            appendArg(sb, arg(used++));
+            from = at + 2;
+        }
+        sb.append(t, from, t.length());
+    }
+
+    /** Throwable ở tham số cuối mà mẫu không có chỗ cho nó -> in stack trace sau thông điệp. */
+    Throwable thrown() {
+        if (argc == 0 || !(arg(argc - 1) instanceof Throwable th)) return null;
+        int holes = 0;
+        String t = template;
+        for (int at = t == null ? -1 : t.indexOf("{}"); at >= 0 && holes < argc; at = t.indexOf("{}", at + 2)) holes++;
+        return holes < argc ? th : null;
+    }
+
+    private static void appendArg(StringBuilder sb, Object a) {
+        try {
+            sb.append(a);
+        } catch (RuntimeException e) {
+            sb.append("[toString lỗi: ").append(e).append(']');
+        }
+    }
+}
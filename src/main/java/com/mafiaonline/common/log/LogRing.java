@@ -0,0 +1,141 @@
+package com.mafiaonline.common.log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer bị chặn (nhiều producer, 1 consumer) + thread "log-writer" rút ring ra các appender.
+ * - Ô LogEvent cấp sẵn; producer CAS lấy số thứ tự, điền ô, ghi seq để công bố — không khoá, không cấp phát
+ * - Còn thiếu chỗ (producer đi trước consumer đủ 1 vòng) -> bỏ bản ghi, tăng dropped; không bao giờ chờ
+ * - log-writer: định dạng + ghi theo lô, flush appender khi rút hết ring (hoặc mỗi FLUSH_EVERY bản ghi);
+ *   ring rỗng thì ngủ IDLE_PARK — producer không phải unpark ai, thread phòng không tốn syscall vì log
+ * - Có bản ghi bị bỏ thì tối đa 1 lần/giây log-writer tự ghi 1 dòng WARN báo số lượng
+ */
+final class LogRing implements Runnable {
+
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int FLUSH_EVERY = 1024;
+    private static final long DROP_REPORT_EVERY = TimeUnit.SECONDS.toNanos(1);
+
+    private final LogEvent[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); // số thứ tự kế tiếp sẽ cấp cho producer
+    private volatile long consumed;                      // số thứ tự kế tiếp log-writer đọc (chỉ log-writer ghi)
+    private volatile long flushed;                       // mọi bản ghi < flushed đã xuống appender
+    private final LongAdder dropped = new LongAdder();
+    private final List<LogSink> sinks;
+    private final Thread thread;
+
+    LogRing(int capacity, List<LogSink> sinks) {
+        int size = Integer.highestOneBit(Math.max(64, capacity) - 1) << 1; // luỹ thừa 2 >= capacity
+        this.slots = new LogEvent[size];
+        for (int i = 0; i < size; i++) slots[i] = new LogEvent();
+        this.mask = size - 1;
+        this.sinks = sinks;
+        this.thread = new Thread(this, "log-writer");
+        this.thread.setDaemon(true);
+    }
+
+    void start() { thread.start(); }
+
+    int capacity() { return slots.length; }
+
+    long written() { return consumed; }
+
+    long dropped() { return dropped.sum(); }
+
+    long pending() { return Math.max(0, claimed.get() - consumed); }
+
+    /* ==================== Producer ==================== */
+
+    boolean offer(Level level, String logger, String template, Object a0, Object a1, Object a2, int argc) {
+        long s;
+        do {
+            s = claimed.get();
+            if (s - consumed >= slots.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(s, s + 1));
+        LogEvent e = slots[(int) s & mask];
+        e.set(System.currentTimeMillis(), level, Thread.currentThread().getName(), logger, template, a0, a1, a2, argc);
+        e.seq = s; // công bố
+        return true;
+    }
+
+    /** Chờ tới khi mọi bản ghi đã nhận trước lúc gọi được ghi + flush ra appender; false nếu hết giờ. */
+    boolean flush(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (flushed < target) {
+            if (System.nanoTime() - deadline >= 0 || !thread.isAlive()) return false;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    /* ==================== log-writer ==================== */
+
+    @Override
+    public void run() {
+        StringBuilder sb = new StringBuilder(512);
+        long next = 0, batch = 0, reportedDrops = 0, lastReport = System.nanoTime() - DROP_REPORT_EVERY;
+        while (true) {
+            LogEvent e = slots[(int) next & mask];
+            if (e.seq == next) {
+                write(e, sb);
+                e.clear();
+                consumed = ++next; // trả ô cho producer
+                if (++batch < FLUSH_EVERY) continue;
+            } else if (claimed.get() > next) {
+                Thread.yield(); // producer đã lấy số nhưng chưa điền xong ô
+                continue;
+            }
+            if (batch > 0) {
+                long d = dropped.sum();
+                if (d > reportedDrops && System.nanoTime() - lastReport >= DROP_REPORT_EVERY) {
+                    reportDrops(d - reportedDrops, d, sb);
+                    reportedDrops = d;
+                    lastReport = System.nanoTime();
+                }
+                for (LogSink s : sinks) s.flush();
+                flushed = next;
+                batch = 0;
+                continue;
+            }
+            flushed = next;
+            LockSupport.parkNanos(this, IDLE_PARK);
+        }
+    }
+
+    /** Định dạng 1 lần cho mỗi layout khác nhau, ghi ra mọi appender nhận mức này. */
+    private void write(LogEvent e, StringBuilder sb) {
+        Layout last = null;
+        byte[] bytes = null;
+        for (LogSink s : sinks) {
+            if (e.level.ordinal() < s.threshold().ordinal()) continue;
+            if (s.layout() != last) {
+                last = s.layout();
+                sb.setLength(0);
+                try {
+                    last.format(e, sb);
+                } catch (RuntimeException ex) {
+                    sb.append("[Log] Định dạng lỗi: ").append(ex).append(System.lineSeparator());
+                }
+                bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            s.write(bytes);
+        }
+    }
+
+    private void reportDrops(long recent, long total, StringBuilder sb) {
+        LogEvent e = new LogEvent();
+        e.set(System.currentTimeMillis(), Level.WARN, thread.getName(), Log.class.getName(),
+                "[Log] Ring đầy: bỏ {} bản ghi (tổng {})", recent, total, null, 2);
+        write(e, sb);
+    }
+}
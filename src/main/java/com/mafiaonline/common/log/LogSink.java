@@ -0,0 +1,133 @@
+package com.mafiaonline.common.log;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Appender: chỉ thread log-writer gọi write/flush nên không khoá gì.
+ * - Console: buffer riêng trên stdout/stderr (không qua PrintStream đồng bộ của System.out), flush theo lô
+ * - RollingFile: như RollingFileAppender của log4j — vượt maxBytes thì đổi tên file -> .1, .1 -> .2 ... giữ
+ *   maxBackups bản; mở file lúc có dòng đầu tiên (simulator/bench không log gì thì không tạo thư mục logs/)
+ * Lỗi I/O in 1 dòng ra stderr rồi tắt appender đó, không ném ngược vào log-writer.
+ */
+abstract class LogSink {
+
+    private final String name;
+    private final Layout layout;
+    private final Level threshold;
+    private boolean failed;
+
+    LogSink(String name, Layout layout, Level threshold) {
+        this.name = name;
+        this.layout = layout;
+        this.threshold = threshold;
+    }
+
+    Layout layout() { return layout; }
+
+    Level threshold() { return threshold; }
+
+    final void write(byte[] line) {
+        if (failed) return;
+        try {
+            doWrite(line);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    final void flush() {
+        if (failed) return;
+        try {
+            doFlush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    abstract void doWrite(byte[] line) throws IOException;
+
+    abstract void doFlush() throws IOException;
+
+    private void fail(IOException e) {
+        failed = true;
+        System.err.println("[Log] Appender " + name + " lỗi: " + e.getMessage() + " — tắt appender này.");
+    }
+
+    /* ==================== Console ==================== */
+
+    static final class Console extends LogSink {
+        private final OutputStream out;
+
+        Console(String name, Layout layout, Level threshold, boolean stderr) {
+            super(name, layout, threshold);
+            this.out = new BufferedOutputStream(new FileOutputStream(stderr ? FileDescriptor.err : FileDescriptor.out), 16 * 1024);
+        }
+
+        @Override void doWrite(byte[] line) throws IOException { out.write(line); }
+
+        @Override void doFlush() throws IOException { out.flush(); }
+    }
+
+    /* ==================== Rolling file ==================== */
+
+    static final class RollingFile extends LogSink {
+        private final Path path;
+        private final long maxBytes;
+        private final int maxBackups;
+        private final boolean append;
+        private OutputStream out;
+        private long size;
+
+        RollingFile(String name, Layout layout, Level threshold, Path path, long maxBytes, int maxBackups, boolean append) {
+            super(name, layout, threshold);
+            this.path = path;
+            this.maxBytes = maxBytes;
+            this.maxBackups = maxBackups;
+            this.append = append;
+        }
+
+        @Override
+        void doWrite(byte[] line) throws IOException {
+            if (out == null) open(append);
+            if (size > 0 && size + line.length > maxBytes) roll();
+            out.write(line);
+            size += line.length;
+        }
+
+        @Override
+        void doFlush() throws IOException {
+            if (out != null) out.flush();
+        }
+
+        private void open(boolean keep) throws IOException {
+            Path dir = path.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            size = keep && Files.exists(path) ? Files.size(path) : 0;
+            out = new BufferedOutputStream(new FileOutputStream(path.toFile(), keep), 64 * 1024);
+        }
+
+        private void roll() throws IOException {
+            out.close();
+            if (maxBackups > 0) {
+                Files.deleteIfExists(backup(maxBackups));
+                for (int i = maxBackups - 1; i >= 1; i--) {
+                    Path from = backup(i);
+                    if (Files.exists(from)) Files.move(from, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(path, backup(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            open(false);
+        }
+
+        private Path backup(int i) {
+            return path.resolveSibling(path.getFileName() + "." + i);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mafiaonline.common.log;
+
+/**
+ * Logger theo tên (thường là tên class), lấy qua Log.get(...) và giữ trong field static final.
+ * - Thông điệp dạng mẫu "{}": LOG.debug("[Broadcast] {}: {}", id, msg) — mức tắt thì chỉ là 1 phép so int,
+ *   không nối chuỗi, không tạo mảng varargs (có sẵn overload 0..3 tham số)
+ * - Mức bật: bản ghi (mẫu + tham số) được đẩy vào ring, thread log-writer mới dựng chuỗi và ghi ra appender
+ *   -> tham số nên là giá trị bất biến (String, số, enum); object đang bị thread khác sửa có thể in ra trạng thái sau
+ * - Tham số cuối là Throwable mà không có "{}" tương ứng -> in kèm stack trace
+ * - Ring đầy thì bản ghi bị bỏ và đếm (Log.droppedEvents()), thread gọi không bao giờ bị chặn
+ */
+public final class Logger {
+
+    private static final int TRACE = Level.TRACE.ordinal();
+    private static final int DEBUG = Level.DEBUG.ordinal();
+    private static final int INFO = Level.INFO.ordinal();
+    private static final int WARN = Level.WARN.ordinal();
+    private static final int ERROR = Level.ERROR.ordinal();
+
+    private final String name;
+    private final Level level;
+    private final int threshold;
+    private final LogRing ring;
+
+    Logger(String name, Level level, LogRing ring) {
+        this.name = name;
+        this.level = level;
+        this.threshold = level.ordinal();
+        this.ring = ring;
+    }
+
+    public String name() { return name; }
+
+    public Level level() { return level; }
+
+    public boolean isEnabled(Level l) { return l.ordinal() >= threshold && l != Level.OFF; }
+    public boolean isTraceEnabled() { return TRACE >= threshold; }
+    public boolean isDebugEnabled() { return DEBUG >= threshold; }
+    public boolean isInfoEnabled() { return INFO >= threshold; }
+
+    /* ==================== TRACE ==================== */
+
+    public void trace(String msg) { if (TRACE >= threshold) ring.offer(Level.TRACE, name, msg, null, null, null, 0); }
+    public void trace(String msg, Object a) { if (TRACE >= threshold) ring.offer(Level.TRACE, name, msg, a, null, null, 1); }
+    public void trace(String msg, Object a, Object b) { if (TRACE >= threshold) ring.offer(Level.TRACE, name, msg, a, b, null, 2); }
+    public void trace(String msg, Object a, Object b, Object c) { if (TRACE >= threshold) ring.offer(Level.TRACE, name, msg, a, b, c, 3); }
+
+    /* ==================== DEBUG ==================== */
+
+    public void debug(String msg) { if (DEBUG >= threshold) ring.offer(Level.DEBUG, name, msg, null, null, null, 0); }
+    public void debug(String msg, Object a) { if (DEBUG >= threshold) ring.offer(Level.DEBUG, name, msg, a, null, null, 1); }
+    public void debug(String msg, Object a, Object b) { if (DEBUG >= threshold) ring.offer(Level.DEBUG, name, msg, a, b, null, 2); }
+    public void debug(String msg, Object a, Object b, Object c) { if (DEBUG >= threshold) ring.offer(Level.DEBUG, name, msg, a, b, c, 3); }
+
+    /* ==================== INFO ==================== */
+
+    public void info(String msg) { if (INFO >= threshold) ring.offer(Level.INFO, name, msg, null, null, null, 0); }
+    public void info(String msg, Object a) { if (INFO >= threshold) ring.offer(Level.INFO, name, msg, a, null, null, 1); }
+    public void info(String msg, Object a, Object b) { if (INFO >= threshold) ring.offer(Level.INFO, name, msg, a, b, null, 2); }
+    public void info(String msg, Object a, Object b, Object c) { if (INFO >= threshold) ring.offer(Level.INFO, name, msg, a, b, c, 3); }
+
+    /* ==================== WARN ==================== */
+
+    public void warn(String msg) { if (WARN >= threshold) ring.offer(Level.WARN, name, msg, null, null, null, 0); }
+    public void warn(String msg, Object a) { if (WARN >= threshold) ring.offer(Level.WARN, name, msg, a, null, null, 1); }
+    public void warn(String msg, Object a, Object b) { if (WARN >= threshold) ring.offer(Level.WARN, name, msg, a, b, null, 2); }
+    public void warn(String msg, Object a, Object b, Object c) { if (WARN >= threshold) ring.offer(Level.WARN, name, msg, a, b, c, 3); }
+
+    /* ==================== ERROR ==================== */
+
+    public void error(String msg) { if (ERROR >= threshold) ring.offer(Level.ERROR, name, msg, null, null, null, 0); }
+    public void error(String msg, Object a) { if (ERROR >= threshold) ring.offer(Level.ERROR, name, msg, a, null, null, 1); }
+    public void error(String msg, Object a, Object b) { if (ERROR >= threshold) ring.offer(Level.ERROR, name, msg, a, b, null, 2); }
+    public void error(String msg, Object a, Object b, Object c) { if (ERROR >= threshold) ring.offer(Level.ERROR, name, msg, a, b, c, 3); }
+}
@@ -0,0 +1,25 @@
+package com.mafiaonline.server;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đồng hồ + hẹn giờ của phòng: GameRoom/PhaseManager chỉ xem giờ và hẹn timer qua đây.
+ * - Server: TimerWheel dùng chung (giờ thật)
+ * - Simulator (com.mafiaonline.sim): đồng hồ ảo, nhảy thẳng tới timer kế tiếp -> chạy hết 1 ván trong vài µs
+ */
+public interface GameClock {
+
+    /** Handle của 1 timer đã hẹn; cancel() gọi lại nhiều lần không sao. */
+    interface Timer {
+        boolean cancel();
+    }
+
+    /** Hẹn task chạy sau delay. Task phải ngắn; muốn đụng trạng thái phòng thì đi qua GameRoom.execute(). */
+    Timer schedule(Runnable task, long delay, TimeUnit unit);
+
+    /** Như System.nanoTime(): chỉ dùng để đo khoảng cách. */
+    long nanoTime();
+
+    /** Như System.currentTimeMillis(): epoch ms (gameId, hạn chốt pha ghi journal). */
+    long currentTimeMillis();
+}
@@ -1,98 +1,343 @@
 package com.mafiaonline.server;
 
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.journal.RoomEventSink;
+import com.mafiaonline.server.journal.RoomImage;
+import com.mafiaonline.server.metrics.ServerMetrics;
+import com.mafiaonline.server.net.Frame;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * GameRoom
  * - Quản lý người chơi, vai, trạng thái; phối hợp với PhaseManager
  * - UI hooks: "PHASE: ...", "PLAYERS: ...", "DEAD: name", "RESET_ROLES"
+ *   + roster delta có seq cho client bật /roster delta: "PLAYERS+ / PLAYERS- / ALIVE- <seq> <tên>", "ROSTER <seq>: ..."
  * - Luật thắng:
  *      Dân thắng khi không còn Mafia
  *      Mafia thắng khi MA ≥ Others  <=>  2*MA ≥ TotalAlive
  * - An toàn: luôn gọi checkWinCondition() sau mọi thay đổi nhân sự / chuyển pha
+ * - SeatIndex giữ số người sống (tổng + theo Role) và BitSet ghế sống, cập nhật tăng dần;
+ *   alive/role của Player chỉ đổi qua index (killPlayer, markDead, startGame, endGame) để bộ đếm không lệch
+ * - Luồng: phòng được 1 RoomLoop điều khiển (actor). Lệnh người chơi, timer, ngắt kết nối đều đi qua execute()
+ *   -> mọi method dưới đây (trừ getter volatile) chỉ được gọi TRÊN loop của phòng, nên không có khoá nào;
+ *   GameRoom <-> PhaseManager gọi qua lại thoải mái vì cùng 1 thread
+ * - Nhiều phòng: mỗi phòng có id, do RoomRegistry tạo/thu hồi; phòng đã đóng (closed) không nhận thêm ai
+ * - Mọi chuyển trạng thái của ván (chia vai, pha, vote, hành động đêm, chết, kết thúc) được báo cho
+ *   RoomEventSink (journal) kèm gameId của ván
+ * - Khôi phục sau crash (restore): người chơi ngồi lại ghế nhưng chưa có kết nối ("ghế trống");
+ *   đăng nhập lại cùng tên -> tryJoin gắn vào đúng ghế đó. Hết ván mà ghế vẫn trống thì bỏ ghế.
+ * - Mất kết nối giữa ván (holdSeat): ghế (vai, sống/chết) thành ghế trống trong thời gian ân hạn;
+ *   /resume hoặc /login lại trong hạn -> ngồi lại như trên, hết hạn -> rời phòng như removePlayer()
+ * - Giờ/timer qua GameClock, chia vai bằng SplittableRandom của phòng (setRandom để cố định seed)
+ *   -> simulator chạy được GameRoom/PhaseManager với đồng hồ ảo, không socket, kết quả lặp lại được
+ * - Log qua Logger bất đồng bộ (mỗi broadcast ở DEBUG): loop phòng chỉ đẩy bản ghi vào ring, không chờ stdout;
+ *   simulator / bench tắt bằng -Dlog.level.com.mafiaonline.server=WARN
  */
 public class GameRoom {
 
+    private static final Logger LOG = Log.get(GameRoom.class);
+
     /* ==================== Trạng thái ==================== */
 
+    private final String id;
     private final Map<String, Player> players   = new LinkedHashMap<>(); // name -> Player
     private final Map<String, PlayerHandler> handlers = new HashMap<>(); // name -> handler
+    private final SeatIndex index = new SeatIndex();                     // ghế + bộ đếm người sống
+    private final Roster roster = new Roster();                          // danh sách sống đã sắp + seq cho UI
+    private final RoomLoop loop;                                         // thread duy nhất chạm vào trạng thái phòng
+    private final GameClock timers;                                      // timer pha (TimerWheel dùng chung cả server)
     private final PhaseManager phaseManager;
+    private final RoomEventSink events;                                  // journal (NOOP nếu tắt)
+    private long gameId;                                                 // id ván hiện tại/gần nhất (0 = chưa có)
+    private final Set<String> vacantSeats = ConcurrentHashMap.newKeySet(); // ghế khôi phục / đang giữ chưa ai ngồi lại (ghi trên loop, đọc từ đâu cũng được)
+    private final Map<String, Hold> holds = new HashMap<>();             // ghế giữ cho người mất kết nối (có hạn)
+    private long holdSeq;
+    private SplittableRandom random = new SplittableRandom();           // chia vai (chỉ loop dùng)
+
+    private volatile boolean gameStarted = false;
+    private volatile GameState state = GameState.LOBBY;
+    private volatile int playerCount = 0;  // đọc không khoá (vd /rooms liệt kê hàng nghìn phòng)
+    private boolean closed = false;        // RoomRegistry đã thu hồi phòng
+    private RoomRegistry owner; // khi ghế giữ / khôi phục bị bỏ (releaseSeat) và khi phòng vì thế trống (release)
+
+    /** Ghế đang giữ: id để timer hết hạn cũ không đụng lần giữ mới của cùng người. */
+    private record Hold(long id, GameClock.Timer timer) {}
+
+    public GameRoom(String id, RoomLoop loop, GameClock timers) {
+        this(id, loop, timers, RoomEventSink.NOOP);
+    }
 
-    private boolean gameStarted = false;
-    private GameState state = GameState.LOBBY;
-
-    public GameRoom() {
+    public GameRoom(String id, RoomLoop loop, GameClock timers, RoomEventSink events) {
+        this.id = id;
+        this.loop = loop;
+        this.timers = timers;
+        this.events = events;
         this.phaseManager = new PhaseManager(this);
     }
 
+    /* ==================== Mailbox ==================== */
+
+    /** Chạy task trên loop của phòng; đang ở đúng thread loop thì chạy luôn (giữ thứ tự như gọi trực tiếp). */
+    public void execute(Runnable task) {
+        if (loop.inLoop()) task.run();
+        else loop.execute(task);
+    }
+
+    /** Như execute() nhưng chờ task chạy xong (khởi tạo/bench/tắt server — không dùng trên đường nóng). */
+    public void executeAndWait(Runnable task) {
+        if (loop.inLoop()) { task.run(); return; }
+        CountDownLatch done = new CountDownLatch(1);
+        loop.execute(() -> {
+            try { task.run(); } finally { done.countDown(); }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public RoomLoop getLoop() { return loop; }
+
+    GameClock getTimers() { return timers; }
+
+    RoomEventSink events() { return events; }
+
+    long getGameId() { return gameId; }
+
+    /** Nguồn ngẫu nhiên chia vai (simulator gán seed để ván lặp lại được). Gọi trên loop của phòng. */
+    public void setRandom(SplittableRandom random) { this.random = random; }
+
     /* ==================== Getters cơ bản ==================== */
 
-    public synchronized boolean isGameStarted() { return gameStarted; }
-    public synchronized GameState getState()    { return state; }
-    public PhaseManager getPhaseManager()       { return phaseManager; }
+    public String getId()                 { return id; }
+    public int getPlayerCount()           { return playerCount; }
+    public boolean isGameStarted()        { return gameStarted; }
+    public GameState getState()           { return state; }
+    public PhaseManager getPhaseManager() { return phaseManager; }
 
-    public synchronized Player getPlayer(String name) { return players.get(name); }
-    public synchronized Collection<Player> getPlayersAll() {
+    public Player getPlayer(String name) {
+        return players.get(name);
+    }
+    public Collection<Player> getPlayersAll() {
         return Collections.unmodifiableCollection(players.values());
     }
-    public synchronized List<Player> getPlayersAlive() {
-        return players.values().stream().filter(Player::isAlive).collect(Collectors.toList());
+    /** Người còn sống theo thứ tự ghế (không quét/filter cả phòng). */
+    public List<Player> getPlayersAlive() {
+        return index.alivePlayers();
     }
 
+    /** Ghế còn sống (chỉ đọc) — Player.getSeat() là vị trí trong BitSet. */
+    BitSet getAliveSeats() { return index.aliveSeats(); }
+
+    /** Người ngồi ghế seat (null nếu ghế trống). */
+    Player getPlayerAtSeat(int seat) { return index.at(seat); }
+
     /* ==================== Quản lý người chơi ==================== */
 
-    public synchronized void addPlayer(String name) {
+    public void addPlayer(String name) {
         if (players.containsKey(name)) {
-            System.out.println("[GameRoom] Tên '" + name + "' đã tồn tại.");
+            LOG.debug("[GameRoom] Tên '{}' đã tồn tại.", name);
             return;
         }
         Player p = new Player(name);
         players.put(name, p);
-        System.out.println("[GameRoom] Player added: " + p);
-        broadcastPlayersAlive(); // UI cập nhật ngay
+        index.add(p);
+        playerCount = players.size();
+        LOG.info("[GameRoom] Player added: {}", name);
+        publishRoster("PLAYERS+", roster.add(name), name); // UI cập nhật ngay
     }
 
-    public synchronized void addPlayer(String name, PlayerHandler handler) {
-        if (players.containsKey(name)) {
+    public void addPlayer(String name, PlayerHandler handler) {
+        tryJoin(name, handler);
+    }
+
+    /** Như addPlayer() nhưng trả false nếu phòng đã bị thu hồi hoặc trùng tên. Tên trùng ghế trống -> ngồi lại. */
+    public boolean tryJoin(String name, PlayerHandler handler) {
+        if (closed) return false;
+        Player seat = players.get(name);
+        if (seat != null && vacantSeats.remove(name)) {
+            releaseHold(name);
+            reclaimSeat(seat, handler);
+            return true;
+        }
+        if (seat != null) {
             handler.sendMessage("⚠️ Tên '" + name + "' đã được sử dụng, vui lòng đổi tên và kết nối lại.");
-            return;
+            return false;
         }
         Player p = new Player(name);
         p.setHandler(handler);
         players.put(name, p);
         handlers.put(name, handler);
+        index.add(p);
+        playerCount = players.size();
 
-        System.out.println("[GameRoom] Player added (with handler): " + p);
+        LOG.info("[GameRoom] Player added (with handler) to {}: {}", id, name);
         broadcast("📥 Người chơi " + name + " đã tham gia (" + players.size() + " players).");
-        broadcastPlayersAlive(); // UI cập nhật ngay
+        publishRoster("PLAYERS+", roster.add(name), name); // UI cập nhật ngay
+        return true;
+    }
+
+    /**
+     * Ghế của name đang trống chờ người quay lại (khôi phục hoặc đang giữ) — PlayerHandler.enterRoom hỏi trước tryJoin,
+     * RoomRegistry.homeRoom hỏi từ thread đăng nhập.
+     */
+    boolean hasVacantSeat(String name) {
+        return vacantSeats.contains(name);
+    }
+
+    /**
+     * Người chơi kết nối lại vào ghế trống (sau khôi phục / mất kết nối): gắn handler, chỉ gửi riêng phần họ đã lỡ
+     * — vai, đồng đội Mafia, sống/chết. Pha + danh sách do PlayerHandler.enterRoom gửi tiếp.
+     */
+    private void reclaimSeat(Player p, PlayerHandler handler) {
+        String name = p.getName();
+        p.setHandler(handler);
+        handlers.put(name, handler);
+        LOG.info("[GameRoom] Seat reclaimed in {}: {}", id, name);
+        Role r = p.getRole();
+        if (gameStarted && r != Role.UNASSIGNED) {
+            handler.setRole(r);
+            handler.sendMessage("🎭 Role của bạn: " + r + " — " + r.getDescription());
+            handler.sendMessage("[ROLE_SELF] " + r.name());
+            if (r == Role.MAFIA) {
+                String team = players.values().stream()
+                        .filter(pl -> pl.getRole() == Role.MAFIA)
+                        .map(Player::getName)
+                        .collect(Collectors.joining(", "));
+                handler.sendMessage("🕵️‍♂️ Đồng đội Mafia của bạn: " + team);
+            }
+            if (!p.isAlive()) handler.sendMessage("☠️ Bạn đã chết!");
+        }
+        broadcast("🔄 " + name + " đã kết nối lại.");
+    }
+
+    /**
+     * Mất kết nối (không /quit): giữa ván thì giữ ghế graceMillis chờ /resume hoặc /login lại, trả true;
+     * ngoài ván (hoặc graceMillis <= 0) thì rời phòng ngay như removePlayer(), trả false.
+     * owner: RoomRegistry — hết hạn thì bỏ ghế khỏi bảng seats, phòng không còn ai thì thu hồi.
+     */
+    boolean holdSeat(String name, long graceMillis, RoomRegistry owner) {
+        Player p = players.get(name);
+        if (p == null || !gameStarted || graceMillis <= 0) {
+            removePlayer(name);
+            return false;
+        }
+        if (this.owner == null) this.owner = owner;
+        handlers.remove(name);
+        p.setHandler(null);
+        vacantSeats.add(name);
+        long holdId = ++holdSeq;
+        GameClock.Timer timer = timers.schedule(() -> execute(() -> expireHold(name, holdId)),
+                graceMillis, TimeUnit.MILLISECONDS);
+        Hold old = holds.put(name, new Hold(holdId, timer));
+        if (old != null) old.timer().cancel();
+        else ServerMetrics.SEATS_HELD.inc();
+        LOG.info("[GameRoom] Seat held in {}: {} ({} ms)", id, name, graceMillis);
+        broadcast("⏳ " + name + " mất kết nối — giữ chỗ " + (graceMillis + 999) / 1000 + " giây chờ quay lại.");
+        return true;
+    }
+
+    /** Hết hạn giữ ghế mà chưa ai quay lại: rời phòng hẳn. */
+    private void expireHold(String name, long holdId) {
+        Hold h = holds.get(name);
+        if (h == null || h.id() != holdId) return;
+        releaseHold(name);
+        if (!vacantSeats.contains(name)) return;
+        LOG.info("[GameRoom] Seat hold expired in {}: {}", id, name);
+        removePlayer(name);
+        if (players.isEmpty() && owner != null) owner.release(this);
     }
 
-    public synchronized void removePlayer(String name) {
+    private void releaseHold(String name) {
+        Hold h = holds.remove(name);
+        if (h == null) return;
+        h.timer().cancel();
+        ServerMetrics.SEATS_HELD.dec();
+    }
+
+    /**
+     * Dựng lại ván đang dở từ journal (RoomRegistry.restore, chạy trên loop của phòng mới tạo):
+     * mọi người ngồi ghế trống, vai + sống/chết như lúc crash, pha + timer do PhaseManager hẹn lại.
+     */
+    void restore(RoomImage img, RoomRegistry owner) {
+        this.owner = owner;
+        this.gameId = img.getGameId();
+        for (Map.Entry<String, Role> e : img.getRoles().entrySet()) {
+            Player p = new Player(e.getKey());
+            players.put(p.getName(), p);
+            index.add(p);
+            index.setRole(p, e.getValue());
+            index.setAlive(p, img.isAlive(p.getName()));
+            vacantSeats.add(p.getName());
+        }
+        playerCount = players.size();
+        roster.reset(index.alivePlayers());
+        gameStarted = true;
+        state = img.getState();
+        phaseManager.restore(img.getState(), img.isVoting(), img.getDeadline(), img.getVotes(), img.getNightActions());
+    }
+
+    /** Hết ván: bỏ các ghế khôi phục mà không ai quay lại; phòng trống thì trả cho RoomRegistry thu hồi. */
+    private void dropVacantSeats() {
+        for (String name : vacantSeats) {
+            releaseHold(name);
+            Player p = players.remove(name);
+            if (p != null) index.remove(p);
+            if (owner != null) owner.releaseSeat(name, this);
+        }
+        vacantSeats.clear();
+        playerCount = players.size();
+        if (players.isEmpty() && owner != null) owner.release(this);
+    }
+
+    /** Đánh dấu đóng nếu phòng trống (RoomRegistry gọi trước khi thu hồi). */
+    boolean closeIfEmpty() {
+        if (!players.isEmpty()) return false;
+        closed = true;
+        return true;
+    }
+
+    public void removePlayer(String name) {
         Player removed = players.remove(name);
         handlers.remove(name);
+        if (vacantSeats.remove(name) && owner != null) owner.releaseSeat(name, this); // hết hạn giữ ghế
+        releaseHold(name);
+        if (removed != null) {
+            if (gameStarted) events.playerLeft(id, gameId, name);
+            phaseManager.onSeatVacated(removed.getSeat()); // bỏ phiếu theo ghế trước khi trả ghế
+            index.remove(removed);
+        }
+        playerCount = players.size();
         if (removed != null) {
-            System.out.println("[GameRoom] Player removed: " + removed.getName());
+            LOG.info("[GameRoom] Player removed from {}: {}", id, name);
             broadcast("📤 Người chơi " + name + " đã rời phòng.");
-            broadcastPlayersAlive(); // UI
+            publishRoster("PLAYERS-", roster.remove(name), name); // UI
             checkWinCondition();     // quan trọng nếu tỉ lệ MA/OTH thay đổi
+            phaseManager.checkEarlyCompletion();
         }
     }
 
     /* ==================== Phase & State ==================== */
 
     /** Set state + phát "PHASE: ..." + prompt pending theo phase. */
-    public synchronized void setState(GameState newState) {
+    public void setState(GameState newState) {
         this.state = newState;
-        System.out.println("[GameRoom] State -> " + newState);
+        LOG.debug("[GameRoom] State {} -> {}", id, newState);
+        events.stateChanged(id, gameId, newState);
         broadcastPhase(newState);
         promptPendingForPhaseForAll();
     }
 
     /* ==================== Bắt đầu ván & chia vai ==================== */
 
-    public synchronized void startGame() {
+    public void startGame() {
         if (gameStarted) {
             broadcast("⚠️ Game đã bắt đầu.");
             return;
@@ -105,41 +350,30 @@ public class GameRoom {
         // Cho UI quên vai cũ để tránh leak khi rematch
         broadcast("RESET_ROLES");
 
+        // id ván: thời điểm bắt đầu (ms), luôn tăng trong phòng -> không trùng kể cả sau khi khởi động lại
+        gameId = Math.max(timers.currentTimeMillis(), gameId + 1);
+
         // Reset trạng thái người chơi trước khi random
         for (Player p : players.values()) {
-            p.setAlive(true);
-            p.setRole(Role.UNASSIGNED);
+            index.setAlive(p, true);
+            index.setRole(p, Role.UNASSIGNED);
         }
-        broadcastPlayersAlive();
+        roster.reset(index.alivePlayers());
+        publishRosterSnapshot();
 
         gameStarted = true;
         setState(GameState.DAY); // phát "PHASE: DAY" + prompt
 
-        // Xây pool role theo số người
-        final int playerCount = players.size();
-        List<Role> pool = new ArrayList<>(playerCount);
-
-        // Số mafia: 1 (<7), 2 (7–8), 3 (>=9)
-        int mafiaCount = (playerCount >= 9) ? 3 : (playerCount >= 7 ? 2 : 1);
-        for (int i = 0; i < mafiaCount; i++) pool.add(Role.MAFIA);
-
-        // Thêm các vai đặc biệt tối đa 1 mỗi loại (nếu còn slot)
-        if (pool.size() < playerCount) pool.add(Role.DOCTOR);
-        if (pool.size() < playerCount) pool.add(Role.DETECTIVE);
-        if (pool.size() < playerCount) pool.add(Role.BODYGUARD);
-        if (pool.size() < playerCount) pool.add(Role.JESTER);
-
-        // Phần còn lại là dân
-        while (pool.size() < playerCount) pool.add(Role.VILLAGER);
+        List<Role> pool = rolePool(players.size());
 
-        // Trộn & gán
-        Collections.shuffle(pool);
+        // Trộn (Fisher–Yates bằng random của phòng) & gán
+        for (int i = pool.size() - 1; i > 0; i--) Collections.swap(pool, i, random.nextInt(i + 1));
         Iterator<Role> it = pool.iterator();
 
         for (Player p : players.values()) {
             Role r = it.next();
-            p.setRole(r);
-            p.setAlive(true);
+            index.setRole(p, r);
+            index.setAlive(p, true);
 
             PlayerHandler h = p.getHandler();
             if (h != null) {
@@ -148,7 +382,7 @@ public class GameRoom {
                 h.sendMessage("🎭 Role của bạn: " + r + " — " + r.getDescription());
                 h.sendMessage("[ROLE_SELF] " + r.name());
             } else {
-                System.out.println("[GameRoom] " + p.getName() + " assigned role " + r);
+                LOG.debug("[GameRoom] {} assigned role {}", p.getName(), r);
             }
         }
 
@@ -165,118 +399,148 @@ public class GameRoom {
         }
 
         broadcast("✅ Trò chơi đã bắt đầu! Roles đã được phân phối. Bắt đầu Pha DAY (CHAT).");
-        System.out.println("=== Role assignment ===");
-        for (Player p : players.values()) System.out.println(" - " + p.getName() + " -> " + p.getRole());
+        if (LOG.isDebugEnabled()) {
+            String roles = players.values().stream()
+                    .map(p -> p.getName() + " -> " + p.getRole())
+                    .collect(Collectors.joining(", "));
+            LOG.debug("[GameRoom] Role assignment {}: {}", id, roles);
+        }
+        events.gameStarted(id, gameId, players.values());
 
-        broadcastPlayersAlive();   // UI: danh sách người sống để vote
+        publishRosterSnapshot();   // UI: danh sách người sống để vote (frame đã cache, không dựng lại)
         phaseManager.startDay();   // Ngày: CHAT -> VOTE -> RESOLVE (PhaseManager điều phối)
     }
 
+    /** Pool vai theo số người (chưa trộn) — simulator dùng để in thành phần khi so tỉ lệ thắng. */
+    public static List<Role> rolePool(int playerCount) {
+        List<Role> pool = new ArrayList<>(playerCount);
+
+        // Số mafia: 1 (<7), 2 (7–8), 3 (>=9)
+        int mafiaCount = (playerCount >= 9) ? 3 : (playerCount >= 7 ? 2 : 1);
+        for (int i = 0; i < mafiaCount; i++) pool.add(Role.MAFIA);
+
+        // Thêm các vai đặc biệt tối đa 1 mỗi loại (nếu còn slot)
+        if (pool.size() < playerCount) pool.add(Role.DOCTOR);
+        if (pool.size() < playerCount) pool.add(Role.DETECTIVE);
+        if (pool.size() < playerCount) pool.add(Role.BODYGUARD);
+        if (pool.size() < playerCount) pool.add(Role.JESTER);
+
+        // Phần còn lại là dân
+        while (pool.size() < playerCount) pool.add(Role.VILLAGER);
+        return pool;
+    }
+
     /* ==================== Wrappers tới PhaseManager ==================== */
 
-    public synchronized void startDayPhase() {
+    public void startDayPhase() {
         setState(GameState.DAY);
         phaseManager.startDay();
     }
 
-    public synchronized void openVotePhase() {
+    public void openVotePhase() {
         phaseManager.openVotePhase();
     }
 
-    public synchronized void resolveDayPhase() {
+    public void resolveDayPhase() {
         phaseManager.resolveDay();
         checkWinCondition(); // sau lynch/vote nên check ngay
     }
 
     /** Tương thích cũ: kết thúc NGÀY. */
-    public synchronized void endDayPhase() {
+    public void endDayPhase() {
         phaseManager.endDay();
         checkWinCondition();
     }
 
-    public synchronized void castVote(String voter, String target) {
+    public void castVote(String voter, String target) {
         phaseManager.castVote(voter, target);
     }
 
-    public synchronized void startNightPhase() {
+    public void startNightPhase() {
         setState(GameState.NIGHT);
         phaseManager.startNight();
     }
 
     /** Kết thúc ĐÊM: áp dụng kill/save/protect xong thì check win. */
-    public synchronized void endNightPhase() {
+    public void endNightPhase() {
         phaseManager.endNight();
         checkWinCondition();
     }
 
-    public synchronized void recordNightAction(String actor, String target) {
+    public void recordNightAction(String actor, String target) {
         phaseManager.recordNightAction(actor, target);
     }
 
     /** Cho PlayerHandler kiểm tra để “vote bằng cách gõ tên” */
-    public synchronized boolean isVotingOpen() {
+    public boolean isVotingOpen() {
         return phaseManager != null && phaseManager.isVotingOpen();
     }
 
     /* ==================== Kill & Win ==================== */
 
     /** Luôn dùng hàm này thay vì tự setAlive(false) ở nơi khác. */
-    public synchronized void killPlayer(String name) {
+    public void killPlayer(String name) {
         Player p = players.get(name);
         if (p != null && p.isAlive()) {
-            p.kill();
+            index.setAlive(p, false);
+            events.killed(id, gameId, name, false);
             PlayerHandler h = p.getHandler();
             if (h != null) h.sendMessage("☠️ Bạn đã chết!");
             broadcast("💀 " + name + " đã bị loại khỏi game.");
             broadcast("DEAD: " + name);   // UI hook: đánh dấu chết
-            broadcastPlayersAlive();      // UI hook: cập nhật danh sách
+            publishRoster("ALIVE-", roster.remove(name), name); // UI hook: cập nhật danh sách
             checkWinCondition();
         }
     }
 
+    /** Chết "im lặng" (Bodyguard hy sinh): không broadcast; caller tự checkWinCondition(). */
+    void markDead(Player p) {
+        if (p == null || !p.isAlive()) return;
+        index.setAlive(p, false);
+        events.killed(id, gameId, p.getName(), true);
+        // tăng seq nhưng không phát: client delta thấy hụt seq ở lần sau rồi tự xin snapshot,
+        // như client cũ chỉ thấy người này mất khỏi "PLAYERS:" ở lần cập nhật kế tiếp
+        roster.remove(p.getName());
+    }
+
     /**
      * Kiểm tra thắng/thua sau mọi thay đổi nhân sự.
      * - Dân thắng: KHÔNG còn Mafia
      * - Mafia thắng: Mafia ≥ người còn lại  <=>  2*mafiaAlive ≥ totalAlive
      */
-    public synchronized void checkWinCondition() {
+    public void checkWinCondition() {
         if (!gameStarted) return;
 
-        long mafiaAlive = players.values().stream()
-                .filter(p -> p.isAlive() && p.getRole() == Role.MAFIA)
-                .count();
+        // O(1): SeatIndex đã đếm sẵn
+        int mafiaAlive = index.aliveCount(Role.MAFIA);
+        int totalAlive = index.aliveCount();
 
-        long totalAlive = players.values().stream()
-                .filter(Player::isAlive)
-                .count();
-
-        System.out.println("[WinCheck] mafiaAlive=" + mafiaAlive + ", totalAlive=" + totalAlive);
+        LOG.debug("[WinCheck] {} mafiaAlive={}, totalAlive={}", id, mafiaAlive, totalAlive);
 
         if (mafiaAlive == 0) {
             broadcast("🎉 DÂN LÀNG THẮNG! Tất cả Mafia đã bị loại.");
-            endGame();
+            endGame("TOWN");
             return;
         }
         // ví dụ còn 2 người (1 MA + 1 khác): 2*1 >= 2 -> Mafia thắng
         if (mafiaAlive * 2 >= totalAlive) {
             broadcast("😈 MAFIA THẮNG! Số Mafia đã ≥ số người còn lại.");
-            endGame();
+            endGame("MAFIA");
         }
     }
 
-    /**
-     * Kết thúc game: dừng pha, lộ role, reset về lobby sạch (UI: PHASE: END -> LOBBY).
-     * Nếu PhaseManager có hàm resetForNewGameLobby() thì gọi qua reflection (không bắt buộc).
-     */
-    public synchronized void endGame() {
+    /** Kết thúc game: dừng pha, lộ role, reset về lobby sạch (UI: PHASE: END -> LOBBY). */
+    public void endGame() {
+        endGame("ABORTED");
+    }
+
+    /** endGame kèm kết quả cho journal: TOWN | MAFIA | JESTER | ABORTED. */
+    void endGame(String result) {
         this.gameStarted = false;
+        events.gameEnded(id, gameId, result);
 
-        // Dừng/Reset phase timers nếu PhaseManager có API này
-        try {
-            PhaseManager.class.getMethod("resetForNewGameLobby").invoke(phaseManager);
-        } catch (Exception ignore) {
-            // nếu không có method, vẫn tiếp tục; đảm bảo timer đã cancel ở endDay/endNight/kill
-        }
+        // Huỷ timer pha: ván có thể kết thúc giữa pha (người rời phòng) -> timer cũ không được bắn vào lobby / ván sau
+        phaseManager.shutdownScheduler();
 
         setState(GameState.END); // phát "PHASE: END"
 
@@ -286,12 +550,14 @@ public class GameRoom {
                 .collect(Collectors.joining(", "));
         broadcast("🏁 Trò chơi kết thúc. Vai: " + reveal);
 
-        // Reset về lobby
+        // Reset về lobby (ghế khôi phục không ai quay lại thì bỏ)
+        dropVacantSeats();
         for (Player p : players.values()) {
-            p.setRole(Role.UNASSIGNED);
-            p.setAlive(true);
+            index.setRole(p, Role.UNASSIGNED);
+            index.setAlive(p, true);
         }
-        broadcastPlayersAlive(); // UI
+        roster.reset(index.alivePlayers());
+        publishRosterSnapshot(); // UI
         setState(GameState.LOBBY);
 
         // Gợi ý rematch
@@ -300,42 +566,68 @@ public class GameRoom {
 
     /* ==================== Messaging ==================== */
 
-    public synchronized void sendToPlayer(String name, String msg) {
+    public void sendToPlayer(String name, String msg) {
         PlayerHandler h = handlers.get(name);
         if (h != null) h.sendMessage(msg);
     }
 
-    public synchronized void broadcast(String msg) {
-        System.out.println("[Broadcast] " + msg);
-        for (PlayerHandler h : handlers.values()) h.sendMessage(msg);
+    /**
+     * Gửi cho mọi người trong phòng. Mã hoá UTF-8 đúng 1 lần thành Frame rồi mọi handler dùng chung;
+     * mỗi handler chỉ xếp hàng, không có socket I/O trên loop của phòng.
+     */
+    public void broadcast(String msg) {
+        LOG.debug("[Broadcast] {}: {}", id, msg);
+        if (handlers.isEmpty()) return;
+        long t0 = System.nanoTime();
+        Frame frame = Frame.of(msg);
+        for (PlayerHandler h : handlers.values()) h.sendFrame(frame);
+        ServerMetrics.BROADCAST_SECONDS.recordSince(t0);
+        ServerMetrics.BROADCAST_RECIPIENTS.add(handlers.size());
+    }
+
+    /** Chat của người chơi: như broadcast() nhưng client đọc chậm có thể bị bỏ dòng cũ. */
+    public void broadcastChat(String msg) {
+        LOG.debug("[Broadcast] {}: {}", id, msg);
+        if (handlers.isEmpty()) return;
+        long t0 = System.nanoTime();
+        Frame frame = Frame.of(msg);
+        for (PlayerHandler h : handlers.values()) h.sendChat(frame);
+        ServerMetrics.BROADCAST_SECONDS.recordSince(t0);
+        ServerMetrics.BROADCAST_RECIPIENTS.add(handlers.size());
     }
 
     /* ==================== Helpers ==================== */
 
-    public synchronized boolean isAlive(String name) {
+    public boolean isAlive(String name) {
         Player p = players.get(name);
         return p != null && p.isAlive();
     }
 
-    public synchronized int getAliveCount() {
-        return (int) players.values().stream().filter(Player::isAlive).count();
+    public int getAliveCount() {
+        return index.aliveCount();
     }
 
-    public synchronized void printPlayers() {
+    public int getAliveCount(Role role) {
+        return index.aliveCount(role);
+    }
+
+    public void printPlayers() {
         System.out.println("=== Player list ===");
         for (Player p : players.values()) System.out.println(" - " + p);
     }
 
     /** Lấy handler theo tên */
-    public synchronized PlayerHandler getHandler(String name) { return handlers.get(name); }
+    public PlayerHandler getHandler(String name) {
+        return handlers.get(name);
+    }
 
     /** Lấy tất cả handler */
-    public synchronized Collection<PlayerHandler> getAllHandlers() {
+    public Collection<PlayerHandler> getAllHandlers() {
         return Collections.unmodifiableCollection(handlers.values());
     }
 
     /** Prompt pending cho tất cả player theo phase hiện tại */
-    public synchronized void promptPendingForPhaseForAll() {
+    public void promptPendingForPhaseForAll() {
         GameState s = getState();
         for (PlayerHandler h : handlers.values()) {
             h.setPendingForPhase(s);
@@ -343,22 +635,40 @@ public class GameRoom {
     }
 
     /** Dừng scheduler an toàn khi tắt server */
-    public synchronized void shutdown() {
+    public void shutdown() {
         try { phaseManager.shutdownScheduler(); } catch (Exception ignore) {}
     }
 
     /* ==================== UI hooks ==================== */
 
-    /** Phát "PLAYERS: a, b, c" (alive) để UI xây list + vote */
-    private void broadcastPlayersAlive() {
-        String csv = players.values().stream()
-                .filter(Player::isAlive)
-                .map(Player::getName)
-                .sorted(String::compareToIgnoreCase)
-                .collect(Collectors.joining(", "));
-        broadcast("PLAYERS: " + csv);
+    /**
+     * 1 người thay đổi: client delta nhận "<kind> <seq> <tên>", client cũ nhận "PLAYERS: ..." đầy đủ
+     * (CSV chỉ dựng 1 lần cho mỗi seq và chỉ khi còn client cũ trong phòng).
+     */
+    private void publishRoster(String kind, long seq, String name) {
+        String line = kind + " " + seq + " " + name;
+        LOG.debug("[Broadcast] {}: {}", id, line);
+        if (handlers.isEmpty()) return;
+        Frame delta = Frame.of(line);
+        for (PlayerHandler h : handlers.values()) {
+            h.sendFrame(h.wantsRosterDeltas() ? delta : roster.csvFrame());
+        }
     }
 
+    /** Đổi hàng loạt (bắt đầu/kết thúc ván): mọi client nhận bản đầy đủ — snapshot hoặc CSV. */
+    private void publishRosterSnapshot() {
+        if (LOG.isDebugEnabled()) LOG.debug("[Broadcast] {}: ROSTER {}", id, roster.seq());
+        for (PlayerHandler h : handlers.values()) {
+            h.sendFrame(h.wantsRosterDeltas() ? roster.snapshotFrame() : roster.csvFrame());
+        }
+    }
+
+    /** "ROSTER <seq>: ..." gửi riêng (/roster, vào phòng ở chế độ delta). */
+    public Frame rosterSnapshot() { return roster.snapshotFrame(); }
+
+    /** "PLAYERS: ..." gửi riêng cho client cũ. */
+    public Frame rosterCsv() { return roster.csvFrame(); }
+
     /** Phát "PHASE: ..." cho UI */
     private void broadcastPhase(GameState st) {
         String phase = switch (st) {
@@ -1,8 +1,10 @@
 package com.mafiaonline.server;
 
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
 
 /**
  * Quản lý pha chơi:
@@ -14,13 +16,25 @@ import java.util.stream.Collectors;
  *   [DAY][VOTE] <sec>
  *   [DAY] End of day
  *   [NIGHT] <sec>
+ *   VOTES: a=3,b=2        (bảng phiếu trực tiếp khi đang VOTE, gửi tối đa 1 lần / -Dvotes.throttle.ms)
  * để hiển thị phase + đồng hồ.
  *
+ * Luồng: mọi method chạy trên RoomLoop của phòng (xem GameRoom). Timer hẹn trên GameClock của phòng
+ * (TimerWheel dùng chung của server, không còn thread timer riêng mỗi phòng); hết hạn thì chỉ gửi task
+ * vào mailbox của phòng. Giờ (throttle VOTES, hạn chốt pha) cũng lấy từ GameClock.
+ * Task mang "thế hệ" timer lúc hẹn, nên timer đã bị huỷ (cancelScheduledTasks) mà lỡ nằm sẵn trong
+ * mailbox sẽ tự bỏ qua.
+ *
+ * Kết thúc sớm: khi mọi người còn sống đã vote (VOTE) hoặc mọi vai đêm còn sống đã hành động (NIGHT),
+ * pha được chốt sau -Dphase.early.grace.ms (mặc định 2000; 0 = ngay; âm = tắt, luôn chờ hết giờ).
+ *
  * Có thể override thời lượng bằng VM options khi chạy server:
  *   -Dday.chat.seconds=60 -Dday.vote.seconds=90 -Dnight.seconds=120
  */
 public class PhaseManager {
 
+    private static final Logger LOG = Log.get(PhaseManager.class);
+
     private final GameRoom room;
 
     /* ====== DAY subphase ====== */
@@ -28,21 +42,28 @@ public class PhaseManager {
     private DaySubPhase daySubPhase = DaySubPhase.CHAT;
 
     /* ====== State ====== */
-    // Vote ban ngày: voter -> target
-    private final Map<String, String> dayVotes = new HashMap<>();
-    // Hành động ban đêm: actor -> target
+    // Vote ban ngày / phiếu giết của Mafia ban đêm: theo số ghế (xem VoteTally)
+    private final VoteTally dayTally = new VoteTally();
+    private final VoteTally mafiaTally = new VoteTally();
+    // Hành động ban đêm của các vai còn lại: actor -> target
     private final Map<String, String> nightActions = new HashMap<>();
 
-    /* ====== Scheduler ====== */
-    private final ScheduledExecutorService scheduler =
-            Executors.newSingleThreadScheduledExecutor(r -> {
-                Thread t = new Thread(r, "phase-timer");
-                t.setDaemon(true);
-                return t;
-            });
-    private ScheduledFuture<?> chatTimer;
-    private ScheduledFuture<?> voteTimer;
-    private ScheduledFuture<?> nightTimer;
+    /* ====== Live VOTES (throttle) ====== */
+    private static final long VOTES_THROTTLE_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("votes.throttle.ms", 500));
+    private long lastVotesPushNanos;
+    private boolean votesFlushPending; // đã hẹn 1 lần gửi bù cuối cửa sổ throttle
+
+    /* ====== Timers (GameClock của phòng: TimerWheel dùng chung, hoặc đồng hồ ảo của simulator) ====== */
+    private final GameClock timers;
+    private GameClock.Timer chatTimer;
+    private GameClock.Timer voteTimer;
+    private GameClock.Timer nightTimer;
+    private GameClock.Timer earlyTimer; // chốt sớm (đã đủ người hành động)
+    private long timerGeneration; // tăng mỗi lần huỷ timer
+
+    /* ====== Kết thúc sớm ====== */
+    private static final long EARLY_GRACE_MS = Long.getLong("phase.early.grace.ms", 2000);
 
     /* ====== Durations (seconds) ====== */
     private volatile int CHAT_DURATION_SEC  = Integer.getInteger("day.chat.seconds", 60);
@@ -51,46 +72,50 @@ public class PhaseManager {
 
     public PhaseManager(GameRoom room) {
         this.room = room;
+        this.timers = room.getTimers();
     }
 
     /* ==================== DAY ==================== */
 
     /** Bắt đầu ban ngày với subphase CHAT. */
-    public synchronized void startDay() {
+    public void startDay() {
         cancelScheduledTasks();
-        dayVotes.clear();
+        dayTally.clear();
+        votesFlushPending = false;
         daySubPhase = DaySubPhase.CHAT;
 
         room.setState(GameState.DAY);
         room.broadcast("🌞 Ban ngày bắt đầu. Giai đoạn CHAT để thảo luận.");
         room.broadcast("[DAY][CHAT] " + CHAT_DURATION_SEC + " giây");
         room.promptPendingForPhaseForAll();
+        journalPhase(GameState.DAY, false, CHAT_DURATION_SEC);
 
         if (CHAT_DURATION_SEC > 0) {
-            chatTimer = scheduler.schedule(this::safeOpenVotePhase, CHAT_DURATION_SEC, TimeUnit.SECONDS);
+            chatTimer = schedule(this::safeOpenVotePhase, CHAT_DURATION_SEC);
         }
     }
 
     /** Mở giai đoạn VOTE (sau CHAT). Có thể gọi thủ công (admin). */
-    public synchronized void openVotePhase() {
+    public void openVotePhase() {
         if (room.getState() != GameState.DAY || daySubPhase != DaySubPhase.CHAT) return;
 
         daySubPhase = DaySubPhase.VOTE;
         room.broadcast("[DAY][VOTE] " + VOTE_DURATION_SEC + " giây");
         room.broadcast("🗳️ Giai đoạn VOTE mở: dùng /vote <username>");
+        journalPhase(GameState.DAY, true, VOTE_DURATION_SEC);
 
         if (VOTE_DURATION_SEC > 0) {
-            voteTimer = scheduler.schedule(this::safeResolveDay, VOTE_DURATION_SEC, TimeUnit.SECONDS);
+            voteTimer = schedule(this::safeResolveDay, VOTE_DURATION_SEC);
         }
     }
 
     /** Cho phép chỗ khác kiểm tra có đang mở VOTE không (để chặn /vote khi đang CHAT). */
-    public synchronized boolean isVotingOpen() {
+    public boolean isVotingOpen() {
         return room.getState() == GameState.DAY && daySubPhase == DaySubPhase.VOTE;
     }
 
     /** /vote voter -> target. */
-    public synchronized void castVote(String voter, String target) {
+    public void castVote(String voter, String target) {
         if (room.getState() != GameState.DAY) {
             room.sendToPlayer(voter, "❌ Chưa phải ban ngày.");
             return;
@@ -108,12 +133,53 @@ public class PhaseManager {
             return;
         }
 
-        dayVotes.put(voter, target);
+        dayTally.cast(room.getPlayer(voter).getSeat(), room.getPlayer(target).getSeat());
+        room.events().vote(room.getId(), room.getGameId(), voter, target);
         room.broadcast("🗳️ " + voter + " đã vote " + target + ".");
+        publishVotes();
+        checkEarlyCompletion();
+    }
+
+    /**
+     * Người chơi rời phòng (GameRoom gọi trước khi trả ghế): bỏ phiếu của ghế đó và phiếu bầu cho ghế đó,
+     * để ghế được người mới ngồi lại không "thừa hưởng" phiếu cũ.
+     */
+    void onSeatVacated(int seat) {
+        if (seat < 0) return;
+        boolean hadDayVotes = dayTally.voteOf(seat) >= 0 || dayTally.countOf(seat) > 0;
+        dayTally.removeSeat(seat);
+        mafiaTally.removeSeat(seat);
+        Player leaving = room.getPlayerAtSeat(seat);
+        if (leaving != null) {
+            nightActions.remove(leaving.getName());
+            nightActions.values().removeIf(t -> t.equals(leaving.getName()));
+        }
+        if (hadDayVotes && isVotingOpen()) publishVotes();
+    }
+
+    /** Gửi "VOTES: ..." ngay nếu đã qua cửa sổ throttle, nếu không thì hẹn 1 lần gửi bù cuối cửa sổ. */
+    private void publishVotes() {
+        if (votesFlushPending) return; // lần gửi bù sẽ lấy bảng mới nhất
+        long wait = lastVotesPushNanos + VOTES_THROTTLE_NANOS - timers.nanoTime();
+        if (wait <= 0) {
+            pushVotes();
+            return;
+        }
+        votesFlushPending = true;
+        timers.schedule(() -> room.execute(() -> {
+            if (!votesFlushPending) return; // đã sang ngày mới
+            votesFlushPending = false;
+            if (isVotingOpen()) pushVotes();
+        }), wait, TimeUnit.NANOSECONDS);
+    }
+
+    private void pushVotes() {
+        lastVotesPushNanos = timers.nanoTime();
+        room.broadcast("VOTES: " + dayTally.format(this::nameAtSeat));
     }
 
     /** Hết VOTE → chốt phiếu, xử tử nếu có, sang đêm. */
-    public synchronized void resolveDay() {
+    public void resolveDay() {
         cancelScheduledTasks(); // tránh timer cũ bắn muộn
 
         if (room.getState() != GameState.DAY) {
@@ -124,39 +190,32 @@ public class PhaseManager {
 
         room.broadcast("[DAY] End of day");
 
-        if (dayVotes.isEmpty()) {
+        if (dayTally.isEmpty()) {
             room.broadcast("📭 Không có vote nào. Không ai bị treo cổ.");
-            dayVotes.clear();
             startNight();
             return;
         }
 
-        // Đếm phiếu: target -> count
-        Map<String, Long> counts = dayVotes.values().stream()
-                .collect(Collectors.groupingBy(v -> v, Collectors.counting()));
+        // Bảng chốt (kể cả khi lần gửi bù throttle chưa kịp chạy)
+        votesFlushPending = false;
+        pushVotes();
 
-        long max = counts.values().stream().mapToLong(Long::longValue).max().orElse(0);
-        List<String> top = counts.entrySet().stream()
-                .filter(e -> e.getValue() == max)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-
-        if (top.size() > 1) {
+        if (dayTally.isTie()) {
             room.broadcast("⚖️ Vote hòa. Không ai bị treo cổ hôm nay.");
-            dayVotes.clear();
+            dayTally.clear();
             startNight();
             return;
         }
 
-        String targetName = top.get(0);
-        Player victim = room.getPlayer(targetName);
+        Player victim = room.getPlayerAtSeat(dayTally.leader());
+        dayTally.clear();
 
         if (victim == null || !victim.isAlive()) {
             room.broadcast("⚠️ Người bị vote treo cổ không hợp lệ hoặc đã chết. Không ai bị treo cổ.");
-            dayVotes.clear();
             startNight();
             return;
         }
+        String targetName = victim.getName();
 
         // Treo cổ (không tiết lộ vai) — dùng API GameRoom để UI cập nhật DEAD & kiểm tra thắng
         room.killPlayer(targetName);
@@ -164,12 +223,10 @@ public class PhaseManager {
         // Jester thắng ngay khi bị treo cổ
         if (victim.getRole() == Role.JESTER) {
             room.broadcast("🤡 JESTER THẮNG! " + targetName + " đã đạt mục tiêu khi bị treo cổ.");
-            room.endGame();
-            dayVotes.clear();
+            room.endGame("JESTER");
             return;
         }
 
-        dayVotes.clear();
         // Nếu game chưa kết thúc, sang đêm
         if (room.isGameStarted()) {
             startNight();
@@ -177,7 +234,7 @@ public class PhaseManager {
     }
 
     /** Giữ tương thích cũ: gọi endDay() sẽ chốt phiếu và sang đêm. */
-    public synchronized void endDay() {
+    public void endDay() {
         cancelScheduledTasks();
         resolveDay();
     }
@@ -187,22 +244,24 @@ public class PhaseManager {
 
     /* ==================== NIGHT ==================== */
 
-    public synchronized void startNight() {
+    public void startNight() {
         cancelScheduledTasks();
         nightActions.clear();
+        mafiaTally.clear();
         room.setState(GameState.NIGHT);
 
         room.broadcast("🌙 Ban đêm bắt đầu. Gõ theo prompt để hành động.");
         room.broadcast("[NIGHT] " + NIGHT_DURATION_SEC + " giây");
         room.promptPendingForPhaseForAll();
+        journalPhase(GameState.NIGHT, false, NIGHT_DURATION_SEC);
 
         if (NIGHT_DURATION_SEC > 0) {
-            nightTimer = scheduler.schedule(this::safeEndNight, NIGHT_DURATION_SEC, TimeUnit.SECONDS);
+            nightTimer = schedule(this::safeEndNight, NIGHT_DURATION_SEC);
         }
     }
 
     /** Ghi nhận hành động đêm (role-based), resolve ở endNight(). */
-    public synchronized void recordNightAction(String actorName, String targetName) {
+    public void recordNightAction(String actorName, String targetName) {
         if (room.getState() != GameState.NIGHT) {
             room.sendToPlayer(actorName, "❌ Chưa phải ban đêm.");
             return;
@@ -222,20 +281,25 @@ public class PhaseManager {
             return;
         }
 
-        nightActions.put(actorName, targetName);
+        if (actor.getRole() == Role.MAFIA) {
+            mafiaTally.cast(actor.getSeat(), room.getPlayer(targetName).getSeat());
+        } else {
+            nightActions.put(actorName, targetName);
+        }
+        room.events().nightAction(room.getId(), room.getGameId(), actorName, actor.getRole(), targetName);
         room.sendToPlayer(actorName, "✅ Đã ghi nhận hành động đêm: " + actorName + " -> " + targetName);
-        System.out.println("[PhaseManager] Night action: " + actorName + "(" + actor.getRole() + ") -> " + targetName);
+        LOG.debug("[PhaseManager] Night action: {}({}) -> {}", actorName, actor.getRole(), targetName);
+        checkEarlyCompletion();
     }
 
-    public synchronized void endNight() {
+    public void endNight() {
         cancelScheduledTasks();
         if (room.getState() != GameState.NIGHT) {
             room.broadcast("❌ Không ở ban đêm.");
             return;
         }
 
-        // Gom hành động
-        Map<String, Integer> mafiaVotesCount = new HashMap<>(); // target -> count
+        // Gom hành động (phiếu Mafia đã đếm sẵn trong mafiaTally)
         String doctorSave = null;                                // target cứu
         Map<String, String> bodyguardProtects = new HashMap<>(); // actor -> target
         List<String> detectiveChecks = new ArrayList<>();        // các mục tiêu bị điều tra
@@ -250,7 +314,6 @@ public class PhaseManager {
             if (r == null) continue;
 
             switch (r) {
-                case MAFIA     -> mafiaVotesCount.merge(target, 1, Integer::sum);
                 case DOCTOR    -> doctorSave = target;
                 case BODYGUARD -> bodyguardProtects.put(actor, target);
                 case DETECTIVE -> detectiveChecks.add(target);
@@ -261,16 +324,8 @@ public class PhaseManager {
         StringBuilder sb = new StringBuilder();
         sb.append("🌅 Trời sáng! Kết quả ban đêm:\n");
 
-        // Mục tiêu mafia (đa số)
-        String mafiaTarget = null;
-        if (!mafiaVotesCount.isEmpty()) {
-            long max = mafiaVotesCount.values().stream().mapToLong(Integer::longValue).max().orElse(0);
-            List<String> top = mafiaVotesCount.entrySet().stream()
-                    .filter(x -> x.getValue() == max)
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.toList());
-            if (top.size() == 1) mafiaTarget = top.get(0);
-        }
+        // Mục tiêu mafia (đa số duy nhất; hoà -> không ai)
+        String mafiaTarget = nameAtSeat(mafiaTally.leader());
 
         // Bodyguard che chắn -> hy sinh (không công bố)
         boolean protectedByBG = false;
@@ -292,7 +347,7 @@ public class PhaseManager {
                 Player bg = room.getPlayer(protector);
                 if (bg != null && bg.isAlive()) {
                     // BG hy sinh, KHÔNG broadcast chi tiết; (UI sẽ không biết — chủ đích "ẩn")
-                    bg.kill();
+                    room.markDead(bg);
                     someoneDied = true; // có người chết nhưng không nêu tên
                 }
             } else if (mafiaTarget.equalsIgnoreCase(doctorSave)) {
@@ -323,6 +378,7 @@ public class PhaseManager {
         room.broadcast(sb.toString());
 
         nightActions.clear();
+        mafiaTally.clear();
 
         // Kiểm tra thắng — nếu game kết thúc thì dừng; nếu chưa, sang ngày mới
         room.checkWinCondition();
@@ -339,39 +395,148 @@ public class PhaseManager {
         return room.isAlive(name);
     }
 
+    /* ==================== Kết thúc sớm ==================== */
+
+    /** Vai có hành động ban đêm (khớp lệnh /kill /save /investigate /protect của PlayerHandler). */
+    private static final Role[] NIGHT_ROLES = { Role.MAFIA, Role.DOCTOR, Role.DETECTIVE, Role.BODYGUARD };
+
+    /** Số người còn sống chưa vote (chỉ có nghĩa khi đang VOTE). Người đã vote chắc chắn còn sống. */
+    int outstandingVoters() {
+        return Math.max(0, room.getAliveCount() - dayTally.votes());
+    }
+
+    /** Số vai đêm còn sống chưa gửi hành động (chỉ có nghĩa khi đang NIGHT). */
+    int outstandingNightActors() {
+        int eligible = 0;
+        for (Role r : NIGHT_ROLES) eligible += room.getAliveCount(r);
+        return Math.max(0, eligible - mafiaTally.votes() - nightActions.size());
+    }
+
+    /**
+     * Hết người phải chờ -> hẹn chốt pha sau grace (1 lần mỗi pha; timer pha vẫn là giới hạn trên).
+     * GameRoom cũng gọi sau khi có người rời phòng (có thể người đó là người duy nhất chưa hành động).
+     */
+    void checkEarlyCompletion() {
+        if (EARLY_GRACE_MS < 0 || earlyTimer != null) return;
+        if (isVotingOpen()) {
+            if (outstandingVoters() > 0) return;
+            room.broadcast("⏩ Mọi người đã vote. Chốt phiếu" + graceText() + ".");
+            earlyTimer = scheduleMillis(this::safeResolveDay, EARLY_GRACE_MS);
+        } else if (room.getState() == GameState.NIGHT) {
+            if (outstandingNightActors() > 0) return;
+            room.broadcast("⏩ Mọi vai đêm đã hành động. Trời sáng" + graceText() + ".");
+            earlyTimer = scheduleMillis(this::safeEndNight, EARLY_GRACE_MS);
+        }
+    }
+
+    private static String graceText() {
+        if (EARLY_GRACE_MS == 0) return " ngay";
+        return (EARLY_GRACE_MS % 1000 == 0)
+                ? " sau " + (EARLY_GRACE_MS / 1000) + " giây"
+                : String.format(" sau %.1f giây", EARLY_GRACE_MS / 1000.0);
+    }
+
+    private String nameAtSeat(int seat) {
+        Player p = room.getPlayerAtSeat(seat);
+        return (p != null) ? p.getName() : null;
+    }
+
+    /** Hẹn action sau seconds giây; khi tới hạn action chạy trên loop của phòng (nếu chưa bị huỷ). */
+    private GameClock.Timer schedule(Runnable action, int seconds) {
+        return scheduleMillis(action, TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    private GameClock.Timer scheduleMillis(Runnable action, long millis) {
+        final long gen = timerGeneration;
+        return timers.schedule(() -> room.execute(() -> {
+            if (gen == timerGeneration) action.run();
+        }), millis, TimeUnit.MILLISECONDS);
+    }
+
     private void cancelScheduledTasks() {
+        timerGeneration++;
         try {
-            if (chatTimer  != null) { chatTimer.cancel(false);  chatTimer  = null; }
-            if (voteTimer  != null) { voteTimer.cancel(false);  voteTimer  = null; }
-            if (nightTimer != null) { nightTimer.cancel(false); nightTimer = null; }
+            if (chatTimer  != null) { chatTimer.cancel();  chatTimer  = null; }
+            if (voteTimer  != null) { voteTimer.cancel();  voteTimer  = null; }
+            if (nightTimer != null) { nightTimer.cancel(); nightTimer = null; }
+            if (earlyTimer != null) { earlyTimer.cancel(); earlyTimer = null; }
         } catch (Exception ignored) {}
     }
 
+    /** Ghi journal: pha bắt đầu + hạn chốt (epoch ms) để khôi phục sau crash hẹn lại đúng phần còn lại. */
+    private void journalPhase(GameState state, boolean voting, int seconds) {
+        long deadline = (seconds > 0) ? timers.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds) : 0;
+        room.events().phaseStarted(room.getId(), room.getGameId(), state, voting, deadline);
+    }
+
+    /* ==================== Khôi phục sau crash ==================== */
+
+    /** Thời gian tối thiểu còn lại của pha sau khi khôi phục (cho người chơi kịp kết nối lại). */
+    private static final long RECOVERY_MIN_MS =
+            TimeUnit.SECONDS.toMillis(Integer.getInteger("recovery.grace.seconds", 20));
+
+    /**
+     * Dựng lại pha đang dở từ journal (GameRoom.restore gọi sau khi người chơi + vai đã ngồi lại ghế):
+     * subphase, phiếu ngày / hành động đêm đang chờ, và hẹn lại phần thời gian còn lại của pha
+     * (tối thiểu -Drecovery.grace.seconds, mặc định 20).
+     */
+    void restore(GameState state, boolean voting, long deadlineMillis,
+                 Map<String, String> votes, Map<String, String> actions) {
+        cancelScheduledTasks();
+        dayTally.clear();
+        mafiaTally.clear();
+        nightActions.clear();
+        votesFlushPending = false;
+
+        long remaining = (deadlineMillis > 0)
+                ? Math.max(deadlineMillis - timers.currentTimeMillis(), RECOVERY_MIN_MS)
+                : -1;
+        if (state == GameState.DAY) {
+            daySubPhase = voting ? DaySubPhase.VOTE : DaySubPhase.CHAT;
+            if (voting) {
+                for (Map.Entry<String, String> v : votes.entrySet()) {
+                    Player voter = room.getPlayer(v.getKey()), target = room.getPlayer(v.getValue());
+                    if (voter != null && target != null) dayTally.cast(voter.getSeat(), target.getSeat());
+                }
+                if (remaining >= 0) voteTimer = scheduleMillis(this::safeResolveDay, remaining);
+            } else if (remaining >= 0) {
+                chatTimer = scheduleMillis(this::safeOpenVotePhase, remaining);
+            }
+        } else if (state == GameState.NIGHT) {
+            for (Map.Entry<String, String> a : actions.entrySet()) {
+                Player actor = room.getPlayer(a.getKey()), target = room.getPlayer(a.getValue());
+                if (actor == null || target == null) continue;
+                if (actor.getRole() == Role.MAFIA) mafiaTally.cast(actor.getSeat(), target.getSeat());
+                else nightActions.put(actor.getName(), target.getName());
+            }
+            if (remaining >= 0) nightTimer = scheduleMillis(this::safeEndNight, remaining);
+        }
+    }
+
     /* ==================== CONFIG API ==================== */
 
     /** Đổi thời gian CHAT (giây). */
-    public synchronized void setChatDurationSec(int seconds) {
+    public void setChatDurationSec(int seconds) {
         this.CHAT_DURATION_SEC = Math.max(0, seconds);
     }
 
     /** Đổi thời gian VOTE (giây). */
-    public synchronized void setVoteDurationSec(int seconds) {
+    public void setVoteDurationSec(int seconds) {
         this.VOTE_DURATION_SEC = Math.max(0, seconds);
     }
 
     /** Đổi thời gian NIGHT (giây). */
-    public synchronized void setNightDurationSec(int seconds) {
+    public void setNightDurationSec(int seconds) {
         this.NIGHT_DURATION_SEC = Math.max(0, seconds);
     }
 
     /** Tương thích cũ: setDayDurationSec() = đổi phần CHAT. */
-    public synchronized void setDayDurationSec(int seconds) {
+    public void setDayDurationSec(int seconds) {
         setChatDurationSec(seconds);
     }
 
-    /** Gọi khi tắt server để dừng scheduler an toàn. */
-    public synchronized void shutdownScheduler() {
+    /** Gọi khi thu hồi phòng / tắt server: huỷ timer của phòng (TimerWheel dùng chung vẫn chạy). */
+    public void shutdownScheduler() {
         cancelScheduledTasks();
-        try { scheduler.shutdownNow(); } catch (Exception ignored) {}
     }
 }
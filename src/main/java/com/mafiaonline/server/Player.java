@@ -8,6 +8,7 @@ public class Player {
     private Role role = Role.UNASSIGNED;
     private boolean alive = true;
     private PlayerHandler handler = null;
+    private int seat = -1;            // ghế trong SeatIndex của phòng (-1: chưa ngồi)
 
     public Player(String name) {
         this.id = UUID.randomUUID().toString();
@@ -24,6 +25,9 @@ public class Player {
     public synchronized void setAlive(boolean alive) { this.alive = alive; }
     public synchronized void kill() { this.alive = false; }
 
+    public int getSeat() { return seat; }
+    void setSeat(int seat) { this.seat = seat; }
+
     public synchronized PlayerHandler getHandler() { return handler; }
     public synchronized void setHandler(PlayerHandler handler) { this.handler = handler; }
 
@@ -1,242 +1,532 @@
 package com.mafiaonline.server;
 
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
 import com.mafiaonline.server.auth.AuthService;
+import com.mafiaonline.server.metrics.ServerMetrics;
+import com.mafiaonline.server.net.Connection;
+import com.mafiaonline.server.net.Frame;
+import com.mafiaonline.server.net.LineHandler;
+import com.mafiaonline.server.net.RateLimiter;
+import com.mafiaonline.server.net.RateLimits;
+import com.mafiaonline.server.net.SocketConnection;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.Comparator;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
- * PlayerHandler (TCP) — mỗi client một thread.
+ * PlayerHandler (TCP) — logic lệnh cho một client.
+ * - Chế độ blocking: mỗi client một thread chạy run() đọc socket (platform hoặc virtual, xem SessionThreads)
+ * - Chế độ NIO: không start thread; NioServer gọi onOpen/onLine/onClose trên event loop
  * Bản dành cho chế độ Bridge (WS<->TCP): KHÔNG phụ thuộc WsIntegratedServer.
  * Để web UI cập nhật, handler sẽ broadcast một số dòng định dạng:
  *   - "PLAYERS: name1, name2, ..."  (DANH SÁCH CÒN SỐNG)
  *   - "PHASE: DAY|NIGHT|LOBBY|END"
  *   - "DEAD: <name>" (được GameRoom bắn khi kill)
+ *   - "ROOM: <id>" (gửi riêng khi vào phòng), "ROOMS: ..." (trả lời /rooms)
+ *   - /roster delta: thay "PLAYERS:" bằng "PLAYERS+/PLAYERS-/ALIVE- <seq> <tên>" + snapshot "ROSTER <seq>: ...";
+ *     client thấy seq nhảy cóc thì gửi /roster để lấy snapshot (mặc định vẫn là CSV cho client cũ)
+ * Nhiều phòng: login xong vào phòng mặc định của RoomRegistry; /create, /join <id>, /leave để đổi phòng.
+ * Luồng: /login, /register nộp việc băm cho executor của AuthService và trả lời khi xong (thread đọc / event loop
+ * không chờ; dòng gõ trong lúc đó xếp sau theo thứ tự); sau login mọi lệnh/chat/ngắt kết nối được gửi vào mailbox
+ * RoomLoop của phòng hiện tại (onRoomLoop) -> role/pending/room chỉ bị sửa trên loop, theo đúng thứ tự gõ.
+ * Mỗi dòng trừ token bucket theo IP + tài khoản (RateLimits) ngay trên thread đọc: dòng vượt giới hạn bị bỏ trước khi
+ * tới executor băm hay broadcast của phòng.
  */
-public class PlayerHandler extends Thread {
+public class PlayerHandler implements Runnable, LineHandler {
+
+    private static final Logger LOG = Log.get(PlayerHandler.class);
     // ===== Auth =====
     private static final AuthService AUTH = new AuthService();
+
+    /** Cho hook tắt server: ghi nốt thay đổi tài khoản đang chờ. */
+    static AuthService auth() { return AUTH; }
+
     private volatile boolean authenticated = false;
     private String username = null;   // username sau khi login
+    /**
+     * /login, /register trả kết quả bất đồng bộ (executor băm của AuthService). Khi còn việc đang chờ,
+     * dòng gõ tiếp được xếp sau nó (authTail) thay vì chặn thread đọc / event loop — thứ tự gõ được giữ.
+     * Chỉ thread đọc của phiên gán authTail; authInFlight chỉ được đụng bởi dòng đang được xử lý.
+     */
+    private static final CompletableFuture<Void> AUTH_IDLE = CompletableFuture.completedFuture(null);
+    private static final int MAX_LINES_WAITING_AUTH = 32;
+    private volatile CompletableFuture<Void> authTail = AUTH_IDLE;
+    private CompletableFuture<Void> authInFlight;
+    private final AtomicInteger linesWaitingAuth = new AtomicInteger();
+    private volatile boolean closed;
+    /**
+     * Phiên rớt mạng (không /quit) giữa ván: ghế được giữ -Dsession.grace.seconds chờ /resume <token> hoặc /login lại.
+     * /quit thì rời phòng ngay và thu hồi token. sessionClosed xong khi phiên đã rời/giữ ghế và nhả tên — bị /resume
+     * thay (evict) ngoài ván thì kèm phòng vừa rời để phiên mới vào lại đó, còn lại null.
+     */
+    private static final long GRACE_MILLIS = Long.getLong("session.grace.seconds", 90) * 1000;
+    private static final long EVICT_TIMEOUT_MS = 3000;
+    private volatile boolean quitting;
+    private volatile boolean evicted;
+    private final CompletableFuture<GameRoom> sessionClosed = new CompletableFuture<>();
+
+    // ===== Rate limit (RateLimits) =====
+    private String ipKey;             // null: proxy tin cậy (WS bridge) — bridge đã giới hạn theo IP thật
+    private final RateLimiter.Bucket chatBucket = RateLimits.CHAT_ACCOUNT.bucket();       // 1 phiên = 1 tài khoản
+    private final RateLimiter.Bucket commandBucket = RateLimits.COMMAND_ACCOUNT.bucket();
+    private boolean throttleNotified; // chỉ báo 1 lần cho mỗi đợt dòng bị bỏ
 
     // ===== Networking =====
-    private final Socket socket;
-    private final GameRoom room;
-    private PrintWriter out;
-    private BufferedReader in;
+    private final Socket socket;      // null khi chạy qua NIO
+    private final RoomRegistry rooms;
+    private volatile GameRoom room;   // null trước khi login; đổi khi /join, /create, /leave
+    private volatile Connection conn;
 
     // ===== Game state =====
     private String playerName;        // trùng username sau khi login
     private Role role = Role.UNASSIGNED;
+    private boolean rosterDeltas = false; // bật bằng /roster delta (chỉ đổi trên loop phòng)
+
+    /** Tách lệnh: "/VOTE  bob " -> ("/vote", "bob"). Pattern biên dịch 1 lần (String.split("\\s+") biên dịch lại mỗi dòng). */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public record Command(String name, String arg) {
+        /** line đã trim; name viết thường, arg đã trim ("" nếu không có). */
+        public static Command parse(String line) {
+            String[] parts = WHITESPACE.split(line, 2);
+            return new Command(parts[0].toLowerCase(), (parts.length > 1) ? parts[1].trim() : "");
+        }
+    }
 
     // Trạng thái chờ hành động: gõ 1 từ (tên) để thực hiện
     private enum PendingAction { NONE, VOTE, KILL, SAVE, INVESTIGATE, PROTECT }
     private PendingAction pending = PendingAction.NONE;
+    private boolean opened;
 
-    public PlayerHandler(Socket socket, GameRoom room) {
-        super("player-" + (socket != null ? socket.getPort() : 0));
+    public PlayerHandler(Socket socket, RoomRegistry rooms) {
         this.socket = socket;
-        this.room = room;
+        this.rooms = rooms;
+    }
+
+    /** Dùng cho transport không cần thread riêng (NIO): output đi qua Connection có sẵn. */
+    public PlayerHandler(Connection conn, RoomRegistry rooms) {
+        this.socket = null;
+        this.conn = conn;
+        this.rooms = rooms;
     }
 
+    /** Chế độ blocking: thread của phiên đọc socket từng dòng rồi giao cho onLine(). */
     @Override
     public void run() {
         try {
-            in  = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
-
-            // Chào mừng + hướng dẫn auth
-            out.println("=== Mafia-Online Server ===");
-            out.println("Vui lòng Đăng ký/Đăng nhập trước khi vào phòng.");
-            out.println("• Đăng ký: dùng giao diện client (nút Register) hoặc gõ: /register <username> <password>");
-            out.println("• Đăng nhập: dùng giao diện client (nút Login) hoặc gõ: /login <username> <password>");
+            conn = new SocketConnection(socket);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            onOpen();
 
             String line;
             while ((line = in.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-
-                // ======= CHƯA LOGIN: chỉ cho phép /register, /login, /quit, /help =======
-                if (!authenticated) {
-                    if (line.startsWith("/register ")) {
-                        handleRegister(line);
-                        continue;
-                    } else if (line.startsWith("/login ")) {
-                        if (handleLogin(line)) {
-                            // Sau khi login thành công, thêm vào phòng & thông báo
-                            this.playerName = this.username;
-                            room.addPlayer(playerName, this);
-                            sendMessage("[AUTH_OK] Đăng nhập thành công. Chào " + username + "!");
-                            room.broadcast("👤 " + playerName + " đã tham gia phòng.");
-                            // Cập nhật UI
-                            broadcastPlayersAlive();
-                            broadcastPhaseSimple();
-                            room.promptPendingForPhaseForAll();
-                        }
-                        continue;
-                    } else if (line.equalsIgnoreCase("/help")) {
-                        sendAuthHelp();
-                        continue;
-                    } else if (line.equalsIgnoreCase("/quit")) {
-                        sendMessage("Goodbye.");
-                        break;
+                if (!onLine(line)) break;
+            }
+        } catch (IOException e) {
+            LOG.warn("[PlayerHandler] Lỗi socket cho {} : {}", playerName, e.getMessage());
+        } finally {
+            // writer ghi nốt phần đã xếp hàng (vd "Goodbye.") rồi tự đóng socket
+            if (conn != null) conn.close();
+            else try { socket.close(); } catch (Exception ignored) {}
+            onClose();
+        }
+    }
+
+    /* ==================== LineHandler (dùng chung mọi transport) ==================== */
+
+    @Override
+    public void onOpen() {
+        opened = true;
+        ipKey = RateLimits.ipKey(conn.remoteAddress());
+        ServerMetrics.CONNECTIONS_OPEN.inc();
+        ServerMetrics.CONNECTIONS_TOTAL.inc();
+        // Chào mừng + hướng dẫn auth
+        sendMessage("=== Mafia-Online Server ===");
+        sendMessage("Vui lòng Đăng ký/Đăng nhập trước khi vào phòng.");
+        sendMessage("• Đăng ký: dùng giao diện client (nút Register) hoặc gõ: /register <username> <password>");
+        sendMessage("• Đăng nhập: dùng giao diện client (nút Login) hoặc gõ: /login <username> <password>");
+    }
+
+    /** Xử lý 1 dòng lệnh/chat. Trả false khi client /quit. */
+    @Override
+    public boolean onLine(String line) {
+        line = line.trim();
+        if (line.isEmpty()) return true;
+
+        CompletableFuture<Void> tail = authTail;
+        if (!tail.isDone()) {
+            if (linesWaitingAuth.incrementAndGet() > MAX_LINES_WAITING_AUTH) {
+                linesWaitingAuth.decrementAndGet();
+                sendMessage("[AUTH_FAIL] Đang xử lý yêu cầu trước, vui lòng chờ.");
+                return true;
+            }
+            final String queued = line;
+            authTail = tail.thenCompose(v -> replay(queued));
+            return true;
+        }
+        boolean keep = dispatch(line);
+        authTail = takeAuthInFlight();
+        return keep;
+    }
+
+    /** Dòng đã xếp sau 1 /login, /register — chạy trên thread vừa hoàn tất việc trước đó. */
+    private CompletableFuture<Void> replay(String line) {
+        linesWaitingAuth.decrementAndGet();
+        if (closed) return AUTH_IDLE;
+        try {
+            if (!dispatch(line)) conn.close(); // /quit: transport tự gọi onClose()
+        } catch (RuntimeException e) {
+            LOG.warn("[PlayerHandler] Lỗi xử lý dòng của {}: {}", conn.remoteAddress(), e.getMessage(), e);
+        }
+        return takeAuthInFlight();
+    }
+
+    private CompletableFuture<Void> takeAuthInFlight() {
+        CompletableFuture<Void> f = authInFlight;
+        authInFlight = null;
+        return (f == null) ? AUTH_IDLE : f;
+    }
+
+    private boolean dispatch(String line) {
+        // ======= CHƯA LOGIN: chỉ cho phép /register, /login, /resume, /quit, /help =======
+        if (!authenticated) {
+            if (line.startsWith("/register ")) {
+                handleRegister(line);
+                return true;
+            } else if (line.startsWith("/login ")) {
+                handleLogin(line);
+                return true;
+            } else if (line.startsWith("/resume ")) {
+                handleResume(line);
+                return true;
+            } else if (line.equalsIgnoreCase("/help")) {
+                sendAuthHelp();
+                return true;
+            } else if (line.equalsIgnoreCase("/quit")) {
+                sendMessage("Goodbye.");
+                return false;
+            } else {
+                if (allowLine(line)) sendAuthHelp();
+                return true;
+            }
+        }
+
+        // ======= ĐÃ LOGIN: /quit kết thúc phiên ngay trên thread đọc, còn lại giao cho loop của phòng =======
+        if (Command.parse(line).name().equals("/quit")) {
+            quitting = true;              // rời phòng ngay, không giữ ghế
+            AUTH.revokeSessions(username);
+            sendMessage("Goodbye.");
+            return false;
+        }
+        if (!allowLine(line)) return true;
+        final String input = line;
+        final long receivedNanos = System.nanoTime();
+        onRoomLoop(() -> {
+            handleInRoom(input);
+            ServerMetrics.command(input).recordSince(receivedNanos);
+        });
+        return true;
+    }
+
+    /** Lệnh và chat sau khi login — luôn chạy trên loop của phòng hiện tại. */
+    private void handleInRoom(String line) {
+        if (line.startsWith("/")) {
+            final Command command = Command.parse(line);
+            final String cmd = command.name();
+            final String arg = command.arg();
+
+            switch (cmd) {
+                case "/help" -> {
+                    sendMessage("Lệnh: /help, /players, /role, /start, /day, /endday, /night, /endnight, /vote <tên>,");
+                    sendMessage("       /kill <tên> (Mafia), /save <tên> (Doctor), /investigate <tên> (Detective), /protect <tên> (Bodyguard), /quit");
+                    sendMessage("Phòng: /rooms, /create, /join <id>, /leave (về phòng " + RoomRegistry.DEFAULT_ROOM_ID + ")");
+                    sendMessage("Danh sách: /roster [delta|csv] (delta: chỉ gửi thay đổi kèm seq)");
+                }
+
+                case "/roster" -> {
+                    switch (arg.toLowerCase()) {
+                        case "delta" -> { rosterDeltas = true;  sendFrame(room.rosterSnapshot()); }
+                        case "csv", "full" -> { rosterDeltas = false; sendFrame(room.rosterCsv()); }
+                        default -> sendFrame(rosterDeltas ? room.rosterSnapshot() : room.rosterCsv());
+                    }
+                }
+
+                case "/rooms" -> sendMessage(rooms.describe() + " | bạn đang ở: " + room.getId());
+
+                case "/create" -> switchRoom(rooms.create());
+
+                case "/join" -> {
+                    GameRoom target = rooms.get(arg);
+                    if (arg.isEmpty()) sendMessage("❌ Cú pháp: /join <id> (xem /rooms)");
+                    else if (target == room) sendMessage("ℹ️ Bạn đang ở phòng " + arg + ".");
+                    else if (target == null) sendMessage("❌ Không tìm thấy phòng '" + arg + "' (xem /rooms).");
+                    else switchRoom(target);
+                }
+
+                case "/leave" -> {
+                    if (room == rooms.defaultRoom()) sendMessage("ℹ️ Bạn đang ở phòng mặc định.");
+                    else switchRoom(rooms.defaultRoom());
+                }
+
+                case "/start" -> {
+                    room.startGame();        // tự phát danh sách còn sống
+                    broadcastPhaseSimple();
+                }
+
+                case "/startday", "/day" -> {
+                    room.startDayPhase();
+                    broadcastPhase("DAY");
+                }
+                case "/endday" -> {
+                    room.endDayPhase();
+                    broadcastPhase("DAY"); // web lấy chữ đầu (DAY)
+                }
+
+                case "/startnight", "/night" -> {
+                    room.startNightPhase();
+                    broadcastPhase("NIGHT");
+                }
+                case "/endnight" -> {
+                    room.endNightPhase();
+                    broadcastPhase("NIGHT");
+                }
+
+                case "/vote" -> {
+                    if (arg.isEmpty()) {
+                        sendMessage("❌ Cú pháp: /vote <tên>");
                     } else {
-                        sendAuthHelp();
-                        continue;
+                        room.castVote(playerName, arg);
                     }
+                    pending = PendingAction.NONE;
+                }
+
+                case "/kill" -> {
+                    if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /kill <tên>"); }
+                    else if (getRole() == Role.MAFIA) { room.recordNightAction(playerName, arg); }
+                    else { sendMessage("❌ Chỉ Mafia mới có thể dùng /kill."); }
+                    pending = PendingAction.NONE;
+                }
+
+                case "/save" -> {
+                    if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /save <tên>"); }
+                    else if (getRole() == Role.DOCTOR) { room.recordNightAction(playerName, arg); }
+                    else { sendMessage("❌ Chỉ Doctor mới có thể dùng /save."); }
+                    pending = PendingAction.NONE;
+                }
+
+                case "/investigate" -> {
+                    if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /investigate <tên>"); }
+                    else if (getRole() == Role.DETECTIVE) { room.recordNightAction(playerName, arg); }
+                    else { sendMessage("❌ Chỉ Detective mới có thể dùng /investigate."); }
+                    pending = PendingAction.NONE;
+                }
+
+                case "/protect" -> {
+                    if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /protect <tên>"); }
+                    else if (getRole() == Role.BODYGUARD) { room.recordNightAction(playerName, arg); }
+                    else { sendMessage("❌ Chỉ Bodyguard mới có thể dùng /protect."); }
+                    pending = PendingAction.NONE;
                 }
 
-                // ======= ĐÃ LOGIN: xử lý lệnh và chat =======
-                if (line.startsWith("/")) {
-                    final String[] parts = line.split("\\s+", 2);
-                    final String cmd = parts[0].toLowerCase();
-                    final String arg = (parts.length > 1) ? parts[1].trim() : "";
-
-                    switch (cmd) {
-                        case "/help" -> {
-                            sendMessage("Lệnh: /help, /players, /role, /start, /day, /endday, /night, /endnight, /vote <tên>,");
-                            sendMessage("       /kill <tên> (Mafia), /save <tên> (Doctor), /investigate <tên> (Detective), /protect <tên> (Bodyguard), /quit");
-                        }
-
-                        case "/start" -> {
-                            room.startGame();
-                            broadcastPlayersAlive(); // UI: danh sách còn sống khi game bắt đầu
-                            broadcastPhaseSimple();
-                        }
-
-                        case "/startday", "/day" -> {
-                            room.startDayPhase();
-                            broadcastPhase("DAY");
-                        }
-                        case "/endday" -> {
-                            room.endDayPhase();
-                            broadcastPhase("DAY"); // web lấy chữ đầu (DAY)
-                        }
-
-                        case "/startnight", "/night" -> {
-                            room.startNightPhase();
-                            broadcastPhase("NIGHT");
-                        }
-                        case "/endnight" -> {
-                            room.endNightPhase();
-                            broadcastPhase("NIGHT");
-                        }
-
-                        case "/vote" -> {
-                            if (arg.isEmpty()) {
-                                sendMessage("❌ Cú pháp: /vote <tên>");
-                            } else {
-                                room.castVote(playerName, arg);
-                            }
-                            pending = PendingAction.NONE;
-                        }
-
-                        case "/kill" -> {
-                            if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /kill <tên>"); }
-                            else if (getRole() == Role.MAFIA) { room.recordNightAction(playerName, arg); }
-                            else { sendMessage("❌ Chỉ Mafia mới có thể dùng /kill."); }
-                            pending = PendingAction.NONE;
-                        }
-
-                        case "/save" -> {
-                            if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /save <tên>"); }
-                            else if (getRole() == Role.DOCTOR) { room.recordNightAction(playerName, arg); }
-                            else { sendMessage("❌ Chỉ Doctor mới có thể dùng /save."); }
-                            pending = PendingAction.NONE;
-                        }
-
-                        case "/investigate" -> {
-                            if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /investigate <tên>"); }
-                            else if (getRole() == Role.DETECTIVE) { room.recordNightAction(playerName, arg); }
-                            else { sendMessage("❌ Chỉ Detective mới có thể dùng /investigate."); }
-                            pending = PendingAction.NONE;
-                        }
-
-                        case "/protect" -> {
-                            if (arg.isEmpty()) { sendMessage("❌ Cú pháp: /protect <tên>"); }
-                            else if (getRole() == Role.BODYGUARD) { room.recordNightAction(playerName, arg); }
-                            else { sendMessage("❌ Chỉ Bodyguard mới có thể dùng /protect."); }
-                            pending = PendingAction.NONE;
-                        }
-
-                        case "/players" -> sendMessage(
-                                "Players:" + room.getPlayersAll().stream()
-                                        .map(Player::toString)
-                                        .reduce("", (a, b) -> a + "\n" + b)
-                        );
-
-                        case "/role" -> {
+                case "/players" -> sendMessage(
+                        "Players:" + room.getPlayersAll().stream()
+                                .map(Player::toString)
+                                .reduce("", (a, b) -> a + "\n" + b)
+                );
+
+                case "/role" -> {
     sendMessage("🎭 Role: " + getRole());
     // Thêm tín hiệu cho web
     Role rr = getRole();
     if (rr != null) sendMessage("[ROLE_SELF] " + rr.name());
 }
 
-                        case "/quit" -> {
-                            sendMessage("Goodbye.");
-                            break;
-                        }
-
-                        default -> sendMessage("❌ Lệnh không hợp lệ: " + cmd);
+                default -> sendMessage("❌ Lệnh không hợp lệ: " + cmd);
+            }
+        } else {
+            // ====== INPUT THƯỜNG (KHÔNG /) ======
+            GameState s = room.getState();
+
+            // Nếu đang chờ action và người chơi gõ 1 token (không có khoảng trắng) => coi là tên mục tiêu
+            if (pending != PendingAction.NONE && !line.contains(" ")) {
+                switch (pending) {
+                    case VOTE -> room.castVote(playerName, line);
+                    case KILL -> {
+                        if (getRole() == Role.MAFIA) room.recordNightAction(playerName, line);
+                        else sendMessage("❌ Bạn không phải Mafia.");
                     }
-                } else {
-                    // ====== INPUT THƯỜNG (KHÔNG /) ======
-                    GameState s = room.getState();
-
-                    // Nếu đang chờ action và người chơi gõ 1 token (không có khoảng trắng) => coi là tên mục tiêu
-                    if (pending != PendingAction.NONE && !line.contains(" ")) {
-                        switch (pending) {
-                            case VOTE -> room.castVote(playerName, line);
-                            case KILL -> {
-                                if (getRole() == Role.MAFIA) room.recordNightAction(playerName, line);
-                                else sendMessage("❌ Bạn không phải Mafia.");
-                            }
-                            case SAVE -> {
-                                if (getRole() == Role.DOCTOR) room.recordNightAction(playerName, line);
-                                else sendMessage("❌ Bạn không phải Doctor.");
-                            }
-                            case INVESTIGATE -> {
-                                if (getRole() == Role.DETECTIVE) room.recordNightAction(playerName, line);
-                                else sendMessage("❌ Bạn không phải Detective.");
-                            }
-                            case PROTECT -> {
-                                if (getRole() == Role.BODYGUARD) room.recordNightAction(playerName, line);
-                                else sendMessage("❌ Bạn không phải Bodyguard.");
-                            }
-                            default -> {}
-                        }
-                        pending = PendingAction.NONE;
-                        continue;
+                    case SAVE -> {
+                        if (getRole() == Role.DOCTOR) room.recordNightAction(playerName, line);
+                        else sendMessage("❌ Bạn không phải Doctor.");
                     }
-
-                    // Không có pending hoặc nhập không phải 1 từ
-                    if (s == GameState.NIGHT) {
-                        // 🚫 CẤM CHAT BAN ĐÊM
-                        sendMessage("🌙 Ban đêm không thể chat. Gõ tên để hành động theo vai trò của bạn.");
-                    } else {
-                        // Ban ngày: cho phép chat bình thường
-                        room.broadcast(playerName + ": " + line);
+                    case INVESTIGATE -> {
+                        if (getRole() == Role.DETECTIVE) room.recordNightAction(playerName, line);
+                        else sendMessage("❌ Bạn không phải Detective.");
                     }
+                    case PROTECT -> {
+                        if (getRole() == Role.BODYGUARD) room.recordNightAction(playerName, line);
+                        else sendMessage("❌ Bạn không phải Bodyguard.");
+                    }
+                    default -> {}
                 }
+                pending = PendingAction.NONE;
+                return;
             }
-        } catch (IOException e) {
-            System.out.println("[PlayerHandler] Lỗi socket cho " + playerName + " : " + e.getMessage());
-        } finally {
-            try { socket.close(); } catch (Exception ignored) {}
-            if (authenticated && playerName != null) {
-                room.removePlayer(playerName);
-                room.broadcast("❌ " + playerName + " đã ngắt kết nối.");
-                broadcastPlayersAlive(); // cập nhật danh sách cho web
+
+            // Không có pending hoặc nhập không phải 1 từ
+            if (s == GameState.NIGHT) {
+                // 🚫 CẤM CHAT BAN ĐÊM
+                sendMessage("🌙 Ban đêm không thể chat. Gõ tên để hành động theo vai trò của bạn.");
+            } else {
+                // Ban ngày: cho phép chat bình thường (client chậm có thể bị bỏ bớt chat)
+                room.broadcastChat(playerName + ": " + line);
+            }
+        }
+    }
+
+    @Override
+    public void onClose() {
+        if (opened) ServerMetrics.CONNECTIONS_OPEN.dec(); // blocking: tạo SocketConnection lỗi thì onClose() không có onOpen()
+        closed = true;
+        // /login đang chờ băm: dọn sau khi nó xong (login thành công thì phiên đã vào phòng, phải rời phòng)
+        authTail.whenComplete((v, ex) -> closeSession());
+    }
+
+    private void closeSession() {
+        if (!authenticated) {
+            sessionClosed.complete(null);
+            return;
+        }
+        if (room == null) {
+            rooms.releaseName(username, this);
+            sessionClosed.complete(null);
+            return;
+        }
+        // xếp sau mọi lệnh đã gõ của phiên này; nhả tên sau khi đã rời phòng để login lại không bị trùng
+        onRoomLoop(() -> {
+            GameRoom r = room;
+            room = null;
+            GameRoom handoff = null;
+            if (!quitting && r.holdSeat(playerName, GRACE_MILLIS, rooms)) {
+                rooms.holdSeat(username, r); // /resume, /login lại về đúng phòng này
+            } else {
+                if (quitting) r.removePlayer(playerName); // ngoài ván thì holdSeat() đã tự removePlayer
+                r.broadcast("❌ " + playerName + " đã ngắt kết nối."); // removePlayer đã cập nhật danh sách cho web
+                if (evicted) handoff = r; // phiên mới (/resume) vào lại phòng này nếu còn
+                rooms.release(r);         // phòng trống thì thu hồi
             }
+            rooms.releaseName(username, this);
+            sessionClosed.complete(handoff);
+        });
+    }
+
+    /**
+     * Phiên khác vừa /resume cùng tài khoản trong khi phiên này còn treo (TCP nửa mở sau khi rớt mạng):
+     * đóng phiên này như mất kết nối (giữ ghế), future xong khi đã nhả tên.
+     */
+    CompletableFuture<GameRoom> evict() {
+        evicted = true;
+        sendMessage("⚠️ Phiên này đã được nối lại từ kết nối khác.");
+        Connection c = conn;
+        if (c != null) c.close();
+        else onClose();
+        return sessionClosed;
+    }
+
+    /* ==================== Phòng ==================== */
+
+    /**
+     * Chạy task trên loop của phòng hiện tại. Nếu tới lượt chạy mà người chơi đã sang phòng khác
+     * (lệnh gõ ngay sau /join) thì chuyển tiếp sang loop phòng mới — thứ tự lệnh được giữ nguyên.
+     */
+    private void onRoomLoop(Runnable task) {
+        GameRoom r = room;
+        if (r == null) return;
+        r.execute(() -> {
+            if (room == r) task.run();
+            else onRoomLoop(task);
+        });
+    }
+
+    /**
+     * Vào phòng r (chạy trên loop của r). Phòng vừa bị thu hồi thì quay về phòng mặc định.
+     * Ngồi lại ghế đang giữ / khôi phục: chỉ gửi riêng cho người này phần đã lỡ (vai do tryJoin gửi, pha, danh sách),
+     * không báo "đã tham gia" cho cả phòng.
+     */
+    private void enterRoom(GameRoom r) {
+        boolean resumed = r.hasVacantSeat(playerName);
+        role = Role.UNASSIGNED; // ngồi lại ghế thì tryJoin gán lại vai cũ
+        if (!r.tryJoin(playerName, this)) {
+            sendMessage("❌ Phòng '" + r.getId() + "' không còn. Quay về phòng " + RoomRegistry.DEFAULT_ROOM_ID + ".");
+            GameRoom lobby = rooms.defaultRoom();
+            if (r != lobby) {
+                room = lobby;
+                lobby.execute(() -> enterRoom(lobby));
+            }
+            return;
+        }
+        room = r;
+        pending = PendingAction.NONE;
+        sendMessage("ROOM: " + r.getId());
+        if (resumed) {
+            // danh sách không đổi nên tryJoin không phát: gửi riêng bản hiện tại; prompt chỉ cho người này
+            sendFrame(rosterDeltas ? r.rosterSnapshot() : r.rosterCsv());
+            sendMessage("PHASE: " + phaseName(r.getState())); // PHASE phát cả phòng làm web client khác xoá số phiếu
+            setPendingForPhase(r.getState());
+            return;
         }
+        r.broadcast("👤 " + playerName + " đã tham gia phòng.");
+        // Cập nhật UI (tryJoin đã phát danh sách; client delta cần snapshot theo seq của phòng mới)
+        if (rosterDeltas) sendFrame(r.rosterSnapshot());
+        broadcastPhaseSimple();
+        r.promptPendingForPhaseForAll();
+    }
+
+    /** Rời phòng hiện tại (đang chạy trên loop của nó) rồi xếp task vào phòng target trên loop của target. */
+    private void switchRoom(GameRoom target) {
+        GameRoom old = room;
+        old.removePlayer(playerName);
+        sendMessage("RESET_ROLES"); // vai ở phòng cũ không còn giá trị
+        room = target;              // lệnh gõ tiếp theo đi thẳng vào mailbox phòng đích, sau task vào phòng
+        rooms.release(old);
+        target.execute(() -> enterRoom(target));
+    }
+
+    /* ==================== Rate limit ==================== */
+
+    /**
+     * Trước khi băm: trừ bucket auth.ip; /login (account = username đang thử) còn bị chặn nếu ip này đã đăng nhập sai
+     * tài khoản đó quá nhiều (bucket auth.account chỉ bị trừ khi sai — xem failedLogin). /register, /resume: account null.
+     */
+    private boolean allowAuth(String account) {
+        if (RateLimits.AUTH_IP.tryAcquire(ipKey)
+                && (account == null || RateLimits.AUTH_ACCOUNT.hasToken(RateLimits.authAccountKey(ipKey, account)))) {
+            return true;
+        }
+        sendMessage("[AUTH_FAIL] " + RateLimits.AUTH_LIMITED_MESSAGE);
+        return false;
+    }
+
+    /** Chat / lệnh khác: trừ bucket ip + bucket riêng của phiên (= tài khoản). Bị bỏ thì báo 1 lần cho cả đợt. */
+    private boolean allowLine(String line) {
+        boolean ok = (line.charAt(0) == '/')
+                ? RateLimits.COMMAND_IP.tryAcquire(ipKey) && commandBucket.tryAcquire()
+                : RateLimits.CHAT_IP.tryAcquire(ipKey) && chatBucket.tryAcquire();
+        if (ok) {
+            throttleNotified = false;
+        } else if (!throttleNotified) {
+            throttleNotified = true;
+            sendMessage(RateLimits.LINE_LIMITED_MESSAGE);
+        }
+        return ok;
     }
 
     // ===== AUTH handlers =====
@@ -244,57 +534,112 @@ public class PlayerHandler extends Thread {
         sendMessage("Bạn chưa đăng nhập. Dùng UI client hoặc gõ lệnh:");
         sendMessage("• /register <username> <password>");
         sendMessage("• /login <username> <password>");
+        sendMessage("• /resume <token>   (token nhận kèm [SESSION] sau khi đăng nhập — nối lại ghế khi rớt mạng)");
         sendMessage("• /help, /quit");
     }
 
-    /** Xử lý đăng ký, KHÔNG tự đăng nhập; trả [REGISTER_OK] nếu thành công */
+    /** Xử lý đăng ký, KHÔNG tự đăng nhập; trả [REGISTER_OK] nếu thành công (bất đồng bộ, xem authTail) */
     private void handleRegister(String line) {
+        long t0 = System.nanoTime();
         String[] sp = line.trim().split("\\s+", 3);
         if (sp.length < 3) {
             sendMessage("Usage: /register <username> <password>");
             return;
         }
         String u = sp[1], p = sp[2];
+        if (!allowAuth(null)) return;
 
-        // Không cho trùng người đang online (nếu đã ở phòng)
-        Player existing = room.getPlayer(u);
-        if (existing != null && existing.isAlive()) {
+        // Không cho trùng người đang online (ở bất kỳ phòng nào)
+        if (rooms.isOnline(u)) {
             sendMessage("[AUTH_FAIL] Tên này đang online, hãy chọn tên khác.");
             return;
         }
 
-        String err = AUTH.register(u, p);
-        if (err == null) {
-            sendMessage("[REGISTER_OK] Đăng ký thành công. Hãy đăng nhập: /login " + u + " <password>");
-        } else {
-            sendMessage("[AUTH_FAIL] " + err);
-        }
+        authInFlight = AUTH.registerAsync(u, p).thenAccept(err -> {
+            if (err == null) {
+                sendMessage("[REGISTER_OK] Đăng ký thành công. Hãy đăng nhập: /login " + u + " <password>");
+            } else {
+                sendMessage("[AUTH_FAIL] " + err);
+            }
+            ServerMetrics.REGISTER_SECONDS.recordSince(t0);
+        });
     }
 
-    /** Xử lý đăng nhập; trả true nếu thành công (KHÔNG gửi [AUTH_OK] ở đây) */
-    private boolean handleLogin(String line) {
+    /** Xử lý đăng nhập (bất đồng bộ, xem authTail); thành công thì vào phòng và gửi [AUTH_OK] */
+    private void handleLogin(String line) {
+        long t0 = System.nanoTime();
         String[] sp = line.trim().split("\\s+", 3);
         if (sp.length < 3) {
             sendMessage("Usage: /login <username> <password>");
-            return false;
+            return;
         }
         String u = sp[1], p = sp[2];
+        if (!allowAuth(u)) return;
+
+        authInFlight = AUTH.loginAsync(u, p).thenAccept(result -> {
+            try {
+                switch (result) {
+                    case OK -> completeLogin(u, false, null);
+                    case BUSY -> sendMessage("[AUTH_FAIL] " + AuthService.BUSY_MESSAGE);
+                    case FAILED -> {
+                        RateLimits.AUTH_ACCOUNT.tryAcquire(RateLimits.authAccountKey(ipKey, u)); // chỉ lần sai mới tính
+                        sendMessage("[AUTH_FAIL] Sai username hoặc mật khẩu.");
+                    }
+                }
+            } finally {
+                ServerMetrics.LOGIN_SECONDS.recordSince(t0);
+            }
+        });
+    }
 
-        // chặn login khi username đang online
-        Player existing = room.getPlayer(u);
-        if (existing != null && existing.isAlive()) {
-            sendMessage("[AUTH_FAIL] Tên này đang online. Nếu là bạn, hãy đợi phiên trước thoát.");
-            return false;
+    /**
+     * /resume <token>: kiểm tra chữ ký + hạn ngay trên thread đọc (1 HMAC, không qua executor băm).
+     * Phiên cũ còn giữ tên (socket nửa mở chưa bị phát hiện) thì bị đóng trước (evict), rồi mới nhận tên.
+     */
+    private void handleResume(String line) {
+        if (!allowAuth(null)) return;
+        String[] sp = WHITESPACE.split(line.trim(), 2);
+        String u = (sp.length < 2) ? null : AUTH.resumeSession(sp[1].trim());
+        if (u == null) {
+            sendMessage("[AUTH_FAIL] Phiên đã hết hạn hoặc không hợp lệ — hãy /login lại.");
+            return;
         }
+        PlayerHandler old = rooms.sessionOf(u);
+        if (old == null || old == this) {
+            completeLogin(u, true, null);
+            return;
+        }
+        authInFlight = old.evict()
+                .orTimeout(EVICT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .handle((handoff, ex) -> {
+                    if (ex == null) completeLogin(u, true, handoff);
+                    else sendMessage("[AUTH_FAIL] Phiên cũ chưa đóng xong, hãy /resume lại sau giây lát.");
+                    return null;
+                });
+    }
 
-        if (AUTH.login(u, p)) {
-            this.authenticated = true;
-            this.username = u;
-            return true;
+    /** Mật khẩu / token đúng (chạy trên thread của executor băm hoặc thread đọc). handoff: xem RoomRegistry.homeRoom. */
+    private void completeLogin(String u, boolean resumed, GameRoom handoff) {
+        if (closed) return; // ngắt kết nối trong lúc chờ băm: không giữ tên, không vào phòng
+        // chặn login khi username đang online (giữ tên toàn server, kể cả ở phòng khác)
+        if (!rooms.claimName(u, this)) {
+            sendMessage("[AUTH_FAIL] Tên này đang online. Nếu là bạn, hãy đợi phiên trước thoát hoặc dùng /resume.");
+            return;
+        }
+        this.username = u;
+        this.authenticated = true;
+        // Sau khi login thành công, vào phòng mặc định (hoặc phòng còn giữ ghế sau khôi phục / rớt mạng) & thông báo
+        this.playerName = this.username;
+        if (resumed) {
+            ServerMetrics.SESSION_RESUMES.inc();
+            sendMessage("[AUTH_OK] Đã nối lại phiên. Chào " + username + "!");
         } else {
-            sendMessage("[AUTH_FAIL] Sai username hoặc mật khẩu.");
-            return false;
+            sendMessage("[AUTH_OK] Đăng nhập thành công. Chào " + username + "!");
         }
+        sendMessage("[SESSION] " + AUTH.issueSession(username) + " " + AUTH.sessionTtlMillis() / 1000);
+        GameRoom home = rooms.homeRoom(username, handoff);
+        room = home;
+        home.execute(() -> enterRoom(home));
     }
 
     // ===== Helpers =====
@@ -302,17 +647,36 @@ public class PlayerHandler extends Thread {
 
     public Role getRole() {
         if (role != Role.UNASSIGNED) return role;
-        Player p = room.getPlayer(playerName);
+        GameRoom r = room;
+        Player p = (r != null) ? r.getPlayer(playerName) : null;
         return (p != null) ? p.getRole() : Role.UNASSIGNED;
     }
 
+    /** Chỉ xếp hàng gửi — không làm I/O trên thread gọi (an toàn khi đang giữ khoá phòng). */
     public void sendMessage(String msg) {
-        if (out != null) out.println(msg);
+        Connection c = conn;
+        if (c != null) c.send(msg);
+    }
+
+    /** Gửi frame đã mã hoá sẵn (broadcast dùng chung 1 frame cho cả phòng). */
+    public void sendFrame(Frame frame) {
+        Connection c = conn;
+        if (c != null) c.send(frame);
+    }
+
+    /** Client này nhận roster dạng delta (true) hay CSV đầy đủ (false). */
+    public boolean wantsRosterDeltas() { return rosterDeltas; }
+
+    /** Như sendFrame() nhưng là chat người chơi — có thể bị bỏ nếu client đọc chậm. */
+    public void sendChat(Frame frame) {
+        Connection c = conn;
+        if (c != null) c.sendChat(frame);
     }
 
     /** Được gọi khi phase đổi để hiển thị prompt nhập tên theo vai trò/phase */
     public void setPendingForPhase(GameState state) {
-        if (!room.isGameStarted() || !isAliveInRoom()) {
+        GameRoom r = room;
+        if (r == null || !r.isGameStarted() || !isAliveInRoom()) {
             pending = PendingAction.NONE;
             return;
         }
@@ -333,21 +697,13 @@ public class PlayerHandler extends Thread {
     }
 
     private boolean isAliveInRoom() {
-        Player p = room.getPlayer(playerName);
+        GameRoom r = room;
+        Player p = (r != null) ? r.getPlayer(playerName) : null;
         return p != null && p.isAlive();
     }
 
     // ==================== UI broadcast helpers ====================
 
-    /** Gửi: "PLAYERS: name1, name2, ..." (CHỈ alive) để HTML cập nhật danh sách */
-    private void broadcastPlayersAlive() {
-        List<String> names = room.getPlayersAlive().stream()
-                .map(Player::getName)
-                .sorted(Comparator.naturalOrder())
-                .collect(Collectors.toList());
-        room.broadcast("PLAYERS: " + String.join(", ", names));
-    }
-
     /** Gửi: "PHASE: <DAY|NIGHT|LOBBY|END>" — web chỉ cần chữ đầu */
     private void broadcastPhase(String phaseUppercase) {
         room.broadcast("PHASE: " + phaseUppercase);
@@ -355,13 +711,15 @@ public class PlayerHandler extends Thread {
 
     /** Phát phase hiện tại (simple) */
     private void broadcastPhaseSimple() {
-        GameState s = room.getState();
-        String phase = switch (s) {
+        broadcastPhase(phaseName(room.getState()));
+    }
+
+    private static String phaseName(GameState s) {
+        return switch (s) {
             case DAY -> "DAY";
             case NIGHT -> "NIGHT";
             case END -> "END";
             case LOBBY -> "LOBBY";
         };
-        broadcastPhase(phase);
     }
 }
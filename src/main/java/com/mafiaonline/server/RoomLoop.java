@@ -0,0 +1,95 @@
+package com.mafiaonline.server;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.metrics.ServerMetrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event loop của phòng: 1 thread + 1 mailbox (MPSC), nhiều phòng dùng chung 1 loop.
+ * - Mọi thứ đụng vào trạng thái phòng (lệnh người chơi, timer hết hạn, ngắt kết nối) đều là task trong mailbox
+ *   -> trạng thái GameRoom/PhaseManager chỉ 1 thread chạm tới, không cần khoá
+ * - RoomRegistry tạo số loop cố định (mặc định = số core, -Droom.loops=N) và chia phòng round-robin
+ * - Loop rảnh thì park; execute() chỉ unpark khi loop đang ngủ (cờ sleeping) để producer không tốn syscall thừa
+ */
+public final class RoomLoop implements Executor, Runnable {
+
+    private static final Logger LOG = Log.get(RoomLoop.class);
+
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+    private volatile boolean running = true;
+    private volatile long completed; // chỉ loop ghi
+    private final LongAdder submitted = new LongAdder();
+
+    RoomLoop(String name) {
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    private RoomLoop(Thread owner) {
+        this.thread = owner;
+    }
+
+    /**
+     * "Loop" là chính thread đang gọi (simulator): không có thread riêng, GameRoom.execute() chạy task ngay.
+     * Chỉ thread tạo ra nó được đụng vào phòng — task gửi từ thread khác sẽ nằm mãi trong mailbox.
+     */
+    public static RoomLoop ofCurrentThread() {
+        return new RoomLoop(Thread.currentThread());
+    }
+
+    void start() { thread.start(); }
+
+    public boolean inLoop() { return Thread.currentThread() == thread; }
+
+    /** Số task đã chạy xong (benchmark / thống kê). */
+    public long completedTasks() { return completed; }
+
+    /** Số task đang chờ trong mailbox (xấp xỉ, đọc không khoá — trang admin). */
+    public long pendingTasks() { return Math.max(0, submitted.sum() - completed); }
+
+    public String name() { return thread.getName(); }
+
+    /** Đưa task vào mailbox (gọi được từ mọi thread). Thứ tự FIFO theo từng producer. */
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        submitted.increment();
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        long done = 0;
+        while (running) {
+            Runnable r;
+            while ((r = tasks.poll()) != null) {
+                long t0 = System.nanoTime();
+                try {
+                    r.run();
+                } catch (Throwable t) {
+                    LOG.error("[RoomLoop] Task lỗi trên {}", thread.getName(), t);
+                }
+                ServerMetrics.ROOM_TASK_SECONDS.recordSince(t0);
+                completed = ++done;
+            }
+            sleeping.set(true);
+            // kiểm tra lại sau khi bật cờ: task tới giữa poll() và set(true) sẽ không bị bỏ quên
+            if (tasks.isEmpty() && running) LockSupport.park(this);
+            sleeping.set(false);
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+}
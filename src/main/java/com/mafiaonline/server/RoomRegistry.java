@@ -0,0 +1,213 @@
+package com.mafiaonline.server;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.journal.RecoveryState;
+import com.mafiaonline.server.journal.RoomEventSink;
+import com.mafiaonline.server.journal.RoomImage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * RoomRegistry — một JVM chứa nhiều phòng chơi song song.
+ * - Phòng mặc định "main" luôn tồn tại (login xong người chơi vào đây, như bản 1 phòng cũ)
+ * - /create tạo phòng mới với id ngắn (r1, r2, ...), /join <id> chuyển phòng, /leave quay về "main"
+ * - Phòng trống (trừ "main") bị thu hồi ngay khi người cuối rời đi: gỡ khỏi registry + dừng timer
+ *
+ * Đồng bộ:
+ * - Tra cứu/tạo/xoá phòng qua ConcurrentHashMap — không có khoá toàn cục,
+ *   vào phòng A không tranh chấp với lưu lượng của phòng B
+ * - Phòng chia round-robin lên một số RoomLoop cố định (mặc định = số core, -Droom.loops=N)
+ * - Timer pha của mọi phòng nằm trên 1 TimerWheel chung (1 thread cho cả server)
+ * - Tham gia và thu hồi đều là task trên loop của CHÍNH phòng đó (GameRoom.tryJoin / closeIfEmpty):
+ *   phòng đã đóng thì tryJoin trả false, không bao giờ vào nhầm phòng vừa bị thu hồi
+ * - Tên đang online được giữ toàn server (một username chỉ ở một phòng tại một thời điểm)
+ * - Mọi phòng báo sự kiện ván cho cùng 1 RoomEventSink (Journal của node, hoặc NOOP)
+ * - restore(): dựng lại các ván đang dở sau crash; người chơi đăng nhập lại được đưa về phòng có ghế của mình
+ * - Ghế giữ cho người mất kết nối giữa ván (GameRoom.holdSeat) cũng ghi vào seats -> /resume, /login về đúng phòng;
+ *   ghế hết hạn giữ / bị bỏ lúc hết ván thì phòng gọi releaseSeat() xoá mục đó
+ */
+public class RoomRegistry {
+
+    private static final Logger LOG = Log.get(RoomRegistry.class);
+
+    public static final String DEFAULT_ROOM_ID = "main";
+
+    /** Số phòng liệt kê tối đa trong /rooms (server có thể chứa hàng nghìn phòng). */
+    private static final int LIST_LIMIT = Integer.getInteger("rooms.list.limit", 50);
+
+    private final ConcurrentHashMap<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PlayerHandler> online = new ConcurrentHashMap<>(); // username -> phiên
+    private final ConcurrentHashMap<String, GameRoom> seats = new ConcurrentHashMap<>();  // username -> phòng khôi phục / giữ ghế
+    private final AtomicInteger seq = new AtomicInteger();
+    private final RoomLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final TimerWheel timers = new TimerWheel();
+    private final RoomEventSink events;
+    private final GameRoom defaultRoom;
+
+    public RoomRegistry() {
+        this(RoomEventSink.NOOP);
+    }
+
+    public RoomRegistry(RoomEventSink events) {
+        this(Integer.getInteger("room.loops", Runtime.getRuntime().availableProcessors()), events);
+    }
+
+    public RoomRegistry(int loopCount) {
+        this(loopCount, RoomEventSink.NOOP);
+    }
+
+    public RoomRegistry(int loopCount, RoomEventSink events) {
+        this.events = events;
+        this.loops = new RoomLoop[Math.max(1, loopCount)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new RoomLoop("room-loop-" + i);
+            loops[i].start();
+        }
+        this.defaultRoom = new GameRoom(DEFAULT_ROOM_ID, nextLoop(), timers, events);
+        rooms.put(DEFAULT_ROOM_ID, defaultRoom);
+    }
+
+    private RoomLoop nextLoop() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    /* ==================== Tra cứu ==================== */
+
+    public GameRoom defaultRoom()     { return defaultRoom; }
+    public GameRoom get(String id)    { return (id == null) ? null : rooms.get(id); }
+    public int size()                 { return rooms.size(); }
+    public int loopCount()            { return loops.length; }
+    public TimerWheel timers()        { return timers; }
+    public List<RoomLoop> loops()     { return List.of(loops); }
+
+    /** Duyệt mọi phòng không sắp xếp, không khoá (đếm theo trạng thái cho trang admin). */
+    public void forEachRoom(Consumer<GameRoom> action) {
+        rooms.values().forEach(action);
+    }
+
+    /** Ảnh chụp danh sách phòng (sắp theo id) — không khoá phòng nào. */
+    public List<GameRoom> list() {
+        List<GameRoom> out = new ArrayList<>(rooms.values());
+        out.sort(Comparator.comparing(GameRoom::getId));
+        return out;
+    }
+
+    /** Một dòng cho /rooms: "ROOMS: main(3, LOBBY), r1(5, DAY) ..." */
+    public String describe() {
+        List<GameRoom> all = list();
+        StringBuilder sb = new StringBuilder("ROOMS: ");
+        int n = 0;
+        for (GameRoom r : all) {
+            if (n == LIST_LIMIT) break;
+            if (n++ > 0) sb.append(", ");
+            sb.append(r.getId()).append('(').append(r.getPlayerCount()).append(", ").append(r.getState()).append(')');
+        }
+        if (all.size() > LIST_LIMIT) sb.append(" ... (tổng ").append(all.size()).append(" phòng)");
+        return sb.toString();
+    }
+
+    /* ==================== Tạo / vào / rời ==================== */
+
+    /** Tạo phòng mới rỗng. Chưa ai vào thì phòng sẽ bị thu hồi ở lần release() đầu tiên. */
+    public GameRoom create() {
+        String id;
+        GameRoom room;
+        do {
+            id = "r" + Integer.toString(seq.incrementAndGet(), 36);
+            room = new GameRoom(id, nextLoop(), timers, events);
+        } while (rooms.putIfAbsent(id, room) != null);
+        LOG.info("[Rooms] Created room {} ({} rooms)", id, rooms.size());
+        return room;
+    }
+
+    /** Thu hồi phòng nếu đã trống (không áp dụng cho phòng mặc định). Chạy trên loop của phòng. */
+    public void release(GameRoom room) {
+        if (room == defaultRoom) return;
+        room.execute(() -> {
+            if (!room.closeIfEmpty()) return;
+            if (rooms.remove(room.getId(), room)) {
+                room.shutdown();
+                LOG.info("[Rooms] Reclaimed empty room {} ({} rooms)", room.getId(), rooms.size());
+            }
+        });
+    }
+
+    /* ==================== Khôi phục sau crash ==================== */
+
+    /**
+     * Dựng lại mọi ván đang dở (Recovery) — gọi 1 lần lúc khởi động, trước khi nhận kết nối.
+     * Mỗi phòng dựng trên loop của chính nó (song song theo số loop); trả về khi tất cả xong.
+     */
+    public void restore(RecoveryState state) {
+        CountDownLatch done = new CountDownLatch(state.roomCount());
+        for (RoomImage img : state.rooms()) {
+            GameRoom room = DEFAULT_ROOM_ID.equals(img.getRoomId())
+                    ? defaultRoom
+                    : rooms.computeIfAbsent(img.getRoomId(), id -> new GameRoom(id, nextLoop(), timers, events));
+            for (String name : img.getRoles().keySet()) seats.put(name, room);
+            room.execute(() -> {
+                try {
+                    room.restore(img, this);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Phòng nên vào sau khi đăng nhập: phòng còn giữ ghế (khôi phục / mất kết nối) cho name, không thì handoff
+     * (phòng của phiên cũ vừa bị /resume thay, ngoài ván) nếu phòng đó còn, không nữa thì phòng mặc định.
+     */
+    public GameRoom homeRoom(String name, GameRoom handoff) {
+        GameRoom r = (name == null) ? null : seats.remove(name);
+        if (r != null && rooms.get(r.getId()) == r && r.hasVacantSeat(name)) return r;
+        return (handoff != null && rooms.get(handoff.getId()) == handoff) ? handoff : defaultRoom;
+    }
+
+    /** Phòng room đang giữ ghế cho name (mất kết nối giữa ván) — lần đăng nhập/resume kế tiếp về đây. */
+    public void holdSeat(String name, GameRoom room) {
+        if (name != null) seats.put(name, room);
+    }
+
+    /** Phòng room bỏ ghế của name (hết hạn giữ, hết ván): xoá mục seats nếu vẫn trỏ về room. Chạy trên loop của room. */
+    void releaseSeat(String name, GameRoom room) {
+        seats.remove(name, room);
+    }
+
+    /* ==================== Tên đang online (toàn server) ==================== */
+
+    /** Giữ username cho phiên này; false nếu tên đang được phiên khác dùng. */
+    public boolean claimName(String name, PlayerHandler handler) {
+        return online.putIfAbsent(name, handler) == null;
+    }
+
+    public boolean isOnline(String name) { return online.containsKey(name); }
+
+    /** Phiên đang giữ tên (null nếu không online) — /resume dùng để thay phiên cũ còn treo. */
+    public PlayerHandler sessionOf(String name) { return (name == null) ? null : online.get(name); }
+
+    public void releaseName(String name, PlayerHandler handler) {
+        if (name != null) online.remove(name, handler);
+    }
+
+    /** Dừng timer mọi phòng rồi dừng wheel + các loop khi tắt server. */
+    public void shutdown() {
+        for (GameRoom r : rooms.values()) r.shutdown();
+        timers.shutdown();
+        for (RoomLoop l : loops) l.shutdown();
+    }
+}
@@ -0,0 +1,71 @@
+package com.mafiaonline.server;
+
+import com.mafiaonline.server.net.Frame;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * Danh sách người còn sống của 1 phòng, giữ sẵn thứ tự + đánh số phiên bản (seq).
+ * - Mỗi thay đổi 1 người tăng seq đúng 1 -> client bật delta thấy seq nhảy cóc là biết lỡ dòng, gửi /roster
+ * - Frame "PLAYERS: ..." (client cũ) và "ROSTER <seq>: ..." (snapshot) chỉ dựng lại khi seq đổi
+ *   và có người cần — không sort + join cả phòng mỗi sự kiện
+ *
+ * Dòng delta (xem GameRoom.publishRoster):
+ *   PLAYERS+ <seq> <tên>   vào phòng (còn sống)
+ *   PLAYERS- <seq> <tên>   rời phòng
+ *   ALIVE-   <seq> <tên>   chết (vẫn ở phòng)
+ *
+ * Chỉ chạy trên RoomLoop của phòng.
+ */
+final class Roster {
+
+    /** Thứ tự hiển thị như bản cũ (không phân biệt hoa thường), tie-break để tên khác hoa/thường không trùng. */
+    private static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final TreeSet<String> alive = new TreeSet<>(ORDER);
+    private long seq;
+    private Frame csv;       // cache "PLAYERS: ..." (null = cũ)
+    private Frame snapshot;  // cache "ROSTER <seq>: ..." (null = cũ)
+
+    long seq() { return seq; }
+
+    /** Thêm người sống; trả về seq mới. */
+    long add(String name) {
+        alive.add(name);
+        return bump();
+    }
+
+    /** Bỏ 1 người khỏi danh sách sống (chết hoặc rời phòng); trả về seq mới. */
+    long remove(String name) {
+        alive.remove(name);
+        return bump();
+    }
+
+    /** Dựng lại toàn bộ (đổi hàng loạt: bắt đầu/kết thúc ván); trả về seq mới. */
+    long reset(Collection<Player> alivePlayers) {
+        alive.clear();
+        for (Player p : alivePlayers) alive.add(p.getName());
+        return bump();
+    }
+
+    /** "PLAYERS: a, b, c" cho client cũ. */
+    Frame csvFrame() {
+        if (csv == null) csv = Frame.of("PLAYERS: " + String.join(", ", alive));
+        return csv;
+    }
+
+    /** "ROSTER <seq>: a, b, c" — snapshot cho client delta (lúc bật, lúc vào phòng, lúc thấy hụt seq). */
+    Frame snapshotFrame() {
+        if (snapshot == null) snapshot = Frame.of("ROSTER " + seq + ": " + String.join(", ", alive));
+        return snapshot;
+    }
+
+    private long bump() {
+        csv = null;
+        snapshot = null;
+        return ++seq;
+    }
+}
@@ -0,0 +1,93 @@
+package com.mafiaonline.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Chỉ mục ghế của 1 phòng: mỗi người chơi giữ 1 số ghế (tái sử dụng ghế trống thấp nhất),
+ * cộng bộ đếm cập nhật tăng dần thay cho stream quét cả phòng mỗi lần thay đổi:
+ * - aliveCount, aliveCount theo Role -> checkWinCondition O(1), không cấp phát
+ * - BitSet ghế còn sống -> duyệt người sống không cần filter
+ *
+ * Chỉ chạy trên RoomLoop của phòng (như GameRoom). Mọi thay đổi alive/role của Player trong phòng
+ * phải đi qua đây (GameRoom gọi), nếu không bộ đếm sẽ lệch.
+ */
+final class SeatIndex {
+
+    private static final Role[] ROLES = Role.values();
+
+    private Player[] seats = new Player[16];
+    private final BitSet occupied = new BitSet();
+    private final BitSet alive = new BitSet();
+    private final int[] aliveByRole = new int[ROLES.length];
+    private int aliveCount;
+
+    /** Xếp ghế cho người mới vào phòng; trả về số ghế. */
+    int add(Player p) {
+        int seat = occupied.nextClearBit(0);
+        if (seat >= seats.length) seats = Arrays.copyOf(seats, seats.length * 2);
+        seats[seat] = p;
+        occupied.set(seat);
+        p.setSeat(seat);
+        if (p.isAlive()) markAlive(p, seat);
+        return seat;
+    }
+
+    void remove(Player p) {
+        int seat = p.getSeat();
+        if (seat < 0 || seats[seat] != p) return;
+        if (alive.get(seat)) markDead(p, seat);
+        occupied.clear(seat);
+        seats[seat] = null;
+        p.setSeat(-1);
+    }
+
+    void setAlive(Player p, boolean value) {
+        int seat = p.getSeat();
+        if (seat >= 0 && alive.get(seat) != value) {
+            if (value) markAlive(p, seat);
+            else markDead(p, seat);
+        }
+        p.setAlive(value);
+    }
+
+    void setRole(Player p, Role role) {
+        int seat = p.getSeat();
+        if (seat >= 0 && alive.get(seat)) {
+            aliveByRole[p.getRole().ordinal()]--;
+            aliveByRole[role.ordinal()]++;
+        }
+        p.setRole(role);
+    }
+
+    /* ==================== Truy vấn ==================== */
+
+    int aliveCount()              { return aliveCount; }
+    int aliveCount(Role role)     { return aliveByRole[role.ordinal()]; }
+    Player at(int seat)           { return (seat >= 0 && seat < seats.length) ? seats[seat] : null; }
+    int capacity()                { return occupied.length(); }
+
+    /** Ghế còn sống — view chỉ đọc (không sửa BitSet trả về). */
+    BitSet aliveSeats()           { return alive; }
+
+    /** Người còn sống theo thứ tự ghế. */
+    List<Player> alivePlayers() {
+        List<Player> out = new ArrayList<>(aliveCount);
+        for (int s = alive.nextSetBit(0); s >= 0; s = alive.nextSetBit(s + 1)) out.add(seats[s]);
+        return out;
+    }
+
+    private void markAlive(Player p, int seat) {
+        alive.set(seat);
+        aliveCount++;
+        aliveByRole[p.getRole().ordinal()]++;
+    }
+
+    private void markDead(Player p, int seat) {
+        alive.clear(seat);
+        aliveCount--;
+        aliveByRole[p.getRole().ordinal()]--;
+    }
+}
@@ -1,126 +1,243 @@
 package com.mafiaonline.server;
 
 import com.mafiaonline.bridge.WsBridgeServer;
+import com.mafiaonline.common.SessionThreads;
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.auth.AuthService;
+import com.mafiaonline.server.journal.Journal;
+import com.mafiaonline.server.journal.Recovery;
+import com.mafiaonline.server.journal.RoomEventSink;
+import com.mafiaonline.server.metrics.AdminServer;
+import com.mafiaonline.server.metrics.ServerMetrics;
+import com.mafiaonline.server.net.NetStats;
+import com.mafiaonline.server.net.NioServer;
+import com.mafiaonline.server.net.RateLimits;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
-/** Server entrypoint (TCP game + WS bridge) */
+/** Server entrypoint (TCP game + WS: phiên trong tiến trình mặc định, hoặc bridge qua TCP loopback với --ws-mode bridge) */
 public class ServerMain {
+
+    private static final Logger LOG = Log.get(ServerMain.class);
+
     public static void main(String[] args) {
         // ===== Default ports/path/host =====
         int tcpPort = 12345;                   // cổng TCP game
         int wsPort  = 8080;                    // cổng WebSocket bridge
         String wsPath = "/ws";                 // path WebSocket
-        String tcpHostForBridge = "127.0.0.1"; // bridge sẽ nối tới TCP host này
+        String tcpHostForBridge = "127.0.0.1"; // bridge sẽ nối tới TCP host này (--ws-mode bridge)
+        boolean wsInProcess = true;            // in-process: WS là phiên trực tiếp | bridge: WS -> socket TCP loopback
+        String transport = "blocking";         // blocking (thread/kết nối) | nio (selector)
+        int nioLoops = Runtime.getRuntime().availableProcessors(); // số event loop cho nio
+        SessionThreads.Mode threads = SessionThreads.Mode.PLATFORM; // thread cho phiên blocking + pump bridge
+        boolean recover = Boolean.getBoolean("recover");     // dựng lại ván đang dở từ journal (--recover)
+        int adminPort = 9090;                  // trang admin/metrics HTTP (0 = tắt)
+        String adminHost = "127.0.0.1";        // mặc định chỉ máy local
 
         // ===== CLI args (tùy chọn) =====
         // Cách 1: 2 tham số: <tcpPort> <wsPort>
         if (args.length >= 1) try { tcpPort = Integer.parseInt(args[0]); } catch (Exception ignore) {}
         if (args.length >= 2) try { wsPort  = Integer.parseInt(args[1]); } catch (Exception ignore) {}
-        // Cách 2: flags linh hoạt
+        // Cách 2: flags linh hoạt ("--flag value" hoặc "--flag=value"); "--recover" không có giá trị
+        for (String a : args) if (a.equals("--recover")) recover = true;
+        args = splitFlagValues(args);
         for (int i = 0; i + 1 < args.length; i++) {
             switch (args[i]) {
                 case "--tcp-port" -> { try { tcpPort = Integer.parseInt(args[++i]); } catch (Exception ignore) {} }
                 case "--ws-port"  -> { try { wsPort  = Integer.parseInt(args[++i]); } catch (Exception ignore) {} }
                 case "--ws-path"  -> wsPath = args[++i];
                 case "--tcp-host" -> tcpHostForBridge = args[++i];
+                case "--ws-mode" -> wsInProcess = !"bridge".equalsIgnoreCase(args[++i]);
+                case "--transport" -> transport = args[++i].toLowerCase();
+                case "--nio-loops" -> { try { nioLoops = Integer.parseInt(args[++i]); } catch (Exception ignore) {} }
+                case "--admin-port" -> { try { adminPort = Integer.parseInt(args[++i]); } catch (Exception ignore) {} }
+                case "--admin-host" -> adminHost = args[++i];
+                case "--threads" -> {
+                    SessionThreads.Mode m = SessionThreads.parse(args[++i]);
+                    if (m != null) threads = m;
+                }
+            }
+        }
+
+        threads = SessionThreads.configure(threads);
+
+        // ===== Khôi phục (tuỳ chọn): snapshot + đuôi journal -> các ván đang dở =====
+        Recovery recovery = null;
+        if (recover && Journal.enabled()) {
+            try {
+                recovery = Recovery.load(Journal.defaultDir());
+                LOG.info("[Recovery] {}", recovery.describe());
+            } catch (IOException e) {
+                LOG.error("[Recovery] Failed to read journal: {} — starting empty.", e.getMessage());
             }
         }
 
-        GameRoom room = new GameRoom();
+        Journal journal = Journal.openDefault(recovery != null ? recovery.state() : null); // null nếu tắt
+        RoomRegistry rooms = new RoomRegistry(journal != null ? journal : RoomEventSink.NOOP); // "main" + phòng /create
+        if (recovery != null) {
+            long t0 = System.nanoTime();
+            rooms.restore(recovery.state());
+            LOG.info(String.format(Locale.ROOT, "[Recovery] Rebuilt %d rooms in %.1f ms (total %.1f ms)",
+                    recovery.state().roomCount(), (System.nanoTime() - t0) / 1e6,
+                    (recovery.elapsedNanos() + System.nanoTime() - t0) / 1e6));
+        }
         ServerSocket serverSocket = null;
+        NioServer nioServer = null;
         WsBridgeServer bridge = null;
+        final boolean useNio = "nio".equals(transport);
 
-        System.out.println("[Server] Starting Mafia-Online TCP on port " + tcpPort + " ...");
-        System.out.println("[Server] Starting WS Bridge at ws://0.0.0.0:" + wsPort + wsPath + " -> " + tcpHostForBridge + ":" + tcpPort);
+        LOG.info("[Server] Starting Mafia-Online TCP on port {} ({}, {} threads) ...",
+                tcpPort, useNio ? "nio x" + nioLoops : "blocking", threads.name().toLowerCase());
+        LOG.info("[Server] Starting WS Bridge at ws://0.0.0.0:{}{} -> {}", wsPort, wsPath,
+                wsInProcess ? "in-process sessions" : tcpHostForBridge + ":" + tcpPort);
+        LOG.info("[Server] Rate limits: {}", RateLimits.summary());
 
-        // ===== Start WS bridge (1 WS : 1 TCP) =====
+        // ===== Start WS bridge (in-process: 1 WS = 1 PlayerHandler; bridge: 1 WS : 1 TCP) =====
         try {
-            bridge = new WsBridgeServer(
-                    new InetSocketAddress("0.0.0.0", wsPort),
-                    wsPath,
-                    tcpHostForBridge,
-                    tcpPort
-            );
+            bridge = wsInProcess
+                    ? new WsBridgeServer(new InetSocketAddress("0.0.0.0", wsPort), wsPath, c -> new PlayerHandler(c, rooms))
+                    : new WsBridgeServer(new InetSocketAddress("0.0.0.0", wsPort), wsPath, tcpHostForBridge, tcpPort);
             bridge.start();
         } catch (Exception ex) {
-            System.err.println("[Server] Failed to start WS Bridge: " + ex.getMessage());
-            ex.printStackTrace();
+            LOG.error("[Server] Failed to start WS Bridge: {}", ex.getMessage(), ex);
             // vẫn tiếp tục TCP server nếu muốn; hoặc return để fail-fast
         }
 
+        // ===== Trang admin/metrics (Prometheus + JSON) =====
+        AdminServer admin = null;
+        if (adminPort > 0) {
+            try {
+                admin = new AdminServer(new InetSocketAddress(adminHost, adminPort), rooms, bridge, journal);
+                admin.start();
+            } catch (IOException ex) {
+                LOG.error("[Server] Failed to start admin endpoint on {}:{}: {}", adminHost, adminPort, ex.getMessage());
+            }
+        }
+
         try {
             // Mở TCP server
-            serverSocket = new ServerSocket(tcpPort);
+            if (useNio) nioServer = new NioServer(tcpPort, nioLoops, c -> new PlayerHandler(c, rooms));
+            else serverSocket = new ServerSocket(tcpPort);
 
             // ===== Shutdown hook: đóng WS bridge + TCP + scheduler =====
             WsBridgeServer finalBridge = bridge;
             ServerSocket finalServerSocket = serverSocket;
+            NioServer finalNioServer = nioServer;
+            AdminServer finalAdmin = admin;
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("\n[Server] Shutdown initiated...");
+                LOG.info("[Server] Shutdown initiated...");
                 // Đóng accept socket để break vòng lặp
                 try {
                     if (finalServerSocket != null && !finalServerSocket.isClosed()) {
                         finalServerSocket.close();
-                        System.out.println("[Server] ServerSocket closed.");
+                        LOG.info("[Server] ServerSocket closed.");
                     }
                 } catch (IOException e) {
-                    System.err.println("[Server] Error closing ServerSocket: " + e.getMessage());
+                    LOG.warn("[Server] Error closing ServerSocket: {}", e.getMessage());
+                }
+                if (finalNioServer != null) {
+                    finalNioServer.close();
+                    LOG.info("[Server] NIO server closed.");
                 }
+                if (finalAdmin != null) finalAdmin.close();
                 // Dừng WS bridge
                 try {
                     if (finalBridge != null) {
                         // WebSocketServer.stop() ném InterruptedException/IOException – bọc trong try/catch
                         finalBridge.stop(1000); // timeout 1s
-                        System.out.println("[Server] WS Bridge stopped.");
+                        LOG.info("[Server] WS Bridge stopped.");
                     }
                 } catch (Exception e) {
-                    System.err.println("[Server] Error stopping WS Bridge: " + e.getMessage());
+                    LOG.warn("[Server] Error stopping WS Bridge: {}", e.getMessage());
                 }
-                // Dừng scheduler phase
+                // Dừng scheduler phase của mọi phòng
                 try {
-                    if (room != null && room.getPhaseManager() != null) {
-                        room.getPhaseManager().shutdownScheduler();
-                        System.out.println("[Server] PhaseManager scheduler shutdown.");
-                    }
+                    rooms.shutdown();
+                    LOG.info("[Server] PhaseManager schedulers shutdown ({} rooms).", rooms.size());
                 } catch (Exception ex) {
-                    System.err.println("[Server] Error shutting down PhaseManager: " + ex.getMessage());
+                    LOG.warn("[Server] Error shutting down PhaseManager: {}", ex.getMessage());
+                }
+                // Journal: ghi + force nốt sự kiện cuối (sau khi phòng đã dừng)
+                if (journal != null) {
+                    journal.close();
+                    LOG.info("[Server] {}", journal.summary());
                 }
-                System.out.println("[Server] Goodbye.");
+                // Tài khoản: mọi đăng ký đã trả OK đều đã fsync, chỉ chờ nốt lô đang ghi
+                AuthService auth = PlayerHandler.auth();
+                auth.close();
+                LOG.info("[Server] Accounts: {}", auth.storeSummary());
+                LOG.info("[Server] Net: {}", NetStats.summary());
+                LOG.info("[Server] Phase {}", rooms.timers().summary());
+                LOG.info("[Server] Metrics:\n{}", ServerMetrics.summary());
+                LOG.info("[Server] Log: {}", Log.summary());
+                LOG.info("[Server] Goodbye.");
+                Log.flush(2000); // hook của Log chạy song song, có thể xong trước các dòng trên
             }));
 
-            System.out.println("[Server] Listening TCP on port " + tcpPort);
+            LOG.info("[Server] Listening TCP on port {}", tcpPort);
 
             // ===== Accept loop =====
-            while (true) {
-                try {
-                    Socket client = serverSocket.accept();
-                    System.out.println("[Server] New connection from " + client.getRemoteSocketAddress());
-                    PlayerHandler handler = new PlayerHandler(client, room);
-                    handler.start();
-                } catch (IOException acceptEx) {
-                    // Khi serverSocket bị close (shutdown), accept sẽ ném exception -> thoát vòng lặp
-                    System.out.println("[Server] Stopped accepting connections (" + acceptEx.getMessage() + "). Exiting accept loop.");
-                    break;
-                }
+            if (useNio) {
+                nioServer.serve();
+                LOG.info("[Server] Stopped accepting connections. Exiting accept loop.");
+            } else {
+                acceptLoop(serverSocket, rooms);
             }
         } catch (IOException e) {
-            System.err.println("[Server] Failed to start TCP server: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("[Server] Failed to start TCP server: {}", e.getMessage(), e);
         } finally {
             // Cleanup cuối cùng (nếu hook chưa chạy)
             try { if (serverSocket != null && !serverSocket.isClosed()) serverSocket.close(); } catch (IOException ignore) {}
-            try { if (room != null && room.getPhaseManager() != null) room.getPhaseManager().shutdownScheduler(); } catch (Exception ignore) {}
+            if (nioServer != null) nioServer.close();
+            try { rooms.shutdown(); } catch (Exception ignore) {}
+            if (journal != null) journal.close();
+            if (admin != null) admin.close();
             try { if (bridge != null) bridge.stop(500); } catch (Exception ignore) {}
         }
 
-        // ===== Banner hướng dẫn nhanh =====
+        // ===== Banner hướng dẫn nhanh (stdout, không qua log) =====
+        Log.flush(1000);
         System.out.println("\n[How-To]");
         System.out.println("  Web client: http://localhost:8000/mafia-client.html");
         System.out.println("  Gateway   : ws://localhost:" + wsPort + wsPath);
         System.out.println("  LAN máy khác: http://<IP_máy_này>:8000/mafia-client.html & ws://<IP_máy_này>:" + wsPort + wsPath);
     }
+
+    /** Tách "--flag=value" thành "--flag", "value" để vòng parse flag xử lý chung. */
+    private static String[] splitFlagValues(String[] args) {
+        List<String> out = new ArrayList<>(args.length);
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (a.startsWith("--") && eq > 2) {
+                out.add(a.substring(0, eq));
+                out.add(a.substring(eq + 1));
+            } else {
+                out.add(a);
+            }
+        }
+        return out.toArray(new String[0]);
+    }
+
+    /** Accept loop chế độ blocking: mỗi kết nối một PlayerHandler thread (platform/virtual theo SessionThreads). Trả về khi serverSocket bị đóng. */
+    public static void acceptLoop(ServerSocket serverSocket, RoomRegistry rooms) {
+        while (true) {
+            try {
+                Socket client = serverSocket.accept();
+                LOG.info("[Server] New connection from {}", client.getRemoteSocketAddress());
+                PlayerHandler handler = new PlayerHandler(client, rooms);
+                SessionThreads.start("player-" + client.getPort(), handler, false);
+            } catch (IOException acceptEx) {
+                // Khi serverSocket bị close (shutdown), accept sẽ ném exception -> thoát vòng lặp
+                LOG.info("[Server] Stopped accepting connections ({}). Exiting accept loop.", acceptEx.getMessage());
+                break;
+            }
+        }
+    }
 }
@@ -0,0 +1,254 @@
+package com.mafiaonline.server;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.metrics.ServerMetrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timing wheel (hashed, nhiều vòng) dùng chung cho timer pha của MỌI phòng — 1 thread cho cả server.
+ * - Vòng N ô (-Dtimer.wheel.size, làm tròn lên luỹ thừa 2), mỗi ô 1 tick (-Dtimer.tick.ms, mặc định 10ms)
+ * - Timer xa hơn 1 vòng giữ số vòng còn lại (remainingRounds) -> không cần nhiều tầng wheel
+ * - schedule()/cancel() O(1) từ mọi thread: chỉ đẩy vào hàng chờ lock-free; thread wheel gắn/gỡ khỏi ô
+ *   (danh sách liên kết đôi) ở đầu mỗi tick
+ * - Task chạy trên thread wheel nên phải rất ngắn — PhaseManager chỉ gửi task vào mailbox RoomLoop
+ * - Thống kê drift: trễ giữa hạn hẹn và lúc thực sự chạy (trung bình / lớn nhất)
+ * - Là GameClock (giờ thật) của mọi phòng trên server
+ */
+public final class TimerWheel implements GameClock, Runnable {
+
+    private static final Logger LOG = Log.get(TimerWheel.class);
+
+    private static final int ST_INIT = 0, ST_CANCELLED = 1, ST_EXPIRED = 2;
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Handle của 1 timer đã hẹn. cancel() an toàn từ mọi thread, gọi lại nhiều lần không sao. */
+    public static final class Timeout implements GameClock.Timer {
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadline;       // nanos tính từ startNanos của wheel
+        private volatile int state;
+
+        // chỉ thread wheel đụng tới
+        private long remainingRounds;
+        private Timeout next, prev;
+        private Bucket bucket;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /** Huỷ timer. false nếu đã chạy hoặc đã huỷ trước đó. */
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) return false;
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() { return state == ST_CANCELLED; }
+        public boolean isExpired()   { return state == ST_EXPIRED; }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) return;
+            wheel.pending.decrementAndGet();
+            wheel.recordDrift(wheel.now() - deadline);
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOG.error("[TimerWheel] Task lỗi", t);
+            }
+        }
+    }
+
+    /** 1 ô của wheel: danh sách liên kết đôi để gỡ timer bị huỷ O(1). */
+    private static final class Bucket {
+        private Timeout head, tail;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            if (head == null) {
+                head = tail = t;
+            } else {
+                tail.next = t;
+                t.prev = tail;
+                tail = t;
+            }
+        }
+
+        Timeout remove(Timeout t) {
+            Timeout next = t.next;
+            if (t.prev != null) t.prev.next = next;
+            if (t.next != null) t.next.prev = t.prev;
+            if (t == head) head = next;
+            if (t == tail) tail = t.prev;
+            t.prev = t.next = null;
+            t.bucket = null;
+            return next;
+        }
+
+        /** Chạy các timer tới hạn ở tick này (hạn luôn <= cuối tick); timer còn vòng thì giảm 1 vòng. */
+        void expire() {
+            Timeout t = head;
+            while (t != null) {
+                if (t.remainingRounds <= 0) {
+                    Timeout next = remove(t);
+                    t.expire();
+                    t = next;
+                } else {
+                    t.remainingRounds--;
+                    t = t.next;
+                }
+            }
+        }
+    }
+
+    /** Số timer mới gắn vào wheel tối đa mỗi tick (tránh 1 tick dài bất thường khi có đợt hẹn lớn). */
+    private static final int TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long tick; // chỉ thread wheel
+
+    // ===== Thống kê =====
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private final LongAdder driftSumNanos = new LongAdder();
+    private volatile long driftMaxNanos;
+
+    public TimerWheel() {
+        this(Long.getLong("timer.tick.ms", 10), Integer.getInteger("timer.wheel.size", 512));
+    }
+
+    public TimerWheel(long tickMs, int size) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        int n = Integer.highestOneBit(Math.max(2, size) - 1) << 1; // luỹ thừa 2 >= size
+        this.wheel = new Bucket[n];
+        for (int i = 0; i < n; i++) wheel[i] = new Bucket();
+        this.mask = n - 1;
+        this.thread = new Thread(this, "timer-wheel");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /* ==================== API ==================== */
+
+    /** Hẹn task chạy sau delay (trên thread wheel). Gọi được từ mọi thread. */
+    @Override
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = now() + Math.max(0, unit.toNanos(delay));
+        Timeout t = new Timeout(this, task, deadline);
+        pending.incrementAndGet();
+        incoming.add(t);
+        return t;
+    }
+
+    @Override
+    public long nanoTime() { return System.nanoTime(); }
+
+    @Override
+    public long currentTimeMillis() { return System.currentTimeMillis(); }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    public long pendingTimers()   { return pending.get(); }
+    public long expiredTimers()   { return expiredCount.sum(); }
+    public long cancelledTimers() { return cancelledCount.sum(); }
+    public long maxDriftNanos()   { return driftMaxNanos; }
+
+    public double avgDriftMillis() {
+        long n = expiredCount.sum();
+        return (n == 0) ? 0 : driftSumNanos.sum() / (double) n / 1e6;
+    }
+
+    /** Dòng tóm tắt cho log: pending/expired/cancelled + drift. */
+    public String summary() {
+        return String.format("timers pending=%d expired=%d cancelled=%d driftAvgMs=%.2f driftMaxMs=%.2f",
+                pendingTimers(), expiredTimers(), cancelledTimers(), avgDriftMillis(), maxDriftNanos() / 1e6);
+    }
+
+    /* ==================== Thread wheel ==================== */
+
+    @Override
+    public void run() {
+        while (running) {
+            waitForNextTick();
+            if (!running) break;
+            removeCancelled();
+            transferIncoming();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /** Ngủ tới hết tick hiện tại. */
+    private void waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (running) {
+            long sleep = deadline - now();
+            if (sleep <= 0) return;
+            LockSupport.parkNanos(this, sleep);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            Bucket b = t.bucket;
+            if (b != null) b.remove(t);
+            pending.decrementAndGet();
+            cancelledCount.increment();
+        }
+    }
+
+    private void transferIncoming() {
+        for (int i = 0; i < TRANSFER_PER_TICK; i++) {
+            Timeout t = incoming.poll();
+            if (t == null) return;
+            if (t.state != ST_INIT) continue; // huỷ trước khi kịp gắn; removeCancelled đã tính
+            long calculated = t.deadline / tickNanos;
+            t.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick); // đã quá hạn -> chạy ở tick hiện tại
+            wheel[(int) (ticks & mask)].add(t);
+        }
+    }
+
+    private void recordDrift(long driftNanos) {
+        expiredCount.increment();
+        if (driftNanos < 0) driftNanos = 0;
+        driftSumNanos.add(driftNanos);
+        ServerMetrics.TIMER_DRIFT_SECONDS.record(driftNanos);
+        if (driftNanos > driftMaxNanos) driftMaxNanos = driftNanos; // chỉ thread wheel ghi
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+}
@@ -0,0 +1,168 @@
+package com.mafiaonline.server;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Bảng đếm phiếu theo số ghế (SeatIndex) — chỉ mảng int, không boxing, không Map.
+ * - voteOf[voter] = ghế được bầu (-1: chưa bầu); count[target] = số phiếu
+ * - Bầu lại chỉ chuyển 1 phiếu: count cũ -1, count mới +1
+ * - Dẫn đầu O(1) mỗi phiếu: các ghế cùng số phiếu c nằm chung 1 danh sách liên kết đôi (head[c], next/prev),
+ *   biết max và cỡ nhóm max -> leader() / isTie() không cần duyệt
+ *
+ * Dùng cho phiếu treo cổ ban ngày và phiếu giết của Mafia ban đêm. Chỉ chạy trên RoomLoop của phòng.
+ */
+final class VoteTally {
+
+    private static final int NONE = -1;
+
+    private int[] voteOf;     // voter -> target
+    private int[] count;      // target -> số phiếu
+    private int[] next, prev; // danh sách theo số phiếu (chỉ ghế có count > 0)
+    private int[] head;       // head[c] = ghế đầu danh sách có đúng c phiếu
+    private int[] size;       // size[c] = số ghế có đúng c phiếu
+    private int max;          // số phiếu cao nhất hiện tại
+    private int votes;        // tổng số phiếu đang có hiệu lực
+
+    VoteTally() {
+        this(16);
+    }
+
+    VoteTally(int capacity) {
+        allocate(Math.max(4, capacity));
+    }
+
+    /** voter bầu target (bầu lại thì phiếu cũ được chuyển). */
+    void cast(int voter, int target) {
+        ensureCapacity(Math.max(voter, target) + 1);
+        int old = voteOf[voter];
+        if (old == target) return;
+        if (old != NONE) decrement(old);
+        else votes++;
+        voteOf[voter] = target;
+        increment(target);
+    }
+
+    /** Rút phiếu của voter (nếu có). */
+    void retract(int voter) {
+        if (voter < 0 || voter >= voteOf.length) return;
+        int old = voteOf[voter];
+        if (old == NONE) return;
+        voteOf[voter] = NONE;
+        votes--;
+        decrement(old);
+    }
+
+    /** Ghế rời phòng (có thể được người khác ngồi lại): bỏ phiếu của ghế đó và mọi phiếu bầu cho ghế đó. */
+    void removeSeat(int seat) {
+        if (seat < 0 || seat >= voteOf.length) return;
+        retract(seat);
+        if (count[seat] == 0) return;
+        for (int v = 0; v < voteOf.length; v++) {
+            if (voteOf[v] == seat) retract(v);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(voteOf, NONE);
+        Arrays.fill(count, 0);
+        Arrays.fill(head, NONE);
+        Arrays.fill(size, 0);
+        max = 0;
+        votes = 0;
+    }
+
+    /* ==================== Truy vấn O(1) ==================== */
+
+    boolean isEmpty()       { return votes == 0; }
+    int votes()             { return votes; }
+    int maxCount()          { return max; }
+    boolean isTie()         { return max > 0 && size[max] > 1; }
+    int countOf(int seat)   { return (seat >= 0 && seat < count.length) ? count[seat] : 0; }
+    int voteOf(int voter)   { return (voter >= 0 && voter < voteOf.length) ? voteOf[voter] : NONE; }
+
+    /** Ghế dẫn đầu duy nhất; -1 nếu chưa có phiếu hoặc đang hoà. */
+    int leader() {
+        return (max > 0 && size[max] == 1) ? head[max] : NONE;
+    }
+
+    /** "a=3,b=2,c=1" — theo số phiếu giảm dần (duyệt từ nhóm max xuống), tên lấy qua name(seat). */
+    String format(IntFunction<String> name) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = max; c > 0; c--) {
+            for (int s = head[c]; s != NONE; s = next[s]) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(name.apply(s)).append('=').append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /* ==================== Nội bộ ==================== */
+
+    private void increment(int seat) {
+        int c = count[seat];
+        if (c > 0) unlink(seat, c);
+        count[seat] = ++c;
+        link(seat, c);
+        if (c > max) max = c;
+    }
+
+    private void decrement(int seat) {
+        int c = count[seat];
+        unlink(seat, c);
+        count[seat] = --c;
+        if (c > 0) link(seat, c);
+        if (max == c + 1 && size[c + 1] == 0) max = c; // nhóm max vừa rỗng -> max giảm đúng 1
+    }
+
+    private void link(int seat, int c) {
+        int h = head[c];
+        next[seat] = h;
+        prev[seat] = NONE;
+        if (h != NONE) prev[h] = seat;
+        head[c] = seat;
+        size[c]++;
+    }
+
+    private void unlink(int seat, int c) {
+        int n = next[seat], p = prev[seat];
+        if (p != NONE) next[p] = n;
+        else head[c] = n;
+        if (n != NONE) prev[n] = p;
+        next[seat] = prev[seat] = NONE;
+        size[c]--;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= voteOf.length) return;
+        int old = voteOf.length;
+        int cap = Math.max(needed, old * 2);
+        voteOf = grow(voteOf, cap, NONE);
+        count  = grow(count, cap, 0);
+        next   = grow(next, cap, NONE);
+        prev   = grow(prev, cap, NONE);
+        head   = grow(head, cap + 1, NONE);
+        size   = grow(size, cap + 1, 0);
+    }
+
+    private void allocate(int cap) {
+        voteOf = new int[cap];
+        count = new int[cap];
+        next = new int[cap];
+        prev = new int[cap];
+        head = new int[cap + 1]; // số phiếu tối đa = số ghế
+        size = new int[cap + 1];
+        Arrays.fill(voteOf, NONE);
+        Arrays.fill(next, NONE);
+        Arrays.fill(prev, NONE);
+        Arrays.fill(head, NONE);
+    }
+
+    private static int[] grow(int[] a, int cap, int fill) {
+        int old = a.length;
+        int[] b = Arrays.copyOf(a, cap);
+        if (fill != 0) Arrays.fill(b, old, cap, fill);
+        return b;
+    }
+}
@@ -0,0 +1,406 @@
+package com.mafiaonline.server.auth;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.metrics.ServerMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Kho tài khoản dạng log chỉ ghi nối (thay cho ghi lại cả accounts.json mỗi lần đăng ký):
+ *
+ *   file    = "MACC" (int magic) + int version, rồi các record
+ *   record  = int bodyLength, int crc32c(body), body: byte op (1 = PUT, 2 = DELETE), str username, str password
+ *   str     = u16 số byte + UTF-8. Record sau thắng record trước cùng username.
+ *
+ * - Đổi dữ liệu (create/update/delete): cập nhật map trong bộ nhớ + mã hoá record + xếp hàng trong 1 khoá rất ngắn
+ *   (không I/O) để thứ tự trong file khớp thứ tự trong map; trả Future xong khi record đã force xuống đĩa
+ * - 1 thread "accounts-writer" gom mọi record đang chờ, ghi 1 lần (gathering write), force 1 lần rồi báo cho
+ *   cả nhóm (group commit): N đăng ký cùng lúc tốn 1 fsync, mỗi record O(1) byte bất kể số tài khoản
+ * - Compaction: thread ghi giữ bản sao trạng thái đúng như trong file; khi số record chết (bị ghi đè / xoá)
+ *   vượt số tài khoản sống và vượt -Dauth.compact.min, viết bản gọn ra .tmp, force, đổi tên đè lên file log
+ * - Khởi động: đọc tuần tự 1 lượt (không Jackson); record cụt / sai CRC ở cuối (crash giữa lúc ghi) bị cắt bỏ
+ * - Chưa có file log mà có accounts.json (định dạng cũ) -> nhập 1 lần, ghi bản gọn; file json giữ nguyên làm bản lưu
+ *
+ * VM options: -Dauth.log.file=accounts.log  -Dauth.fsync=true  -Dauth.compact.min=10000
+ */
+final class AccountStore implements Closeable {
+
+    private static final Logger LOG = Log.get(AccountStore.class);
+
+    static final int MAGIC = 0x4D414343; // "MACC"
+    static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    private static final int RECORD_HEADER = 8;
+    private static final byte OP_PUT = 1, OP_DELETE = 2;
+    private static final int MAX_BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** 1 record đã mã hoá chờ ghi. */
+    private record Pending(String user, String password, byte[] bytes, CompletableFuture<Void> done) {}
+
+    private final Path file;
+    private final boolean fsync;
+    private final long compactMin;
+
+    private final Map<String, String> accounts;          // bản đọc: login/đăng ký tra ở đây
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // chỉ thread ghi (sau khi khởi tạo)
+    private final Map<String, String> durable;           // trạng thái đúng như trong file (cho compaction)
+    private FileChannel channel;
+    private long records;                                // số record trong file hiện tại
+    private volatile long appended, forces, compactions;
+
+    AccountStore(Path file, Path legacyJson, boolean fsync, long compactMin) throws IOException {
+        this.file = file;
+        this.fsync = fsync;
+        this.compactMin = Math.max(1, compactMin);
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+
+        long t0 = System.nanoTime();
+        this.durable = new HashMap<>();
+        if (Files.exists(file)) {
+            long good = load(file);
+            if (good < Files.size(file)) {
+                LOG.warn("[Auth] {} hỏng/cụt từ byte {} — cắt bỏ {} byte cuối", file, good, Files.size(file) - good);
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(good);
+                    ch.force(true);
+                }
+            }
+            this.channel = openAppend(file);
+        } else {
+            if (legacyJson != null && Files.exists(legacyJson)) {
+                Map<String, String> m = new ObjectMapper().readValue(legacyJson.toFile(), new TypeReference<Map<String, String>>() {});
+                if (m != null) durable.putAll(m);
+                LOG.info("[Auth] Nhập {} tài khoản từ {} sang {}", durable.size(), legacyJson, file);
+            }
+            writeCompacted();
+        }
+        this.accounts = new ConcurrentHashMap<>(durable);
+        LOG.info("[Auth] {} tài khoản từ {} trong {} ms", accounts.size(), file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+
+        this.writer = new Thread(this::writeLoop, "accounts-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /* ==================== Đọc / đổi (mọi thread) ==================== */
+
+    String password(String user) { return accounts.get(user); }
+
+    int size() { return accounts.size(); }
+
+    /** Thêm tài khoản mới; null nếu username đã tồn tại. */
+    CompletableFuture<Void> create(String user, String password) {
+        synchronized (this) {
+            if (accounts.putIfAbsent(user, password) != null) return null;
+            return enqueue(user, password);
+        }
+    }
+
+    /** Đổi mật khẩu nếu mật khẩu hiện tại là expected; null nếu không khớp. */
+    CompletableFuture<Void> update(String user, String expected, String password) {
+        synchronized (this) {
+            if (!accounts.replace(user, expected, password)) return null;
+            return enqueue(user, password);
+        }
+    }
+
+    /** Xoá tài khoản; null nếu không có. */
+    CompletableFuture<Void> delete(String user) {
+        synchronized (this) {
+            if (accounts.remove(user) == null) return null;
+            return enqueue(user, null);
+        }
+    }
+
+    /**
+     * Record không ghi được -> trả map về giá trị cũ (previous null = chưa có tài khoản; written null = đã xoá),
+     * chỉ khi chưa ai đổi tiếp tài khoản này. File không cần sửa: thread ghi đã viết lại bản gọn không có record đó.
+     */
+    void rollback(String user, String written, String previous) {
+        if (written == null) {
+            if (previous != null) accounts.putIfAbsent(user, previous);
+        } else if (previous == null) {
+            accounts.remove(user, written);
+        } else {
+            accounts.replace(user, written, previous);
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(String user, String password) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!running) {
+            done.completeExceptionally(new IOException("account store closed"));
+            return done;
+        }
+        queue.add(new Pending(user, password, encode(user, password), done));
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) LockSupport.unpark(writer);
+        return done;
+    }
+
+    /* ==================== Thread ghi ==================== */
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        maybeCompact();
+        while (running || !queue.isEmpty()) {
+            Pending p;
+            while (batch.size() < MAX_BATCH && (p = queue.poll()) != null) batch.add(p);
+            if (batch.isEmpty()) {
+                sleeping.set(true);
+                if (queue.isEmpty() && running) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                sleeping.set(false);
+                continue;
+            }
+            commit(batch);
+            batch.clear();
+            maybeCompact();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /** Ghi cả nhóm + 1 lần force, rồi mới báo xong cho từng người gọi. */
+    private void commit(List<Pending> batch) {
+        ByteBuffer[] bufs = new ByteBuffer[batch.size()];
+        for (int i = 0; i < bufs.length; i++) bufs[i] = ByteBuffer.wrap(batch.get(i).bytes());
+        long t0 = System.nanoTime();
+        try {
+            writeFully(channel, bufs);
+            if (fsync) channel.force(false);
+        } catch (IOException e) {
+            LOG.error("[Auth] Ghi {} lỗi: {} — {} thay đổi không được lưu", file, e.getMessage(), batch.size());
+            for (Pending p : batch) p.done().completeExceptionally(e);
+            reopenAfterError();
+            return;
+        }
+        ServerMetrics.ACCOUNT_COMMIT_SECONDS.recordSince(t0);
+        ServerMetrics.ACCOUNT_RECORDS.add(batch.size());
+        for (Pending p : batch) {
+            if (p.password() != null) durable.put(p.user(), p.password());
+            else durable.remove(p.user());
+        }
+        records += batch.size();
+        appended += batch.size();
+        forces++;
+        for (Pending p : batch) p.done().complete(null);
+    }
+
+    /** Sau lỗi ghi có thể còn nửa record ở cuối file: viết lại bản gọn từ trạng thái đã ghi chắc. */
+    private void reopenAfterError() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        try {
+            writeCompacted();
+        } catch (IOException e) {
+            LOG.error("[Auth] Không viết lại được {}: {}", file, e.getMessage());
+            try {
+                channel = openAppend(file);
+            } catch (IOException again) {
+                LOG.error("[Auth] Không mở lại được {}: {}", file, again.getMessage());
+            }
+        }
+    }
+
+    private void maybeCompact() {
+        long dead = records - durable.size();
+        if (dead < compactMin || dead <= durable.size()) return;
+        long t0 = System.nanoTime();
+        long before = records;
+        try {
+            channel.close();
+            writeCompacted();
+            compactions++;
+            LOG.info("[Auth] Compaction accounts log: {} -> {} record trong {} ms", before, records,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+        } catch (IOException e) {
+            LOG.error("[Auth] Compaction {} lỗi: {}", file, e.getMessage());
+            try {
+                if (!channel.isOpen()) channel = openAppend(file);
+            } catch (IOException again) {
+                LOG.error("[Auth] Không mở lại được {}: {}", file, again.getMessage());
+            }
+        }
+    }
+
+    /** Ghi mọi tài khoản trong durable ra .tmp (force) rồi đổi tên đè lên file log, mở lại để ghi nối. */
+    private void writeCompacted() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            buf.putInt(MAGIC).putInt(VERSION);
+            for (Map.Entry<String, String> e : durable.entrySet()) {
+                byte[] rec = encode(e.getKey(), e.getValue());
+                if (buf.remaining() < rec.length) {
+                    buf.flip();
+                    while (buf.hasRemaining()) out.write(buf);
+                    buf.clear();
+                    if (rec.length > buf.capacity()) buf = ByteBuffer.allocate(rec.length);
+                }
+                buf.put(rec);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) out.write(buf);
+            out.force(true);
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        records = durable.size();
+        channel = openAppend(file);
+    }
+
+    private static FileChannel openAppend(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+        return ch;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer[] bufs) throws IOException {
+        int i = 0;
+        while (i < bufs.length) {
+            ch.write(bufs, i, bufs.length - i);
+            while (i < bufs.length && !bufs[i].hasRemaining()) i++;
+        }
+    }
+
+    /* ==================== Định dạng ==================== */
+
+    /** Đọc cả file vào durable; trả về vị trí ngay sau record hợp lệ cuối cùng. */
+    private long load(Path path) throws IOException {
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 256 * 1024))) {
+            long size = Files.size(path);
+            if (size < FILE_HEADER) return 0;
+            int magic = in.readInt(), version = in.readInt();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException(path + " không phải account log (magic/version " + magic + "/" + version + ")");
+            }
+            long pos = FILE_HEADER;
+            byte[] body = new byte[256];
+            CRC32C crc = new CRC32C();
+            while (pos + RECORD_HEADER <= size) {
+                int len, sum;
+                try {
+                    len = in.readInt();
+                    sum = in.readInt();
+                } catch (EOFException torn) {
+                    break;
+                }
+                if (len <= 0 || len > size - pos - RECORD_HEADER) break;
+                if (body.length < len) body = new byte[Math.max(len, body.length * 2)];
+                in.readFully(body, 0, len);
+                crc.reset();
+                crc.update(body, 0, len);
+                if ((int) crc.getValue() != sum) break;
+                apply(ByteBuffer.wrap(body, 0, len));
+                pos += RECORD_HEADER + len;
+                records++;
+            }
+            return pos;
+        }
+    }
+
+    private void apply(ByteBuffer b) {
+        byte op = b.get();
+        String user = str(b);
+        String password = str(b);
+        if (op == OP_PUT) durable.put(user, password);
+        else if (op == OP_DELETE) durable.remove(user);
+    }
+
+    private static String str(ByteBuffer b) {
+        int n = b.getShort() & 0xFFFF;
+        String s = new String(b.array(), b.arrayOffset() + b.position(), n, StandardCharsets.UTF_8);
+        b.position(b.position() + n);
+        return s;
+    }
+
+    /** password null = DELETE. */
+    static byte[] encode(String user, String password) {
+        byte[] u = user.getBytes(StandardCharsets.UTF_8);
+        byte[] p = password == null ? new byte[0] : password.getBytes(StandardCharsets.UTF_8);
+        int ul = Math.min(u.length, 0xFFFF), pl = Math.min(p.length, 0xFFFF);
+        int len = 1 + 2 + ul + 2 + pl;
+        ByteBuffer b = ByteBuffer.allocate(RECORD_HEADER + len);
+        b.putInt(len).putInt(0);
+        b.put(password == null ? OP_DELETE : OP_PUT);
+        b.putShort((short) ul).put(u, 0, ul);
+        b.putShort((short) pl).put(p, 0, pl);
+        CRC32C crc = new CRC32C();
+        crc.update(b.array(), RECORD_HEADER, len);
+        b.putInt(4, (int) crc.getValue());
+        return b.array();
+    }
+
+    /* ==================== Thống kê / đóng ==================== */
+
+    long appendedRecords() { return appended; }
+
+    long forces() { return forces; }
+
+    long compactions() { return compactions; }
+
+    String summary() {
+        return "accounts=" + accounts.size() + " appended=" + appended + " forces=" + forces
+                + " avgBatch=" + (forces == 0 ? "0" : String.format("%.1f", appended / (double) forces))
+                + " compactions=" + compactions;
+    }
+
+    /** Ghi + force nốt record đang chờ rồi dừng thread ghi. */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AccountStore[" + file + ", " + accounts.size() + " accounts]";
+    }
+}
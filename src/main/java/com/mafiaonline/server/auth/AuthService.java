@@ -1,113 +1,300 @@
 package com.mafiaonline.server.auth;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.metrics.ServerMetrics;
 
 import java.io.IOException;
-import java.nio.file.*;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 /**
- * AuthService (NO HASH) — lưu username/mật khẩu dạng PLAIN TEXT vào ./data/accounts.json
- * Cấu hình đường dẫn bằng VM options (tuỳ chọn):
- *   -Dauth.data.dir=/var/mafia   -Dauth.accounts.file=users.json
+ * AuthService — tài khoản lưu trong ./data/accounts.log (log chỉ ghi nối, xem AccountStore),
+ * mật khẩu băm PBKDF2 (xem PasswordHasher). Tài khoản cũ còn mật khẩu plain text được băm lại
+ * ở lần đăng nhập đúng kế tiếp (không cần bước chuyển đổi riêng).
+ * Cấu hình bằng VM options (tuỳ chọn):
+ *   -Dauth.data.dir=/var/mafia   -Dauth.log.file=accounts.log
+ *   -Dauth.accounts.file=users.json   file JSON định dạng cũ, chỉ đọc 1 lần để nhập khi chưa có accounts.log
+ *   -Dauth.fsync=false   -Dauth.compact.min=10000   -Dauth.commit.timeout.ms=5000
+ *   -Dauth.pbkdf2.iterations=100000   -Dauth.threads=<số CPU>   -Dauth.queue=<32 x threads>   -Dauth.queue.timeout.ms=3000
+ *   -Dsession.ttl.seconds=21600   -Dsession.secret=...   token phiên cho /resume (xem SessionTokens)
+ * Băm/kiểm tra chạy trên executor riêng ("auth-N"), số thread và hàng đợi có chặn:
+ * - thread đọc / event loop chỉ nộp việc rồi quay lại, bão đăng nhập không làm nghẽn người đang chơi
+ * - hàng đợi đầy -> trả BUSY ngay (không chờ); việc nằm hàng đợi quá auth.queue.timeout.ms cũng BUSY
+ *   (client có lẽ đã bỏ cuộc) — xem mafia_auth_rejected_total, mafia_auth_queue_depth
+ * Không còn khoá quanh I/O: nhiều đăng ký cùng lúc chờ chung 1 lần fsync (group commit) rồi mới trả OK.
  *
  * API:
- *   String register(String username, String password)  // null nếu OK, ngược lại trả về thông báo lỗi
- *   boolean login(String username, String password)
- *   boolean changePassword(String username, String oldPass, String newPass)  // tuỳ chọn
+ *   CompletableFuture<String> registerAsync(String username, String password)  // null nếu OK, ngược lại thông báo lỗi
+ *   CompletableFuture<LoginResult> loginAsync(String username, String password)
+ *   String register(...) / boolean login(...)   // bản chờ kết quả, cho công cụ và thread riêng của phiên
+ *   boolean changePassword(String username, String oldPass, String newPass)  // tuỳ chọn, chạy trên thread gọi
  *   boolean deleteUser(String username)  // tuỳ chọn
+ *   String issueSession(String username) / String resumeSession(String token) / void revokeSessions(String username)
  */
-public class AuthService {
+public class AuthService implements AutoCloseable {
+
+    private static final Logger LOG = Log.get(AuthService.class);
+
     // Policy tối thiểu (đặt ở đây để không cần sửa Protocol.java)
     public static final String USERNAME_REGEX = "^[A-Za-z0-9_]{3,16}$";
     public static final int MIN_PASSWORD_LEN = 6;
     public static final int MAX_PASSWORD_LEN = 64;
 
+    public static final String BUSY_MESSAGE = "Server đang bận, vui lòng thử lại sau ít giây.";
+
+    public enum LoginResult { OK, FAILED, BUSY }
+
     private static final Pattern USERNAME_PATTERN = Pattern.compile(USERNAME_REGEX);
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final long COMMIT_TIMEOUT_MS = Long.getLong("auth.commit.timeout.ms", 5000);
+    private static final long QUEUE_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("auth.queue.timeout.ms", 3000));
 
-    private final Path dataDir;
-    private final Path accFile;
+    /** Kết quả nội bộ khi việc bị từ chối vì executor quá tải. */
+    private static final class Busy extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        Busy() { super(null, null, false, false); }
+    }
+    private static final Busy BUSY = new Busy();
 
-    // Lưu PLAIN TEXT: username -> password
-    private final Map<String, String> accounts = new ConcurrentHashMap<>();
+    // username -> chuỗi PBKDF2 (hoặc plain text của bản cũ, chờ băm lại)
+    private final AccountStore store;
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor executor;
+    private final SessionTokens sessions;
+    /** Hash giả để username không tồn tại tốn cùng thời gian như sai mật khẩu (không dò được tên qua thời gian). */
+    private final String dummyHash;
 
     public AuthService() {
         // Có thể đổi nơi lưu bằng system properties
-        this.dataDir = Paths.get(System.getProperty("auth.data.dir", "data"));
-        this.accFile = dataDir.resolve(System.getProperty("auth.accounts.file", "accounts.json"));
-        load();
-    }
-
-    /** Đọc dữ liệu từ file vào bộ nhớ (nếu chưa có file thì coi như rỗng). */
-    public synchronized void load() {
+        Path dataDir = Paths.get(System.getProperty("auth.data.dir", "data"));
+        Path logFile = dataDir.resolve(System.getProperty("auth.log.file", "accounts.log"));
+        Path legacy = dataDir.resolve(System.getProperty("auth.accounts.file", "accounts.json"));
         try {
-            if (!Files.exists(dataDir)) Files.createDirectories(dataDir);
-            if (Files.exists(accFile)) {
-                Map<String, String> m = mapper.readValue(
-                        accFile.toFile(),
-                        new TypeReference<Map<String, String>>() {}
-                );
-                accounts.clear();
-                if (m != null) accounts.putAll(m);
-            }
+            this.store = new AccountStore(logFile, legacy,
+                    Boolean.parseBoolean(System.getProperty("auth.fsync", "true")),
+                    Long.getLong("auth.compact.min", 10_000));
         } catch (IOException e) {
-            System.err.println("AuthService load error: " + e.getMessage());
+            LOG.error("[Auth] Load error {}: {}", logFile, e.getMessage());
+            throw new UncheckedIOException(e);
         }
+        this.hasher = new PasswordHasher(Integer.getInteger("auth.pbkdf2.iterations", 100_000));
+        int threads = Math.max(1, Integer.getInteger("auth.threads", Runtime.getRuntime().availableProcessors()));
+        int queue = Math.max(1, Integer.getInteger("auth.queue", 32 * threads));
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), r -> {
+                    Thread t = new Thread(r, "auth-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = hasher.hash("dummy-password");
+        this.sessions = SessionTokens.load(dataDir);
+        LOG.info("[Auth] PBKDF2 {} vòng, {} thread, hàng đợi {}", hasher.iterations(), threads, queue);
     }
 
-    /** Ghi file kiểu atomic (viết .tmp rồi đổi tên) để tránh hỏng file khi đang ghi. */
-    private synchronized void saveAtomic() {
-        try {
-            Path tmp = accFile.resolveSibling(accFile.getFileName().toString() + ".tmp");
-            mapper.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), accounts);
-            try {
-                Files.move(tmp, accFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            } catch (AtomicMoveNotSupportedException ex) {
-                Files.move(tmp, accFile, StandardCopyOption.REPLACE_EXISTING);
-            }
-        } catch (IOException e) {
-            System.err.println("AuthService save error: " + e.getMessage());
-        }
-    }
+    /* ==================== Đăng ký / đăng nhập (bất đồng bộ) ==================== */
 
     /**
-     * Đăng ký tài khoản mới. Trả về null nếu OK; ngược lại trả message lỗi cho client hiển thị.
+     * Đăng ký tài khoản mới. Future trả null nếu OK; ngược lại message lỗi cho client hiển thị.
+     * Kiểm tra rẻ (định dạng, trùng tên) làm ngay trên thread gọi; băm trên executor; xong khi record đã fsync.
      */
-    public synchronized String register(String username, String password) {
+    public CompletableFuture<String> registerAsync(String username, String password) {
+        long t0 = System.nanoTime();
         String err = validate(username, password);
-        if (err != null) return err;
-        if (accounts.containsKey(username)) return "Username đã tồn tại.";
-        accounts.put(username, password);  // LƯU PLAIN TEXT
-        saveAtomic();
-        return null;
+        if (err == null && store.password(username) != null) err = "Username đã tồn tại.";
+        if (err != null) return CompletableFuture.completedFuture(err);
+        return submit(() -> hasher.hash(password))
+                .thenCompose(hash -> {
+                    CompletableFuture<Void> saved = store.create(username, hash);
+                    if (saved == null) return CompletableFuture.completedFuture("Username đã tồn tại.");
+                    return saved.orTimeout(COMMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                            .handle((v, ex) -> committed(ex, username, hash, null) ? null : "Không lưu được tài khoản, thử lại sau.");
+                })
+                .exceptionally(ex -> busy(ex) ? BUSY_MESSAGE : internalError("register", username, ex))
+                .whenComplete((r, ex) -> ServerMetrics.AUTH_REGISTER_SECONDS.recordSince(t0));
     }
 
-    /** Đăng nhập: so sánh mật khẩu plain text. */
+    /** Đăng nhập: kiểm tra PBKDF2 trên executor; mật khẩu cũ (plain text / ít vòng hơn) được băm lại khi đúng. */
+    public CompletableFuture<LoginResult> loginAsync(String username, String password) {
+        if (username == null || password == null || password.length() > MAX_PASSWORD_LEN) {
+            return CompletableFuture.completedFuture(LoginResult.FAILED);
+        }
+        long t0 = System.nanoTime();
+        return submit(() -> {
+                    String stored = store.password(username);
+                    boolean ok = hasher.verify(password, stored != null ? stored : dummyHash) && stored != null;
+                    if (ok && hasher.needsRehash(stored)) rehash(username, stored, password);
+                    return ok ? LoginResult.OK : LoginResult.FAILED;
+                })
+                .exceptionally(ex -> {
+                    if (busy(ex)) return LoginResult.BUSY;
+                    internalError("login", username, ex);
+                    return LoginResult.FAILED;
+                })
+                .whenComplete((r, ex) -> ServerMetrics.AUTH_LOGIN_SECONDS.recordSince(t0));
+    }
+
+    /** Bản chờ kết quả của registerAsync(). */
+    public String register(String username, String password) {
+        return registerAsync(username, password).join();
+    }
+
+    /** Bản chờ kết quả của loginAsync(). */
     public boolean login(String username, String password) {
-        String stored = accounts.get(username);
-        return stored != null && stored.equals(password);
+        return loginAsync(username, password).join() == LoginResult.OK;
     }
 
-    /** (Tuỳ chọn) Đổi mật khẩu: yêu cầu đúng mật khẩu cũ. */
-    public synchronized boolean changePassword(String username, String oldPass, String newPass) {
-        String stored = accounts.get(username);
-        if (stored == null || !stored.equals(oldPass)) return false;
+    /** (Tuỳ chọn) Đổi mật khẩu: yêu cầu đúng mật khẩu cũ. Băm ngay trên thread gọi. */
+    public boolean changePassword(String username, String oldPass, String newPass) {
+        if (username == null || oldPass == null) return false;
         if (newPass == null || newPass.length() < MIN_PASSWORD_LEN || newPass.length() > MAX_PASSWORD_LEN) return false;
-        accounts.put(username, newPass);
-        saveAtomic();
-        return true;
+        String stored = store.password(username);
+        if (stored == null || !hasher.verify(oldPass, stored)) return false;
+        String hash = hasher.hash(newPass);
+        CompletableFuture<Void> saved = store.update(username, stored, hash);
+        if (saved == null) return false; // vừa bị đổi bởi phiên khác
+        return committed(await(saved), username, hash, stored);
     }
 
     /** (Tuỳ chọn) Xoá tài khoản. */
-    public synchronized boolean deleteUser(String username) {
-        if (accounts.remove(username) != null) {
-            saveAtomic();
+    public boolean deleteUser(String username) {
+        if (username == null) return false;
+        String old = store.password(username);
+        CompletableFuture<Void> saved = store.delete(username);
+        if (saved == null) return false;
+        return committed(await(saved), username, null, old);
+    }
+
+    /* ==================== Token phiên ==================== */
+
+    /** Token cho /resume, cấp sau khi đăng nhập (hoặc resume) thành công. */
+    public String issueSession(String username) { return sessions.issue(username); }
+
+    /** Username của token còn hạn, null nếu token sai/hết hạn/đã thu hồi hoặc tài khoản đã bị xoá. Không qua executor. */
+    public String resumeSession(String token) {
+        String username = sessions.verify(token);
+        return (username != null && store.password(username) != null) ? username : null;
+    }
+
+    /** /quit: token đã cấp cho username không /resume được nữa. */
+    public void revokeSessions(String username) { sessions.revoke(username); }
+
+    public long sessionTtlMillis() { return sessions.ttlMillis(); }
+
+    /** Số tài khoản đang có. */
+    public int accountCount() { return store.size(); }
+
+    /** Số việc đang chờ trên executor băm. */
+    public int queuedTasks() { return executor.getQueue().size(); }
+
+    /** Số record đã ghi nối / số lần fsync / số lần compaction (cho bench và log lúc tắt). */
+    public String storeSummary() { return store.summary(); }
+
+    /** Dừng executor băm, ghi nốt thay đổi tài khoản đang chờ rồi dừng thread ghi. */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        store.close();
+    }
+
+    /* ==================== Executor ==================== */
+
+    /** Nộp việc băm; hàng đợi đầy hoặc việc chờ quá lâu -> future lỗi BUSY (không chặn thread gọi). */
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        ServerMetrics.AUTH_QUEUE_DEPTH.inc();
+        try {
+            executor.execute(() -> {
+                ServerMetrics.AUTH_QUEUE_DEPTH.dec();
+                long waited = System.nanoTime() - queuedAt;
+                ServerMetrics.AUTH_QUEUE_SECONDS.record(waited);
+                if (waited > QUEUE_TIMEOUT_NANOS) {
+                    ServerMetrics.AUTH_REJECTED.inc();
+                    f.completeExceptionally(BUSY);
+                    return;
+                }
+                try {
+                    f.complete(work.get());
+                } catch (RuntimeException e) {
+                    f.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ServerMetrics.AUTH_QUEUE_DEPTH.dec();
+            ServerMetrics.AUTH_REJECTED.inc();
+            f.completeExceptionally(BUSY);
+        }
+        return f;
+    }
+
+    /** Băm lại mật khẩu cũ sau khi đăng nhập đúng (đang chạy trên executor); lỗi ghi chỉ log, lần sau thử lại. */
+    private void rehash(String username, String stored, String password) {
+        String hash = hasher.hash(password);
+        CompletableFuture<Void> saved = store.update(username, stored, hash);
+        if (saved == null) return; // vừa đổi mật khẩu ở phiên khác
+        saved.whenComplete((v, ex) -> {
+            if (ex == null) return;
+            store.rollback(username, hash, stored);
+            LOG.warn("[Auth] Không lưu được mật khẩu đã băm lại của {}: {}", username, ex.getMessage());
+        });
+    }
+
+    private static boolean busy(Throwable ex) {
+        return ex == BUSY || ex.getCause() == BUSY;
+    }
+
+    private static String internalError(String op, String username, Throwable ex) {
+        LOG.error("[Auth] {} {} lỗi", op, username, ex);
+        return "Lỗi máy chủ, thử lại sau.";
+    }
+
+    /* ==================== Ghi xuống đĩa ==================== */
+
+    /** Chờ record xuống đĩa; trả lỗi (null nếu xong). Interrupted được coi như quá hạn. */
+    private static Throwable await(CompletableFuture<Void> saved) {
+        try {
+            saved.get(COMMIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        } catch (TimeoutException e) {
+            return e;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TimeoutException("interrupted");
+        }
+    }
+
+    /**
+     * Kết quả ghi của 1 thay đổi. Lỗi ghi -> hoàn tác map về previous, false; quá hạn -> vẫn coi là OK
+     * (record đã xếp hàng, thread ghi sẽ ghi) nhưng cảnh báo vì đĩa đang rất chậm.
+     */
+    private boolean committed(Throwable ex, String username, String written, String previous) {
+        if (ex == null) return true;
+        Throwable cause = (ex.getCause() != null && !(ex instanceof TimeoutException)) ? ex.getCause() : ex;
+        if (cause instanceof TimeoutException) {
+            LOG.warn("[Auth] Ghi tài khoản {} chưa xong sau {} ms — vẫn trả OK", username, COMMIT_TIMEOUT_MS);
             return true;
         }
+        LOG.error("[Auth] Save error {}: {}", username, cause.getMessage());
+        store.rollback(username, written, previous);
         return false;
     }
 
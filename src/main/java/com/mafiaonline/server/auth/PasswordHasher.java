@@ -0,0 +1,88 @@
+package com.mafiaonline.server.auth;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Băm mật khẩu bằng PBKDF2-HMAC-SHA256 của JDK (không thêm thư viện). Chuỗi lưu trong AccountStore:
+ *   pbkdf2-sha256$<iterations>$<salt base64>$<hash base64>      salt 16 byte, hash 32 byte
+ * Chuỗi không có tiền tố trên là mật khẩu PLAIN TEXT từ bản cũ: verify() so thẳng (thời gian hằng),
+ * needsRehash() = true để AuthService băm lại ngay lần đăng nhập đúng kế tiếp.
+ * Chi phí chỉnh bằng -Dauth.pbkdf2.iterations (mặc định 100000, đo bằng AuthBench);
+ * hash cũ có ít vòng hơn cũng được băm lại khi đăng nhập.
+ * Mỗi lần hash/verify tốn hàng chục ms CPU — chỉ gọi trên executor của AuthService, không gọi trên loop.
+ */
+public final class PasswordHasher {
+
+    static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    /** SecretKeyFactory không hứa thread-safe; getInstance() mỗi lần lại tốn tra provider. */
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " không có trong JDK này", e);
+        }
+    });
+
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("iterations=" + iterations);
+        this.iterations = iterations;
+    }
+
+    public int iterations() { return iterations; }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] dk = derive(password, salt, iterations);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + '$' + b64.encodeToString(salt) + '$' + b64.encodeToString(dk);
+    }
+
+    /** stored: chuỗi do hash() tạo ra hoặc mật khẩu plain text cũ. Chuỗi hỏng -> false. */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) return false;
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) return false;
+        try {
+            int iter = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if (iter < 1 || expected.length == 0) return false;
+            return MessageDigest.isEqual(expected, derive(password, salt, iter));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** true nếu stored là plain text hoặc băm với số vòng khác cấu hình hiện tại. */
+    public boolean needsRehash(String stored) {
+        return stored == null || !stored.startsWith(PREFIX + iterations + '$');
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " lỗi", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
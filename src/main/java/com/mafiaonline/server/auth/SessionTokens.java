@@ -0,0 +1,132 @@
+package com.mafiaonline.server.auth;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token phiên có ký (HMAC-SHA256), trả kèm [AUTH_OK] để client /resume khi rớt mạng mà không băm lại mật khẩu:
+ *   v1.<username base64url>.<lúc cấp, ms hệ 36>.<HMAC(key, phần trước) base64url>
+ * - Kiểm tra = 1 HMAC + so thời gian hằng: rẻ, chạy thẳng trên thread đọc / event loop (không qua executor băm)
+ * - Hết hạn sau -Dsession.ttl.seconds (mặc định 21600 = 6 giờ) tính từ lúc cấp
+ * - /quit thu hồi mọi token đã cấp cho username đó (mốc "không trước" giữ trong bộ nhớ, mất khi khởi động lại)
+ * - Khoá: -Dsession.secret=<chuỗi> hoặc file <auth.data.dir>/session.key (32 byte ngẫu nhiên, tạo lần đầu)
+ *   -> token còn dùng được sau khi server khởi động lại, /resume về đúng ghế đã khôi phục từ journal
+ */
+public final class SessionTokens {
+
+    private static final Logger LOG = Log.get(SessionTokens.class);
+
+    private static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final Map<String, Long> notBefore = new ConcurrentHashMap<>(); // username -> token cấp trước mốc này bị từ chối
+    /** Mac không thread-safe; mỗi thread đọc / event loop giữ 1 bản. */
+    private final ThreadLocal<Mac> mac;
+
+    public SessionTokens(byte[] secret, long ttlMillis) {
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac m = Mac.getInstance(ALGORITHM);
+                m.init(key);
+                return m;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITHM + " không có trong JDK này", e);
+            }
+        });
+    }
+
+    /** Khoá từ -Dsession.secret, không thì đọc/tạo dataDir/session.key. */
+    static SessionTokens load(Path dataDir) {
+        long ttl = Long.getLong("session.ttl.seconds", 6 * 3600) * 1000;
+        String secret = System.getProperty("session.secret");
+        if (secret != null && !secret.isEmpty()) return new SessionTokens(secret.getBytes(StandardCharsets.UTF_8), ttl);
+        Path file = dataDir.resolve("session.key");
+        try {
+            if (Files.exists(file)) {
+                byte[] k = Files.readAllBytes(file);
+                if (k.length >= 16) return new SessionTokens(k, ttl);
+                LOG.warn("[Auth] {} quá ngắn ({} byte) — tạo khoá mới", file, k.length);
+            }
+            byte[] k = new byte[32];
+            new SecureRandom().nextBytes(k);
+            Files.createDirectories(dataDir);
+            Files.write(file, k, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            try {
+                Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {}
+            return new SessionTokens(k, ttl);
+        } catch (IOException e) {
+            LOG.warn("[Auth] Không đọc/ghi được {}: {} — token chỉ dùng được tới khi tắt server", file, e.getMessage());
+            byte[] k = new byte[32];
+            new SecureRandom().nextBytes(k);
+            return new SessionTokens(k, ttl);
+        }
+    }
+
+    public long ttlMillis() { return ttlMillis; }
+
+    public String issue(String username) {
+        return issue(username, System.currentTimeMillis());
+    }
+
+    String issue(String username, long issuedAt) {
+        String body = VERSION + '.' + B64.encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + '.' + Long.toString(issuedAt, 36);
+        return body + '.' + B64.encodeToString(sign(body));
+    }
+
+    /** Username nếu token đúng chữ ký, chưa hết hạn, chưa bị thu hồi; ngược lại null. */
+    public String verify(String token) {
+        return verify(token, System.currentTimeMillis());
+    }
+
+    String verify(String token, long now) {
+        if (token == null || token.length() > 512) return null;
+        int sig = token.lastIndexOf('.');
+        if (sig <= 0 || !token.startsWith(VERSION + '.')) return null;
+        String body = token.substring(0, sig);
+        try {
+            if (!MessageDigest.isEqual(sign(body), B64D.decode(token.substring(sig + 1)))) return null;
+            String[] parts = body.split("\\.");
+            if (parts.length != 3) return null;
+            String username = new String(B64D.decode(parts[1]), StandardCharsets.UTF_8);
+            long issuedAt = Long.parseLong(parts[2], 36);
+            if (now - issuedAt >= ttlMillis || issuedAt - now > 60_000) return null; // hết hạn / cấp "ở tương lai"
+            Long nb = notBefore.get(username);
+            if (nb != null && issuedAt < nb) return null;
+            return username;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Thu hồi mọi token đã cấp cho username tới lúc này (/quit). */
+    public void revoke(String username) {
+        notBefore.merge(username, System.currentTimeMillis() + 1, Math::max);
+    }
+
+    private byte[] sign(String body) {
+        return mac.get().doFinal(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,31 @@
+package com.mafiaonline.server.journal;
+
+/**
+ * Loại record trong journal. Mã (code) nằm trên đĩa — chỉ thêm mã mới, không đổi/xoá mã cũ.
+ */
+public enum EventType {
+    GAME_START(1),
+    STATE(2),
+    VOTE(3),
+    NIGHT_ACTION(4),
+    KILL(5),
+    GAME_END(6),
+    LEAVE(7),
+    PHASE(8);
+
+    private static final EventType[] BY_CODE;
+    static {
+        int max = 0;
+        for (EventType t : values()) max = Math.max(max, t.code);
+        BY_CODE = new EventType[max + 1];
+        for (EventType t : values()) BY_CODE[t.code] = t;
+    }
+
+    final byte code;
+
+    EventType(int code) { this.code = (byte) code; }
+
+    static EventType of(byte code) {
+        return (code > 0 && code < BY_CODE.length) ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,385 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Player;
+import com.mafiaonline.server.Role;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Journal sự kiện của mọi phòng trên node này — append-only, nhị phân, đọc lại bằng JournalReader.
+ * - RoomLoop chỉ mã hoá record (kèm CRC) rồi đẩy vào hàng đợi lock-free: KHÔNG bao giờ chặn loop;
+ *   hàng đợi đầy (-Djournal.queue.max) thì bỏ record và đếm dropped
+ * - 1 thread ghi ("journal-writer") copy record vào segment map sẵn (JournalSegment), hết chỗ thì mở segment mới
+ * - Group commit: force() (msync) tối đa 1 lần mỗi -Djournal.sync.ms cho cả nhóm record đã ghi
+ *   -> mất điện chỉ mất tối đa ~sync.ms cuối; 0 = force sau mỗi lượt gom
+ * - Checkpoint: thread "journal-checkpoint" fold phần journal đã force vào RecoveryState (các ván đang chơi)
+ *   và ghi snapshot mỗi -Djournal.snapshot.seconds -> khôi phục chỉ cần snapshot + đuôi ngắn (xem Recovery)
+ * - Giữ đĩa: sau mỗi snapshot, xoá segment nằm trọn trước mark của snapshot cũ nhất còn giữ (Recovery không bao giờ
+ *   đọc tới); -Djournal.retain.all=true giữ toàn bộ lịch sử (kiểm toán) — khi đó tự dọn data/journal
+ *
+ * Cấu hình (VM options):
+ *   -Djournal.enabled=true  -Djournal.dir=data/journal  -Djournal.segment.mb=64
+ *   -Djournal.sync.ms=10    -Djournal.queue.max=1000000 -Djournal.snapshot.seconds=30
+ *   -Djournal.retain.all=false
+ */
+public final class Journal implements RoomEventSink, Closeable {
+
+    private static final Logger LOG = Log.get(Journal.class);
+
+    /** Nghỉ tối đa khi rảnh và không có gì chờ force. */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Số record tối đa mỗi lượt gom trước khi xét force. */
+    private static final int MAX_BATCH = 65_536;
+    /** Số file snapshot giữ lại (bản mới nhất hỏng thì Recovery dùng bản trước). */
+    private static final int SNAPSHOTS_KEPT = 2;
+    /** Không xoá segment cũ (mặc định xoá phần snapshot đã bao trùm). */
+    private static final boolean RETAIN_ALL = Boolean.getBoolean("journal.retain.all");
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long syncNanos;
+    private final int queueMax;
+
+    private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // chỉ thread ghi
+    private JournalSegment segment;
+    private long nextSeq;
+    private long lastRetryNanos;
+    private volatile JournalMark durable;      // sau record cuối đã force (thread ghi công bố)
+
+    // checkpoint
+    private final RecoveryState model;         // chỉ chạy trong checkpoint() (synchronized)
+    private final long snapshotNanos;
+    private final Thread checkpointer;
+    private volatile long snapshots;
+
+    // ===== Thống kê =====
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long written;   // chỉ thread ghi ghi
+    private volatile long bytes;
+    private volatile long forces;
+    private volatile long batches;
+    private volatile long segments;
+    private volatile long pruned;    // segment đã xoá (chỉ constructor / checkpoint() ghi)
+
+    public static boolean enabled() {
+        return Boolean.parseBoolean(System.getProperty("journal.enabled", "true"));
+    }
+
+    public static Path defaultDir() {
+        return Paths.get(System.getProperty("journal.dir", "data/journal"));
+    }
+
+    /** Journal theo VM options; null nếu bị tắt hoặc không mở được thư mục (server vẫn chạy, chỉ không ghi). */
+    public static Journal openDefault() {
+        return openDefault(null);
+    }
+
+    /** Như openDefault() nhưng checkpoint tiếp tục từ các ván vừa khôi phục (null = không khôi phục). */
+    public static Journal openDefault(RecoveryState recovered) {
+        if (!enabled()) return null;
+        Path dir = defaultDir();
+        try {
+            return new Journal(dir,
+                    Integer.getInteger("journal.segment.mb", 64),
+                    Long.getLong("journal.sync.ms", 10),
+                    Integer.getInteger("journal.queue.max", 1_000_000),
+                    Long.getLong("journal.snapshot.seconds", 30),
+                    recovered);
+        } catch (IOException e) {
+            LOG.error("[Journal] Không mở được {}: {} — tắt journal.", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    public Journal(Path dir, int segmentMb, long syncMs, int queueMax) throws IOException {
+        this(dir, segmentMb, syncMs, queueMax, 30, null);
+    }
+
+    public Journal(Path dir, int segmentMb, long syncMs, int queueMax,
+                   long snapshotSeconds, RecoveryState recovered) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = (int) Math.min(1L << 30, Math.max(1, segmentMb) * 1024L * 1024L);
+        this.syncNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, syncMs));
+        this.queueMax = Math.max(1, queueMax);
+
+        Files.createDirectories(dir);
+        List<Path> existing = JournalSegment.list(dir);
+        // luôn mở segment mới khi khởi động: segment cũ có thể dở dang (crash) -> giữ nguyên để đọc
+        this.nextSeq = existing.isEmpty() ? 1 : JournalSegment.parseSeq(existing.get(existing.size() - 1)) + 1;
+        this.segment = openNext();
+
+        // Các ván của tiến trình trước mà không được khôi phục coi như đã bỏ: snapshot đầu tiên ghi ngay
+        // trạng thái xuất phát (rỗng / vừa khôi phục) tại đầu segment mới, để lần khôi phục sau không đọc lại chúng.
+        this.model = (recovered != null) ? recovered.copy() : new RecoveryState(); // phòng đọc bản gốc lúc restore
+        this.model.mark(new JournalMark(segment.seq(), JournalSegment.FILE_HEADER));
+        this.durable = model.mark();
+        this.model.write(dir, SNAPSHOTS_KEPT);
+        pruneSegments(); // segment của các lần chạy trước mà snapshot đã bao trùm
+        this.snapshotNanos = TimeUnit.SECONDS.toNanos(Math.max(1, snapshotSeconds));
+
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.checkpointer = new Thread(this::checkpointLoop, "journal-checkpoint");
+        this.checkpointer.setDaemon(true);
+        this.checkpointer.start();
+        LOG.info("[Journal] Writing to {} (segment {}MB, sync {}ms)",
+                segment.path(), segmentBytes >> 20, TimeUnit.NANOSECONDS.toMillis(syncNanos));
+    }
+
+    public Path dir() { return dir; }
+
+    /* ==================== RoomEventSink (chạy trên RoomLoop) ==================== */
+
+    @Override
+    public void gameStarted(String roomId, long gameId, Collection<Player> players) {
+        offer(JournalCodec.gameStart(System.currentTimeMillis(), roomId, gameId, players));
+    }
+
+    @Override
+    public void stateChanged(String roomId, long gameId, GameState state) {
+        offer(JournalCodec.state(System.currentTimeMillis(), roomId, gameId, state));
+    }
+
+    @Override
+    public void vote(String roomId, long gameId, String voter, String target) {
+        offer(JournalCodec.vote(System.currentTimeMillis(), roomId, gameId, voter, target));
+    }
+
+    @Override
+    public void nightAction(String roomId, long gameId, String actor, Role role, String target) {
+        offer(JournalCodec.nightAction(System.currentTimeMillis(), roomId, gameId, actor, role, target));
+    }
+
+    @Override
+    public void killed(String roomId, long gameId, String name, boolean silent) {
+        offer(JournalCodec.kill(System.currentTimeMillis(), roomId, gameId, name, silent));
+    }
+
+    @Override
+    public void gameEnded(String roomId, long gameId, String result) {
+        offer(JournalCodec.gameEnd(System.currentTimeMillis(), roomId, gameId, result));
+    }
+
+    @Override
+    public void playerLeft(String roomId, long gameId, String name) {
+        offer(JournalCodec.leave(System.currentTimeMillis(), roomId, gameId, name));
+    }
+
+    @Override
+    public void phaseStarted(String roomId, long gameId, GameState state, boolean voting, long deadlineMillis) {
+        offer(JournalCodec.phase(System.currentTimeMillis(), roomId, gameId, state, voting, deadlineMillis));
+    }
+
+    /** Xếp hàng 1 record đã mã hoá; không chặn. */
+    private void offer(byte[] record) {
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+        if (queued.incrementAndGet() > queueMax) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.add(record);
+        appended.increment();
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) LockSupport.unpark(writer);
+    }
+
+    /* ==================== Thread ghi ==================== */
+
+    private void writeLoop() {
+        boolean dirty = false;
+        long lastForce = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            int n = drain();
+            if (n > 0) {
+                dirty = true;
+                batches++;
+            }
+            long now = System.nanoTime();
+            if (dirty && now - lastForce >= syncNanos) {
+                commit();
+                dirty = false;
+                lastForce = now;
+            }
+            if (n == 0 && running) {
+                sleeping.set(true);
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, dirty ? Math.max(1, lastForce + syncNanos - now) : IDLE_PARK_NANOS);
+                }
+                sleeping.set(false);
+            }
+        }
+        if (segment != null) {
+            segment.close();
+            durable = new JournalMark(segment.seq(), segment.position());
+        }
+    }
+
+    /** Gom record đang chờ vào segment; trả về số record đã lấy khỏi hàng đợi. */
+    private int drain() {
+        int n = 0;
+        long w = 0, b = 0;
+        byte[] rec;
+        while (n < MAX_BATCH && (rec = queue.poll()) != null) {
+            n++;
+            if (ensureRoom(rec.length)) {
+                segment.append(rec);
+                w++;
+                b += rec.length;
+            } else {
+                dropped.increment();
+            }
+        }
+        if (n > 0) {
+            queued.addAndGet(-n);
+            written += w;
+            bytes += b;
+        }
+        return n;
+    }
+
+    /** Đảm bảo segment hiện tại còn đủ chỗ (mở segment mới nếu cần); false nếu không ghi được record này. */
+    private boolean ensureRoom(int len) {
+        if (len > segmentBytes - JournalSegment.FILE_HEADER) return false; // record lớn hơn cả segment
+        if (segment != null && segment.fits(len)) return true;
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+        long now = System.nanoTime();
+        if (lastRetryNanos != 0 && now - lastRetryNanos < TimeUnit.SECONDS.toNanos(1)) return false;
+        try {
+            segment = openNext();
+            lastRetryNanos = 0;
+            return true;
+        } catch (IOException e) {
+            lastRetryNanos = now;
+            LOG.error("[Journal] Không tạo được segment mới: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private JournalSegment openNext() throws IOException {
+        JournalSegment s = JournalSegment.create(dir, nextSeq++, segmentBytes);
+        segments++;
+        return s;
+    }
+
+    private void commit() {
+        if (segment == null) return;
+        segment.force();
+        forces++;
+        durable = new JournalMark(segment.seq(), segment.position());
+    }
+
+    /* ==================== Checkpoint ==================== */
+
+    private void checkpointLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, snapshotNanos);
+            if (!running) break;
+            checkpoint();
+        }
+    }
+
+    /**
+     * Fold phần journal đã force kể từ snapshot trước rồi ghi snapshot mới (không có gì mới thì bỏ qua).
+     * Chạy trên thread checkpoint; close() gọi lần cuối; bench gọi trực tiếp.
+     */
+    public synchronized void checkpoint() {
+        JournalMark to = durable;
+        if (to.compareTo(model.mark()) <= 0) return;
+        try {
+            model.mark(JournalReader.read(dir, model.mark(), to, model::apply));
+            model.write(dir, SNAPSHOTS_KEPT);
+            snapshots++;
+        } catch (IOException e) {
+            LOG.error("[Journal] Checkpoint lỗi: {}", e.getMessage(), e);
+            return;
+        }
+        pruneSegments();
+    }
+
+    /**
+     * Xoá segment có seq nhỏ hơn segment trong mark của snapshot CŨ NHẤT còn giữ: kể cả khi snapshot mới nhất hỏng,
+     * Recovery lùi về bản cũ đó cũng chỉ đọc từ mark của nó trở đi. Segment đang ghi luôn >= mark nên không bị đụng.
+     */
+    private void pruneSegments() {
+        if (RETAIN_ALL) return;
+        try {
+            List<Path> snaps = RecoveryState.list(dir);
+            long keepFrom = snaps.isEmpty() ? -1 : RecoveryState.markSegment(snaps.get(0));
+            if (keepFrom <= 0) return;
+            int n = 0;
+            for (Path seg : JournalSegment.list(dir)) {
+                if (JournalSegment.parseSeq(seg) >= keepFrom) break;
+                if (Files.deleteIfExists(seg)) n++;
+            }
+            if (n > 0) {
+                pruned += n;
+                LOG.info("[Journal] Xoá {} segment trước seg {} (snapshot cũ nhất còn giữ)", n, keepFrom);
+            }
+        } catch (IOException e) {
+            LOG.warn("[Journal] Không xoá được segment cũ: {}", e.getMessage());
+        }
+    }
+
+    /** Dừng nhận record, ghi + force hết phần còn trong hàng đợi, đóng segment rồi chụp snapshot cuối. */
+    @Override
+    public void close() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        LockSupport.unpark(checkpointer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            checkpointer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+
+    /* ==================== Thống kê ==================== */
+
+    public long appendedRecords() { return appended.sum(); }
+    public long writtenRecords()  { return written; }
+    public long droppedRecords()  { return dropped.sum(); }
+    public long writtenBytes()    { return bytes; }
+    public long forces()          { return forces; }
+    public int queuedRecords()    { return queued.get(); }
+
+    /** Dòng tóm tắt cho log. */
+    public String summary() {
+        long bt = batches;
+        return String.format("journal appended=%d written=%d dropped=%d bytes=%d forces=%d segments=%d pruned=%d avgBatch=%.1f snapshots=%d",
+                appendedRecords(), written, droppedRecords(), bytes, forces, segments, pruned,
+                bt == 0 ? 0.0 : written / (double) bt, snapshots);
+    }
+}
@@ -0,0 +1,215 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Player;
+import com.mafiaonline.server.Role;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Mã hoá / giải mã 1 record (big-endian):
+ *
+ *   int  bodyLength (> 0; 0 = hết dữ liệu trong segment)
+ *   int  crc32c(body)
+ *   body:
+ *     long timestampMillis
+ *     byte EventType.code
+ *     str  roomId
+ *     long gameId
+ *     payload:
+ *       GAME_START   u16 n, n × (str name, byte role)
+ *       STATE        byte state
+ *       VOTE         str voter, str target
+ *       NIGHT_ACTION str actor, byte role, str target
+ *       KILL         str name, byte silent
+ *       GAME_END     str result
+ *       LEAVE        str name
+ *       PHASE        byte state, byte voting, long deadlineMillis
+ *
+ *   str  = u16 số byte + UTF-8. role/state = ordinal của Role/GameState (enum chỉ được thêm giá trị ở cuối).
+ *
+ * encode chạy trên thread gọi (RoomLoop): record đã kèm header + CRC, thread ghi chỉ còn copy byte.
+ */
+final class JournalCodec {
+
+    static final int HEADER = 8;
+
+    private static final Role[] ROLES = Role.values();
+    private static final GameState[] STATES = GameState.values();
+
+    private JournalCodec() {}
+
+    /* ==================== Encode ==================== */
+
+    static byte[] gameStart(long ts, String room, long game, Collection<Player> players) {
+        Out o = begin(ts, EventType.GAME_START, room, game);
+        o.u16(players.size());
+        for (Player p : players) {
+            o.str(p.getName());
+            o.u8(p.getRole().ordinal());
+        }
+        return o.finish();
+    }
+
+    static byte[] state(long ts, String room, long game, GameState s) {
+        return begin(ts, EventType.STATE, room, game).u8(s.ordinal()).finish();
+    }
+
+    static byte[] vote(long ts, String room, long game, String voter, String target) {
+        return begin(ts, EventType.VOTE, room, game).str(voter).str(target).finish();
+    }
+
+    static byte[] nightAction(long ts, String room, long game, String actor, Role role, String target) {
+        return begin(ts, EventType.NIGHT_ACTION, room, game).str(actor).u8(role.ordinal()).str(target).finish();
+    }
+
+    static byte[] kill(long ts, String room, long game, String name, boolean silent) {
+        return begin(ts, EventType.KILL, room, game).str(name).u8(silent ? 1 : 0).finish();
+    }
+
+    static byte[] gameEnd(long ts, String room, long game, String result) {
+        return begin(ts, EventType.GAME_END, room, game).str(result).finish();
+    }
+
+    static byte[] leave(long ts, String room, long game, String name) {
+        return begin(ts, EventType.LEAVE, room, game).str(name).finish();
+    }
+
+    static byte[] phase(long ts, String room, long game, GameState s, boolean voting, long deadline) {
+        return begin(ts, EventType.PHASE, room, game).u8(s.ordinal()).u8(voting ? 1 : 0).i64(deadline).finish();
+    }
+
+    private static Out begin(long ts, EventType type, String room, long game) {
+        return new Out().i64(ts).u8(type.code).str(room).i64(game);
+    }
+
+    /** Bộ đệm ghi nhỏ, chừa sẵn 8 byte header (length + crc) ở đầu. */
+    private static final class Out {
+        private byte[] buf = new byte[64];
+        private int pos = HEADER;
+
+        Out u8(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+            return this;
+        }
+
+        Out u16(int v) {
+            ensure(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+            return this;
+        }
+
+        Out i64(long v) {
+            ensure(8);
+            for (int s = 56; s >= 0; s -= 8) buf[pos++] = (byte) (v >>> s);
+            return this;
+        }
+
+        Out str(String s) {
+            byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            int n = Math.min(b.length, 0xFFFF);
+            u16(n);
+            ensure(n);
+            System.arraycopy(b, 0, buf, pos, n);
+            pos += n;
+            return this;
+        }
+
+        byte[] finish() {
+            int len = pos - HEADER;
+            CRC32C crc = new CRC32C();
+            crc.update(buf, HEADER, len);
+            int c = (int) crc.getValue();
+            for (int i = 0; i < 4; i++) {
+                buf[i] = (byte) (len >>> (24 - 8 * i));
+                buf[4 + i] = (byte) (c >>> (24 - 8 * i));
+            }
+            return (pos == buf.length) ? buf : Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+        }
+    }
+
+    /* ==================== Decode ==================== */
+
+    /** true nếu body (đang ở position, dài len) khớp crc. Không đổi position của buffer. */
+    static boolean checkCrc(ByteBuffer buf, int len, int expected) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer body = buf.duplicate();
+        body.limit(body.position() + len);
+        crc.update(body);
+        return (int) crc.getValue() == expected;
+    }
+
+    /** Đọc body tại position hiện tại (đã kiểm CRC); null nếu loại record lạ (bản ghi mới hơn code đọc). */
+    static JournalEntry decode(ByteBuffer b) {
+        long ts = b.getLong();
+        EventType type = EventType.of(b.get());
+        String room = str(b);
+        long game = b.getLong();
+        if (type == null) return null;
+        JournalEntry e = new JournalEntry(type, ts, room, game);
+        switch (type) {
+            case GAME_START -> {
+                int n = b.getShort() & 0xFFFF;
+                List<String> names = new ArrayList<>(n);
+                List<Role> roles = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    names.add(str(b));
+                    roles.add(role(b.get()));
+                }
+                e.players = names;
+                e.roles = roles;
+            }
+            case STATE -> e.state = state(b.get());
+            case VOTE -> {
+                e.actor = str(b);
+                e.target = str(b);
+            }
+            case NIGHT_ACTION -> {
+                e.actor = str(b);
+                e.role = role(b.get());
+                e.target = str(b);
+            }
+            case KILL -> {
+                e.actor = str(b);
+                e.silent = b.get() != 0;
+            }
+            case GAME_END -> e.result = str(b);
+            case LEAVE -> e.actor = str(b);
+            case PHASE -> {
+                e.state = state(b.get());
+                e.voting = b.get() != 0;
+                e.deadline = b.getLong();
+            }
+        }
+        return e;
+    }
+
+    private static String str(ByteBuffer b) {
+        int n = b.getShort() & 0xFFFF;
+        byte[] s = new byte[n];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    private static GameState state(byte v) {
+        int s = v & 0xFF;
+        return (s < STATES.length) ? STATES[s] : null;
+    }
+
+    private static Role role(byte v) {
+        int r = v & 0xFF;
+        return (r < ROLES.length) ? ROLES[r] : Role.UNASSIGNED;
+    }
+}
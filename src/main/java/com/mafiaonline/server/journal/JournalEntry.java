@@ -0,0 +1,80 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Role;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 1 record đã giải mã (JournalReader). Trường nào không thuộc loại record thì null/false.
+ * - actor: voter (VOTE), người hành động (NIGHT_ACTION), người chết (KILL), người rời (LEAVE)
+ */
+public final class JournalEntry {
+
+    private final EventType type;
+    private final long timestamp;
+    private final String roomId;
+    private final long gameId;
+
+    String actor;
+    String target;
+    Role role;
+    GameState state;
+    boolean silent;
+    boolean voting;
+    long deadline;
+    String result;
+    List<String> players = Collections.emptyList();
+    List<Role> roles = Collections.emptyList();
+
+    JournalEntry(EventType type, long timestamp, String roomId, long gameId) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.roomId = roomId;
+        this.gameId = gameId;
+    }
+
+    public EventType getType()     { return type; }
+    public long getTimestamp()     { return timestamp; }
+    public String getRoomId()      { return roomId; }
+    public long getGameId()        { return gameId; }
+    public String getActor()       { return actor; }
+    public String getTarget()      { return target; }
+    public Role getRole()          { return role; }
+    public GameState getState()    { return state; }
+    public boolean isSilent()      { return silent; }
+    public boolean isVoting()      { return voting; }
+    public long getDeadline()      { return deadline; }
+    public String getResult()      { return result; }
+    public List<String> getPlayers() { return players; }
+    public List<Role> getRoles()   { return roles; }
+
+    /** 1 dòng dễ đọc cho JournalReader: "<thời gian> <phòng>#<ván> <LOẠI> ..." */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(Instant.ofEpochMilli(timestamp)).append(' ')
+                .append(roomId).append('#').append(gameId).append(' ')
+                .append(type);
+        switch (type) {
+            case GAME_START -> {
+                sb.append(' ');
+                for (int i = 0; i < players.size(); i++) {
+                    if (i > 0) sb.append(", ");
+                    sb.append(players.get(i)).append('=').append(roles.get(i));
+                }
+            }
+            case STATE -> sb.append(' ').append(state);
+            case VOTE -> sb.append(' ').append(actor).append(" -> ").append(target);
+            case NIGHT_ACTION -> sb.append(' ').append(actor).append('(').append(role).append(") -> ").append(target);
+            case KILL -> sb.append(' ').append(actor).append(silent ? " (silent)" : "");
+            case GAME_END -> sb.append(' ').append(result);
+            case LEAVE -> sb.append(' ').append(actor);
+            case PHASE -> sb.append(' ').append(state).append(voting ? "/VOTE" : "")
+                    .append(deadline == 0 ? "" : " until " + Instant.ofEpochMilli(deadline));
+        }
+        return sb.toString();
+    }
+}
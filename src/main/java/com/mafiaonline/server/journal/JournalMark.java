@@ -0,0 +1,43 @@
+package com.mafiaonline.server.journal;
+
+/**
+ * Vị trí trong journal: (seq của segment, offset byte trong segment) — luôn nằm ở ranh giới record.
+ * Snapshot ghi kèm mark: "trạng thái sau mọi record trước vị trí này".
+ */
+public final class JournalMark implements Comparable<JournalMark> {
+
+    /** Đầu journal (trước segment đầu tiên). */
+    public static final JournalMark START = new JournalMark(0, JournalSegment.FILE_HEADER);
+
+    private final long segment;
+    private final int offset;
+
+    public JournalMark(long segment, int offset) {
+        this.segment = segment;
+        this.offset = offset;
+    }
+
+    public long segment() { return segment; }
+    public int offset()   { return offset; }
+
+    @Override
+    public int compareTo(JournalMark o) {
+        int c = Long.compare(segment, o.segment);
+        return (c != 0) ? c : Integer.compare(offset, o.offset);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JournalMark m && m.segment == segment && m.offset == offset;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(segment) * 31 + offset;
+    }
+
+    @Override
+    public String toString() {
+        return segment + ":" + offset;
+    }
+}
@@ -0,0 +1,155 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Đọc lại journal: duyệt mọi segment theo thứ tự ghi, kiểm CRC từng record.
+ * - Gặp length 0 (phần cấp sẵn chưa ghi) -> hết segment
+ * - Gặp record cụt / sai CRC (crash giữa chừng) -> bỏ phần còn lại của segment đó, sang segment sau
+ * Đọc được cả khi server đang ghi (thấy tới record đã copy vào vùng map).
+ *
+ * Công cụ dòng lệnh:
+ *   java -cp target/classes:<deps> com.mafiaonline.server.journal.JournalReader [--dir data/journal] --list
+ *   java -cp ... JournalReader --room main --game 1739000000000     (phát lại 1 ván)
+ *   java -cp ... JournalReader --room r1                            (mọi sự kiện của phòng r1)
+ */
+public final class JournalReader {
+
+    private static final Logger LOG = Log.get(JournalReader.class);
+
+    private JournalReader() {}
+
+    /** Gọi consumer cho từng record hợp lệ trong dir; trả về số record đã đọc. */
+    public static long forEach(Path dir, Consumer<JournalEntry> consumer) throws IOException {
+        long[] count = {0};
+        read(dir, JournalMark.START, null, e -> {
+            consumer.accept(e);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Đọc các record trong khoảng [from, to) (to = null: tới hết journal).
+     * Trả về mark ngay sau record cuối cùng đọc được (= from nếu không có gì) — lần đọc sau bắt đầu từ đó.
+     */
+    public static JournalMark read(Path dir, JournalMark from, JournalMark to,
+                                   Consumer<JournalEntry> consumer) throws IOException {
+        JournalMark end = from;
+        for (Path seg : JournalSegment.list(dir)) {
+            long seq = JournalSegment.parseSeq(seg);
+            if (seq < from.segment()) continue;
+            if (to != null && seq > to.segment()) break;
+            int start = (seq == from.segment()) ? from.offset() : JournalSegment.FILE_HEADER;
+            int limit = (to != null && seq == to.segment()) ? to.offset() : Integer.MAX_VALUE;
+            int stop = readSegment(seg, start, limit, consumer);
+            if (stop >= 0) end = new JournalMark(seq, stop);
+        }
+        return end;
+    }
+
+    /** Đọc 1 segment từ offset start tới limit; trả về offset sau record cuối (-1 nếu không đọc được file). */
+    private static int readSegment(Path file, int start, int limit, Consumer<JournalEntry> consumer) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < JournalSegment.FILE_HEADER) return -1;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (!JournalSegment.readHeader(buf)) {
+                LOG.warn("[Journal] Bỏ qua {}: header không hợp lệ", file);
+                return -1;
+            }
+            buf.position(Math.max(start, JournalSegment.FILE_HEADER));
+            buf.limit((int) Math.min(size, limit));
+            while (buf.remaining() >= JournalCodec.HEADER) {
+                int at = buf.position();
+                int len = buf.getInt();
+                if (len == 0) {                            // hết dữ liệu đã ghi
+                    buf.position(at);
+                    break;
+                }
+                int crc = buf.getInt();
+                if (len < 0 || len > buf.remaining() || !JournalCodec.checkCrc(buf, len, crc)) {
+                    LOG.warn("[Journal] {}: record hỏng ở offset {} — bỏ phần còn lại của segment", file.getFileName(), at);
+                    buf.position(at);
+                    break;
+                }
+                int end = buf.position() + len;
+                JournalEntry e = JournalCodec.decode(buf);
+                buf.position(end);
+                if (e != null) consumer.accept(e);
+            }
+            return buf.position();
+        }
+    }
+
+    /* ==================== CLI ==================== */
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(System.getProperty("journal.dir", "data/journal"));
+        String room = null;
+        Long game = null;
+        boolean list = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir"  -> dir = Paths.get(args[++i]);
+                case "--room" -> room = args[++i];
+                case "--game" -> game = Long.parseLong(args[++i]);
+                case "--list" -> list = true;
+                default -> {
+                    System.out.println("Usage: JournalReader [--dir <dir>] (--list | --room <id> [--game <id>])");
+                    return;
+                }
+            }
+        }
+
+        if (list || room == null) {
+            listGames(dir);
+            return;
+        }
+        final String r = room;
+        final Long g = game;
+        long total = forEach(dir, e -> {
+            if (e.getRoomId().equals(r) && (g == null || e.getGameId() == g)) System.out.println(e);
+        });
+        System.out.println("-- " + total + " records scanned");
+    }
+
+    /** Mỗi ván 1 dòng: phòng#ván, lúc bắt đầu, số người, kết quả, số sự kiện. */
+    private static void listGames(Path dir) throws IOException {
+        Map<String, long[]> stats = new LinkedHashMap<>();   // key -> {start, players, events}
+        Map<String, String> results = new LinkedHashMap<>();
+        forEach(dir, e -> {
+            if (e.getGameId() == 0) return;
+            String key = e.getRoomId() + "#" + e.getGameId();
+            long[] s = stats.computeIfAbsent(key, k -> new long[3]);
+            s[2]++;
+            if (e.getType() == EventType.GAME_START) {
+                s[0] = e.getTimestamp();
+                s[1] = e.getPlayers().size();
+            } else if (e.getType() == EventType.GAME_END) {
+                results.put(key, e.getResult());
+            }
+        });
+        for (Map.Entry<String, long[]> en : stats.entrySet()) {
+            long[] s = en.getValue();
+            System.out.printf("%-24s start=%s players=%d result=%s events=%d%n",
+                    en.getKey(), s[0] == 0 ? "?" : Instant.ofEpochMilli(s[0]), s[1],
+                    results.getOrDefault(en.getKey(), "(đang chơi / mất)"), s[2]);
+        }
+        List<Path> segs = JournalSegment.list(dir);
+        System.out.println("-- " + stats.size() + " games in " + segs.size() + " segments (" + dir + ")");
+    }
+}
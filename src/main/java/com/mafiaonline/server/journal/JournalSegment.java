@@ -0,0 +1,125 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 1 file segment của journal: cấp sẵn đủ kích thước rồi map (READ_WRITE) toàn bộ,
+ * ghi record = copy byte vào vùng map, commit = force() (msync) cả nhóm record một lần.
+ *
+ * File: "seg-<seq 16 chữ số>.mjl"
+ *   header 16 byte: int MAGIC, short VERSION, short 0, long seq
+ *   sau đó là các record (JournalCodec); phần cấp sẵn chưa dùng toàn byte 0 -> length 0 = hết dữ liệu.
+ * Không cắt đuôi file khi đóng (vùng map có thể còn sống tới khi GC); phần đuôi trống là sparse trên Linux.
+ *
+ * Chỉ thread ghi của Journal đụng tới segment đang mở.
+ */
+final class JournalSegment {
+
+    private static final Logger LOG = Log.get(JournalSegment.class);
+
+    static final int MAGIC = 0x4D4A4E4C; // "MJNL"
+    static final short VERSION = 1;
+    static final int FILE_HEADER = 16;
+
+    private static final String PREFIX = "seg-";
+    private static final String SUFFIX = ".mjl";
+
+    private final long seq;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+
+    private JournalSegment(long seq, Path path, FileChannel channel, MappedByteBuffer map) {
+        this.seq = seq;
+        this.path = path;
+        this.channel = channel;
+        this.map = map;
+    }
+
+    /** Tạo segment mới (file chưa tồn tại), cấp sẵn size byte và ghi header. */
+    static JournalSegment create(Path dir, long seq, int size) throws IOException {
+        Path path = dir.resolve(fileName(seq));
+        RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw");
+        try {
+            raf.setLength(size);
+            FileChannel ch = raf.getChannel();
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(seq);
+            return new JournalSegment(seq, path, ch, map);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    long seq()              { return seq; }
+    Path path()             { return path; }
+    int position()          { return map.position(); }
+    boolean fits(int bytes) { return map.remaining() >= bytes; }
+
+    void append(byte[] record) {
+        map.put(record);
+    }
+
+    void force() {
+        map.force();
+    }
+
+    void close() {
+        try {
+            map.force();
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("[Journal] Đóng segment lỗi {}: {}", path, e.getMessage());
+        }
+    }
+
+    /* ==================== Tên file / liệt kê ==================== */
+
+    static String fileName(long seq) {
+        return String.format("%s%016d%s", PREFIX, seq, SUFFIX);
+    }
+
+    /** seq từ tên file; -1 nếu không phải file segment. */
+    static long parseSeq(Path file) {
+        String n = file.getFileName().toString();
+        if (!n.startsWith(PREFIX) || !n.endsWith(SUFFIX)) return -1;
+        try {
+            return Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Các segment trong dir theo thứ tự ghi (seq tăng dần). */
+    static List<Path> list(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(p -> parseSeq(p) >= 0).forEach(out::add);
+        }
+        out.sort((a, b) -> Long.compare(parseSeq(a), parseSeq(b)));
+        return out;
+    }
+
+    /** Kiểm header của segment đã map để đọc; false nếu không phải journal (hoặc khác phiên bản). */
+    static boolean readHeader(ByteBuffer buf) {
+        if (buf.remaining() < FILE_HEADER) return false;
+        if (buf.getInt() != MAGIC || buf.getShort() != VERSION) return false;
+        buf.getShort();
+        buf.getLong();
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Khôi phục sau crash: snapshot mới nhất đọc được + fold phần đuôi journal sau mark của snapshot.
+ * Thời gian khôi phục bị chặn bởi chu kỳ snapshot (-Djournal.snapshot.seconds), không phụ thuộc độ dài journal.
+ * Snapshot hỏng -> thử bản cũ hơn; không có bản nào -> fold từ đầu journal.
+ */
+public final class Recovery {
+
+    private static final Logger LOG = Log.get(Recovery.class);
+
+    private final RecoveryState state;
+    private final String snapshot;      // tên file snapshot đã dùng (null = không có)
+    private final long tailRecords;
+    private final long snapshotNanos;
+    private final long tailNanos;
+
+    private Recovery(RecoveryState state, String snapshot, long tailRecords, long snapshotNanos, long tailNanos) {
+        this.state = state;
+        this.snapshot = snapshot;
+        this.tailRecords = tailRecords;
+        this.snapshotNanos = snapshotNanos;
+        this.tailNanos = tailNanos;
+    }
+
+    public static Recovery load(Path dir) throws IOException {
+        long t0 = System.nanoTime();
+        RecoveryState state = null;
+        String used = null;
+        List<Path> snaps = RecoveryState.list(dir);
+        for (int i = snaps.size() - 1; i >= 0 && state == null; i--) {
+            try {
+                state = RecoveryState.read(snaps.get(i));
+                used = snaps.get(i).getFileName().toString();
+            } catch (IOException e) {
+                LOG.warn("[Recovery] Bỏ qua snapshot hỏng {}: {}", snaps.get(i).getFileName(), e.getMessage());
+            }
+        }
+        if (state == null) state = new RecoveryState();
+        long t1 = System.nanoTime();
+
+        long[] tail = {0};
+        RecoveryState s = state;
+        JournalMark end = JournalReader.read(dir, s.mark(), null, e -> {
+            s.apply(e);
+            tail[0]++;
+        });
+        s.mark(end);
+        return new Recovery(s, used, tail[0], t1 - t0, System.nanoTime() - t1);
+    }
+
+    public RecoveryState state()   { return state; }
+    public long tailRecords()      { return tailRecords; }
+    public long elapsedNanos()     { return snapshotNanos + tailNanos; }
+
+    /** Dòng log: bao nhiêu ván/người, từ snapshot nào, bao nhiêu record đuôi, mất bao lâu. */
+    public String describe() {
+        return String.format("%d in-flight rooms (%d players) from %s + %d tail records in %.1f ms (snapshot %.1f ms, tail %.1f ms)",
+                state.roomCount(), state.playerCount(), snapshot == null ? "no snapshot" : snapshot, tailRecords,
+                elapsedNanos() / 1e6, snapshotNanos / 1e6, tailNanos / 1e6);
+    }
+}
@@ -0,0 +1,204 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Role;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Các ván đang chơi (chưa GAME_END) tại 1 vị trí journal — fold các record theo thứ tự ghi.
+ * Snapshot = RecoveryState ghi ra file kèm mark; khôi phục = đọc snapshot mới nhất + fold phần đuôi sau mark.
+ *
+ * File snapshot: "snap-<seq 16 chữ số>-<offset 10 chữ số>.bin" (ghi .tmp rồi đổi tên như AuthService)
+ *   int MAGIC, short VERSION, long seq, int offset, int rooms, từng phòng..., int crc32c(toàn bộ phía trước)
+ *
+ * Không thread-safe: chỉ 1 thread fold (checkpoint của Journal, hoặc Recovery lúc khởi động).
+ */
+public final class RecoveryState {
+
+    private static final int MAGIC = 0x4D534E50; // "MSNP"
+    private static final short VERSION = 1;
+    private static final String PREFIX = "snap-";
+    private static final String SUFFIX = ".bin";
+    private static final Role[] ROLES = Role.values();
+    private static final GameState[] STATES = GameState.values();
+
+    private final Map<String, RoomImage> rooms = new LinkedHashMap<>();
+    private JournalMark mark;
+
+    public RecoveryState() {
+        this(JournalMark.START);
+    }
+
+    RecoveryState(JournalMark mark) {
+        this.mark = mark;
+    }
+
+    /** Bản sao sâu (mỗi RoomImage cũng được sao). */
+    RecoveryState copy() {
+        RecoveryState c = new RecoveryState(mark);
+        for (RoomImage r : rooms.values()) c.rooms.put(r.getRoomId(), r.copy());
+        return c;
+    }
+
+    public JournalMark mark()             { return mark; }
+    void mark(JournalMark m)              { this.mark = m; }
+    public Collection<RoomImage> rooms()  { return rooms.values(); }
+    public int roomCount()                { return rooms.size(); }
+
+    public int playerCount() {
+        int n = 0;
+        for (RoomImage r : rooms.values()) n += r.roles.size();
+        return n;
+    }
+
+    /** Áp 1 record (thứ tự journal). Record của ván cũ/không rõ bị bỏ qua. */
+    public void apply(JournalEntry e) {
+        String id = e.getRoomId();
+        if (e.getType() == EventType.GAME_START) {
+            RoomImage r = new RoomImage(id, e.getGameId());
+            for (int i = 0; i < e.getPlayers().size(); i++) r.roles.put(e.getPlayers().get(i), e.getRoles().get(i));
+            rooms.put(id, r);
+            return;
+        }
+        RoomImage r = rooms.get(id);
+        if (r == null || r.getGameId() != e.getGameId()) return;
+        if (e.getType() == EventType.GAME_END) {
+            rooms.remove(id);
+            return;
+        }
+        r.apply(e);
+    }
+
+    /* ==================== Snapshot ==================== */
+
+    /** Ghi snapshot vào dir (atomic), xoá snapshot cũ chỉ giữ keep bản mới nhất; trả về file vừa ghi. */
+    public Path write(Path dir, int keep) throws IOException {
+        Path file = dir.resolve(String.format("%s%016d-%010d%s", PREFIX, mark.segment(), mark.offset(), SUFFIX));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream os = Files.newOutputStream(tmp);
+             CheckedOutputStream cos = new CheckedOutputStream(new BufferedOutputStream(os, 1 << 16), crc);
+             DataOutputStream out = new DataOutputStream(cos)) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(mark.segment());
+            out.writeInt(mark.offset());
+            out.writeInt(rooms.size());
+            for (RoomImage r : rooms.values()) {
+                out.writeUTF(r.getRoomId());
+                out.writeLong(r.getGameId());
+                out.writeByte(r.state.ordinal());
+                out.writeBoolean(r.voting);
+                out.writeLong(r.deadline);
+                out.writeInt(r.roles.size());
+                for (Map.Entry<String, Role> p : r.roles.entrySet()) {
+                    out.writeUTF(p.getKey());
+                    out.writeByte(p.getValue().ordinal());
+                    out.writeBoolean(r.dead.contains(p.getKey()));
+                }
+                writeMap(out, r.votes);
+                writeMap(out, r.nightActions);
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue()); // CRC của mọi byte phía trước (chính int này không tính)
+        }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        List<Path> all = list(dir);
+        for (int i = 0; i < all.size() - Math.max(1, keep); i++) Files.deleteIfExists(all.get(i));
+        return file;
+    }
+
+    /** Đọc 1 file snapshot; IOException nếu hỏng (sai magic/CRC/cụt). */
+    public static RecoveryState read(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream is = Files.newInputStream(file);
+             CheckedInputStream cis = new CheckedInputStream(new BufferedInputStream(is, 1 << 16), crc);
+             DataInputStream in = new DataInputStream(cis)) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) throw new IOException("not a snapshot: " + file);
+            RecoveryState s = new RecoveryState(new JournalMark(in.readLong(), in.readInt()));
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                RoomImage r = new RoomImage(in.readUTF(), in.readLong());
+                r.state = STATES[in.readByte()];
+                r.voting = in.readBoolean();
+                r.deadline = in.readLong();
+                int players = in.readInt();
+                for (int k = 0; k < players; k++) {
+                    String name = in.readUTF();
+                    r.roles.put(name, ROLES[in.readByte()]);
+                    if (in.readBoolean()) r.dead.add(name);
+                }
+                readMap(in, r.votes);
+                readMap(in, r.nightActions);
+                s.rooms.put(r.getRoomId(), r);
+            }
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) throw new IOException("snapshot CRC mismatch: " + file);
+            return s;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("snapshot corrupt: " + file, e);
+        }
+    }
+
+    /** Segment của mark ghi trong tên file snapshot (không mở file); -1 nếu tên không đúng dạng. */
+    static long markSegment(Path snapshot) {
+        String n = snapshot.getFileName().toString();
+        if (!n.startsWith(PREFIX) || n.length() < PREFIX.length() + 16) return -1;
+        try {
+            return Long.parseLong(n.substring(PREFIX.length(), PREFIX.length() + 16));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** Snapshot trong dir, cũ -> mới (theo mark). */
+    static List<Path> list(Path dir) throws IOException {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return out;
+        try (Stream<Path> s = Files.list(dir)) {
+            s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith(PREFIX) && n.endsWith(SUFFIX);
+            }).forEach(out::add);
+        }
+        out.sort(null); // tên có độ dài cố định -> thứ tự chữ = thứ tự mark
+        return out;
+    }
+
+    private static void writeMap(DataOutputStream out, Map<String, String> m) throws IOException {
+        out.writeInt(m.size());
+        for (Map.Entry<String, String> e : m.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+    }
+
+    private static void readMap(DataInputStream in, Map<String, String> m) throws IOException {
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) m.put(in.readUTF(), in.readUTF());
+    }
+}
@@ -0,0 +1,55 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Player;
+import com.mafiaonline.server.Role;
+
+import java.util.Collection;
+
+/**
+ * Nơi GameRoom/PhaseManager báo mọi chuyển trạng thái của ván (để ghi journal, audit, phát lại).
+ * - Được gọi TRÊN RoomLoop của phòng -> cài đặt không được chặn (Journal chỉ mã hoá + xếp hàng)
+ * - gameId: id ván do phòng cấp lúc startGame (duy nhất trong phòng, kể cả qua các lần khởi động lại);
+ *   0 = chưa có ván nào (vd. LOBBY lúc mới tạo phòng)
+ */
+public interface RoomEventSink {
+
+    /** Chia vai xong: toàn bộ người chơi + vai. */
+    void gameStarted(String roomId, long gameId, Collection<Player> players);
+
+    /** setState: DAY / NIGHT / END / LOBBY. */
+    void stateChanged(String roomId, long gameId, GameState state);
+
+    /** Phiếu treo cổ ban ngày đã được chấp nhận (bầu lại ghi thêm 1 record). */
+    void vote(String roomId, long gameId, String voter, String target);
+
+    /** Hành động đêm đã được chấp nhận. */
+    void nightAction(String roomId, long gameId, String actor, Role role, String target);
+
+    /** Có người chết; silent = chết "im lặng" (Bodyguard hy sinh, không công bố). */
+    void killed(String roomId, long gameId, String name, boolean silent);
+
+    /** Kết thúc ván; result: TOWN | MAFIA | JESTER | ABORTED. */
+    void gameEnded(String roomId, long gameId, String result);
+
+    /** Người chơi rời phòng (mất ghế trong ván đang chơi). */
+    void playerLeft(String roomId, long gameId, String name);
+
+    /**
+     * Bắt đầu 1 pha có hẹn giờ: DAY (voting=false: CHAT, true: VOTE) hoặc NIGHT.
+     * deadlineMillis: epoch ms lúc pha tự chốt (0 = không hẹn giờ) — khôi phục sau crash hẹn lại phần còn lại.
+     */
+    void phaseStarted(String roomId, long gameId, GameState state, boolean voting, long deadlineMillis);
+
+    /** Không ghi gì (journal tắt, bench). */
+    RoomEventSink NOOP = new RoomEventSink() {
+        @Override public void gameStarted(String roomId, long gameId, Collection<Player> players) {}
+        @Override public void stateChanged(String roomId, long gameId, GameState state) {}
+        @Override public void vote(String roomId, long gameId, String voter, String target) {}
+        @Override public void nightAction(String roomId, long gameId, String actor, Role role, String target) {}
+        @Override public void killed(String roomId, long gameId, String name, boolean silent) {}
+        @Override public void gameEnded(String roomId, long gameId, String result) {}
+        @Override public void playerLeft(String roomId, long gameId, String name) {}
+        @Override public void phaseStarted(String roomId, long gameId, GameState state, boolean voting, long deadlineMillis) {}
+    };
+}
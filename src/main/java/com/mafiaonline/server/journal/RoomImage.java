@@ -0,0 +1,82 @@
+package com.mafiaonline.server.journal;
+
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Role;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ảnh của 1 ván đang chơi dựng lại từ journal (RecoveryState) — đủ để GameRoom.restore() ngồi lại đúng chỗ:
+ * người chơi + vai (theo thứ tự chia vai), ai đã chết, pha + hạn chốt pha, phiếu ngày / hành động đêm đang chờ.
+ * Chỉ thread đang fold journal (checkpoint / recovery) sửa; sau khi giao cho RoomRegistry thì chỉ đọc.
+ */
+public final class RoomImage {
+
+    private final String roomId;
+    private final long gameId;
+    GameState state = GameState.DAY;
+    boolean voting;
+    long deadline;                                               // epoch ms, 0 = không hẹn giờ
+    final Map<String, Role> roles = new LinkedHashMap<>();      // name -> role
+    final Set<String> dead = new HashSet<>();
+    final Map<String, String> votes = new LinkedHashMap<>();    // voter -> target (ngày hiện tại)
+    final Map<String, String> nightActions = new LinkedHashMap<>(); // actor -> target (đêm hiện tại)
+
+    RoomImage(String roomId, long gameId) {
+        this.roomId = roomId;
+        this.gameId = gameId;
+    }
+
+    /** Bản sao độc lập (checkpoint fold tiếp trên bản sao, phòng đọc bản gốc lúc restore). */
+    RoomImage copy() {
+        RoomImage c = new RoomImage(roomId, gameId);
+        c.state = state;
+        c.voting = voting;
+        c.deadline = deadline;
+        c.roles.putAll(roles);
+        c.dead.addAll(dead);
+        c.votes.putAll(votes);
+        c.nightActions.putAll(nightActions);
+        return c;
+    }
+
+    public String getRoomId()                  { return roomId; }
+    public long getGameId()                    { return gameId; }
+    public GameState getState()                { return state; }
+    public boolean isVoting()                  { return voting; }
+    public long getDeadline()                  { return deadline; }
+    public Map<String, Role> getRoles()        { return roles; }
+    public boolean isAlive(String name)        { return roles.containsKey(name) && !dead.contains(name); }
+    public Map<String, String> getVotes()      { return votes; }
+    public Map<String, String> getNightActions() { return nightActions; }
+
+    /** Áp 1 record của đúng ván này. */
+    void apply(JournalEntry e) {
+        switch (e.getType()) {
+            case STATE -> state = e.getState();
+            case PHASE -> {
+                state = e.getState();
+                voting = e.isVoting();
+                deadline = e.getDeadline();
+                if (state == GameState.DAY && !voting) votes.clear();    // ngày mới
+                if (state == GameState.NIGHT) nightActions.clear();      // đêm mới
+            }
+            case VOTE -> votes.put(e.getActor(), e.getTarget());
+            case NIGHT_ACTION -> nightActions.put(e.getActor(), e.getTarget());
+            case KILL -> dead.add(e.getActor());
+            case LEAVE -> {
+                String n = e.getActor();
+                roles.remove(n);
+                dead.remove(n);
+                votes.remove(n);
+                votes.values().removeIf(n::equals);
+                nightActions.remove(n);
+                nightActions.values().removeIf(n::equals);
+            }
+            default -> {}
+        }
+    }
+}
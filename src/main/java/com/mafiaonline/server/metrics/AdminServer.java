@@ -0,0 +1,184 @@
+package com.mafiaonline.server.metrics;
+
+import com.mafiaonline.bridge.WsBridgeServer;
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.RoomLoop;
+import com.mafiaonline.server.RoomRegistry;
+import com.mafiaonline.server.TimerWheel;
+import com.mafiaonline.server.journal.Journal;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Trang admin/metrics (JDK HttpServer, cổng riêng, mặc định chỉ nghe 127.0.0.1):
+ *   GET /metrics -> Prometheus text     curl -s localhost:9090/metrics
+ *   GET /stats   -> JSON                curl -s localhost:9090/stats
+ * Ngoài số liệu của ServerMetrics, lúc khởi tạo đăng ký thêm gauge "sống" đọc từ các thành phần đang chạy:
+ * phòng / người chơi theo trạng thái, kết nối theo transport (TCP thẳng vs WS bridge), mailbox từng loop phòng,
+ * timer đang chờ, hàng đợi journal, ring log (đã ghi / bị bỏ), heap/non-heap, thread, GC.
+ * Mỗi lần scrape đếm phòng 1 lượt qua getter volatile (getState/getPlayerCount) — không gửi task vào loop phòng,
+ * không khoá phòng nào; 1 thread HTTP nên các lần scrape không chồng nhau.
+ */
+public final class AdminServer implements Closeable {
+
+    private static final Logger LOG = Log.get(AdminServer.class);
+
+    private static final GameState[] STATES = GameState.values();
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final RoomRegistry rooms;
+    private volatile long[] roomsByState = new long[STATES.length];
+    private volatile long[] playersByState = new long[STATES.length];
+
+    public AdminServer(InetSocketAddress addr, RoomRegistry rooms, WsBridgeServer bridge, Journal journal) throws IOException {
+        this.rooms = rooms;
+        registerLiveGauges(rooms, bridge, journal);
+
+        this.http = HttpServer.create(addr, 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "admin-http");
+            t.setDaemon(true);
+            return t;
+        });
+        http.setExecutor(executor);
+        http.createContext("/metrics", ex -> respond(ex, "text/plain; version=0.0.4; charset=utf-8",
+                () -> Exposition.prometheus(scrape())));
+        http.createContext("/stats", ex -> respond(ex, "application/json; charset=utf-8",
+                () -> Exposition.json(scrape())));
+        http.createContext("/", ex -> {
+            if (!ex.getRequestURI().getPath().equals("/")) {
+                send(ex, 404, "text/plain; charset=utf-8", "Not found. Try /metrics or /stats\n");
+            } else {
+                send(ex, 200, "text/plain; charset=utf-8", "Mafia-Online admin\n  /metrics  Prometheus text\n  /stats    JSON\n");
+            }
+        });
+    }
+
+    public void start() {
+        http.start();
+        InetSocketAddress a = http.getAddress();
+        LOG.info("[Admin] Metrics at http://{}:{}/metrics (JSON: /stats)", a.getHostString(), a.getPort());
+    }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        executor.shutdownNow();
+    }
+
+    /* ==================== Số liệu sống ==================== */
+
+    private void registerLiveGauges(RoomRegistry rooms, WsBridgeServer bridge, Journal journal) {
+        for (GameState st : STATES) {
+            int i = st.ordinal();
+            Metrics.gauge("mafia_rooms", "Số phòng theo trạng thái", () -> roomsByState[i], "state", st.name());
+        }
+        for (GameState st : STATES) {
+            int i = st.ordinal();
+            Metrics.gauge("mafia_players", "Số người chơi theo trạng thái phòng", () -> playersByState[i], "state", st.name());
+        }
+
+        // phiên WS (trong tiến trình hoặc qua socket loopback của bridge) cũng tính vào CONNECTIONS_OPEN -> TCP thẳng = tổng - WS
+        Gauge open = ServerMetrics.CONNECTIONS_OPEN;
+        if (bridge != null) {
+            Metrics.gauge("mafia_sessions_open", "Phiên đang mở theo transport",
+                    () -> Math.max(0, open.value() - bridge.connectionCount()), "transport", "tcp");
+            Metrics.gauge("mafia_sessions_open", "Phiên đang mở theo transport", bridge::connectionCount, "transport", "ws");
+        } else {
+            Metrics.gauge("mafia_sessions_open", "Phiên đang mở theo transport", open::value, "transport", "tcp");
+        }
+
+        for (RoomLoop loop : rooms.loops()) {
+            Metrics.gauge("mafia_room_mailbox_depth", "Task đang chờ trong mailbox của loop phòng",
+                    loop::pendingTasks, "loop", loop.name());
+            Metrics.counter("mafia_room_tasks_total", "Task loop phòng đã chạy", loop::completedTasks, "loop", loop.name());
+        }
+
+        TimerWheel timers = rooms.timers();
+        Metrics.gauge("mafia_timers_pending", "Timer pha đang chờ", timers::pendingTimers);
+        Metrics.counter("mafia_timers_expired_total", "Timer pha đã chạy", timers::expiredTimers);
+        Metrics.counter("mafia_timers_cancelled_total", "Timer pha đã huỷ", timers::cancelledTimers);
+
+        if (journal != null) {
+            Metrics.gauge("mafia_journal_queue_depth", "Bản ghi journal chờ ghi", journal::queuedRecords);
+            Metrics.counter("mafia_journal_records_total", "Bản ghi journal đã ghi", journal::writtenRecords);
+            Metrics.counter("mafia_journal_dropped_total", "Bản ghi journal bị bỏ (hàng đợi đầy)", journal::droppedRecords);
+            Metrics.counter("mafia_journal_bytes_total", "Byte journal đã ghi", journal::writtenBytes);
+        }
+
+        Metrics.counter("mafia_log_events_total", "Bản ghi log đã ghi ra appender", Log::writtenEvents);
+        Metrics.counter("mafia_log_dropped_total", "Bản ghi log bị bỏ (ring đầy)", Log::droppedEvents);
+        Metrics.gauge("mafia_log_queue_depth", "Bản ghi log chờ trong ring", Log::pendingEvents);
+
+        MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+        Metrics.gauge("jvm_memory_used_bytes", "Bộ nhớ JVM đang dùng", () -> mem.getHeapMemoryUsage().getUsed(), "area", "heap");
+        Metrics.gauge("jvm_memory_used_bytes", "Bộ nhớ JVM đang dùng", () -> mem.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        Metrics.gauge("jvm_memory_committed_bytes", "Bộ nhớ JVM đã cấp", () -> mem.getHeapMemoryUsage().getCommitted(), "area", "heap");
+        Metrics.gauge("jvm_memory_committed_bytes", "Bộ nhớ JVM đã cấp", () -> mem.getNonHeapMemoryUsage().getCommitted(), "area", "nonheap");
+        Metrics.gauge("jvm_memory_max_bytes", "Heap tối đa (-Xmx)", () -> mem.getHeapMemoryUsage().getMax(), "area", "heap");
+        Metrics.gauge("jvm_threads_live", "Số thread JVM", () -> ManagementFactory.getThreadMXBean().getThreadCount());
+        Metrics.gauge("jvm_uptime_millis", "Thời gian JVM đã chạy", () -> ManagementFactory.getRuntimeMXBean().getUptime());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Metrics.counter("jvm_gc_collections_total", "Số lần GC theo collector", gc::getCollectionCount, "gc", gc.getName());
+            Metrics.counter("jvm_gc_pause_millis_total", "Tổng thời gian GC theo collector", gc::getCollectionTime, "gc", gc.getName());
+        }
+    }
+
+    /** Đếm phòng/người theo trạng thái (1 lượt, getter volatile) rồi trả registry để xuất. */
+    private List<Metric> scrape() {
+        long[] r = new long[STATES.length];
+        long[] p = new long[STATES.length];
+        rooms.forEachRoom(room -> {
+            int i = room.getState().ordinal();
+            r[i]++;
+            p[i] += room.getPlayerCount();
+        });
+        roomsByState = r;
+        playersByState = p;
+        return Metrics.all();
+    }
+
+    /* ==================== HTTP ==================== */
+
+    private static void respond(HttpExchange ex, String contentType, Callable<String> body) throws IOException {
+        if (!ex.getRequestMethod().equals("GET") && !ex.getRequestMethod().equals("HEAD")) {
+            ex.getResponseHeaders().set("Allow", "GET, HEAD");
+            send(ex, 405, "text/plain; charset=utf-8", "Method not allowed\n");
+            return;
+        }
+        try {
+            send(ex, 200, contentType, body.call());
+        } catch (Exception e) {
+            LOG.warn("[Admin] {} lỗi", ex.getRequestURI(), e);
+            send(ex, 500, "text/plain; charset=utf-8", "Internal error: " + e.getMessage() + "\n");
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        boolean head = ex.getRequestMethod().equals("HEAD");
+        ex.sendResponseHeaders(status, head ? -1 : bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            if (!head) out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.mafiaonline.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bộ đếm chỉ tăng. Hoặc tự đếm bằng LongAdder (inc/add từ mọi thread, không tranh chấp),
+ * hoặc đọc từ nguồn có sẵn lúc lấy số (vd NetStats.bytes) để không đếm 2 lần trên đường nóng.
+ */
+public final class Counter extends Metric {
+
+    private final LongAdder adder = new LongAdder();
+    private final LongSupplier source;
+
+    Counter(String name, String labels, String help, LongSupplier source) {
+        super(name, labels, help);
+        this.source = source;
+    }
+
+    public void inc() { adder.increment(); }
+
+    public void add(long n) { adder.add(n); }
+
+    public long value() { return (source != null) ? source.getAsLong() : adder.sum(); }
+
+    @Override public Type type() { return Type.COUNTER; }
+}
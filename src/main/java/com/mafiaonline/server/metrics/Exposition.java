@@ -0,0 +1,104 @@
+package com.mafiaonline.server.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Xuất registry ra 2 dạng cho AdminServer:
+ * - Prometheus text 0.0.4: counter/gauge giữ nguyên, histogram thành summary (giây) với quantile 0.5/0.9/0.99/0.999
+ *   + _sum + _count; HELP/TYPE 1 lần cho mỗi tên
+ * - JSON: {"timestamp", "counters": {id: n}, "gauges": {id: n}, "histograms": {id: {count, mean_ms, p50_ms, ...}}}
+ * Chỉ đọc LongAdder / AtomicLongArray / nguồn volatile — không dừng loop phòng, không khoá phòng nào.
+ */
+final class Exposition {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_KEYS = {"p50_ms", "p90_ms", "p99_ms", "p999_ms"};
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private Exposition() {}
+
+    static String prometheus(List<Metric> metrics) {
+        Map<String, List<Metric>> families = new LinkedHashMap<>();
+        for (Metric m : metrics) families.computeIfAbsent(m.name(), k -> new ArrayList<>()).add(m);
+
+        StringBuilder sb = new StringBuilder(8192);
+        for (Map.Entry<String, List<Metric>> e : families.entrySet()) {
+            String name = e.getKey();
+            Metric first = e.getValue().get(0);
+            sb.append("# HELP ").append(name).append(' ').append(escapeHelp(first.help())).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(switch (first.type()) {
+                case COUNTER -> "counter";
+                case GAUGE -> "gauge";
+                case HISTOGRAM -> "summary";
+            }).append('\n');
+            for (Metric m : e.getValue()) {
+                if (m instanceof Counter c) {
+                    sample(sb, name, m.labels(), null, c.value());
+                } else if (m instanceof Gauge g) {
+                    sample(sb, name, m.labels(), null, g.value());
+                } else if (m instanceof Histogram h) {
+                    Histogram.Snapshot s = h.snapshot();
+                    for (double q : QUANTILES) {
+                        sample(sb, name, m.labels(), "quantile=\"" + q + "\"", s.percentileNanos(q) / 1e9);
+                    }
+                    sample(sb, name + "_sum", m.labels(), null, s.sumNanos() / 1e9);
+                    sample(sb, name + "_count", m.labels(), null, s.count());
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    static String json(List<Metric> metrics) throws Exception {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        Map<String, Object> gauges = new LinkedHashMap<>();
+        Map<String, Object> histograms = new LinkedHashMap<>();
+        for (Metric m : metrics) {
+            if (m instanceof Counter c) {
+                counters.put(m.id(), c.value());
+            } else if (m instanceof Gauge g) {
+                gauges.put(m.id(), g.value());
+            } else if (m instanceof Histogram h) {
+                Histogram.Snapshot s = h.snapshot();
+                Map<String, Object> o = new LinkedHashMap<>();
+                o.put("count", s.count());
+                o.put("mean_ms", round(s.meanNanos() / 1e6));
+                for (int i = 0; i < QUANTILES.length; i++) o.put(QUANTILE_KEYS[i], round(s.percentileNanos(QUANTILES[i]) / 1e6));
+                o.put("max_ms", round(s.maxNanos() / 1e6));
+                histograms.put(m.id(), o);
+            }
+        }
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("timestamp", System.currentTimeMillis());
+        root.put("counters", counters);
+        root.put("gauges", gauges);
+        root.put("histograms", histograms);
+        return JSON.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, String extra, double value) {
+        sb.append(name);
+        if (!labels.isEmpty() || extra != null) {
+            sb.append('{').append(labels);
+            if (extra != null) sb.append(labels.isEmpty() ? "" : ",").append(extra);
+            sb.append('}');
+        }
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) sb.append((long) value);
+        else sb.append(value);
+        sb.append('\n');
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.mafiaonline.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Giá trị tức thời: tự đếm lên/xuống (inc/dec, vd số kết nối đang mở) hoặc đọc từ nguồn lúc lấy số
+ * (vd số timer đang chờ của TimerWheel). Nguồn phải đọc được từ thread bất kỳ mà không khoá.
+ */
+public final class Gauge extends Metric {
+
+    private final LongAdder adder = new LongAdder();
+    private final LongSupplier source;
+
+    Gauge(String name, String labels, String help, LongSupplier source) {
+        super(name, labels, help);
+        this.source = source;
+    }
+
+    public void inc() { adder.increment(); }
+
+    public void dec() { adder.decrement(); }
+
+    public void add(long n) { adder.add(n); }
+
+    public long value() { return (source != null) ? source.getAsLong() : adder.sum(); }
+
+    @Override public Type type() { return Type.GAUGE; }
+}
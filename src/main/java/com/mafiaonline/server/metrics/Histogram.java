@@ -0,0 +1,105 @@
+package com.mafiaonline.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram độ trễ kiểu HDR (log-tuyến tính), đơn vị nanosecond:
+ * - < 64 ns: mỗi ns 1 ô; từ 64 ns: mỗi luỹ thừa 2 chia 32 ô -> sai số tương đối ≤ ~3%, tới ~2^44 ns (~4.9 giờ)
+ * - record() không cấp phát, không khoá: 1 getAndIncrement trên AtomicLongArray + 1 LongAdder.add
+ * - Chia stripe theo thread (số stripe = số core, tối đa 8, luỹ thừa 2) để các loop phòng / NIO không tranh nhau
+ *   cùng cache line; snapshot() cộng các stripe lại — đọc không chặn người ghi (số có thể lệch vài mẫu đang ghi dở)
+ */
+public final class Histogram extends Metric {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int LINEAR = SUB << 1;                  // 0..63 tuyến tính
+    static final int BUCKETS = LINEAR + (44 - SUB_BITS) * SUB;
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.min(8, Math.max(1, Runtime.getRuntime().availableProcessors())));
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(String name, String labels, String help) {
+        super(name, labels, help);
+    }
+
+    @Override public Type type() { return Type.HISTOGRAM; }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.getAndIncrement(stripe * BUCKETS + indexOf(nanos));
+        sumNanos.add(nanos);
+    }
+
+    /** record(System.nanoTime() - startNanos). */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** Ảnh chụp đã gộp stripe (cấp phát ở phía đọc, không ở phía ghi). */
+    public Snapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long n = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            int base = s * BUCKETS;
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = counts.get(base + i);
+                merged[i] += c;
+                n += c;
+            }
+        }
+        return new Snapshot(merged, n, sumNanos.sum());
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR) return (int) v;
+        int shift = (63 - Long.numberOfLeadingZeros(v)) - SUB_BITS; // v >>> shift nằm trong [32, 63]
+        int idx = LINEAR + (shift - 1) * SUB + (int) ((v >>> shift) - SUB);
+        return Math.min(idx, BUCKETS - 1);
+    }
+
+    static long upperBound(int idx) {
+        if (idx < LINEAR) return idx;
+        int shift = (idx - LINEAR) / SUB + 1;
+        long mantissa = (idx - LINEAR) % SUB + SUB;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /** Số liệu tại 1 thời điểm: phân vị trả cận trên của ô chứa nó (ns). */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+
+        Snapshot(long[] counts, long count, long sumNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+        }
+
+        public long count()    { return count; }
+        public long sumNanos() { return sumNanos; }
+        public double meanNanos() { return (count == 0) ? 0 : (double) sumNanos / count; }
+
+        public long percentileNanos(double q) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return maxNanos();
+        }
+
+        /** Cận trên của ô cao nhất có mẫu. */
+        public long maxNanos() {
+            for (int i = counts.length - 1; i >= 0; i--) if (counts[i] != 0) return upperBound(i);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.mafiaonline.server.metrics;
+
+/**
+ * 1 chuỗi số liệu đã đăng ký: tên + nhãn cố định (dạng Prometheus, vd cmd="/vote") + mô tả.
+ * Nhãn gắn lúc đăng ký -> đường ghi không tra map, không dựng chuỗi.
+ */
+public abstract class Metric {
+
+    public enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    private final String name;
+    private final String labels;   // "" hoặc k="v",k2="v2"
+    private final String help;
+
+    Metric(String name, String labels, String help) {
+        this.name = name;
+        this.labels = labels;
+        this.help = help;
+    }
+
+    public final String name()   { return name; }
+    public final String labels() { return labels; }
+    public final String help()   { return help; }
+
+    public abstract Type type();
+
+    /** name{labels} — khoá trong registry và tên hiển thị trong log. */
+    public final String id() {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+}
@@ -0,0 +1,77 @@
+package com.mafiaonline.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry toàn JVM: đăng ký 1 lần (thường là static final trong ServerMetrics), ghi trực tiếp vào đối tượng trả về.
+ * - Đăng ký lại cùng tên + nhãn trả đúng đối tượng cũ (nạp lại class / nhiều RoomRegistry trong bench không nhân đôi)
+ * - Nhãn truyền dạng cặp "k", "v", ... và được định dạng sẵn một lần
+ * - all() theo thứ tự đăng ký, cho exporter / log
+ */
+public final class Metrics {
+
+    private static final Map<String, Metric> BY_ID = new ConcurrentHashMap<>();
+    private static final List<Metric> ORDERED = new ArrayList<>(); // guarded by Metrics.class
+
+    private Metrics() {}
+
+    public static Counter counter(String name, String help, String... labels) {
+        return register(new Counter(name, format(labels), help, null));
+    }
+
+    /** Counter đọc từ nguồn có sẵn (không tự đếm). */
+    public static Counter counter(String name, String help, LongSupplier source, String... labels) {
+        return register(new Counter(name, format(labels), help, source));
+    }
+
+    public static Gauge gauge(String name, String help, String... labels) {
+        return register(new Gauge(name, format(labels), help, null));
+    }
+
+    public static Gauge gauge(String name, String help, LongSupplier source, String... labels) {
+        return register(new Gauge(name, format(labels), help, source));
+    }
+
+    public static Histogram histogram(String name, String help, String... labels) {
+        return register(new Histogram(name, format(labels), help));
+    }
+
+    /** Mọi metric đã đăng ký theo thứ tự đăng ký (bản sao). */
+    public static List<Metric> all() {
+        synchronized (Metrics.class) {
+            return new ArrayList<>(ORDERED);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M extends Metric> M register(M metric) {
+        synchronized (Metrics.class) {
+            Metric existing = BY_ID.putIfAbsent(metric.id(), metric);
+            if (existing == null) {
+                ORDERED.add(metric);
+                return metric;
+            }
+            if (existing.type() != metric.type()) {
+                throw new IllegalArgumentException("Metric " + metric.id() + " đã đăng ký với kiểu " + existing.type());
+            }
+            return (M) existing;
+        }
+    }
+
+    private static String format(String... labels) {
+        if (labels.length == 0) return "";
+        if ((labels.length & 1) != 0) throw new IllegalArgumentException("Nhãn phải theo cặp key, value");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"")
+              .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+              .append('"');
+        }
+        return sb.toString();
+    }
+}
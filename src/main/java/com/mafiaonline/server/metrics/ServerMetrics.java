@@ -0,0 +1,119 @@
+package com.mafiaonline.server.metrics;
+
+import com.mafiaonline.server.net.NetStats;
+
+import java.util.Locale;
+
+/**
+ * Danh mục số liệu của server (một chỗ để xem tên/nhãn), các class nóng ghi thẳng vào field static:
+ * - mafia_command_seconds{cmd}: từ lúc đọc được dòng tới lúc lệnh chạy xong trên loop phòng (gồm thời gian chờ mailbox);
+ *   /login, /register đo trên thread đọc
+ * - mafia_auth_seconds{op}: riêng phần AuthService — login/register từ lúc nộp tới lúc có kết quả (gồm chờ executor
+ *   băm + PBKDF2 + fsync), queue: chỉ phần chờ trong hàng đợi; mafia_auth_queue_depth, mafia_auth_rejected_total (BUSY)
+ * - mafia_rate_limited_total{class=auth|chat|command,key=ip|account}: dòng bị bỏ vì vượt token bucket (RateLimits)
+ * - mafia_account_commit_seconds + mafia_account_records_total: mỗi lô ghi nối + fsync của accounts.log (group commit)
+ * - mafia_broadcast_seconds + mafia_broadcast_recipients_total: mã hoá frame + xếp hàng cho cả phòng
+ * - mafia_room_task_seconds: mỗi task giữ loop phòng bao lâu — phòng không còn khoá, đây là "thời gian giữ khoá" thực tế
+ * - mafia_timer_drift_seconds: timer pha chạy trễ so với hạn
+ * - mafia_seats_held, mafia_session_resumes_total: ghế giữ cho người rớt mạng giữa ván, số lần /resume
+ * - mafia_connections_open / _total, mafia_outbound_{bytes,frames}_total, mafia_socket_writes_total (đọc từ NetStats)
+ * Histogram ghi nanosecond; exporter đổi sang giây.
+ */
+public final class ServerMetrics {
+
+    private ServerMetrics() {}
+
+    /* ==================== Lệnh người chơi ==================== */
+
+    private static final String COMMAND_HELP = "Thời gian xử lý lệnh, từ lúc đọc dòng tới lúc chạy xong trên loop phòng";
+    private static final String[] COMMANDS = {
+            "/vote", "/kill", "/save", "/investigate", "/protect",
+            "/start", "/join", "/create", "/leave", "/rooms", "/roster", "/players", "/role", "/help"
+    };
+    private static final Histogram[] COMMAND_SECONDS = new Histogram[COMMANDS.length];
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            COMMAND_SECONDS[i] = Metrics.histogram("mafia_command_seconds", COMMAND_HELP, "cmd", COMMANDS[i]);
+        }
+    }
+    public static final Histogram CHAT_SECONDS = Metrics.histogram("mafia_command_seconds", COMMAND_HELP, "cmd", "chat");
+    public static final Histogram OTHER_COMMAND_SECONDS = Metrics.histogram("mafia_command_seconds", COMMAND_HELP, "cmd", "other");
+    public static final Histogram LOGIN_SECONDS = Metrics.histogram("mafia_command_seconds", COMMAND_HELP, "cmd", "/login");
+    public static final Histogram REGISTER_SECONDS = Metrics.histogram("mafia_command_seconds", COMMAND_HELP, "cmd", "/register");
+
+    /** Histogram của dòng (đã trim) theo tên lệnh — so khớp tại chỗ, không tách chuỗi. Dòng không có '/' là chat. */
+    public static Histogram command(String line) {
+        if (line.isEmpty() || line.charAt(0) != '/') return CHAT_SECONDS;
+        int end = 1;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+        for (int i = 0; i < COMMANDS.length; i++) {
+            String c = COMMANDS[i];
+            if (c.length() == end && line.regionMatches(true, 0, c, 0, end)) return COMMAND_SECONDS[i];
+        }
+        return OTHER_COMMAND_SECONDS;
+    }
+
+    /* ==================== Auth ==================== */
+
+    public static final Histogram AUTH_LOGIN_SECONDS =
+            Metrics.histogram("mafia_auth_seconds", "Thời gian AuthService kiểm tra/ghi tài khoản", "op", "login");
+    public static final Histogram AUTH_REGISTER_SECONDS =
+            Metrics.histogram("mafia_auth_seconds", "Thời gian AuthService kiểm tra/ghi tài khoản", "op", "register");
+    public static final Histogram AUTH_QUEUE_SECONDS =
+            Metrics.histogram("mafia_auth_seconds", "Thời gian AuthService kiểm tra/ghi tài khoản", "op", "queue");
+    public static final Gauge AUTH_QUEUE_DEPTH =
+            Metrics.gauge("mafia_auth_queue_depth", "Số việc băm/kiểm tra mật khẩu đang chờ executor");
+    public static final Counter AUTH_REJECTED =
+            Metrics.counter("mafia_auth_rejected_total", "Số lần đăng nhập/đăng ký bị trả BUSY vì executor băm quá tải");
+    /** Bộ đếm từ chối của 1 bucket trong RateLimits. */
+    public static Counter rateLimited(String cls, String key) {
+        return Metrics.counter("mafia_rate_limited_total", "Số dòng bị bỏ vì vượt giới hạn tốc độ", "class", cls, "key", key);
+    }
+
+    public static final Histogram ACCOUNT_COMMIT_SECONDS =
+            Metrics.histogram("mafia_account_commit_seconds", "Thời gian 1 lô ghi nối + fsync của log tài khoản");
+    public static final Counter ACCOUNT_RECORDS =
+            Metrics.counter("mafia_account_records_total", "Số record đã ghi vào log tài khoản");
+
+    /* ==================== Phòng ==================== */
+
+    public static final Histogram BROADCAST_SECONDS =
+            Metrics.histogram("mafia_broadcast_seconds", "Mã hoá + xếp hàng 1 broadcast cho mọi người trong phòng");
+    public static final Counter BROADCAST_RECIPIENTS =
+            Metrics.counter("mafia_broadcast_recipients_total", "Số lượt gửi frame do broadcast (1 broadcast x số người)");
+    public static final Histogram ROOM_TASK_SECONDS =
+            Metrics.histogram("mafia_room_task_seconds", "Thời gian 1 task giữ loop phòng");
+    public static final Gauge SEATS_HELD =
+            Metrics.gauge("mafia_seats_held", "Số ghế đang giữ cho người mất kết nối giữa ván (chờ /resume)");
+    public static final Counter SESSION_RESUMES =
+            Metrics.counter("mafia_session_resumes_total", "Số lần /resume thành công (không băm lại mật khẩu)");
+    public static final Histogram TIMER_DRIFT_SECONDS =
+            Metrics.histogram("mafia_timer_drift_seconds", "Độ trễ timer pha so với hạn hẹn");
+
+    /* ==================== Mạng ==================== */
+
+    public static final Gauge CONNECTIONS_OPEN =
+            Metrics.gauge("mafia_connections_open", "Số phiên đang mở (TCP + WS, trong tiến trình hoặc qua bridge)");
+    public static final Counter CONNECTIONS_TOTAL =
+            Metrics.counter("mafia_connections_total", "Tổng số kết nối TCP đã nhận");
+    public static final Counter OUTBOUND_BYTES =
+            Metrics.counter("mafia_outbound_bytes_total", "Số byte đã ghi ra socket", NetStats::bytes);
+    public static final Counter OUTBOUND_FRAMES =
+            Metrics.counter("mafia_outbound_frames_total", "Số dòng đã gửi", NetStats::frames);
+    public static final Counter SOCKET_WRITES =
+            Metrics.counter("mafia_socket_writes_total", "Số lần ghi xuống socket (~syscall)", NetStats::writes);
+
+    /** Các histogram đã có mẫu, mỗi dòng: id count p50/p99/max (ms) — in lúc tắt server. */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Metric m : Metrics.all()) {
+            if (!(m instanceof Histogram h)) continue;
+            Histogram.Snapshot s = h.snapshot();
+            if (s.count() == 0) continue;
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(String.format(Locale.ROOT, "  %-40s count=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                    m.id(), s.count(), s.percentileNanos(0.50) / 1e6, s.percentileNanos(0.99) / 1e6, s.maxNanos() / 1e6));
+        }
+        return sb.length() == 0 ? "  (chưa có mẫu)" : sb.toString();
+    }
+}
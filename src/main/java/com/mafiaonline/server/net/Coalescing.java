@@ -0,0 +1,17 @@
+package com.mafiaonline.server.net;
+
+/**
+ * Cấu hình gộp ghi (opt-in): thay vì flush từng dòng, writer gom các dòng của 1 kết nối
+ * và ghi 1 lần mỗi tick hoặc khi buffer đầy.
+ *   -Dnet.coalesce.ms=10        (0 = tắt, mặc định; gợi ý 5–20)
+ *   -Dnet.coalesce.bytes=16384  (gom tới ngần này byte thì ghi ngay, không chờ tick)
+ */
+final class Coalescing {
+
+    static final long TICK_NANOS = Math.max(0, Long.getLong("net.coalesce.ms", 0)) * 1_000_000L;
+    static final int MAX_BYTES = Math.max(512, Integer.getInteger("net.coalesce.bytes", 16 * 1024));
+
+    static boolean enabled() { return TICK_NANOS > 0; }
+
+    private Coalescing() {}
+}
@@ -0,0 +1,27 @@
+package com.mafiaonline.server.net;
+
+/**
+ * Connection — đầu ra của một phiên chơi, độc lập với transport (blocking socket / NIO).
+ * PlayerHandler chỉ nói chuyện với client qua interface này.
+ * send() không bao giờ làm I/O trên thread gọi: dòng được xếp vào hàng đợi riêng của kết nối
+ * và writer của kết nối ghi ra socket (xem OutboundQueue, SlowConsumerPolicy).
+ */
+public interface Connection {
+
+    /** Gửi 1 frame đã mã hoá (broadcast dùng chung 1 frame cho mọi người nhận). Không chặn. */
+    void send(Frame frame);
+
+    /** Như send() nhưng là chat người chơi: client đọc chậm thì dòng này được phép bị bỏ. */
+    default void sendChat(Frame frame) { send(frame); }
+
+    /** Gửi 1 dòng (tự thêm '\n'). Gọi được từ bất kỳ thread nào, không chặn. */
+    default void send(String line) { send(Frame.of(line)); }
+
+    default void sendChat(String line) { sendChat(Frame.of(line)); }
+
+    /** Đóng kết nối (idempotent). Dữ liệu đã send trước đó được cố gắng flush. */
+    void close();
+
+    /** Địa chỉ client để log. */
+    String remoteAddress();
+}
@@ -0,0 +1,100 @@
+package com.mafiaonline.server.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+/**
+ * Frame — một dòng đã mã hoá UTF-8 sẵn (kèm '\n'), bất biến.
+ * Broadcast mã hoá 1 lần rồi đưa CÙNG frame cho mọi người nhận thay vì mỗi writer tự encode lại.
+ * Giữ luôn chuỗi gốc: transport cần văn bản (WS trong tiến trình) lấy thẳng toString(), không giải mã lại;
+ * bản mã hoá riêng của transport đó (WS frame) cũng dựng 1 lần cho cả lượt broadcast qua encoded().
+ */
+public final class Frame {
+
+    private final byte[] bytes;
+    private final String text;
+    private volatile byte[] encoded; // bản của transport khác, dựng lười ở người nhận đầu tiên
+
+    private Frame(byte[] bytes, String text) {
+        this.bytes = bytes;
+        this.text = text;
+    }
+
+    /** Mã hoá 1 dòng (thêm '\n') — đúng 1 lần cấp phát mảng byte. */
+    public static Frame of(String line) {
+        byte[] b = new byte[utf8Length(line) + 1];
+        int p = 0;
+        for (int i = 0, len = line.length(); i < len; i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                b[p++] = (byte) c;
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(line.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, line.charAt(++i));
+                    b[p++] = (byte) (0xF0 | (cp >> 18));
+                    b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    b[p++] = '?'; // surrogate lẻ: giống String.getBytes(UTF_8)
+                }
+            } else {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        b[p] = '\n';
+        return new Frame(b, line);
+    }
+
+    /** Số byte trên dây (gồm '\n'). */
+    public int length() { return bytes.length; }
+
+    /** View chỉ-đọc cho NIO; mỗi người nhận một view riêng (position riêng), nội dung dùng chung. */
+    public ByteBuffer buffer() { return ByteBuffer.wrap(bytes).asReadOnlyBuffer(); }
+
+    public void writeTo(OutputStream out) throws IOException { out.write(bytes); }
+
+    /** Chép vào buffer gộp của writer; caller đảm bảo đủ chỗ. Trả về offset mới. */
+    public int copyTo(byte[] dst, int offset) {
+        System.arraycopy(bytes, 0, dst, offset, bytes.length);
+        return offset + bytes.length;
+    }
+
+    /**
+     * Bản mã hoá khác của cùng dòng (vd JSON + WS frame cho phiên WS trong tiến trình): encoder chạy ở lần gọi đầu,
+     * người nhận sau dùng lại đúng mảng đó — không được sửa. Mỗi frame chỉ dùng 1 encoder; 2 thread đua nhau thì
+     * cùng lắm mã hoá 2 lần, kết quả như nhau.
+     */
+    public byte[] encoded(Function<Frame, byte[]> encoder) {
+        byte[] e = encoded;
+        if (e == null) encoded = e = encoder.apply(this);
+        return e;
+    }
+
+    /** Dòng gốc (không gồm '\n'). */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /** Độ dài UTF-8 chính xác, không cấp phát. */
+    private static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) { n += 4; i++; }
+            else if (Character.isSurrogate(c)) n += 1;
+            else n += 3;
+        }
+        return n;
+    }
+}
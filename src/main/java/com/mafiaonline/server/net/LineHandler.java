@@ -0,0 +1,17 @@
+package com.mafiaonline.server.net;
+
+/**
+ * LineHandler — logic xử lý lệnh theo dòng, transport gọi vào:
+ *   onOpen() một lần khi kết nối -> onLine() cho mỗi dòng -> onClose() một lần khi đóng.
+ */
+public interface LineHandler {
+
+    /** Kết nối vừa mở (gửi lời chào...). */
+    void onOpen();
+
+    /** Một dòng đã giải mã UTF-8 (không gồm '\n'). Trả false để đóng phiên. */
+    boolean onLine(String line);
+
+    /** Kết nối đã đóng (dọn dẹp phòng...). */
+    void onClose();
+}
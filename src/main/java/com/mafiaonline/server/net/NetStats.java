@@ -0,0 +1,33 @@
+package com.mafiaonline.server.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm ghi socket toàn node (mọi transport).
+ * frames = số dòng gửi đi, writes = số lần gọi write xuống socket (≈ syscall).
+ * Khi bật coalescing (-Dnet.coalesce.ms), syscallsSaved() = frames - writes.
+ */
+public final class NetStats {
+
+    private static final LongAdder FRAMES = new LongAdder();
+    private static final LongAdder WRITES = new LongAdder();
+    private static final LongAdder BYTES  = new LongAdder();
+
+    private NetStats() {}
+
+    static void recordFrames(int n) { FRAMES.add(n); }
+
+    static void recordWrite(long bytes) {
+        WRITES.increment();
+        BYTES.add(bytes);
+    }
+
+    public static long frames()        { return FRAMES.sum(); }
+    public static long writes()        { return WRITES.sum(); }
+    public static long bytes()         { return BYTES.sum(); }
+    public static long syscallsSaved() { return Math.max(0, frames() - writes()); }
+
+    public static String summary() {
+        return "frames=" + frames() + " writes=" + writes() + " bytes=" + bytes() + " syscallsSaved=" + syscallsSaved();
+    }
+}
@@ -0,0 +1,194 @@
+package com.mafiaonline.server.net;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Một kết nối trên NioEventLoop.
+ * - Đọc: gom byte tới '\n' rồi decode UTF-8 thành 1 dòng (chấp nhận "\r\n")
+ * - Ghi: send() từ thread bất kỳ chỉ xếp hàng (OutboundQueue); loop ghi ra socket bằng gathering write
+ *   (nhiều frame / 1 syscall), hết chỗ thì chờ OP_WRITE. Bật Coalescing thì loop hẹn ghi sau 1 tick.
+ *   Client chậm quá SlowConsumerPolicy thì bị ngắt.
+ * Mọi thao tác lên channel/key chỉ chạy trên thread của loop.
+ */
+final class NioConnection implements Connection {
+
+    private static final Logger LOG = Log.get(NioConnection.class);
+
+    /** Dòng dài hơn mức này bị coi là rác -> đóng kết nối. */
+    static final int MAX_LINE_BYTES = 8 * 1024;
+    /** Số frame tối đa cho 1 lần gathering write. */
+    static final int WRITE_BATCH = 32;
+
+    private final NioEventLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final String remote;
+    private LineHandler handler;
+
+    // ===== Read side (chỉ loop đụng vào) =====
+    private byte[] lineBuf = new byte[256];
+    private int lineLen = 0;
+
+    // ===== Write side =====
+    private final OutboundQueue outbound = new OutboundQueue(SlowConsumerPolicy.DEFAULT);
+    private ByteBuffer[] batch = null;        // frame đang ghi (loop), cấp khi cần
+    private int batchHead = 0, batchTail = 0;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();  // đã hẹn flush (ngay hoặc theo tick)
+    private final AtomicBoolean urgentScheduled = new AtomicBoolean(); // đã hẹn flush ngay vì dồn đủ buffer
+    long flushDeadlineNanos;                  // hạn flush theo tick (loop)
+    boolean inDueFlushes;                     // đang nằm trong dueFlushes của loop (chỉ loop đụng, xem runDueFlushes)
+    private boolean closing = false;          // đóng sau khi flush xong (loop)
+    private volatile boolean closed = false;
+    private final AtomicBoolean aborted = new AtomicBoolean(); // client chậm -> đã hẹn đóng
+
+    NioConnection(NioEventLoop loop, SocketChannel channel, SelectionKey key) {
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        String r;
+        try { r = String.valueOf(channel.getRemoteAddress()); } catch (IOException e) { r = "?"; }
+        this.remote = r;
+    }
+
+    void attach(LineHandler handler) {
+        this.handler = handler;
+        handler.onOpen();
+    }
+
+    /* ==================== Connection ==================== */
+
+    @Override
+    public void send(Frame frame) {
+        enqueue(frame, false);
+    }
+
+    @Override
+    public void sendChat(Frame frame) {
+        enqueue(frame, true);
+    }
+
+    private void enqueue(Frame frame, boolean droppable) {
+        if (closed || aborted.get()) return;
+        if (!outbound.offer(frame, droppable)) {
+            if (aborted.compareAndSet(false, true)) {
+                LOG.warn("[NIO] Slow consumer {} (pending {} bytes) -> disconnect", remote, outbound.pendingBytes());
+                loop.execute(this::closeNow);
+            }
+            return;
+        }
+        if (!Coalescing.enabled()) {
+            if (flushScheduled.compareAndSet(false, true)) loop.execute(this::flush);
+        } else if (outbound.pendingBytes() >= Coalescing.MAX_BYTES) {
+            if (urgentScheduled.compareAndSet(false, true)) loop.execute(this::flush);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            loop.scheduleFlush(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        loop.execute(() -> { closing = true; flush(); });
+    }
+
+    @Override
+    public String remoteAddress() { return remote; }
+
+    /* ==================== Loop side ==================== */
+
+    /** Đọc những gì đang có trên socket vào buffer dùng chung của loop, tách dòng và dispatch. */
+    void onReadable(ByteBuffer buf) {
+        int n;
+        buf.clear();
+        try {
+            n = channel.read(buf);
+        } catch (IOException e) {
+            closeNow();
+            return;
+        }
+        if (n < 0) { closeNow(); return; }
+        buf.flip();
+
+        while (buf.hasRemaining() && !closing) {
+            byte b = buf.get();
+            if (b == '\n') {
+                int len = lineLen;
+                if (len > 0 && lineBuf[len - 1] == '\r') len--;
+                String line = new String(lineBuf, 0, len, StandardCharsets.UTF_8);
+                lineLen = 0;
+                boolean keep;
+                try {
+                    keep = handler.onLine(line);
+                } catch (Exception e) {
+                    LOG.warn("[NIO] handler error ({}): {}", remote, e.getMessage(), e);
+                    keep = true;
+                }
+                if (!keep) { closing = true; flush(); }
+            } else {
+                if (lineLen == lineBuf.length) {
+                    if (lineLen >= MAX_LINE_BYTES) { closeNow(); return; }
+                    lineBuf = Arrays.copyOf(lineBuf, Math.min(lineLen * 2, MAX_LINE_BYTES));
+                }
+                lineBuf[lineLen++] = b;
+            }
+        }
+    }
+
+    /** Ghi hàng đợi ra socket theo lô; nếu socket đầy thì bật OP_WRITE và chờ lần sau. */
+    void flush() {
+        flushScheduled.set(false);
+        urgentScheduled.set(false);
+        if (closed) return;
+        try {
+            while (true) {
+                if (batchHead == batchTail) {
+                    if (batch == null) batch = new ByteBuffer[WRITE_BATCH];
+                    batchHead = batchTail = 0;
+                    Frame frame;
+                    while (batchTail < WRITE_BATCH && (frame = outbound.poll()) != null) {
+                        batch[batchTail++] = frame.buffer();
+                    }
+                    if (batchTail == 0) break;
+                    NetStats.recordFrames(batchTail);
+                }
+                long written = channel.write(batch, batchHead, batchTail - batchHead);
+                NetStats.recordWrite(written);
+                while (batchHead < batchTail && !batch[batchHead].hasRemaining()) batch[batchHead++] = null;
+                if (batchHead < batchTail) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (Exception e) {
+            closeNow();
+            return;
+        }
+        if (closing && outbound.isEmpty()) closeNow();
+    }
+
+    /** Đóng ngay (chỉ gọi trên loop). Gọi handler.onClose() đúng một lần. */
+    void closeNow() {
+        if (closed) return;
+        closed = true;
+        key.cancel();
+        try { channel.close(); } catch (IOException ignored) {}
+        batch = null;
+        batchHead = batchTail = 0;
+        loop.connectionClosed();
+        if (handler != null) {
+            try { handler.onClose(); } catch (Exception e) {
+                LOG.warn("[NIO] onClose error ({}): {}", remote, e.getMessage(), e);
+            }
+        }
+    }
+}
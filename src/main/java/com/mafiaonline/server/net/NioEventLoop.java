@@ -0,0 +1,162 @@
+package com.mafiaonline.server.net;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Một event loop: 1 thread + 1 Selector phục vụ nhiều kết nối.
+ * - Buffer đọc (direct) dùng chung cho mọi kết nối của loop, không cấp phát mỗi lần đọc
+ * - Thread khác muốn đụng vào kết nối thì execute() task, loop sẽ chạy task giữa các lần select
+ * - Coalescing: kết nối hẹn flush sau 1 tick; cùng 1 tick nên hàng FIFO đã sắp theo hạn, select chờ tới hạn gần nhất
+ */
+final class NioEventLoop implements Runnable {
+
+    private static final Logger LOG = Log.get(NioEventLoop.class);
+
+    static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ArrayDeque<NioConnection> dueFlushes = new ArrayDeque<>(); // chỉ loop đụng vào
+    private volatile boolean running = true;
+
+    NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start() { thread.start(); }
+
+    boolean inLoop() { return Thread.currentThread() == thread; }
+
+    int getConnectionCount() { return connections.get(); }
+
+    /** Chạy task trên thread của loop (gọi được từ mọi thread). */
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inLoop() && wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    /** Nhận kết nối mới từ acceptor. */
+    void register(SocketChannel ch, Function<Connection, LineHandler> sessions) {
+        execute(() -> {
+            NioConnection c;
+            try {
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = ch.register(selector, SelectionKey.OP_READ);
+                c = new NioConnection(this, ch, key);
+                key.attach(c);
+            } catch (IOException e) {
+                try { ch.close(); } catch (IOException ignored) {}
+                return;
+            }
+            connections.incrementAndGet();
+            c.attach(sessions.apply(c));
+        });
+    }
+
+    /**
+     * Hẹn flush kết nối sau 1 tick gộp ghi (Coalescing). flush() sớm (urgent / OP_WRITE) không gỡ kết nối khỏi
+     * dueFlushes: nếu vẫn còn trong đó thì giữ nguyên hạn cũ (sớm hơn) — không ghi đè hạn của phần tử đang xếp,
+     * nên dueFlushes luôn theo thứ tự hạn.
+     */
+    void scheduleFlush(NioConnection c) {
+        execute(() -> {
+            if (c.inDueFlushes) return;
+            c.inDueFlushes = true;
+            c.flushDeadlineNanos = System.nanoTime() + Coalescing.TICK_NANOS;
+            dueFlushes.add(c);
+        });
+    }
+
+    void connectionClosed() { connections.decrementAndGet(); }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (!dueFlushes.isEmpty()) {
+                    long waitNanos = dueFlushes.peek().flushDeadlineNanos - System.nanoTime();
+                    if (waitNanos <= 0) selector.selectNow();
+                    else selector.select(Math.max(1, (waitNanos + 999_999) / 1_000_000));
+                } else {
+                    selector.select();
+                }
+                wakeupPending.set(false);
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    NioConnection c = (NioConnection) key.attachment();
+                    if (c == null) continue;
+                    try {
+                        if (key.isValid() && key.isReadable()) c.onReadable(readBuffer);
+                        if (key.isValid() && key.isWritable()) c.flush();
+                    } catch (CancelledKeyException ignored) {
+                        c.closeNow();
+                    }
+                }
+                runTasks();
+                runDueFlushes();
+            }
+        } catch (IOException e) {
+            LOG.error("[NIO] {} selector error: {}", thread.getName(), e.getMessage(), e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                Object att = key.attachment();
+                if (att instanceof NioConnection c) c.closeNow();
+            }
+            try { selector.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void runDueFlushes() {
+        long now = System.nanoTime();
+        NioConnection c;
+        while ((c = dueFlushes.peek()) != null && c.flushDeadlineNanos - now <= 0) {
+            dueFlushes.poll();
+            c.inDueFlushes = false;
+            c.flush();
+        }
+    }
+
+    private void runTasks() {
+        Runnable r;
+        while ((r = tasks.poll()) != null) {
+            try {
+                r.run();
+            } catch (Exception e) {
+                LOG.error("[NIO] task error: {}", e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mafiaonline.server.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Function;
+
+/**
+ * NioServer — transport TCP non-blocking.
+ * - 1 thread accept (chính là thread gọi serve())
+ * - N event loop (mỗi loop 1 Selector) chia kết nối theo round-robin
+ * - Mỗi kết nối đọc dòng '\n' vào buffer tái sử dụng rồi gọi LineHandler (cùng logic lệnh với chế độ blocking)
+ */
+public class NioServer implements Closeable {
+
+    private final ServerSocketChannel acceptor;
+    private final NioEventLoop[] loops;
+    private final Function<Connection, LineHandler> sessions;
+    private volatile boolean running = true;
+    private int next = 0;
+
+    /**
+     * @param port      cổng TCP (0 = tự chọn)
+     * @param loopCount số event loop (mỗi loop 1 thread)
+     * @param sessions  tạo LineHandler cho mỗi kết nối mới
+     */
+    public NioServer(int port, int loopCount, Function<Connection, LineHandler> sessions) throws IOException {
+        this.sessions = sessions;
+        this.acceptor = ServerSocketChannel.open();
+        this.acceptor.bind(new InetSocketAddress(port), 1024);
+
+        this.loops = new NioEventLoop[Math.max(1, loopCount)];
+        try {
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new NioEventLoop("nio-loop-" + i);
+                loops[i].start();
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int getLocalPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    public int getLoopCount() {
+        return loops.length;
+    }
+
+    /** Tổng số kết nối đang mở trên mọi loop. */
+    public int getConnectionCount() {
+        int n = 0;
+        for (NioEventLoop l : loops) if (l != null) n += l.getConnectionCount();
+        return n;
+    }
+
+    /** Vòng accept — chặn tới khi close(). */
+    public void serve() throws IOException {
+        while (running) {
+            SocketChannel ch;
+            try {
+                ch = acceptor.accept();
+            } catch (ClosedChannelException closed) {
+                break;
+            }
+            if (ch == null) continue;
+            NioEventLoop loop = loops[next];
+            next = (next + 1) % loops.length;
+            loop.register(ch, sessions);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try { acceptor.close(); } catch (IOException ignored) {}
+        for (NioEventLoop l : loops) if (l != null) l.shutdown();
+    }
+}
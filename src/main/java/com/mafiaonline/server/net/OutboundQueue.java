@@ -0,0 +1,106 @@
+package com.mafiaonline.server.net;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hàng đợi gửi của 1 kết nối: nhiều producer (phòng, timer, thread khác) — 1 consumer (writer của kết nối).
+ * - Lock-free: danh sách liên kết kiểu Vyukov, offer = 1 getAndSet trên tail
+ * - Giới hạn theo số byte chờ gửi; vượt thì áp SlowConsumerPolicy (bỏ chat cũ / báo ngắt)
+ * - Dòng bị bỏ chỉ được đánh dấu (CAS state), consumer tự bỏ qua khi gặp
+ */
+final class OutboundQueue {
+
+    private static final int PENDING = 0, TAKEN = 1, DROPPED = 2;
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Node.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static final class Node {
+        final Frame frame;                 // có thể dùng chung giữa nhiều kết nối
+        final boolean droppable;
+        volatile Node next;
+        volatile int state;
+
+        Node(Frame frame, boolean droppable) {
+            this.frame = frame;
+            this.droppable = droppable;
+        }
+    }
+
+    private final SlowConsumerPolicy policy;
+    private final AtomicReference<Node> tail;
+    private volatile Node head;                    // stub; chỉ consumer dời head
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+    private volatile long lastProgressNanos = System.nanoTime();
+
+    OutboundQueue(SlowConsumerPolicy policy) {
+        this.policy = policy;
+        Node stub = new Node(null, false);
+        this.head = stub;
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Xếp 1 frame vào hàng đợi.
+     * @return false nếu client quá chậm theo policy — caller phải ngắt kết nối
+     */
+    boolean offer(Frame frame, boolean droppable) {
+        Node n = new Node(frame, droppable);
+        long before = pendingBytes.getAndAdd(frame.length());
+        if (before == 0) lastProgressNanos = System.nanoTime(); // từ rỗng -> bắt đầu tính thời gian chờ
+        Node prev = tail.getAndSet(n);
+        prev.next = n;
+
+        long pending = before + frame.length();
+        if (pending > policy.maxPendingBytes) {
+            if (!policy.dropChat || !dropOldestChat(pending - policy.maxPendingBytes)) return false;
+        }
+        return before == 0 || System.nanoTime() - lastProgressNanos <= policy.maxStallNanos;
+    }
+
+    /** Consumer lấy frame kế tiếp (null nếu rỗng). */
+    Frame poll() {
+        Node h = head;
+        for (Node next = h.next; next != null; next = h.next) {
+            head = next;
+            h = next;
+            if (STATE.compareAndSet(next, PENDING, TAKEN)) {
+                pendingBytes.addAndGet(-next.frame.length());
+                lastProgressNanos = System.nanoTime();
+                return next.frame;
+            }
+            // đã bị drop -> bỏ qua
+        }
+        return null;
+    }
+
+    boolean isEmpty() {
+        return head == tail.get();
+    }
+
+    long pendingBytes() { return pendingBytes.get(); }
+
+    long droppedLines() { return droppedLines.get(); }
+
+    /** Bỏ đi (đánh dấu) dòng chat cũ nhất tới khi giải phóng đủ excess byte. */
+    private boolean dropOldestChat(long excess) {
+        long freed = 0;
+        for (Node n = head.next; n != null && freed < excess; n = n.next) {
+            if (n.droppable && STATE.compareAndSet(n, PENDING, DROPPED)) {
+                pendingBytes.addAndGet(-n.frame.length());
+                droppedLines.incrementAndGet();
+                freed += n.frame.length();
+            }
+        }
+        return pendingBytes.get() <= policy.maxPendingBytes;
+    }
+}
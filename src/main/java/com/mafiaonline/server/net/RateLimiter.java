@@ -0,0 +1,127 @@
+package com.mafiaonline.server.net;
+
+import com.mafiaonline.server.metrics.Counter;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token bucket rate/burst theo GCRA: trạng thái 1 bucket là 1 long "thời điểm bucket đầy lại", 0 = đầy.
+ * Hai cách dùng:
+ * - bucket(): bucket riêng của 1 chủ có sẵn đối tượng (1 phiên = 1 tài khoản đang chơi) — không dùng chung với ai,
+ *   không CAS; chủ gọi tuần tự (thread đọc / event loop của phiên)
+ * - tryAcquire(key): khoá KHÔNG có phiên riêng (IP, username đang thử đăng nhập) — bảng cố định N ô
+ *   (-Dratelimit.stripes, mặc định 65536, làm tròn lên luỹ thừa 2), khoá băm vào 1 ô, cập nhật bằng 1 CAS.
+ *   Kẻ gửi hàng triệu khoá khác nhau không làm bảng phình. Với K khoá đang hoạt động, 1 khoá trùng ô với khoá khác
+ *   với xác suất ~K/N — N phải lớn hơn nhiều lần số IP đồng thời. Hàm băm có seed ngẫu nhiên mỗi lần chạy
+ *   (không dùng String.hashCode) nên không chọn được khoá rơi vào đúng ô của nạn nhân.
+ * rate <= 0: tắt (luôn cho qua).
+ */
+public final class RateLimiter {
+
+    private static final int STRIPES = Integer.getInteger("ratelimit.stripes", 1 << 16);
+    private static final int SEED = new SecureRandom().nextInt();
+    /** nanoTime() có thể âm: đếm từ lúc nạp class để "ô = 0" luôn là quá khứ. */
+    private static final long EPOCH = System.nanoTime() - 1;
+
+    private final String name;
+    private final double rate;
+    private final int burst;
+    private final long intervalNanos;   // 1 token
+    private final long toleranceNanos;  // burst token
+    private final AtomicLongArray slots; // null: tắt, hoặc chỉ dùng bucket()
+    private final int mask;
+    private final Counter rejected;
+
+    /** rate token/giây, burst token tối đa dồn được; rejected đếm số lần từ chối (có thể null). Bảng -Dratelimit.stripes ô. */
+    public RateLimiter(String name, double rate, int burst, Counter rejected) {
+        this(name, rate, burst, STRIPES, rejected);
+    }
+
+    /** stripes = 0: không có bảng dùng chung, chỉ bucket() (giới hạn theo phiên). */
+    public RateLimiter(String name, double rate, int burst, int stripes, Counter rejected) {
+        this.name = name;
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        this.intervalNanos = (rate > 0) ? Math.max(1, (long) (1e9 / rate)) : 0;
+        this.toleranceNanos = intervalNanos * this.burst;
+        int size = (stripes <= 1) ? stripes : Integer.highestOneBit(stripes - 1) << 1;
+        this.slots = (rate > 0 && size > 0) ? new AtomicLongArray(size) : null;
+        this.mask = size - 1;
+        this.rejected = rejected;
+    }
+
+    public String name() { return name; }
+
+    public boolean enabled() { return rate > 0; }
+
+    /* ==================== Bảng dùng chung (khoá không có phiên) ==================== */
+
+    /** Lấy 1 token cho key; false (và đếm vào rejected) nếu bucket của key đang cạn. key null = không giới hạn. */
+    public boolean tryAcquire(String key) {
+        if (slots == null || key == null) return true;
+        return tryAcquire(key, now());
+    }
+
+    boolean tryAcquire(String key, long now) {
+        int i = index(key);
+        for (;;) {
+            long full = slots.get(i);
+            long next = Math.max(full, now) + intervalNanos;
+            if (next - now > toleranceNanos) {
+                if (rejected != null) rejected.inc();
+                return false;
+            }
+            if (slots.compareAndSet(i, full, next)) return true;
+        }
+    }
+
+    /** Bucket của key còn ít nhất 1 token (không lấy). Đi cùng tryAcquire() sau khi biết lượt này có bị tính không. */
+    public boolean hasToken(String key) {
+        if (slots == null || key == null) return true;
+        long now = now();
+        if (Math.max(slots.get(index(key)), now) + intervalNanos - now <= toleranceNanos) return true;
+        if (rejected != null) rejected.inc();
+        return false;
+    }
+
+    /** Băm có seed (FNV-1a + trộn cuối), ổn định trong 1 lần chạy, không đoán trước được từ bên ngoài. */
+    private int index(String key) {
+        int h = SEED;
+        for (int i = 0, n = key.length(); i < n; i++) h = (h ^ key.charAt(i)) * 0x01000193;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+
+    /* ==================== Bucket riêng của 1 phiên ==================== */
+
+    /** Bucket riêng cùng rate/burst (đếm từ chối chung vào rejected). Không thread-safe: 1 chủ gọi tuần tự. */
+    public Bucket bucket() { return new Bucket(); }
+
+    public final class Bucket {
+        private long full;
+
+        private Bucket() {}
+
+        public boolean tryAcquire() {
+            if (rate <= 0) return true;
+            long now = now();
+            long next = Math.max(full, now) + intervalNanos;
+            if (next - now > toleranceNanos) {
+                if (rejected != null) rejected.inc();
+                return false;
+            }
+            full = next;
+            return true;
+        }
+    }
+
+    private static long now() { return System.nanoTime() - EPOCH; }
+
+    @Override
+    public String toString() {
+        return enabled() ? name + "=" + rate + "/" + burst : name + "=off";
+    }
+}
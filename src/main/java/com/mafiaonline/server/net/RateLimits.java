@@ -0,0 +1,103 @@
+package com.mafiaonline.server.net;
+
+import com.mafiaonline.server.metrics.ServerMetrics;
+
+import java.util.Set;
+
+/**
+ * Các bucket giới hạn tốc độ dùng chung toàn JVM (TCP + WS bridge), theo lớp lệnh x khoá:
+ *   auth    (/login, /register, /resume)  ip: 1/s burst 20     account: 0.2/s burst 10 — chỉ tính lần SAI mật khẩu
+ *   chat    (dòng không có '/')           ip: 20/s burst 60    account: 2/s burst 10   — bucket riêng của phiên
+ *   command (lệnh '/' khác)               ip: 50/s burst 200   account: 10/s burst 40  — bucket riêng của phiên
+ * - ip: mọi dòng của lớp đó đều trừ (chặn số lần thử thô), bảng dùng chung theo địa chỉ
+ * - auth.account: khoá ip + username đang thử; lần thử chỉ bị chặn khi bucket đã cạn, và chỉ đăng nhập SAI mới trừ
+ *   token -> người khác gửi sai mật khẩu không khoá được chủ tài khoản ở IP khác (proxy tin cậy: khoá chỉ còn username)
+ * - chat/command.account: 1 phiên = 1 tài khoản nên dùng RateLimiter.bucket() của PlayerHandler, không trùng ô
+ * Chỉnh bằng -Dratelimit.<lớp>.<khoá>=<token/giây>/<burst>, vd -Dratelimit.chat.account=1/5; "off" hoặc rate 0 để tắt.
+ * Địa chỉ trong -Dratelimit.trusted (mặc định loopback) là proxy — chính là WS bridge nối về TCP: bỏ qua bucket ip
+ * vì mọi người chơi đi qua proxy chung 1 IP; bridge đã trừ bucket ip theo địa chỉ WS thật. Bucket account vẫn áp dụng.
+ * Số lần từ chối: mafia_rate_limited_total{class,key}.
+ */
+public final class RateLimits {
+
+    private RateLimits() {}
+
+    /** Trả lời dòng auth bị bỏ (sau "[AUTH_FAIL] ") và thông báo 1 lần cho mỗi đợt chat/lệnh bị bỏ. */
+    public static final String AUTH_LIMITED_MESSAGE = "Thử quá nhiều lần, hãy chờ vài giây rồi thử lại.";
+    public static final String LINE_LIMITED_MESSAGE = "⏳ Bạn gửi quá nhanh — các dòng gõ lúc này bị bỏ, chờ vài giây.";
+
+    public static final RateLimiter AUTH_IP = limiter("auth", "ip", 1, 20);
+    public static final RateLimiter AUTH_ACCOUNT = limiter("auth", "account", 0.2, 10);
+    public static final RateLimiter CHAT_IP = limiter("chat", "ip", 20, 60);
+    public static final RateLimiter CHAT_ACCOUNT = sessionLimiter("chat", "account", 2, 10);
+    public static final RateLimiter COMMAND_IP = limiter("command", "ip", 50, 200);
+    public static final RateLimiter COMMAND_ACCOUNT = sessionLimiter("command", "account", 10, 40);
+
+    private static final Set<String> TRUSTED =
+            Set.of(System.getProperty("ratelimit.trusted", "127.0.0.1,0:0:0:0:0:0:0:1").split("\\s*,\\s*"));
+
+    /** Dòng (đã trim) cần xác thực mật khẩu / token — lớp auth. */
+    public static boolean isAuthLine(String line) {
+        return line.startsWith("/login ") || line.startsWith("/register ") || line.startsWith("/resume ");
+    }
+
+    /** Bucket ip cho 1 dòng (đã trim) theo lớp của nó. */
+    public static RateLimiter ipLimiter(String line) {
+        if (isAuthLine(line)) return AUTH_IP;
+        return (!line.isEmpty() && line.charAt(0) == '/') ? COMMAND_IP : CHAT_IP;
+    }
+
+    /**
+     * Khoá ip từ địa chỉ dạng SocketAddress.toString() ("/1.2.3.4:5678", "host/1.2.3.4:5678", "/0:0:..:1:5678"):
+     * bỏ tên máy và cổng. null nếu là proxy tin cậy (RateLimiter.tryAcquire(null) luôn cho qua). Gọi 1 lần mỗi kết nối.
+     */
+    public static String ipKey(String remoteAddress) {
+        if (remoteAddress == null) return null;
+        String s = remoteAddress;
+        int slash = s.indexOf('/');
+        if (slash >= 0) s = s.substring(slash + 1);
+        int colon = s.lastIndexOf(':');
+        if (colon > 0) s = s.substring(0, colon);
+        if (s.startsWith("[") && s.endsWith("]")) s = s.substring(1, s.length() - 1);
+        return TRUSTED.contains(s) ? null : s;
+    }
+
+    /** Khoá bucket auth.account: username gắn với ip người thử (ipKey null = proxy tin cậy -> chỉ username). */
+    public static String authAccountKey(String ipKey, String username) {
+        return (ipKey == null) ? username : ipKey + '\n' + username;
+    }
+
+    public static String summary() {
+        return AUTH_IP + " " + AUTH_ACCOUNT + " " + CHAT_IP + " " + CHAT_ACCOUNT + " " + COMMAND_IP + " " + COMMAND_ACCOUNT
+                + " trusted=" + TRUSTED;
+    }
+
+    private static RateLimiter limiter(String cls, String key, double defRate, int defBurst) {
+        return limiter(cls, key, defRate, defBurst, true);
+    }
+
+    /** Chỉ cấu hình rate/burst cho bucket() của từng phiên — không cấp bảng dùng chung. */
+    private static RateLimiter sessionLimiter(String cls, String key, double defRate, int defBurst) {
+        return limiter(cls, key, defRate, defBurst, false);
+    }
+
+    private static RateLimiter limiter(String cls, String key, double defRate, int defBurst, boolean striped) {
+        String name = cls + "." + key;
+        String spec = System.getProperty("ratelimit." + name, "").trim();
+        double rate = defRate;
+        int burst = defBurst;
+        if (spec.equalsIgnoreCase("off")) {
+            rate = 0;
+        } else if (!spec.isEmpty()) {
+            int slash = spec.indexOf('/');
+            try {
+                rate = Double.parseDouble(slash < 0 ? spec : spec.substring(0, slash));
+                burst = (slash < 0) ? Math.max(1, (int) Math.ceil(rate)) : Integer.parseInt(spec.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("-Dratelimit." + name + "=" + spec + " (cần <token/giây>/<burst>)", e);
+            }
+        }
+        if (!striped) return new RateLimiter(name, rate, burst, 0, ServerMetrics.rateLimited(cls, key));
+        return new RateLimiter(name, rate, burst, ServerMetrics.rateLimited(cls, key));
+    }
+}
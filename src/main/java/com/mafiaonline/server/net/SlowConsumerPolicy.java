@@ -0,0 +1,34 @@
+package com.mafiaonline.server.net;
+
+/**
+ * Chính sách cho client đọc chậm (hàng đợi gửi của kết nối bị dồn).
+ * Cấu hình bằng VM options:
+ *   -Dnet.out.policy=drop-chat|disconnect   (mặc định drop-chat)
+ *   -Dnet.out.maxBytes=1048576              (byte chờ gửi tối đa / kết nối)
+ *   -Dnet.out.maxStallMs=30000              (quá lâu không lấy được dòng nào ra khỏi hàng đợi -> ngắt)
+ *
+ * drop-chat : vượt maxBytes thì bỏ dòng chat cũ nhất trước; vẫn vượt (toàn dòng hệ thống) thì ngắt.
+ * disconnect: vượt maxBytes là ngắt luôn.
+ */
+final class SlowConsumerPolicy {
+
+    static final SlowConsumerPolicy DEFAULT = fromSystemProperties();
+
+    final boolean dropChat;
+    final long maxPendingBytes;
+    final long maxStallNanos;
+
+    SlowConsumerPolicy(boolean dropChat, long maxPendingBytes, long maxStallMillis) {
+        this.dropChat = dropChat;
+        this.maxPendingBytes = Math.max(1024, maxPendingBytes);
+        this.maxStallNanos = Math.max(1, maxStallMillis) * 1_000_000L;
+    }
+
+    static SlowConsumerPolicy fromSystemProperties() {
+        String p = System.getProperty("net.out.policy", "drop-chat").trim().toLowerCase();
+        return new SlowConsumerPolicy(
+                !"disconnect".equals(p),
+                Long.getLong("net.out.maxBytes", 1024 * 1024),
+                Long.getLong("net.out.maxStallMs", 30_000));
+    }
+}
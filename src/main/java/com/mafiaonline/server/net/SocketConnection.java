@@ -0,0 +1,139 @@
+package com.mafiaonline.server.net;
+
+import com.mafiaonline.common.SessionThreads;
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connection cho chế độ blocking.
+ * send() chỉ xếp hàng (OutboundQueue); một writer thread riêng của kết nối (platform/virtual theo SessionThreads)
+ * gom frame vào buffer và ghi ra socket khi hàng đợi cạn — hoặc, nếu bật Coalescing, khi hết tick/đầy buffer.
+ * Client chậm quá policy thì bị ngắt, không kéo chậm phòng.
+ */
+public class SocketConnection implements Connection {
+
+    private static final Logger LOG = Log.get(SocketConnection.class);
+    private final Socket socket;
+    private final OutputStream out;                    // stream thô của socket: mỗi write ≈ 1 syscall
+    private final byte[] buf = new byte[Coalescing.enabled() ? Coalescing.MAX_BYTES : 8192];
+    private int count = 0;                             // số byte đang gom trong buf (chỉ writer)
+    private final OutboundQueue queue = new OutboundQueue(SlowConsumerPolicy.DEFAULT);
+    private final Thread writer;
+    private volatile boolean writerParked = false;
+    private volatile boolean tickWait = false;          // writer đang chờ hết tick (coalescing)
+    private volatile boolean closing = false;
+
+    public SocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = socket.getOutputStream();
+        this.writer = SessionThreads.start("writer-" + socket.getPort(), this::drain, true);
+    }
+
+    @Override
+    public void send(Frame frame) {
+        enqueue(frame, false);
+    }
+
+    @Override
+    public void sendChat(Frame frame) {
+        enqueue(frame, true);
+    }
+
+    private void enqueue(Frame frame, boolean droppable) {
+        if (closing) return;
+        if (!queue.offer(frame, droppable)) {
+            LOG.warn("[Net] Slow consumer {} (pending {} bytes) -> disconnect", remoteAddress(), queue.pendingBytes());
+            abort();
+            return;
+        }
+        // đang chờ tick thì không cần đánh thức, trừ khi đã dồn đủ 1 buffer
+        if (writerParked && (!tickWait || queue.pendingBytes() >= Coalescing.MAX_BYTES)) LockSupport.unpark(writer);
+    }
+
+    /**
+     * Vòng writer: lấy frame -> gom vào buf -> ghi khi hàng đợi cạn (hoặc hết tick nếu coalescing) -> park chờ frame mới.
+     */
+    private void drain() {
+        long firstPendingNanos = 0; // thời điểm byte đầu tiên chưa ghi vào buf
+        try {
+            while (true) {
+                Frame frame = queue.poll();
+                if (frame != null) {
+                    append(frame);
+                    if (count > 0 && firstPendingNanos == 0) firstPendingNanos = System.nanoTime();
+                    continue;
+                }
+                if (count > 0) {
+                    long wait = Coalescing.enabled() && !closing
+                            ? firstPendingNanos + Coalescing.TICK_NANOS - System.nanoTime() : 0;
+                    if (wait > 0) {
+                        park(wait); // frame mới đến thì dậy gom tiếp, hết tick thì ghi
+                        continue;
+                    }
+                    writeBuffer();
+                    firstPendingNanos = 0;
+                }
+                if (closing && queue.isEmpty()) break;
+                park(0);
+            }
+        } catch (IOException ignored) {
+            // socket đã đóng / peer reset — reader của phiên sẽ tự dọn
+        } finally {
+            try { socket.close(); } catch (Exception ignored) {}
+        }
+    }
+
+    private void append(Frame frame) throws IOException {
+        NetStats.recordFrames(1);
+        int len = frame.length();
+        if (len > buf.length - count) writeBuffer();
+        if (len > buf.length) {                 // frame to hơn buffer: ghi thẳng
+            frame.writeTo(out);
+            NetStats.recordWrite(len);
+            return;
+        }
+        count = frame.copyTo(buf, count);
+        if (count == buf.length) writeBuffer();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count == 0) return;
+        out.write(buf, 0, count);
+        NetStats.recordWrite(count);
+        count = 0;
+    }
+
+    /** Park tới khi có frame mới/close (nanos = 0: không hạn; > 0: chờ hết tick gộp ghi). */
+    private void park(long nanos) {
+        tickWait = nanos > 0;
+        writerParked = true;
+        if (tickWait) LockSupport.parkNanos(this, nanos);
+        else if (queue.isEmpty() && !closing) LockSupport.park(this);
+        writerParked = false;
+        tickWait = false;
+    }
+
+    /** Đóng sau khi writer ghi hết phần đã xếp hàng. */
+    @Override
+    public void close() {
+        closing = true;
+        LockSupport.unpark(writer);
+    }
+
+    /** Đóng ngay (client chậm): reader thread của phiên nhận lỗi socket và tự onClose(). */
+    private void abort() {
+        closing = true;
+        try { socket.close(); } catch (Exception ignored) {}
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public String remoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+}
@@ -0,0 +1,80 @@
+package com.mafiaonline.sim;
+
+import com.mafiaonline.server.Role;
+
+/**
+ * Cách 1 bot chọn mục tiêu. Gọi trên worker của bàn, tại thời điểm ngẫu nhiên trong pha; trả về null = bỏ lượt.
+ * - random: mọi người chọn ngẫu nhiên (mốc so sánh)
+ * - smart : Mafia thống nhất mục tiêu và diệt Detective đã lộ; Detective tố Mafia tìm được, dân theo;
+ *           Doctor/Bodyguard che Detective đã lộ; còn lại bỏ phiếu theo người đang dẫn
+ */
+interface BotStrategy {
+
+    /** Mục tiêu /vote khi đang VOTE. */
+    String vote(SimTable t, String me);
+
+    /** Mục tiêu hành động đêm (/kill /save /investigate /protect theo vai). */
+    String nightTarget(SimTable t, String me);
+
+    /** Vai có hành động ban đêm (khớp PhaseManager). */
+    static boolean actsAtNight(Role r) {
+        return r == Role.MAFIA || r == Role.DOCTOR || r == Role.DETECTIVE || r == Role.BODYGUARD;
+    }
+
+    static BotStrategy of(String name) {
+        return switch (name) {
+            case "random" -> RANDOM;
+            case "smart"  -> SMART;
+            default -> throw new IllegalArgumentException("strategy không hợp lệ: " + name + " (random | smart)");
+        };
+    }
+
+    BotStrategy RANDOM = new BotStrategy() {
+        @Override
+        public String vote(SimTable t, String me) {
+            return t.pickAlive(p -> !p.getName().equals(me));
+        }
+
+        @Override
+        public String nightTarget(SimTable t, String me) {
+            return switch (t.roleOf(me)) {
+                case MAFIA  -> t.pickAlive(p -> p.getRole() != Role.MAFIA);
+                case DOCTOR -> t.pickAlive(p -> true);
+                default     -> t.pickAlive(p -> !p.getName().equals(me));
+            };
+        }
+    };
+
+    BotStrategy SMART = new BotStrategy() {
+        @Override
+        public String vote(SimTable t, String me) {
+            Role role = t.roleOf(me);
+            String accused = t.accused();
+            if (role == Role.MAFIA) {
+                // bị tố (mình hoặc đồng đội) -> dồn phiếu Detective; không thì theo đám đông nếu không phải phe mình
+                if (accused != null && t.claimedDetective() != null) return t.claimedDetective();
+                String lead = t.leading(n -> t.roleOf(n) != Role.MAFIA);
+                return (lead != null) ? lead : t.pickAlive(p -> p.getRole() != Role.MAFIA);
+            }
+            if (role == Role.JESTER) return t.pickAlive(p -> !p.getName().equals(me));
+            if (accused != null && !accused.equals(me)) return accused;
+            String lead = t.leading(n -> !n.equals(me) && !(role == Role.DETECTIVE && t.isCleared(n)));
+            if (lead != null && t.rng().nextBoolean()) return lead;
+            return t.pickAlive(p -> !p.getName().equals(me) && !(role == Role.DETECTIVE && t.isCleared(p.getName())));
+        }
+
+        @Override
+        public String nightTarget(SimTable t, String me) {
+            String detective = t.claimedDetective();
+            return switch (t.roleOf(me)) {
+                case MAFIA -> (detective != null) ? detective : t.mafiaPick(p -> p.getRole() != Role.MAFIA);
+                case DOCTOR -> (detective != null) ? detective
+                        : (t.rng().nextInt(3) == 0) ? me : t.pickAlive(p -> !p.getName().equals(me));
+                case BODYGUARD -> (detective != null && !detective.equals(me)) ? detective
+                        : t.pickAlive(p -> !p.getName().equals(me));
+                case DETECTIVE -> t.pickAlive(p -> !p.getName().equals(me) && !t.isCleared(p.getName()));
+                default -> null;
+            };
+        }
+    };
+}
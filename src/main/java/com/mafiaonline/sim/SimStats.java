@@ -0,0 +1,70 @@
+package com.mafiaonline.sim;
+
+import com.mafiaonline.server.Role;
+
+import java.util.List;
+
+/**
+ * Thống kê của 1 cỡ bàn (số người): kết quả ván, số ngày, số ván lỗi, số ghế + số lần thắng theo vai.
+ * Mỗi worker giữ bản riêng, cuối cùng merge() -> không có đồng bộ trên đường chạy ván.
+ */
+final class SimStats {
+
+    static final String[] RESULTS = {"TOWN", "MAFIA", "JESTER", "ABORTED"};
+    private static final Role[] ROLES = Role.values();
+
+    final int players;
+    long games;
+    long days;
+    long errors;                                   // ván bị exception cắt ngang (SimTable.failed)
+    final long[] results = new long[RESULTS.length];
+    final long[] seats = new long[ROLES.length];   // số ghế đã chia theo vai
+    final long[] wins = new long[ROLES.length];    // số ghế thắng theo vai
+
+    SimStats(int players) {
+        this.players = players;
+    }
+
+    void record(List<Role> dealt, String result, int days, boolean failed) {
+        games++;
+        if (failed) errors++;
+        this.days += days;
+        int r = indexOf(result);
+        results[r]++;
+        for (Role role : dealt) {
+            seats[role.ordinal()]++;
+            if (wins(role, result)) wins[role.ordinal()]++;
+        }
+    }
+
+    void merge(SimStats o) {
+        games += o.games;
+        days += o.days;
+        errors += o.errors;
+        for (int i = 0; i < results.length; i++) results[i] += o.results[i];
+        for (int i = 0; i < seats.length; i++) {
+            seats[i] += o.seats[i];
+            wins[i] += o.wins[i];
+        }
+    }
+
+    double resultPct(int r)   { return (games == 0) ? 0 : 100.0 * results[r] / games; }
+    double winPct(Role role)  { long n = seats[role.ordinal()]; return (n == 0) ? 0 : 100.0 * wins[role.ordinal()] / n; }
+    long seats(Role role)     { return seats[role.ordinal()]; }
+    double avgDays()          { return (games == 0) ? 0 : (double) days / games; }
+
+    /** Phe thắng: Mafia với MAFIA, Jester chỉ khi bị treo cổ, mọi vai còn lại với TOWN. */
+    static boolean wins(Role role, String result) {
+        return switch (role) {
+            case MAFIA  -> "MAFIA".equals(result);
+            case JESTER -> "JESTER".equals(result);
+            case UNASSIGNED -> false;
+            default     -> "TOWN".equals(result);
+        };
+    }
+
+    private static int indexOf(String result) {
+        for (int i = 0; i < RESULTS.length; i++) if (RESULTS[i].equals(result)) return i;
+        return RESULTS.length - 1; // lạ -> ABORTED
+    }
+}
@@ -0,0 +1,226 @@
+package com.mafiaonline.sim;
+
+import com.mafiaonline.common.log.Log;
+import com.mafiaonline.common.log.Logger;
+import com.mafiaonline.server.GameRoom;
+import com.mafiaonline.server.GameState;
+import com.mafiaonline.server.Player;
+import com.mafiaonline.server.Role;
+import com.mafiaonline.server.RoomLoop;
+import com.mafiaonline.server.journal.RoomEventSink;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 1 bàn chơi của simulator: 1 GameRoom thật (PhaseManager thật) + N bot, chạy trên đồng hồ ảo của worker.
+ * - Bàn nghe ván qua RoomEventSink (đúng chỗ journal nghe): pha bắt đầu -> hẹn hành động của từng bot
+ *   tại thời điểm ngẫu nhiên trong pha; phiếu / hành động đêm / kết quả ván -> cập nhật những gì bot "biết"
+ * - Bot gọi đúng API mà PlayerHandler gọi (castVote, recordNightAction) nên luật, kết thúc sớm, timer pha
+ *   đều là code của server
+ * - Bàn được dùng lại cho nhiều ván (như rematch trong lobby); mọi trạng thái của bàn chỉ worker chạm tới
+ */
+final class SimTable implements RoomEventSink {
+
+    private static final Logger LOG = Log.get(SimTable.class);
+
+    /** Ván kéo quá số ngày này bị huỷ (ABORTED) — chặn vòng lặp vô tận do chiến thuật. */
+    private static final int MAX_DAYS = 100;
+
+    private final VirtualClock clock;
+    private final BotStrategy strategy;
+    private final GameRoom room;
+
+    private SplittableRandom rng;
+    private long phase;                       // tăng mỗi pha: hành động hẹn cho pha cũ tự bỏ
+    private int day;
+    private String result;                    // null = đang chơi
+    private boolean failed;                   // ván vừa chơi bị ngắt vì exception (kết quả: ABORTED hoặc endGame)
+    private final List<Role> dealt = new ArrayList<>();
+
+    // Những gì bot "biết" trong ván hiện tại
+    private final Map<String, String> voteOf = new HashMap<>();   // voter -> target (ngày hiện tại)
+    private final Map<String, Integer> votesFor = new HashMap<>(); // target -> số phiếu
+    private final Map<String, String> pendingChecks = new HashMap<>(); // detective -> mục tiêu đêm qua
+    private final Set<String> cleared = new HashSet<>();         // Detective đã điều tra: không phải Mafia
+    private String accused;                   // Mafia bị Detective điều tra ra (công khai lúc sáng)
+    private String claimedDetective;          // Detective đã lộ diện khi tố
+    private String mafiaPick;                 // mục tiêu chung của Mafia đêm nay
+
+    SimTable(int players, BotStrategy strategy, VirtualClock clock) {
+        this.clock = clock;
+        this.strategy = strategy;
+        this.room = new GameRoom("sim-" + players, RoomLoop.ofCurrentThread(), clock, this);
+        for (int i = 0; i < players; i++) room.addPlayer("bot" + i);
+    }
+
+    /** Chơi 1 ván tới khi có kết quả; trả về TOWN | MAFIA | JESTER | ABORTED. */
+    String play(SplittableRandom rng) {
+        this.rng = rng;
+        result = null;
+        failed = false;
+        day = 0;
+        accused = claimedDetective = mafiaPick = null;
+        pendingChecks.clear();
+        cleared.clear();
+        clearVotes();
+
+        room.setRandom(rng.split());
+        try {
+            room.startGame();
+            while (result == null) {
+                if (day > MAX_DAYS || !clock.runNext()) room.endGame(); // kẹt (không còn timer) hoặc quá dài
+            }
+        } catch (RuntimeException e) {
+            failed = true;
+            LOG.warn("[Sim] Lỗi trong ván ({}, ngày {})", room.getId(), day, e);
+            if (result == null) room.endGame();
+        }
+        clock.clear();
+        return result;
+    }
+
+    /** Vai đã chia của ván vừa chơi (theo thứ tự ghế). */
+    List<Role> dealt() { return dealt; }
+
+    int days() { return day; }
+
+    /** Ván vừa chơi bị exception cắt ngang (đã log WARN kèm stack trace). */
+    boolean failed() { return failed; }
+
+    /* ==================== API cho BotStrategy ==================== */
+
+    SplittableRandom rng()         { return rng; }
+    String accused()               { return (accused != null && room.isAlive(accused)) ? accused : null; }
+    String claimedDetective()      { return (claimedDetective != null && room.isAlive(claimedDetective)) ? claimedDetective : null; }
+    boolean isAlive(String name)   { return room.isAlive(name); }
+    boolean isCleared(String name) { return cleared.contains(name); }
+
+    Role roleOf(String name) {
+        Player p = room.getPlayer(name);
+        return (p != null) ? p.getRole() : Role.UNASSIGNED;
+    }
+
+    /** Người sống ngẫu nhiên thoả điều kiện (reservoir sampling theo thứ tự ghế); null nếu không có ai. */
+    String pickAlive(Predicate<Player> filter) {
+        String chosen = null;
+        int seen = 0;
+        for (Player p : room.getPlayersAlive()) {
+            if (!filter.test(p)) continue;
+            if (rng.nextInt(++seen) == 0) chosen = p.getName();
+        }
+        return chosen;
+    }
+
+    /** Người đang dẫn phiếu hôm nay thoả điều kiện (hoà -> người gặp trước); null nếu chưa ai có phiếu. */
+    String leading(Predicate<String> filter) {
+        String best = null;
+        int bestCount = 0;
+        for (Map.Entry<String, Integer> e : votesFor.entrySet()) {
+            if (e.getValue() > bestCount && room.isAlive(e.getKey()) && filter.test(e.getKey())) {
+                best = e.getKey();
+                bestCount = e.getValue();
+            }
+        }
+        return best;
+    }
+
+    /** Mục tiêu chung của Mafia đêm nay (người Mafia đầu tiên hành động chọn, các người sau theo). */
+    String mafiaPick(Predicate<Player> filter) {
+        if (mafiaPick == null || !room.isAlive(mafiaPick)) mafiaPick = pickAlive(filter);
+        return mafiaPick;
+    }
+
+    /* ==================== Hẹn hành động của bot ==================== */
+
+    private void scheduleBots(boolean voting, long windowMs) {
+        final long myPhase = phase;
+        for (Player p : room.getPlayersAlive()) {
+            if (!voting && !BotStrategy.actsAtNight(p.getRole())) continue;
+            final String name = p.getName();
+            clock.schedule(() -> {
+                if (myPhase != phase || result != null || !room.isAlive(name)) return;
+                if (voting) {
+                    String target = strategy.vote(this, name);
+                    if (target != null) room.castVote(name, target);
+                } else {
+                    String target = strategy.nightTarget(this, name);
+                    if (target != null) room.recordNightAction(name, target);
+                }
+            }, rng.nextLong(windowMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void clearVotes() {
+        voteOf.clear();
+        votesFor.clear();
+    }
+
+    /** Sáng ra: Detective còn sống biết vai người mình điều tra; trúng Mafia thì lộ diện và tố công khai. */
+    private void revealChecks() {
+        for (Map.Entry<String, String> c : pendingChecks.entrySet()) {
+            String detective = c.getKey(), target = c.getValue();
+            if (!room.isAlive(detective) || !room.isAlive(target)) continue;
+            if (roleOf(target) == Role.MAFIA) {
+                accused = target;
+                claimedDetective = detective;
+            } else {
+                cleared.add(target);
+            }
+        }
+        pendingChecks.clear();
+    }
+
+    /* ==================== RoomEventSink ==================== */
+
+    @Override
+    public void gameStarted(String roomId, long gameId, Collection<Player> players) {
+        dealt.clear();
+        for (Player p : players) dealt.add(p.getRole());
+    }
+
+    @Override
+    public void phaseStarted(String roomId, long gameId, GameState state, boolean voting, long deadlineMillis) {
+        phase++;
+        long windowMs = Math.max(1, (deadlineMillis - clock.currentTimeMillis()) * 9 / 10);
+        if (state == GameState.DAY && !voting) {
+            day++;
+            clearVotes();
+            revealChecks();
+        } else if (state == GameState.DAY) {
+            scheduleBots(true, windowMs);
+        } else if (state == GameState.NIGHT) {
+            mafiaPick = null;
+            scheduleBots(false, windowMs);
+        }
+    }
+
+    @Override
+    public void vote(String roomId, long gameId, String voter, String target) {
+        String old = voteOf.put(voter, target);
+        if (old != null) votesFor.merge(old, -1, Integer::sum);
+        votesFor.merge(target, 1, Integer::sum);
+    }
+
+    @Override
+    public void nightAction(String roomId, long gameId, String actor, Role role, String target) {
+        if (role == Role.DETECTIVE) pendingChecks.put(actor, target);
+    }
+
+    @Override
+    public void gameEnded(String roomId, long gameId, String result) {
+        this.result = result;
+    }
+
+    @Override public void stateChanged(String roomId, long gameId, GameState state) {}
+    @Override public void killed(String roomId, long gameId, String name, boolean silent) {}
+    @Override public void playerLeft(String roomId, long gameId, String name) {}
+}
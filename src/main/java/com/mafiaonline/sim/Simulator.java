@@ -0,0 +1,194 @@
+package com.mafiaonline.sim;
+
+import com.mafiaonline.server.GameRoom;
+import com.mafiaonline.server.Role;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulator headless: chạy hàng triệu ván với GameRoom/PhaseManager thật, bot thay người chơi,
+ * đồng hồ ảo thay TimerWheel, không socket — để chỉnh pool vai (GameRoom.rolePool) và ép tải engine.
+ * - Ván thứ i dùng seed riêng suy ra từ (--seed, i) -> kết quả giống hệt nhau dù chạy bao nhiêu thread
+ * - Mỗi worker (1 thread/core mặc định) giữ 1 đồng hồ ảo + 1 bàn cho mỗi cỡ bàn, nhận ván theo lô
+ * - Cỡ bàn xoay vòng trong khoảng --players, mỗi cỡ nhận số ván như nhau
+ * - In: tỉ lệ thắng theo phe/cỡ bàn, theo vai, số ván/giây, số ván lỗi (exception; stack trace ở log WARN)
+ *
+ * Chạy:
+ *   java -cp target/classes:<deps> com.mafiaonline.sim.Simulator --games 1000000 --players 5-12
+ *   ... [--threads N] [--seed 42] [--strategy smart|random]
+ * Log phòng tắt sẵn (-Dlog.level.com.mafiaonline.server=WARN); -Dphase.early.grace.ms, -Dvotes.throttle.ms vẫn áp dụng như server.
+ */
+public final class Simulator {
+
+    private static final int BATCH = 256;           // số ván mỗi lần worker nhận
+    private static final long PROGRESS_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final String ROOM_LOG_LEVEL = "log.level.com.mafiaonline.server";
+
+    private Simulator() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        if (System.getProperty(ROOM_LOG_LEVEL) == null) System.setProperty(ROOM_LOG_LEVEL, "WARN"); // trước khi nạp Log
+
+        long games = 100_000;
+        int minPlayers = 5, maxPlayers = 12;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 42;
+        String strategyName = "smart";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games"    -> games = Long.parseLong(args[++i]);
+                case "--threads"  -> threads = Math.max(1, Integer.parseInt(args[++i]));
+                case "--seed"     -> seed = Long.parseLong(args[++i]);
+                case "--strategy" -> strategyName = args[++i];
+                case "--players"  -> {
+                    String[] range = args[++i].split("-");
+                    minPlayers = Integer.parseInt(range[0]);
+                    maxPlayers = Integer.parseInt(range[range.length - 1]);
+                }
+                default -> {
+                    System.out.println("Usage: Simulator [--games N] [--players MIN-MAX] [--threads N] [--seed S] [--strategy smart|random]");
+                    return;
+                }
+            }
+        }
+        if (minPlayers < 3 || maxPlayers < minPlayers) {
+            System.out.println("[Sim] --players phải trong khoảng 3..N (GameRoom cần ít nhất 3 người)");
+            return;
+        }
+        BotStrategy strategy = BotStrategy.of(strategyName);
+
+        final long total = games, baseSeed = seed;
+        final int lo = minPlayers, span = maxPlayers - minPlayers + 1;
+        AtomicLong next = new AtomicLong();
+        AtomicLong done = new AtomicLong();
+        List<Worker> workers = new ArrayList<>(threads);
+        System.out.printf("[Sim] %,d games, players %d-%d, strategy=%s, seed=%d, %d threads%n",
+                total, lo, maxPlayers, strategyName, baseSeed, threads);
+
+        long t0 = System.nanoTime();
+        for (int w = 0; w < threads; w++) {
+            Worker worker = new Worker(lo, span, strategy, baseSeed, total, next, done);
+            workers.add(worker);
+            worker.thread = new Thread(worker, "sim-" + w);
+            worker.thread.start();
+        }
+        long lastReport = t0;
+        for (Worker w : workers) {
+            while (w.thread.isAlive()) {
+                w.thread.join(200);
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_NANOS) {
+                    lastReport = now;
+                    long d = done.get();
+                    System.out.printf("[Sim] %,d / %,d games (%,.0f games/s)%n", d, total, d / ((now - t0) / 1e9));
+                }
+            }
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        SimStats[] merged = new SimStats[span];
+        for (int k = 0; k < span; k++) merged[k] = new SimStats(lo + k);
+        long timers = 0, virtualMs = 0;
+        for (Worker w : workers) {
+            for (int k = 0; k < span; k++) merged[k].merge(w.stats[k]);
+            timers += w.clock.firedTimers();
+            virtualMs += TimeUnit.NANOSECONDS.toMillis(w.clock.nanoTime());
+        }
+        report(merged, secs, timers, virtualMs);
+    }
+
+    /* ==================== Worker ==================== */
+
+    private static final class Worker implements Runnable {
+        private final int lo, span;
+        private final BotStrategy strategy;
+        private final long seed, total;
+        private final AtomicLong next, done;
+        private final VirtualClock clock = new VirtualClock();
+        private final SimStats[] stats;
+        private Thread thread;
+
+        Worker(int lo, int span, BotStrategy strategy, long seed, long total, AtomicLong next, AtomicLong done) {
+            this.lo = lo;
+            this.span = span;
+            this.strategy = strategy;
+            this.seed = seed;
+            this.total = total;
+            this.next = next;
+            this.done = done;
+            this.stats = new SimStats[span];
+            for (int k = 0; k < span; k++) stats[k] = new SimStats(lo + k);
+        }
+
+        @Override
+        public void run() {
+            SimTable[] tables = new SimTable[span]; // tạo trên chính thread này (RoomLoop.ofCurrentThread)
+            for (int k = 0; k < span; k++) tables[k] = new SimTable(lo + k, strategy, clock);
+            long start;
+            while ((start = next.getAndAdd(BATCH)) < total) {
+                long end = Math.min(total, start + BATCH);
+                for (long i = start; i < end; i++) {
+                    int k = (int) (i % span);
+                    SimTable table = tables[k];
+                    String result = table.play(gameRandom(seed, i));
+                    stats[k].record(table.dealt(), result, table.days(), table.failed());
+                }
+                done.addAndGet(end - start);
+            }
+        }
+    }
+
+    /** Nguồn ngẫu nhiên của ván i: băm (seed, i) thành seed riêng để các ván không dùng chung dãy số. */
+    static SplittableRandom gameRandom(long seed, long game) {
+        return new SplittableRandom(new SplittableRandom(seed + game).nextLong());
+    }
+
+    /* ==================== Báo cáo ==================== */
+
+    private static void report(SimStats[] bySize, double secs, long timers, long virtualMs) {
+        SimStats all = new SimStats(0);
+        for (SimStats s : bySize) all.merge(s);
+
+        System.out.printf("%n[Sim] %,d games in %.2f s = %,.0f games/s (%,.0f timers/s, %.1f virtual days played)%n",
+                all.games, secs, all.games / secs, timers / secs, virtualMs / 86_400_000.0);
+
+        System.out.printf("%n%-8s %10s %7s %7s %7s %8s %6s  %s%n",
+                "players", "games", "town%", "mafia%", "jester%", "aborted%", "days", "pool");
+        for (SimStats s : bySize) {
+            System.out.printf("%-8d %10d %7.2f %7.2f %7.2f %8.2f %6.2f  %s%n",
+                    s.players, s.games, s.resultPct(0), s.resultPct(1), s.resultPct(2), s.resultPct(3),
+                    s.avgDays(), describePool(s.players));
+        }
+        System.out.printf("%-8s %10d %7.2f %7.2f %7.2f %8.2f %6.2f%n",
+                "all", all.games, all.resultPct(0), all.resultPct(1), all.resultPct(2), all.resultPct(3), all.avgDays());
+
+        if (all.errors > 0) {
+            System.out.printf("%n[Sim] %,d ván lỗi (exception trong engine — stack trace trong log WARN của SimTable), %,d ván ABORTED%n",
+                    all.errors, all.results[3]);
+        }
+
+        System.out.printf("%n%-10s %12s %7s%n", "role", "seats", "win%");
+        for (Role r : Role.values()) {
+            if (all.seats(r) == 0) continue;
+            System.out.printf("%-10s %12d %7.2f%n", r, all.seats(r), all.winPct(r));
+        }
+    }
+
+    /** "2 MAFIA, 1 DOCTOR, ..." theo GameRoom.rolePool. */
+    private static String describePool(int players) {
+        Map<Role, Integer> count = new EnumMap<>(Role.class);
+        for (Role r : GameRoom.rolePool(players)) count.merge(r, 1, Integer::sum);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Role, Integer> e : count.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(e.getValue()).append(' ').append(e.getKey());
+        }
+        return sb.toString();
+    }
+}
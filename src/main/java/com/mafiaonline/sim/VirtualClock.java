@@ -0,0 +1,83 @@
+package com.mafiaonline.sim;
+
+import com.mafiaonline.server.GameClock;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đồng hồ ảo cho simulator: timer nằm trong 1 heap, runNext() nhảy thẳng tới timer sớm nhất rồi chạy nó
+ * trên thread gọi -> 1 ván "vài phút" chạy hết trong vài µs, không thread, không ngủ.
+ * Cùng hạn thì chạy theo thứ tự hẹn (seq) -> cùng seed cho cùng thứ tự sự kiện.
+ * Không thread-safe: mỗi worker 1 đồng hồ.
+ */
+final class VirtualClock implements GameClock {
+
+    /** Mốc epoch cố định (gameId, hạn chốt pha) để kết quả không phụ thuộc giờ chạy. */
+    private static final long EPOCH_MS = 1_700_000_000_000L;
+
+    private static final class Task implements GameClock.Timer, Comparable<Task> {
+        private final long at;
+        private final long seq;
+        private final Runnable action;
+        private boolean done;            // đã chạy hoặc đã huỷ
+
+        private Task(long at, long seq, Runnable action) {
+            this.at = at;
+            this.seq = seq;
+            this.action = action;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (done) return false;
+            done = true;
+            return true;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            int c = Long.compare(at, o.at);
+            return (c != 0) ? c : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long now;     // nanos ảo, chỉ tăng
+    private long seq;
+    private long fired;
+
+    @Override
+    public Timer schedule(Runnable task, long delay, TimeUnit unit) {
+        Task t = new Task(now + Math.max(0, unit.toNanos(delay)), seq++, task);
+        queue.add(t);
+        return t;
+    }
+
+    /** Chạy timer kế tiếp (bỏ qua timer đã huỷ); false nếu không còn gì để chạy. */
+    boolean runNext() {
+        Task t;
+        while ((t = queue.poll()) != null) {
+            if (t.done) continue;
+            t.done = true;
+            now = Math.max(now, t.at);
+            fired++;
+            t.action.run();
+            return true;
+        }
+        return false;
+    }
+
+    /** Bỏ mọi timer còn treo (giữa 2 ván). */
+    void clear() {
+        queue.clear();
+    }
+
+    long firedTimers() { return fired; }
+
+    @Override
+    public long nanoTime() { return now; }
+
+    @Override
+    public long currentTimeMillis() { return EPOCH_MS + TimeUnit.NANOSECONDS.toMillis(now); }
+}